@@ -2,8 +2,18 @@ package ru.vk.competition.minbenchmark;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.data.r2dbc.R2dbcDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.r2dbc.R2dbcRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
 
-@SpringBootApplication
+// R2DBC is wired by hand in R2dbcConfiguration, see there
+@SpringBootApplication(exclude = {
+  R2dbcAutoConfiguration.class,
+  R2dbcDataAutoConfiguration.class,
+  R2dbcRepositoriesAutoConfiguration.class,
+  R2dbcTransactionManagerAutoConfiguration.class
+})
 public class MinbenchmarkApplication {
 
   public static void main(String[] args) {
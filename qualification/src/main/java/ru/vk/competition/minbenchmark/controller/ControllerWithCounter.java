@@ -1,23 +1,145 @@
 package ru.vk.competition.minbenchmark.controller;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.entity.QueryStatus;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
 
-public class ControllerWithCounter {
+/**
+ * Base of the controllers: request ids, request logging and the mapping of results to statuses.
+ * <p>
+ * Requests are logged through {@link RequestLog}, so a message costs the request a few field writes: its arguments
+ * are formatted later, on the log thread. Logging is sampled per endpoint, the key being its last path segment, e.g.
+ * {@code minbenchmark.request-log.sample-every.get-all-table-queries: 100} logs one request in 100, 0 none;
+ * {@code default} applies to the endpoints not listed. Arguments are cut to {@code minbenchmark.request-log.max-length}.
+ */
+public class ControllerWithCounter implements EnvironmentAware {
   private final AtomicInteger counter = new AtomicInteger();
+  private final Logger requestLog = LoggerFactory.getLogger(getClass());
+  private Map<String, Integer> sampleEvery = Map.of();
+  private int defaultSampleEvery = 1;
+  private int maxLength = 200;
 
-  protected int nextId() {
-    return counter.getAndIncrement();
+  @Override
+  public void setEnvironment(Environment environment) {
+    var binder = Binder.get(environment);
+    sampleEvery = binder.bind("minbenchmark.request-log.sample-every", Bindable.mapOf(String.class, Integer.class))
+      .orElse(Map.of());
+    defaultSampleEvery = sampleEvery.getOrDefault("default", 1);
+    maxLength = binder.bind("minbenchmark.request-log.max-length", Integer.class).orElse(maxLength);
   }
 
-  protected String withId(int id, String s) {
-    return id + ") " + s;
+  /**
+   * The id of a new request to {@code endpoint}: negative if the request is not sampled, so that the log methods
+   * below can tell without a lookup.
+   */
+  protected int nextId(String endpoint) {
+    int id = counter.getAndIncrement() & Integer.MAX_VALUE;
+    int every = sampleEvery.getOrDefault(endpoint, defaultSampleEvery);
+    // the id scrambled first: requests to several endpoints in a fixed rotation would always sample the same ones
+    boolean sampled = every == 1 || every > 1 && Integer.remainderUnsigned(id * 0x9E3779B9, every) == 0;
+    return sampled ? id : ~id;
   }
 
+  /**
+   * Whether messages of request {@code id} are logged, to skip building arguments that are not logged anyway.
+   */
+  protected boolean logged(int id) {
+    return id >= 0 && requestLog.isInfoEnabled();
+  }
+
+  protected void info(int id, String message) {
+    if (id >= 0) {
+      RequestLog.shared().info(requestLog, id, maxLength, message, 0, null, null, null);
+    }
+  }
+
+  protected void info(int id, String template, Object argument) {
+    if (id >= 0) {
+      RequestLog.shared().info(requestLog, id, maxLength, template, 1, argument, null, null);
+    }
+  }
+
+  /**
+   * Boxes {@code argument} only if the request is logged.
+   */
+  protected void info(int id, String template, int argument) {
+    if (id >= 0) {
+      RequestLog.shared().info(requestLog, id, maxLength, template, 1, argument, null, null);
+    }
+  }
+
+  protected void info(int id, String template, Object first, Object second) {
+    if (id >= 0) {
+      RequestLog.shared().info(requestLog, id, maxLength, template, 2, first, second, null);
+    }
+  }
+
+  protected void info(int id, String template, Object first, Object second, Object third) {
+    if (id >= 0) {
+      RequestLog.shared().info(requestLog, id, maxLength, template, 3, first, second, third);
+    }
+  }
+
+  protected void checkPage(Integer limit) {
+    if (limit != null && limit < 0) {
+      throw new ServerWebInputException("Negative page limit " + limit);
+    }
+  }
+
+  /**
+   * Logs how many elements a streamed response had once it completes, instead of the elements themselves.
+   */
+  protected <T> Flux<T> logStreamed(int id, String name, Flux<T> stream) {
+    if (!logged(id)) {
+      return stream;
+    }
+    var count = new AtomicLong();
+    return stream
+      .doOnNext(it -> count.incrementAndGet())
+      .doOnComplete(() -> info(id, "{} result: {} streamed", name, count));
+  }
+
+  protected void checkBatch(List<?> items) {
+    if (items.contains(null)) {
+      throw new ServerWebInputException("Null item in batch");
+    }
+  }
+
+  /**
+   * Pairs the result of each batch item with its id, as the status the single-item endpoint would answer with.
+   */
+  protected <T> Mono<List<QueryStatus>> toStatuses(List<T> items, ToIntFunction<T> id, Mono<List<Boolean>> res,
+                                                   HttpStatus ok, HttpStatus error) {
+    return res.map(results -> {
+      var statuses = new ArrayList<QueryStatus>(items.size());
+      for (int i = 0; i < items.size(); i++) {
+        var status = results.get(i) ? ok : error;
+        statuses.add(new QueryStatus(id.applyAsInt(items.get(i)), status.value()));
+      }
+      return statuses;
+    });
+  }
+
+  protected String batchResult(List<QueryStatus> statuses, HttpStatus ok) {
+    return statuses.stream().filter(it -> it.getStatus() == ok.value()).count() + " of " + statuses.size() + " " + ok.getReasonPhrase();
+  }
 
   protected Mono<ResponseEntity<Void>> toHttpStatus(Mono<Boolean> res, HttpStatus ok, HttpStatus error) {
     return toHttpStatus(res, ok, error, true);
@@ -0,0 +1,178 @@
+package ru.vk.competition.minbenchmark.controller;
+
+import org.slf4j.Logger;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous ring buffer in front of the request loggers of the controllers. A request thread only claims a slot and
+ * stores the logger, the request id, the message template and its arguments by reference; one daemon thread formats
+ * the messages and passes them on to the loggers, so neither {@code toString} of a response body nor the appenders
+ * run on the request path. Arguments must not change once logged: responses and stored entries never do.
+ * <p>
+ * Templates have SLF4J {@code {}} placeholders. An argument is cut to {@code maxLength} characters, a collection to the
+ * elements that fit, followed by how many more there are.
+ * <p>
+ * Slots are claimed with a CAS on the sequence, and published by writing their own sequence number after the
+ * contents. When the buffer is full the message is dropped, not waited for; the number dropped is logged once there
+ * is room again.
+ */
+final class RequestLog {
+  private static final RequestLog SHARED = new RequestLog(8192);
+  private static final long IDLE_NANOS = 1_000_000;
+
+  private final Slot[] slots;
+  private final int mask;
+  private final AtomicLong claimed = new AtomicLong();
+  private volatile long consumed;
+  private final AtomicLong dropped = new AtomicLong();
+  private final Thread consumer;
+  private volatile boolean stopped;
+
+  private static final class Slot {
+    volatile long sequence = -1;
+    Logger logger;
+    int id;
+    int maxLength;
+    String template;
+    int arguments;
+    Object first;
+    Object second;
+    Object third;
+  }
+
+  /**
+   * @param capacity a power of two
+   */
+  RequestLog(int capacity) {
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity is not a power of two: " + capacity);
+    }
+    slots = new Slot[capacity];
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = new Slot();
+    }
+    mask = capacity - 1;
+    consumer = new Thread(this::consume, "request-log");
+    consumer.setDaemon(true);
+    consumer.start();
+  }
+
+  static RequestLog shared() {
+    return SHARED;
+  }
+
+  /**
+   * Queues an info message {@code "<id>) <template>"}, unless info is disabled for {@code logger} or the buffer is full.
+   */
+  void info(Logger logger, int id, int maxLength, String template, int arguments, Object first, Object second,
+            Object third) {
+    if (!logger.isInfoEnabled()) {
+      return;
+    }
+    long sequence;
+    do {
+      sequence = claimed.get();
+      if (sequence - consumed >= slots.length) {
+        dropped.incrementAndGet();
+        return;
+      }
+    } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+    var slot = slots[(int) sequence & mask];
+    slot.logger = logger;
+    slot.id = id;
+    slot.maxLength = maxLength;
+    slot.template = template;
+    slot.arguments = arguments;
+    slot.first = first;
+    slot.second = second;
+    slot.third = third;
+    slot.sequence = sequence;
+  }
+
+  private void consume() {
+    var message = new StringBuilder(256);
+    long next = 0;
+    while (!stopped) {
+      var slot = slots[(int) next & mask];
+      if (slot.sequence != next) {
+        LockSupport.parkNanos(IDLE_NANOS);
+        continue;
+      }
+      message.setLength(0);
+      message.append(slot.id).append(") ");
+      format(message, slot.template, slot.maxLength, slot.arguments, slot.first, slot.second, slot.third);
+      var logger = slot.logger;
+      slot.logger = null;
+      slot.first = null;
+      slot.second = null;
+      slot.third = null;
+      consumed = ++next;
+      try {
+        logger.info(message.toString());
+      } catch (RuntimeException e) {
+        // an appender failing must not stop the other messages
+      }
+
+      long lost = dropped.get();
+      if (lost > 0 && dropped.compareAndSet(lost, 0)) {
+        logger.warn(lost + " request log messages dropped, the buffer was full");
+      }
+    }
+  }
+
+  /**
+   * Stops the consumer thread; messages still queued are not logged.
+   */
+  void close() throws InterruptedException {
+    stopped = true;
+    consumer.join();
+  }
+
+  static void format(StringBuilder message, String template, int maxLength, int arguments, Object first,
+                     Object second, Object third) {
+    int from = 0;
+    for (int i = 0; i < arguments; i++) {
+      int at = template.indexOf("{}", from);
+      if (at < 0) {
+        break;
+      }
+      message.append(template, from, at);
+      append(message, i == 0 ? first : i == 1 ? second : third, maxLength);
+      from = at + 2;
+    }
+    message.append(template, from, template.length());
+  }
+
+  private static void append(StringBuilder message, Object argument, int maxLength) {
+    if (argument instanceof Collection<?> collection) {
+      int start = message.length();
+      message.append('[');
+      int shown = 0;
+      for (var element : collection) {
+        if (message.length() - start >= maxLength) {
+          break;
+        }
+        if (shown > 0) {
+          message.append(", ");
+        }
+        append(message, element, maxLength);
+        shown++;
+      }
+      if (shown < collection.size()) {
+        message.append(shown > 0 ? ", ... " : "... ").append(collection.size() - shown).append(" more");
+      }
+      message.append(']');
+      return;
+    }
+    var text = String.valueOf(argument);
+    if (text.length() <= maxLength) {
+      message.append(text);
+    } else {
+      message.append(text, 0, Math.max(maxLength, 0)).append("... (").append(text.length()).append(" chars)");
+    }
+  }
+}
@@ -2,12 +2,15 @@ package ru.vk.competition.minbenchmark.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebExceptionHandler;
 import reactor.core.publisher.Mono;
 
+import java.util.concurrent.RejectedExecutionException;
+
 @Slf4j
 @Component
 @Order(-2)
@@ -21,6 +24,10 @@ class RestWebExceptionHandler implements WebExceptionHandler {
         log.info("Incoming request: " + path);
       }
     }
+    if (ex instanceof RejectedExecutionException) {
+      log.warn("Rejected request " + exchange.getRequest().getPath() + ": " + ex.getMessage());
+      return Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many requests", ex));
+    }
     return Mono.error(ex);
   }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package ru.vk.competition.minbenchmark.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.service.TenantService;
+
+@RestController
+@RequestMapping("/api/tenant")
+@RequiredArgsConstructor
+public class TenantController extends ControllerWithCounter {
+
+  private final TenantService tenantService;
+
+  @DeleteMapping("/drop-tenant/{name}")
+  public Mono<ResponseEntity<Void>> dropTenant(@PathVariable String name) {
+    var id = nextId("drop-tenant");
+    info(id, "Drop tenant: name = {}", name);
+    return toHttpStatus(tenantService.dropTenant(name), HttpStatus.CREATED, HttpStatus.NOT_ACCEPTABLE, false).map(it -> {
+      info(id, "Drop tenant result: {}", it.getStatusCodeValue());
+      return it;
+    });
+  }
+}
@@ -0,0 +1,40 @@
+package ru.vk.competition.minbenchmark.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.repository.Tenants;
+
+/**
+ * Runs requests carrying the {@code minbenchmark.tenants.header} as that tenant, see {@link Tenants}. A request naming
+ * a tenant that {@link Tenants#isValidName} refuses is answered with 400.
+ */
+@Component
+@ConditionalOnProperty(name = "minbenchmark.tenants.enabled", havingValue = "true")
+class TenantFilter implements WebFilter {
+  private final Tenants tenants;
+  private final String header;
+
+  TenantFilter(Tenants tenants, @Value("${minbenchmark.tenants.header:X-Tenant}") String header) {
+    this.tenants = tenants;
+    this.header = header;
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    var name = exchange.getRequest().getHeaders().getFirst(header);
+    if (!tenants.isEnabled() || name == null || name.isEmpty()) {
+      return chain.filter(exchange);
+    }
+    if (!Tenants.isValidName(name)) {
+      return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Bad tenant name"));
+    }
+    return chain.filter(exchange).contextWrite(tenants.context(name));
+  }
+}
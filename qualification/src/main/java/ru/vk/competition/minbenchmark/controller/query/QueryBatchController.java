@@ -0,0 +1,52 @@
+package ru.vk.competition.minbenchmark.controller.query;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.controller.ControllerWithCounter;
+import ru.vk.competition.minbenchmark.entity.QueryBatch;
+import ru.vk.competition.minbenchmark.service.QueryBatchService;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/query-batch")
+@RequiredArgsConstructor
+public class QueryBatchController extends ControllerWithCounter {
+
+  private final QueryBatchService batchService;
+
+  /**
+   * Executes stored queries as one JDBC batch in one transaction. Answers 201, with the update count of each
+   * statement in the body if {@code results} is set, or 406 if nothing was committed.
+   */
+  @PostMapping("/execute")
+  public Mono<ResponseEntity<List<Integer>>> executeBatch(@RequestBody QueryBatch batch,
+                                                          @RequestParam(defaultValue = "false") boolean results) {
+    var queryId = nextId("execute");
+    info(queryId, "Execute batch: {}", batch);
+    if (batch.getTableQueryIds() == null || batch.getSingleQueryIds() == null) {
+      throw new ServerWebInputException("Missing query ids");
+    }
+    checkBatch(batch.getTableQueryIds());
+    checkBatch(batch.getSingleQueryIds());
+    return batchService.executeBatch(batch)
+      .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, "Bad query")))
+      .map(it -> {
+        info(queryId, "Execute batch result: {} statements", it.size());
+        return results ? new ResponseEntity<>(it, HttpStatus.CREATED) : new ResponseEntity<>(HttpStatus.CREATED);
+      });
+  }
+
+  @ExceptionHandler(ServerWebInputException.class)
+  ResponseEntity<Void> badQuery(ServerWebInputException ex) {
+    log.info("Handle bad batch: " + ex.getMethodParameter() + " " + ex);
+    throw new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, ex.getReason(), ex.getCause());
+  }
+}
@@ -3,13 +3,15 @@ package ru.vk.competition.minbenchmark.controller.query;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 import ru.vk.competition.minbenchmark.controller.ControllerWithCounter;
+import ru.vk.competition.minbenchmark.entity.QueryStatus;
 import ru.vk.competition.minbenchmark.entity.SingleQuery;
 import ru.vk.competition.minbenchmark.service.SingleQueryService;
 
@@ -25,45 +27,116 @@ public class SingleQueryController extends ControllerWithCounter {
 
   @PutMapping("/modify-single-query")
   public Mono<ResponseEntity<Void>> updateQuery(@RequestBody SingleQuery query) {
-    var id = nextId();
-    log.info(withId(id, "Update single query: " + query.toString()));
-    return toHttpStatus(queryService.updateQuery(query).publishOn(Schedulers.boundedElastic()), HttpStatus.OK).map(it -> {
-      log.info(withId(id, "Update single query result: " + it.getStatusCodeValue()));
+    var id = nextId("modify-single-query");
+    info(id, "Update single query: {}", query);
+    return toHttpStatus(queryService.updateQuery(query), HttpStatus.OK).map(it -> {
+      info(id, "Update single query result: {}", it.getStatusCodeValue());
       return it;
     });
   }
 
   @DeleteMapping("/delete-single-query-by-id/{id}")
   public Mono<ResponseEntity<Void>> deleteQuery(@PathVariable Integer id) {
-    var queryId = nextId();
-    log.info(withId(queryId, "Delete single query: " + id));
-    return toHttpStatus(queryService.deleteQuery(id).publishOn(Schedulers.boundedElastic()), HttpStatus.ACCEPTED).map(it -> {
-      log.info(withId(queryId, "Delete single query result: " + it.getStatusCodeValue()));
+    var queryId = nextId("delete-single-query-by-id");
+    info(queryId, "Delete single query: {}", id);
+    return toHttpStatus(queryService.deleteQuery(id), HttpStatus.ACCEPTED).map(it -> {
+      info(queryId, "Delete single query result: {}", it.getStatusCodeValue());
+      return it;
+    });
+  }
+
+  @PostMapping("/add-new-queries")
+  public Mono<List<QueryStatus>> addNewQueries(@RequestBody List<SingleQuery> queries) {
+    var id = nextId("add-new-queries");
+    info(id, "Add single queries: {}", queries.size());
+    checkBatch(queries);
+    var statuses = toStatuses(queries, SingleQuery::getId, queryService.addNewQueries(queries),
+      HttpStatus.CREATED, HttpStatus.BAD_REQUEST);
+    return statuses.map(it -> {
+      if (logged(id)) {
+        info(id, "Add single queries result: {}", batchResult(it, HttpStatus.CREATED));
+      }
+      return it;
+    });
+  }
+
+  @PutMapping("/modify-single-queries")
+  public Mono<List<QueryStatus>> updateQueries(@RequestBody List<SingleQuery> queries) {
+    var id = nextId("modify-single-queries");
+    info(id, "Update single queries: {}", queries.size());
+    checkBatch(queries);
+    var statuses = toStatuses(queries, SingleQuery::getId, queryService.updateQueries(queries),
+      HttpStatus.OK, HttpStatus.NOT_ACCEPTABLE);
+    return statuses.map(it -> {
+      if (logged(id)) {
+        info(id, "Update single queries result: {}", batchResult(it, HttpStatus.OK));
+      }
+      return it;
+    });
+  }
+
+  @PostMapping("/delete-single-queries-by-id")
+  public Mono<List<QueryStatus>> deleteQueries(@RequestBody List<Integer> ids) {
+    var queryId = nextId("delete-single-queries-by-id");
+    info(queryId, "Delete single queries: {}", ids.size());
+    checkBatch(ids);
+    var statuses = toStatuses(ids, Integer::intValue, queryService.deleteQueries(ids),
+      HttpStatus.ACCEPTED, HttpStatus.NOT_ACCEPTABLE);
+    return statuses.map(it -> {
+      if (logged(queryId)) {
+        info(queryId, "Delete single queries result: {}", batchResult(it, HttpStatus.ACCEPTED));
+      }
       return it;
     });
   }
 
   @GetMapping("/execute-single-query-by-id/{id}")
   public Mono<ResponseEntity<Void>> executeQuery(@PathVariable Integer id) {
-    var queryId = nextId();
-    log.info(withId(queryId, "Execute single query: " + id));
-    return toHttpStatus(queryService.executeQuery(id).publishOn(Schedulers.boundedElastic()), HttpStatus.CREATED).map(it -> {
-      log.info(withId(queryId, "Execute single query result: " + it.getStatusCodeValue()));
+    var queryId = nextId("execute-single-query-by-id");
+    info(queryId, "Execute single query: {}", id);
+    return toHttpStatus(queryService.executeQuery(id), HttpStatus.CREATED).map(it -> {
+      info(queryId, "Execute single query result: {}", it.getStatusCodeValue());
       return it;
     });
   }
 
+  /**
+   * Executes a query with {@code ?} placeholders, the body holds the arguments in order.
+   */
+  @PostMapping("/execute-single-query-by-id/{id}")
+  public Mono<ResponseEntity<Void>> executeQuery(@PathVariable Integer id, @RequestBody List<Object> args) {
+    var queryId = nextId("execute-single-query-by-id");
+    info(queryId, "Execute single query: {} with {}", id, args);
+    return toHttpStatus(queryService.executeQuery(id, args), HttpStatus.CREATED).map(it -> {
+      info(queryId, "Execute single query result: {}", it.getStatusCodeValue());
+      return it;
+    });
+  }
 
   @GetMapping("/get-all-single-queries")
-  public Mono<List<SingleQuery>> getAllQueries() {
-    var queryId = nextId();
-    log.info(withId(queryId, "Get all single queries"));
-    return queryService.getAllQueries().publishOn(Schedulers.boundedElastic()).map(it -> {
-      log.info(withId(queryId, "Get all single queries result: " + it.toString()));
+  public Mono<List<SingleQuery>> getAllQueries(@RequestParam(required = false) Integer after,
+                                               @RequestParam(required = false) Integer limit) {
+    var queryId = nextId("get-all-single-queries");
+    info(queryId, "Get all single queries after {}, limit {}", after, limit);
+    checkPage(limit);
+    var queries = after == null && limit == null
+      ? queryService.getAllQueries()
+      : queryService.getAllQueries(after, limit);
+    return queries.map(it -> {
+      info(queryId, "Get all single queries result: {}", it);
       return it;
     });
   }
 
+  @GetMapping(value = "/stream-all-single-queries", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<SingleQuery> streamAllQueries(@RequestParam(required = false) Integer after,
+                                            @RequestParam(required = false) Integer limit) {
+    var queryId = nextId("stream-all-single-queries");
+    info(queryId, "Stream all single queries after {}, limit {}", after, limit);
+    checkPage(limit);
+    return logStreamed(queryId, "Stream all single queries", queryService.streamAllQueries(after, limit));
+  }
+
 
   @ExceptionHandler(ServerWebInputException.class)
   ResponseEntity<Void> badQuery(ServerWebInputException ex) {
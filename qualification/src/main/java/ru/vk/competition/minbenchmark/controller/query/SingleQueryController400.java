@@ -1,7 +1,6 @@
 package ru.vk.competition.minbenchmark.controller.query;
 
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -9,12 +8,10 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 import ru.vk.competition.minbenchmark.controller.ControllerWithCounter;
 import ru.vk.competition.minbenchmark.entity.SingleQuery;
 import ru.vk.competition.minbenchmark.service.SingleQueryService;
 
-@Slf4j
 @RestController
 @RequestMapping("/api/single-query")
 @RequiredArgsConstructor
@@ -24,10 +21,10 @@ public class SingleQueryController400 extends ControllerWithCounter {
 
   @PostMapping("/add-new-query")
   public Mono<ResponseEntity<Void>> addNewQuery(@RequestBody SingleQuery query) {
-    var id = nextId();
-    log.info(withId(id, "Add single query: " + query.toString()));
-    return toHttpStatus(queryService.addNewQuery(query).publishOn(Schedulers.boundedElastic())).map(it -> {
-      log.info(withId(id, "Add single query result: " + it.getStatusCodeValue()));
+    var id = nextId("add-new-query");
+    info(id, "Add single query: {}", query);
+    return toHttpStatus(queryService.addNewQuery(query)).map(it -> {
+      info(id, "Add single query result: {}", it.getStatusCodeValue());
       return it;
     });
   }
@@ -3,13 +3,15 @@ package ru.vk.competition.minbenchmark.controller.query;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 import ru.vk.competition.minbenchmark.controller.ControllerWithCounter;
+import ru.vk.competition.minbenchmark.entity.QueryStatus;
 import ru.vk.competition.minbenchmark.entity.TableQuery;
 import ru.vk.competition.minbenchmark.service.TableQueryService;
 
@@ -25,64 +27,152 @@ public class TableQueryController extends ControllerWithCounter {
 
   @PostMapping("/add-new-query-to-table")
   public Mono<ResponseEntity<Void>> addNewTableQuery(@RequestBody TableQuery query) {
-    var id = nextId();
-    log.info(withId(id, "Add table query: " + query.toString()));
-    return toHttpStatus(queryService.addNewTableQuery(query).publishOn(Schedulers.boundedElastic()), HttpStatus.CREATED).map(it -> {
-      log.info(withId(id, "Add table query result: " + it.getStatusCodeValue()));
+    var id = nextId("add-new-query-to-table");
+    info(id, "Add table query: {}", query);
+    return toHttpStatus(queryService.addNewTableQuery(query), HttpStatus.CREATED).map(it -> {
+      info(id, "Add table query result: {}", it.getStatusCodeValue());
       return it;
     });
   }
 
   @PutMapping("/modify-query-in-table")
   public Mono<ResponseEntity<Void>> updateTableQuery(@RequestBody TableQuery query) {
-    var id = nextId();
-    log.info(withId(id, "Update table query: " + query.toString()));
-    return toHttpStatus(queryService.updateTableQuery(query).publishOn(Schedulers.boundedElastic()), HttpStatus.OK).map(it -> {
-      log.info(withId(id, "Update table query result: " + it.getStatusCodeValue()));
+    var id = nextId("modify-query-in-table");
+    info(id, "Update table query: {}", query);
+    return toHttpStatus(queryService.updateTableQuery(query), HttpStatus.OK).map(it -> {
+      info(id, "Update table query result: {}", it.getStatusCodeValue());
       return it;
     });
   }
 
   @DeleteMapping("/delete-table-query-by-id/{id}")
   public Mono<ResponseEntity<Void>> deleteTableQuery(@PathVariable Integer id) {
-    var queryId = nextId();
-    log.info(withId(queryId, "Delete table query: " + id));
-    return toHttpStatus(queryService.deleteTableQuery(id).publishOn(Schedulers.boundedElastic()), HttpStatus.ACCEPTED).map(it -> {
-      log.info(withId(queryId, "Delete table query result: " + it.getStatusCodeValue()));
+    var queryId = nextId("delete-table-query-by-id");
+    info(queryId, "Delete table query: {}", id);
+    return toHttpStatus(queryService.deleteTableQuery(id), HttpStatus.ACCEPTED).map(it -> {
+      info(queryId, "Delete table query result: {}", it.getStatusCodeValue());
+      return it;
+    });
+  }
+
+  @PostMapping("/add-new-queries-to-table")
+  public Mono<List<QueryStatus>> addNewTableQueries(@RequestBody List<TableQuery> queries) {
+    var id = nextId("add-new-queries-to-table");
+    info(id, "Add table queries: {}", queries.size());
+    checkBatch(queries);
+    var statuses = toStatuses(queries, TableQuery::getId, queryService.addNewTableQueries(queries),
+      HttpStatus.CREATED, HttpStatus.NOT_ACCEPTABLE);
+    return statuses.map(it -> {
+      if (logged(id)) {
+        info(id, "Add table queries result: {}", batchResult(it, HttpStatus.CREATED));
+      }
+      return it;
+    });
+  }
+
+  @PutMapping("/modify-queries-in-table")
+  public Mono<List<QueryStatus>> updateTableQueries(@RequestBody List<TableQuery> queries) {
+    var id = nextId("modify-queries-in-table");
+    info(id, "Update table queries: {}", queries.size());
+    checkBatch(queries);
+    var statuses = toStatuses(queries, TableQuery::getId, queryService.updateTableQueries(queries),
+      HttpStatus.OK, HttpStatus.NOT_ACCEPTABLE);
+    return statuses.map(it -> {
+      if (logged(id)) {
+        info(id, "Update table queries result: {}", batchResult(it, HttpStatus.OK));
+      }
+      return it;
+    });
+  }
+
+  @PostMapping("/delete-table-queries-by-id")
+  public Mono<List<QueryStatus>> deleteTableQueries(@RequestBody List<Integer> ids) {
+    var queryId = nextId("delete-table-queries-by-id");
+    info(queryId, "Delete table queries: {}", ids.size());
+    checkBatch(ids);
+    var statuses = toStatuses(ids, Integer::intValue, queryService.deleteTableQueries(ids),
+      HttpStatus.ACCEPTED, HttpStatus.NOT_ACCEPTABLE);
+    return statuses.map(it -> {
+      if (logged(queryId)) {
+        info(queryId, "Delete table queries result: {}", batchResult(it, HttpStatus.ACCEPTED));
+      }
       return it;
     });
   }
 
   @GetMapping("/execute-table-query-by-id/{id}")
   public Mono<ResponseEntity<Void>> executeTableQuery(@PathVariable Integer id) {
-    var queryId = nextId();
-    log.info(withId(queryId, "Execute table query: " + id));
-    return toHttpStatus(queryService.executeTableQuery(id).publishOn(Schedulers.boundedElastic()), HttpStatus.CREATED).map(it -> {
-      log.info(withId(queryId, "Execute table query result: " + it.getStatusCodeValue()));
+    var queryId = nextId("execute-table-query-by-id");
+    info(queryId, "Execute table query: {}", id);
+    return toHttpStatus(queryService.executeTableQuery(id), HttpStatus.CREATED).map(it -> {
+      info(queryId, "Execute table query result: {}", it.getStatusCodeValue());
+      return it;
+    });
+  }
+
+  /**
+   * Executes a query with {@code ?} placeholders, the body holds the arguments in order.
+   */
+  @PostMapping("/execute-table-query-by-id/{id}")
+  public Mono<ResponseEntity<Void>> executeTableQuery(@PathVariable Integer id, @RequestBody List<Object> args) {
+    var queryId = nextId("execute-table-query-by-id");
+    info(queryId, "Execute table query: {} with {}", id, args);
+    return toHttpStatus(queryService.executeTableQuery(id, args), HttpStatus.CREATED).map(it -> {
+      info(queryId, "Execute table query result: {}", it.getStatusCodeValue());
       return it;
     });
   }
 
   @GetMapping("/get-all-queries-by-table-name/{name}")
-  public Mono<List<TableQuery>> getTableQueries(@PathVariable String name) {
-    var queryId = nextId();
-    log.info(withId(queryId, "Get table query: " + name));
-    return queryService.getTableQueries(name).publishOn(Schedulers.boundedElastic()).map(it -> {
-      log.info(withId(queryId, "Get table query result: " + it.toString()));
+  public Mono<List<TableQuery>> getTableQueries(@PathVariable String name,
+                                                @RequestParam(required = false) Integer after,
+                                                @RequestParam(required = false) Integer limit) {
+    var queryId = nextId("get-all-queries-by-table-name");
+    info(queryId, "Get table query: {}, after {}, limit {}", name, after, limit);
+    checkPage(limit);
+    var queries = after == null && limit == null
+      ? queryService.getTableQueries(name)
+      : queryService.getTableQueries(name, after, limit);
+    return queries.map(it -> {
+      info(queryId, "Get table query result: {}", it);
       return it;
     });
   }
 
+  @GetMapping(value = "/stream-all-queries-by-table-name/{name}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<TableQuery> streamTableQueries(@PathVariable String name,
+                                             @RequestParam(required = false) Integer after,
+                                             @RequestParam(required = false) Integer limit) {
+    var queryId = nextId("stream-all-queries-by-table-name");
+    info(queryId, "Stream table query: {}, after {}, limit {}", name, after, limit);
+    checkPage(limit);
+    return logStreamed(queryId, "Stream table query", queryService.streamTableQueries(name, after, limit));
+  }
+
   @GetMapping("/get-all-table-queries")
-  public Mono<List<TableQuery>> getAllTableQueries() {
-    var queryId = nextId();
-    log.info(withId(queryId, "Get all table queries"));
-    return queryService.getAllTableQueries().publishOn(Schedulers.boundedElastic()).map(it -> {
-      log.info(withId(queryId, "Get all table queries result: " + it.toString()));
+  public Mono<List<TableQuery>> getAllTableQueries(@RequestParam(required = false) Integer after,
+                                                   @RequestParam(required = false) Integer limit) {
+    var queryId = nextId("get-all-table-queries");
+    info(queryId, "Get all table queries after {}, limit {}", after, limit);
+    checkPage(limit);
+    var queries = after == null && limit == null
+      ? queryService.getAllTableQueries()
+      : queryService.getAllTableQueries(after, limit);
+    return queries.map(it -> {
+      info(queryId, "Get all table queries result: {}", it);
       return it;
     });
   }
 
+  @GetMapping(value = "/stream-all-table-queries", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<TableQuery> streamAllTableQueries(@RequestParam(required = false) Integer after,
+                                                @RequestParam(required = false) Integer limit) {
+    var queryId = nextId("stream-all-table-queries");
+    info(queryId, "Stream all table queries after {}, limit {}", after, limit);
+    checkPage(limit);
+    return logStreamed(queryId, "Stream all table queries", queryService.streamAllTableQueries(after, limit));
+  }
+
   @ExceptionHandler(ServerWebInputException.class)
   ResponseEntity<Void> badQuery(ServerWebInputException ex) {
     log.info("Handle bad query: " + ex.getMethodParameter() + " " + ex);
@@ -8,7 +8,6 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebInputException;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 import ru.vk.competition.minbenchmark.controller.ControllerWithCounter;
 import ru.vk.competition.minbenchmark.entity.TableQuery;
 import ru.vk.competition.minbenchmark.service.TableQueryService;
@@ -23,12 +22,12 @@ public class TableQueryController500 extends ControllerWithCounter {
 
   @GetMapping("/get-table-query-by-id/{id}")
   public Mono<TableQuery> getQueryById(@PathVariable Integer id) {
-    var queryId = nextId();
-    log.info(withId(queryId, "Get table query by id: " + id));
+    var queryId = nextId("get-table-query-by-id");
+    info(queryId, "Get table query by id: {}", id);
     return queryService.getQueryById(id)
       .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Bad query")))
-      .publishOn(Schedulers.boundedElastic()).map(it -> {
-        log.info(withId(queryId, "Get table query by id result: " + it.toString()));
+      .map(it -> {
+        info(queryId, "Get table query by id result: {}", it);
         return it;
       });
   }
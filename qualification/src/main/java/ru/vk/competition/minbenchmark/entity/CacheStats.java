@@ -0,0 +1,18 @@
+package ru.vk.competition.minbenchmark.entity;
+
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStats {
+  private long size;
+  private long hitCount;
+  private long missCount;
+  private double hitRate;
+  private double missRate;
+  private long loadCount;
+  private long evictionCount;
+  private double averageLoadTimeMillis;
+}
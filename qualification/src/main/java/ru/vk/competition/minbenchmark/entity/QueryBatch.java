@@ -0,0 +1,20 @@
+package ru.vk.competition.minbenchmark.entity;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stored queries to execute together: the table queries first, then the single queries, each in the given order.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryBatch {
+  @Builder.Default
+  private List<Integer> tableQueryIds = new ArrayList<>();
+  @Builder.Default
+  private List<Integer> singleQueryIds = new ArrayList<>();
+}
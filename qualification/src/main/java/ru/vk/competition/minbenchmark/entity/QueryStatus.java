@@ -0,0 +1,17 @@
+package ru.vk.competition.minbenchmark.entity;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+/**
+ * Outcome of one item of a batch request: the HTTP status the single-item endpoint would have answered with.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryStatus {
+  @JsonProperty("queryId")
+  private int id;
+  private int status;
+}
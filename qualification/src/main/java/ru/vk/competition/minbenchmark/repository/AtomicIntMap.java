@@ -0,0 +1,118 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link PersistentIntMap} published through an {@link AtomicReference}: writers swap in a new version with
+ * compare-and-set, readers never wait, and {@link #values()} is a consistent snapshot taken in O(1) that later writes
+ * do not affect.
+ */
+final class AtomicIntMap<V> {
+  private final AtomicReference<PersistentIntMap<V>> map = new AtomicReference<>(PersistentIntMap.empty());
+
+  V get(int key) {
+    return map.get().get(key);
+  }
+
+  boolean containsKey(int key) {
+    return get(key) != null;
+  }
+
+  V put(int key, V value) {
+    while (true) {
+      var current = map.get();
+      var previous = current.get(key);
+      if (map.compareAndSet(current, current.put(key, value))) {
+        return previous;
+      }
+    }
+  }
+
+  V putIfAbsent(int key, V value) {
+    while (true) {
+      var current = map.get();
+      var previous = current.get(key);
+      if (previous != null || map.compareAndSet(current, current.put(key, value))) {
+        return previous;
+      }
+    }
+  }
+
+  V remove(int key) {
+    while (true) {
+      var current = map.get();
+      var previous = current.get(key);
+      if (previous == null || map.compareAndSet(current, current.remove(key))) {
+        return previous;
+      }
+    }
+  }
+
+  /**
+   * Removes the entry if it is mapped to {@code value}, compared by {@code equals}.
+   */
+  boolean remove(int key, V value) {
+    while (true) {
+      var current = map.get();
+      var previous = current.get(key);
+      if (previous == null || !previous.equals(value)) {
+        return false;
+      }
+      if (map.compareAndSet(current, current.remove(key))) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Atomically replaces the value of a present key; the remapping may run more than once under contention.
+   *
+   * @return the new value, or null if the key was absent or has been removed
+   */
+  V computeIfPresent(int key, IntMap.Remapping<V> remapping) {
+    while (true) {
+      var current = map.get();
+      var previous = current.get(key);
+      if (previous == null) {
+        return null;
+      }
+      var updated = remapping.apply(key, previous);
+      var next = updated == null ? current.remove(key) : current.put(key, updated);
+      if (map.compareAndSet(current, next)) {
+        return updated;
+      }
+    }
+  }
+
+  int size() {
+    return map.get().size();
+  }
+
+  /**
+   * The values at this moment, in ascending key order.
+   */
+  List<V> values() {
+    return map.get().values();
+  }
+
+  /**
+   * The values of keys {@code >= from} at this moment, in ascending key order, read lazily.
+   */
+  Iterable<V> valuesFrom(long from) {
+    return map.get().valuesFrom(from);
+  }
+
+  /**
+   * Replaces all entries with {@code keys[i] -> values[i]}.
+   *
+   * @param keys strictly ascending
+   */
+  void reset(int[] keys, V[] values) {
+    map.set(PersistentIntMap.ofSorted(keys, values));
+  }
+
+  void clear() {
+    map.set(PersistentIntMap.empty());
+  }
+}
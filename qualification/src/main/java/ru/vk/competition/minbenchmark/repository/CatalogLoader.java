@@ -0,0 +1,95 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.vk.competition.minbenchmark.entity.ColumnInfo;
+import ru.vk.competition.minbenchmark.entity.DBTable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads names, columns and primary keys of all tables of the current schema with one
+ * {@code INFORMATION_SCHEMA} query. Types are rendered the same way {@code SHOW COLUMNS} renders them.
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogLoader {
+  private final JdbcTemplate jdbcTemplate;
+
+  public Snapshot load() {
+    var builder = new SnapshotBuilder();
+    jdbcTemplate.query(query(""), rs -> {
+      builder.add(rs.getString("TABLE_NAME"), rs.getString("COLUMN_NAME"), rs.getString("TYPE"), rs.getBoolean("IS_PRIMARY"));
+    });
+    return builder.build();
+  }
+
+  /**
+   * @param condition extra {@code AND ...} filter on {@code T} (tables) and {@code C} (columns), or an empty string
+   */
+  static String query(String condition) {
+    return "SELECT T.TABLE_NAME, C.COLUMN_NAME, " +
+      "DATA_TYPE_SQL(C.TABLE_SCHEMA, C.TABLE_NAME, 'TABLE', C.DTD_IDENTIFIER) AS TYPE, " +
+      "EXISTS(SELECT 1 FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS TC " +
+      "JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE K " +
+      "ON K.CONSTRAINT_SCHEMA = TC.CONSTRAINT_SCHEMA AND K.CONSTRAINT_NAME = TC.CONSTRAINT_NAME " +
+      "WHERE TC.TABLE_SCHEMA = C.TABLE_SCHEMA AND TC.TABLE_NAME = C.TABLE_NAME AND K.COLUMN_NAME = C.COLUMN_NAME " +
+      "AND TC.CONSTRAINT_TYPE = 'PRIMARY KEY') AS IS_PRIMARY " +
+      "FROM INFORMATION_SCHEMA.TABLES T LEFT JOIN INFORMATION_SCHEMA.COLUMNS C " +
+      "ON C.TABLE_SCHEMA = T.TABLE_SCHEMA AND C.TABLE_NAME = T.TABLE_NAME " +
+      "WHERE T.TABLE_SCHEMA = SCHEMA()" + condition + " " +
+      "ORDER BY T.TABLE_NAME, C.ORDINAL_POSITION";
+  }
+
+  /**
+   * Collects the rows of {@link #query} in their order.
+   */
+  static class SnapshotBuilder {
+    private final Map<String, List<ColumnInfo>> columns = new LinkedHashMap<>();
+    private final Map<String, String> keys = new HashMap<>();
+
+    void add(String table, String column, String type, boolean isPrimary) {
+      var tableColumns = columns.computeIfAbsent(table, it -> new ArrayList<>());
+      if (column == null) {
+        return;
+      }
+      tableColumns.add(new ColumnInfo(column, type.replaceAll("\\(\\d+\\)", "")));
+      if (isPrimary) {
+        keys.putIfAbsent(table, column);
+      }
+    }
+
+    Snapshot build() {
+      var names = new HashSet<String>();
+      var tables = new HashMap<String, DBTable>();
+      columns.forEach((name, tableColumns) -> {
+        names.add(name);
+        // Unquoted names are stored upper-cased; the others cannot be reached by the unquoted names we are given
+        if (name.equals(name.toUpperCase())) {
+          var key = keys.getOrDefault(name, "").toLowerCase();
+          tables.put(name, new DBTable(name, tableColumns.size(), key, tableColumns));
+        }
+      });
+      return new Snapshot(names, tables);
+    }
+  }
+
+  @Getter
+  @AllArgsConstructor
+  public static class Snapshot {
+    private final Set<String> tableNames;
+    /**
+     * Tables by upper-cased name.
+     */
+    private final Map<String, DBTable> tables;
+  }
+}
@@ -0,0 +1,72 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * H2 row trigger that keeps {@link ColumnCounts} of its table up to date.
+ * <p>
+ * H2 instantiates the trigger itself, so the counters are handed over through a static registry keyed by the
+ * trigger name. Instances H2 creates under other names (e.g. while copying a table on ALTER) stay inert.
+ */
+public class ColumnCountTrigger implements Trigger {
+  private static final ConcurrentHashMap<String, ColumnCounts> REGISTRY = new ConcurrentHashMap<>();
+
+  private ColumnCounts counts;
+
+  static void register(String triggerName, ColumnCounts counts) {
+    REGISTRY.put(triggerName.toUpperCase(), counts);
+  }
+
+  static void unregister(String triggerName) {
+    REGISTRY.remove(triggerName.toUpperCase());
+  }
+
+  @Override
+  public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) throws SQLException {
+    var registered = REGISTRY.get(triggerName);
+    if (registered == null) {
+      return;
+    }
+    var columns = new ArrayList<String>();
+    try (var rs = conn.getMetaData().getColumns(null, schemaName, tableName, null)) {
+      while (rs.next()) {
+        columns.add(rs.getString("COLUMN_NAME"));
+      }
+    }
+    var query = new StringBuilder("select ");
+    for (var column : columns) {
+      query.append("count(\"").append(column).append("\"), ");
+    }
+    query.setLength(query.length() - 2);
+    query.append(" from \"").append(schemaName).append("\".\"").append(tableName).append('"');
+
+    var baseline = new long[columns.size()];
+    try (var statement = conn.createStatement(); var rs = statement.executeQuery(query.toString())) {
+      rs.next();
+      for (int i = 0; i < baseline.length; i++) {
+        baseline[i] = rs.getLong(i + 1);
+      }
+    }
+    registered.init(columns, baseline);
+    counts = registered;
+  }
+
+  @Override
+  public void fire(Connection conn, Object[] oldRow, Object[] newRow) {
+    if (counts != null) {
+      counts.apply(oldRow, newRow);
+    }
+  }
+
+  @Override
+  public void remove() {
+    if (counts != null) {
+      counts.invalidate();
+    }
+  }
+}
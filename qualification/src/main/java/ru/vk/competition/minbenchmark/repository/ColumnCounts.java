@@ -0,0 +1,63 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Non-null value counts of every column of one table, maintained by {@link ColumnCountTrigger}.
+ */
+class ColumnCounts {
+  private volatile Map<String, Integer> columnIndexes;
+  private volatile AtomicLongArray counts;
+  private volatile boolean valid = true;
+
+  void init(List<String> columns, long[] baseline) {
+    var indexes = new HashMap<String, Integer>();
+    for (int i = 0; i < columns.size(); i++) {
+      indexes.put(columns.get(i).toUpperCase(), i);
+    }
+    counts = new AtomicLongArray(baseline);
+    columnIndexes = indexes;
+  }
+
+  void apply(Object[] oldRow, Object[] newRow) {
+    var current = counts;
+    for (int i = 0; i < current.length(); i++) {
+      int delta = (newRow != null && newRow[i] != null ? 1 : 0) - (oldRow != null && oldRow[i] != null ? 1 : 0);
+      if (delta != 0) {
+        current.addAndGet(i, delta);
+      }
+    }
+  }
+
+  boolean isValid() {
+    return valid && columnIndexes != null;
+  }
+
+  void invalidate() {
+    valid = false;
+  }
+
+  /**
+   * @return counts of the given columns, or empty if the counters are not usable or miss a column
+   */
+  Optional<List<String>> get(List<String> columns) {
+    var indexes = columnIndexes;
+    if (!isValid()) {
+      return Optional.empty();
+    }
+    var result = new ArrayList<String>(columns.size());
+    for (var column : columns) {
+      var index = indexes.get(column.toUpperCase());
+      if (index == null) {
+        return Optional.empty();
+      }
+      result.add(String.valueOf(counts.get(index)));
+    }
+    return Optional.of(result);
+  }
+}
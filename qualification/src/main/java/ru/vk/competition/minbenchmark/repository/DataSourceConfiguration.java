@@ -0,0 +1,53 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.ArrayList;
+import java.util.function.Function;
+
+/**
+ * The JDBC {@code DataSource} in jdbc mode, see {@link SwappableDataSource}, and the {@link Shards} next to it. Their
+ * pools are built the way Spring Boot builds its own, from {@code spring.datasource} and
+ * {@code spring.datasource.hikari}. In r2dbc mode the database is shared with the R2DBC pool and cannot be swapped or
+ * sharded, so Spring Boot's {@code DataSource} is left in place.
+ */
+@Configuration
+@ConditionalOnProperty(name = "minbenchmark.persistence.mode", havingValue = "jdbc", matchIfMissing = true)
+public class DataSourceConfiguration {
+
+  @Bean
+  public SwappableDataSource dataSource(DataSourceProperties properties, Environment environment) {
+    return new SwappableDataSource(properties.determineUrl(), pools(properties, environment));
+  }
+
+  /**
+   * Not a {@code DataSource} bean itself: Spring Boot's JDBC auto-configuration wants a single one.
+   */
+  @Bean
+  public Shards shards(SwappableDataSource dataSource, DataSourceProperties properties, Environment environment,
+                       @Value("${minbenchmark.persistence.shards:1}") int count) {
+    var databases = new ArrayList<SwappableDataSource>(count);
+    databases.add(dataSource);
+    for (int shard = 1; shard < count; shard++) {
+      databases.add(new SwappableDataSource(Shards.url(properties.determineUrl(), shard), pools(properties, environment)));
+    }
+    return new Shards(databases);
+  }
+
+  private static Function<String, HikariDataSource> pools(DataSourceProperties properties, Environment environment) {
+    var binder = Binder.get(environment);
+    return url -> {
+      var pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+      binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+      return pool;
+    };
+  }
+}
@@ -0,0 +1,134 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+import ru.vk.competition.minbenchmark.entity.TableQuery;
+import ru.vk.competition.minbenchmark.repository.JdbcExecution.Workload;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Group commit for stored DML executed concurrently: statements arriving within
+ * {@code minbenchmark.persistence.group-commit.linger} of the first one, at most {@code .max-batch} of them, run on
+ * one connection in one transaction with a single commit, and each caller gets the result of its own statement.
+ * A full batch is flushed without waiting for the linger window.
+ * <p>
+ * Off unless {@code minbenchmark.persistence.group-commit.enabled} is set. Reads and schema changes are never
+ * grouped: they cannot share a transaction with other callers' writes. Neither are statements of different
+ * {@link Tenants}: a flushed batch commits once per tenant in it.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "minbenchmark.persistence.mode", havingValue = "jdbc", matchIfMissing = true)
+public class GroupCommit {
+  private final RawRepository repo;
+  private final JdbcExecution execution;
+  private final boolean enabled;
+  private final long lingerNanos;
+  private final int maxBatch;
+
+  private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicBoolean timerArmed = new AtomicBoolean();
+
+  public GroupCommit(RawRepository repo, JdbcExecution execution,
+                     @Value("${minbenchmark.persistence.group-commit.enabled:false}") boolean enabled,
+                     @Value("${minbenchmark.persistence.group-commit.linger:2ms}") Duration linger,
+                     @Value("${minbenchmark.persistence.group-commit.max-batch:64}") int maxBatch) {
+    this.repo = repo;
+    this.execution = execution;
+    this.enabled = enabled;
+    this.lingerNanos = linger.toNanos();
+    this.maxBatch = Math.max(1, maxBatch);
+    if (enabled) {
+      log.info("Group commit of stored DML: linger " + linger.toMillis() + " ms, at most " + this.maxBatch + " statements");
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Whether the statement is DML writing to known tables, the only kind that is grouped.
+   */
+  public boolean accepts(SqlStatement statement) {
+    return enabled && !statement.isSchemaChange() && statement.isTablesKnown() && !statement.getTables().isEmpty();
+  }
+
+  /**
+   * Queues the table query for the next group; the result is whether it was executed and committed.
+   */
+  public Mono<Boolean> execute(TableQuery query) {
+    return Mono.create(sink -> {
+      queue.add(new Pending(query, sink, Tenants.name(sink.contextView())));
+      if (queued.incrementAndGet() >= maxBatch) {
+        flush();
+      } else {
+        armTimer();
+      }
+    });
+  }
+
+  private void armTimer() {
+    if (timerArmed.compareAndSet(false, true)) {
+      Schedulers.parallel().schedule(this::flushOnTimer, lingerNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private void flushOnTimer() {
+    timerArmed.set(false);
+    flush();
+  }
+
+  private void flush() {
+    var batch = new ArrayList<Pending>(maxBatch);
+    Pending pending;
+    while (batch.size() < maxBatch && (pending = queue.poll()) != null) {
+      batch.add(pending);
+    }
+    if (batch.isEmpty()) {
+      return;
+    }
+    if (queued.addAndGet(-batch.size()) > 0) {
+      armTimer();
+    }
+    var byTenant = batch.stream().collect(Collectors.groupingBy(it -> it.tenant, LinkedHashMap::new, Collectors.toList()));
+    byTenant.values().forEach(this::commit);
+  }
+
+  private void commit(List<Pending> batch) {
+    var queries = batch.stream().map(it -> it.query).collect(Collectors.toList());
+    execution.call(Workload.EXECUTION, () -> repo.executeGrouped(queries))
+      .contextWrite(batch.get(0).sink.contextView())
+      .subscribe(
+        executed -> {
+          for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).sink.success(executed.get(i));
+          }
+        },
+        error -> batch.forEach(it -> it.sink.error(error)));
+  }
+
+  @AllArgsConstructor
+  private static class Pending {
+    final TableQuery query;
+    final MonoSink<Boolean> sink;
+    final String tenant;
+  }
+}
@@ -0,0 +1,325 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent map from {@code int} to non-null values without boxing: keys live in an {@code int[]} next to the
+ * values, open addressing with linear probing. An entry costs about 11 bytes at the 0.75 load factor, against
+ * about 50 for a boxed {@link java.util.concurrent.ConcurrentHashMap} node.
+ * <p>
+ * The table is split into segments by key hash. Writes hold the write lock of their segment; reads are optimistic
+ * and fall back to the read lock only if a write to the same segment got in between.
+ */
+final class IntMap<V> {
+  private static final int SEGMENT_BITS = 6;
+  private static final int INITIAL_CAPACITY = 8;
+
+  @FunctionalInterface
+  interface Remapping<V> {
+    /**
+     * @return the new value, or null to remove the entry
+     */
+    V apply(int key, V value);
+  }
+
+  private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+  IntMap() {
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  V get(int key) {
+    int hash = hash(key);
+    var segment = segmentFor(hash);
+    long stamp = segment.lock.tryOptimisticRead();
+    var value = segment.table.get(key, hash);
+    if (!segment.lock.validate(stamp)) {
+      stamp = segment.lock.readLock();
+      try {
+        value = segment.table.get(key, hash);
+      } finally {
+        segment.lock.unlockRead(stamp);
+      }
+    }
+    return cast(value);
+  }
+
+  boolean containsKey(int key) {
+    return get(key) != null;
+  }
+
+  V put(int key, V value) {
+    return update(key, (k, current) -> value, true);
+  }
+
+  V putIfAbsent(int key, V value) {
+    int hash = hash(key);
+    var segment = segmentFor(hash);
+    long stamp = segment.lock.writeLock();
+    try {
+      var current = segment.table.get(key, hash);
+      if (current == null) {
+        segment.insert(key, hash, value);
+      }
+      return cast(current);
+    } finally {
+      segment.lock.unlockWrite(stamp);
+    }
+  }
+
+  V remove(int key) {
+    return update(key, (k, current) -> null, false);
+  }
+
+  /**
+   * Removes the entry if it is mapped to {@code value}, compared by {@code equals}.
+   */
+  boolean remove(int key, V value) {
+    var removed = new boolean[1];
+    update(key, (k, current) -> {
+      removed[0] = current.equals(value);
+      return removed[0] ? null : current;
+    }, false);
+    return removed[0];
+  }
+
+  /**
+   * Atomically replaces the value of a present key.
+   *
+   * @return the new value, or null if the key was absent or has been removed
+   */
+  V computeIfPresent(int key, Remapping<V> remapping) {
+    int hash = hash(key);
+    var segment = segmentFor(hash);
+    long stamp = segment.lock.writeLock();
+    try {
+      int slot = segment.table.slot(key, hash);
+      if (slot < 0) {
+        return null;
+      }
+      V updated = remapping.apply(key, cast(segment.table.values[slot]));
+      if (updated == null) {
+        segment.removeAt(slot);
+      } else {
+        segment.table.values[slot] = updated;
+      }
+      return updated;
+    } finally {
+      segment.lock.unlockWrite(stamp);
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for (var segment : segments) {
+      long stamp = segment.lock.readLock();
+      try {
+        size += segment.size;
+      } finally {
+        segment.lock.unlockRead(stamp);
+      }
+    }
+    return size;
+  }
+
+  /**
+   * A snapshot of the values in ascending key order. Each segment is copied atomically, the whole map is not.
+   */
+  List<V> values() {
+    var keys = new ArrayList<int[]>();
+    var values = new ArrayList<Object[]>();
+    int size = 0;
+    for (var segment : segments) {
+      long stamp = segment.lock.readLock();
+      try {
+        var table = segment.table;
+        var segmentKeys = new int[segment.size];
+        var segmentValues = new Object[segment.size];
+        int n = 0;
+        for (int i = 0; i < table.values.length; i++) {
+          if (table.values[i] != null) {
+            segmentKeys[n] = table.keys[i];
+            segmentValues[n++] = table.values[i];
+          }
+        }
+        keys.add(segmentKeys);
+        values.add(segmentValues);
+        size += n;
+      } finally {
+        segment.lock.unlockRead(stamp);
+      }
+    }
+    // Sort (key, index) pairs packed into longs, keys in the high half so that negative keys come first
+    var order = new long[size];
+    var flat = new Object[size];
+    int n = 0;
+    for (int s = 0; s < keys.size(); s++) {
+      for (int i = 0; i < keys.get(s).length; i++) {
+        order[n] = ((long) keys.get(s)[i] << 32) | n;
+        flat[n++] = values.get(s)[i];
+      }
+    }
+    Arrays.sort(order);
+    var result = new ArrayList<V>(size);
+    for (var packed : order) {
+      result.add(cast(flat[(int) packed]));
+    }
+    return result;
+  }
+
+  void clear() {
+    for (var segment : segments) {
+      long stamp = segment.lock.writeLock();
+      try {
+        segment.table = new Table(INITIAL_CAPACITY);
+        segment.size = 0;
+      } finally {
+        segment.lock.unlockWrite(stamp);
+      }
+    }
+  }
+
+  private V update(int key, Remapping<V> remapping, boolean insert) {
+    int hash = hash(key);
+    var segment = segmentFor(hash);
+    long stamp = segment.lock.writeLock();
+    try {
+      int slot = segment.table.slot(key, hash);
+      if (slot < 0) {
+        if (insert) {
+          segment.insert(key, hash, remapping.apply(key, null));
+        }
+        return null;
+      }
+      V current = cast(segment.table.values[slot]);
+      V updated = remapping.apply(key, current);
+      if (updated == null) {
+        segment.removeAt(slot);
+      } else {
+        segment.table.values[slot] = updated;
+      }
+      return current;
+    } finally {
+      segment.lock.unlockWrite(stamp);
+    }
+  }
+
+  private Segment segmentFor(int hash) {
+    return segments[hash >>> (32 - SEGMENT_BITS)];
+  }
+
+  static int hash(int key) {
+    // murmur3 fmix32: every key bit affects both the segment (high bits) and the slot (low bits)
+    int h = key;
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <V> V cast(Object value) {
+    return (V) value;
+  }
+
+  /**
+   * Arrays of one capacity, swapped as a whole on resize so that an optimistic reader never pairs keys and values
+   * of different lengths. A null value marks a free slot.
+   */
+  private static final class Table {
+    final int[] keys;
+    final Object[] values;
+
+    Table(int capacity) {
+      keys = new int[capacity];
+      values = new Object[capacity];
+    }
+
+    Object get(int key, int hash) {
+      int slot = slot(key, hash);
+      return slot < 0 ? null : values[slot];
+    }
+
+    /**
+     * @return the slot of the key, or -1; bounded by the capacity even if read while being written
+     */
+    int slot(int key, int hash) {
+      int mask = values.length - 1;
+      for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+        if (values[i] == null) {
+          return -1;
+        }
+        if (keys[i] == key) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  private static final class Segment {
+    final StampedLock lock = new StampedLock();
+    Table table = new Table(INITIAL_CAPACITY);
+    int size;
+
+    void insert(int key, int hash, Object value) {
+      if ((size + 1) * 4 > table.values.length * 3) {
+        resize();
+      }
+      var mask = table.values.length - 1;
+      int i = hash & mask;
+      while (table.values[i] != null) {
+        i = (i + 1) & mask;
+      }
+      table.keys[i] = key;
+      table.values[i] = value;
+      size++;
+    }
+
+    /**
+     * Backward-shift deletion: moves the following entries of the probe run up instead of leaving tombstones.
+     */
+    void removeAt(int slot) {
+      var keys = table.keys;
+      var values = table.values;
+      int mask = values.length - 1;
+      int free = slot;
+      for (int i = (free + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+        int home = hash(keys[i]) & mask;
+        // The entry may fill the free slot if its home is not cyclically within (free, i]
+        boolean stays = free <= i ? free < home && home <= i : free < home || home <= i;
+        if (!stays) {
+          keys[free] = keys[i];
+          values[free] = values[i];
+          free = i;
+        }
+      }
+      values[free] = null;
+      size--;
+    }
+
+    private void resize() {
+      var old = table;
+      var resized = new Table(old.values.length * 2);
+      int mask = resized.values.length - 1;
+      for (int j = 0; j < old.values.length; j++) {
+        if (old.values[j] != null) {
+          int i = hash(old.keys[j]) & mask;
+          while (resized.values[i] != null) {
+            i = (i + 1) & mask;
+          }
+          resized.keys[i] = old.keys[j];
+          resized.values[i] = old.values[j];
+        }
+      }
+      table = resized;
+    }
+  }
+}
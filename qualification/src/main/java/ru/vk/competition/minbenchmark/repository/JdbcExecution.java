@@ -0,0 +1,134 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs blocking {@link RawRepository} calls for {@link JdbcReactiveRepository}, each {@link Workload} on its own
+ * bounded-elastic scheduler, sized by {@code minbenchmark.persistence.workloads.<workload>.threads} and
+ * {@code .queue}. A long DDL can then only hold up other schema changes, never the reads. A task that does not fit
+ * into a full queue fails with {@link java.util.concurrent.RejectedExecutionException}.
+ * <p>
+ * With {@code minbenchmark.persistence.executor=virtual-threads} every call runs on its own virtual thread instead,
+ * and the workloads are not limited. On a JDK without virtual threads the schedulers are used.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "minbenchmark.persistence.mode", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcExecution {
+  public static final String VIRTUAL_THREADS = "virtual-threads";
+
+  public enum Workload {
+    /**
+     * DDL: creating, dropping and probing tables.
+     */
+    SCHEMA(2, 1_000),
+    /**
+     * Stored queries and report sizes.
+     */
+    EXECUTION(8, 10_000),
+    /**
+     * Catalog and registry reads that may miss to the database metadata.
+     */
+    READ(4, 10_000);
+
+    private final int threads;
+    private final int queue;
+
+    Workload(int threads, int queue) {
+      this.threads = threads;
+      this.queue = queue;
+    }
+
+    private String key() {
+      return name().toLowerCase();
+    }
+  }
+
+  private final Scheduler virtualThreads;
+  private final Map<Workload, Scheduler> schedulers = new EnumMap<>(Workload.class);
+
+  @Autowired
+  public JdbcExecution(@Value("${minbenchmark.persistence.executor:bounded-elastic}") String executor,
+                       Environment environment) {
+    this(executor, (PropertyResolver) environment);
+  }
+
+  JdbcExecution(String executor, PropertyResolver properties) {
+    Scheduler scheduler = null;
+    if (VIRTUAL_THREADS.equals(executor)) {
+      var service = newVirtualThreadPerTaskExecutor();
+      if (service != null) {
+        scheduler = Schedulers.fromExecutorService(service, "jdbc-virtual");
+      } else {
+        log.warn("Virtual threads are not available on Java " + Runtime.version().feature() + ", using workload schedulers");
+      }
+    }
+    this.virtualThreads = scheduler;
+    if (scheduler == null) {
+      for (var workload : Workload.values()) {
+        var prefix = "minbenchmark.persistence.workloads." + workload.key();
+        int threads = properties.getProperty(prefix + ".threads", Integer.class, workload.threads);
+        int queue = properties.getProperty(prefix + ".queue", Integer.class, workload.queue);
+        schedulers.put(workload, Schedulers.newBoundedElastic(threads, queue, "jdbc-" + workload.key()));
+      }
+    }
+  }
+
+  public boolean isVirtual() {
+    return virtualThreads != null;
+  }
+
+  /**
+   * Runs the call as the tenant of the subscriber context, see {@link Tenants}.
+   */
+  public <T> Mono<T> call(Workload workload, Callable<T> callable) {
+    return Mono.deferContextual(context -> Mono.fromCallable(Tenants.bound(context, callable)))
+      .subscribeOn(virtualThreads != null ? virtualThreads : schedulers.get(workload));
+  }
+
+  /**
+   * For calls answered from memory only: runs them on the subscribing thread, as the tenant of the subscriber
+   * context. Unless the tenant is not provisioned yet: provisioning may create schemas, so that call runs as a
+   * {@link Workload#SCHEMA} one.
+   */
+  public <T> Mono<T> inPlace(Callable<T> callable) {
+    return Mono.deferContextual(context -> Tenants.isProvisioned(context)
+      ? Mono.fromCallable(Tenants.bound(context, callable))
+      : call(Workload.SCHEMA, callable));
+  }
+
+  @PreDestroy
+  public void close() {
+    if (virtualThreads != null) {
+      virtualThreads.dispose();
+    }
+    schedulers.values().forEach(Scheduler::dispose);
+  }
+
+  /**
+   * Looked up reflectively: the sources target Java 17, see the {@code jdk21} profile in the pom.
+   */
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      return null;
+    }
+  }
+}
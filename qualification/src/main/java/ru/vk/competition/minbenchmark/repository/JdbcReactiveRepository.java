@@ -0,0 +1,214 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.entity.*;
+import ru.vk.competition.minbenchmark.repository.JdbcExecution.Workload;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link ReactiveRepository} over the blocking {@link RawRepository}. Calls that may touch the database run on the
+ * {@link JdbcExecution} scheduler of their workload; the ones served from the registries alone answer in place.
+ * Stored table DML may be grouped into shared transactions by {@link GroupCommit}. Changes of the registries answer
+ * once the {@link RegistryLog} has them on disk.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "minbenchmark.persistence.mode", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcReactiveRepository implements ReactiveRepository {
+  private final RawRepository repo;
+  private final JdbcExecution execution;
+  private final GroupCommit groupCommit;
+  private final RegistryLog registryLog;
+
+  @Override
+  public Mono<Boolean> createTable(DBTable table) {
+    return execution.call(Workload.SCHEMA, () -> repo.createTable(table));
+  }
+
+  @Override
+  public Mono<Boolean> dropTable(String name) {
+    return registryLog.durable(execution.call(Workload.SCHEMA, () -> repo.dropTable(name)));
+  }
+
+  @Override
+  public Mono<Optional<DBTable>> getTableInfo(String name) {
+    return execution.call(Workload.READ, () -> repo.getTableInfo(name));
+  }
+
+  @Override
+  public Mono<Optional<List<ColumnInfo>>> mapColumnTypes(List<ColumnInfo> infos) {
+    return execution.call(Workload.SCHEMA, () -> repo.mapColumnTypes(infos));
+  }
+
+  @Override
+  public Mono<CacheStats> getTableCacheStats() {
+    return execution.inPlace(repo::getTableCacheStats);
+  }
+
+  @Override
+  public Mono<Boolean> newTableQuery(TableQuery query) {
+    return registryLog.durable(execution.call(Workload.READ, () -> repo.newTableQuery(query)));
+  }
+
+  @Override
+  public Mono<Boolean> updateTableQuery(TableQuery query) {
+    return registryLog.durable(execution.call(Workload.READ, () -> repo.updateTableQuery(query)));
+  }
+
+  @Override
+  public Mono<Boolean> deleteTableQuery(int id) {
+    return registryLog.durable(execution.inPlace(() -> repo.deleteTableQuery(id)));
+  }
+
+  @Override
+  public Mono<List<Boolean>> newTableQueries(List<TableQuery> queries) {
+    return registryLog.durable(execution.call(Workload.READ, () -> repo.newTableQueries(queries)));
+  }
+
+  @Override
+  public Mono<List<Boolean>> updateTableQueries(List<TableQuery> queries) {
+    return registryLog.durable(execution.call(Workload.READ, () -> repo.updateTableQueries(queries)));
+  }
+
+  @Override
+  public Mono<List<Boolean>> deleteTableQueries(List<Integer> ids) {
+    return registryLog.durable(execution.inPlace(() -> repo.deleteTableQueries(ids)));
+  }
+
+  @Override
+  public Mono<Boolean> executeTableQuery(int id) {
+    if (!groupCommit.isEnabled()) {
+      return execution.call(Workload.EXECUTION, () -> repo.executeTableQuery(id));
+    }
+    return execution.inPlace(() -> repo.getTableQueryById(id)).flatMap(query -> {
+      if (query.isPresent() && groupCommit.accepts(SqlStatement.parse(query.get().getQuery()))) {
+        return groupCommit.execute(query.get());
+      }
+      return execution.call(Workload.EXECUTION, () -> repo.executeTableQuery(id));
+    });
+  }
+
+  @Override
+  public Mono<Boolean> executeTableQuery(int id, List<Object> args) {
+    return execution.call(Workload.EXECUTION, () -> repo.executeTableQuery(id, args));
+  }
+
+  @Override
+  public Mono<Optional<List<TableQuery>>> getTableQueries(String name) {
+    return execution.call(Workload.READ, () -> repo.getTableQueries(name));
+  }
+
+  @Override
+  public Mono<Optional<List<TableQuery>>> getTableQueries(String name, long from, int limit) {
+    return execution.call(Workload.READ, () -> repo.getTableQueries(name, from, limit));
+  }
+
+  @Override
+  public Flux<TableQuery> streamTableQueries(String name, long from) {
+    return execution.call(Workload.READ, () -> repo.getTableQueries(name, from))
+      .flatMap(Mono::justOrEmpty)
+      .flatMapIterable(it -> it);
+  }
+
+  @Override
+  public Mono<Optional<TableQuery>> getTableQueryById(int id) {
+    return execution.inPlace(() -> repo.getTableQueryById(id));
+  }
+
+  @Override
+  public Mono<List<TableQuery>> getAllTableQueries() {
+    return execution.inPlace(repo::getAllTableQueries);
+  }
+
+  @Override
+  public Flux<TableQuery> streamAllTableQueries(long from) {
+    return execution.inPlace(() -> repo.getAllTableQueries(from)).flatMapIterable(it -> it);
+  }
+
+  @Override
+  public Mono<Boolean> newSingleQuery(SingleQuery query) {
+    return registryLog.durable(execution.inPlace(() -> repo.newSingleQuery(query)));
+  }
+
+  @Override
+  public Mono<Boolean> updateSingleQuery(SingleQuery query) {
+    return registryLog.durable(execution.inPlace(() -> repo.updateSingleQuery(query)));
+  }
+
+  @Override
+  public Mono<Boolean> deleteSingleQuery(int id) {
+    return registryLog.durable(execution.inPlace(() -> repo.deleteSingleQuery(id)));
+  }
+
+  @Override
+  public Mono<List<Boolean>> newSingleQueries(List<SingleQuery> queries) {
+    return registryLog.durable(execution.inPlace(() -> repo.newSingleQueries(queries)));
+  }
+
+  @Override
+  public Mono<List<Boolean>> updateSingleQueries(List<SingleQuery> queries) {
+    return registryLog.durable(execution.inPlace(() -> repo.updateSingleQueries(queries)));
+  }
+
+  @Override
+  public Mono<List<Boolean>> deleteSingleQueries(List<Integer> ids) {
+    return registryLog.durable(execution.inPlace(() -> repo.deleteSingleQueries(ids)));
+  }
+
+  @Override
+  public Mono<Boolean> executeSingleQuery(int id) {
+    return execution.call(Workload.EXECUTION, () -> repo.executeSingleQuery(id));
+  }
+
+  @Override
+  public Mono<Boolean> executeSingleQuery(int id, List<Object> args) {
+    return execution.call(Workload.EXECUTION, () -> repo.executeSingleQuery(id, args));
+  }
+
+  @Override
+  public Mono<Optional<List<Integer>>> executeBatch(List<Integer> tableQueryIds, List<Integer> singleQueryIds) {
+    return execution.call(Workload.EXECUTION, () -> repo.executeBatch(tableQueryIds, singleQueryIds));
+  }
+
+  @Override
+  public Mono<Optional<SingleQuery>> getSingleQueryById(int id) {
+    return execution.inPlace(() -> repo.getSingleQueryById(id));
+  }
+
+  @Override
+  public Mono<List<SingleQuery>> getAllSingleQueries() {
+    return execution.inPlace(repo::getAllSingleQueries);
+  }
+
+  @Override
+  public Flux<SingleQuery> streamAllSingleQueries(long from) {
+    return execution.inPlace(() -> repo.getAllSingleQueries(from)).flatMapIterable(it -> it);
+  }
+
+  @Override
+  public Mono<Boolean> createReport(Report<ColumnInfo> report) {
+    return registryLog.durable(execution.call(Workload.EXECUTION, () -> repo.createReport(report)));
+  }
+
+  @Override
+  public Mono<Optional<Report<ColumnInfoWithSize>>> getReportById(int id) {
+    return execution.call(Workload.EXECUTION, () -> repo.getReportById(id));
+  }
+
+  @Override
+  public Mono<CacheStats> getReportCacheStats() {
+    return execution.inPlace(repo::getReportCacheStats);
+  }
+
+  @Override
+  public Mono<Duration> clear() {
+    return registryLog.durable(execution.call(Workload.SCHEMA, repo::clear));
+  }
+}
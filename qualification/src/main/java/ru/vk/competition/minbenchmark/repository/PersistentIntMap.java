@@ -0,0 +1,413 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable map from {@code int} to non-null values: a hash array mapped trie whose "hash" is the key itself, read
+ * from the most significant digit, so that iteration is in ascending key order. Updates copy only the path to the
+ * changed entry (at most 7 nodes). As in CHAMP, entries are stored inline at the first level where their digit is
+ * unique and subtrees left with a single entry are folded back into their parent. Every node knows the size of its
+ * subtree, so the values can also be read by position.
+ */
+final class PersistentIntMap<V> {
+  private static final int[] NO_KEYS = new int[0];
+  private static final Object[] NO_VALUES = new Object[0];
+  private static final Node[] NO_NODES = new Node[0];
+  private static final int LEVELS = 7;
+
+  private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(new Node(0, 0, NO_KEYS, NO_VALUES, NO_NODES));
+
+  private final Node root;
+
+  private PersistentIntMap(Node root) {
+    this.root = root;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <V> PersistentIntMap<V> empty() {
+    return (PersistentIntMap<V>) EMPTY;
+  }
+
+  /**
+   * Builds the map of {@code keys[i] -> values[i]} at once, each node allocated only in its final shape, instead of
+   * copying paths entry after entry.
+   *
+   * @param keys strictly ascending
+   */
+  static <V> PersistentIntMap<V> ofSorted(int[] keys, V[] values) {
+    return keys.length == 0 ? empty() : new PersistentIntMap<>(build(keys, values, 0, keys.length, 0));
+  }
+
+  /**
+   * The node of {@code keys[from, to)} at {@code level}: the keys sharing a digit there go to a subtree, a lone one
+   * stays inline, as {@link #pair} would have left them.
+   */
+  private static Node build(int[] keys, Object[] values, int from, int to, int level) {
+    int dataMap = 0;
+    int nodeMap = 0;
+    int dataCount = 0;
+    int nodeCount = 0;
+    for (int i = from; i < to; ) {
+      int digit = digit(keys[i], level);
+      int end = i + 1;
+      while (end < to && digit(keys[end], level) == digit) {
+        end++;
+      }
+      if (end - i == 1) {
+        dataMap |= 1 << digit;
+        dataCount++;
+      } else {
+        nodeMap |= 1 << digit;
+        nodeCount++;
+      }
+      i = end;
+    }
+
+    var nodeKeys = dataCount == 0 ? NO_KEYS : new int[dataCount];
+    var nodeValues = dataCount == 0 ? NO_VALUES : new Object[dataCount];
+    var nodes = nodeCount == 0 ? NO_NODES : new Node[nodeCount];
+    dataCount = 0;
+    nodeCount = 0;
+    for (int i = from; i < to; ) {
+      int digit = digit(keys[i], level);
+      int end = i + 1;
+      while (end < to && digit(keys[end], level) == digit) {
+        end++;
+      }
+      if (end - i == 1) {
+        nodeKeys[dataCount] = keys[i];
+        nodeValues[dataCount++] = values[i];
+      } else {
+        nodes[nodeCount++] = build(keys, values, i, end, level + 1);
+      }
+      i = end;
+    }
+    return new Node(dataMap, nodeMap, nodeKeys, nodeValues, nodes);
+  }
+
+  @SuppressWarnings("unchecked")
+  V get(int key) {
+    var node = root;
+    for (int level = 0; ; level++) {
+      int bit = 1 << digit(key, level);
+      if ((node.dataMap & bit) != 0) {
+        int i = index(node.dataMap, bit);
+        return node.keys[i] == key ? (V) node.values[i] : null;
+      }
+      if ((node.nodeMap & bit) == 0) {
+        return null;
+      }
+      node = node.nodes[index(node.nodeMap, bit)];
+    }
+  }
+
+  int size() {
+    return root.size;
+  }
+
+  /**
+   * @return this map if {@code value} is already mapped to the key
+   */
+  PersistentIntMap<V> put(int key, V value) {
+    var updated = put(root, key, value, 0);
+    return updated == root ? this : new PersistentIntMap<>(updated);
+  }
+
+  /**
+   * @return this map if the key is absent
+   */
+  PersistentIntMap<V> remove(int key) {
+    var updated = remove(root, key, 0);
+    return updated == root ? this : new PersistentIntMap<>(updated);
+  }
+
+  /**
+   * An immutable list view of the values in ascending key order. Taking it costs nothing, iterating it is linear and
+   * {@code get(i)} walks one path of the trie.
+   */
+  List<V> values() {
+    var root = this.root;
+    return new AbstractList<>() {
+      @Override
+      public V get(int index) {
+        if (index < 0 || index >= root.size) {
+          throw new IndexOutOfBoundsException(index);
+        }
+        return valueAt(root, index);
+      }
+
+      @Override
+      public Iterator<V> iterator() {
+        return new ValueIterator<>(root, Integer.MIN_VALUE);
+      }
+
+      @Override
+      public int size() {
+        return root.size;
+      }
+    };
+  }
+
+  /**
+   * The values of keys {@code >= from} in ascending key order, read lazily from this version. Iteration starts by
+   * descending the path of {@code from}, so skipping to a cursor costs one lookup.
+   */
+  Iterable<V> valuesFrom(long from) {
+    if (from > Integer.MAX_VALUE) {
+      return List.of();
+    }
+    if (from <= Integer.MIN_VALUE) {
+      return values();
+    }
+    var root = this.root;
+    return () -> new ValueIterator<>(root, (int) from);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <V> V valueAt(Node node, int index) {
+    while (true) {
+      var next = node;
+      for (int digits = node.dataMap | node.nodeMap; digits != 0; digits &= digits - 1) {
+        int bit = Integer.lowestOneBit(digits);
+        if ((node.dataMap & bit) != 0) {
+          if (index == 0) {
+            return (V) node.values[index(node.dataMap, bit)];
+          }
+          index--;
+        } else {
+          var child = node.nodes[index(node.nodeMap, bit)];
+          if (index < child.size) {
+            next = child;
+            break;
+          }
+          index -= child.size;
+        }
+      }
+      node = next;
+    }
+  }
+
+  private static Node put(Node node, int key, Object value, int level) {
+    int bit = 1 << digit(key, level);
+    if ((node.dataMap & bit) != 0) {
+      int i = index(node.dataMap, bit);
+      if (node.keys[i] == key) {
+        return node.values[i] == value ? node : node.withValue(i, value);
+      }
+      return node.dataToNode(bit, i, pair(node.keys[i], node.values[i], key, value, level + 1));
+    }
+    if ((node.nodeMap & bit) != 0) {
+      int i = index(node.nodeMap, bit);
+      var child = node.nodes[i];
+      var updated = put(child, key, value, level + 1);
+      return updated == child ? node : node.withNode(i, updated);
+    }
+    return node.withData(bit, key, value);
+  }
+
+  private static Node remove(Node node, int key, int level) {
+    int bit = 1 << digit(key, level);
+    if ((node.dataMap & bit) != 0) {
+      int i = index(node.dataMap, bit);
+      return node.keys[i] == key ? node.withoutData(bit, i) : node;
+    }
+    if ((node.nodeMap & bit) != 0) {
+      int i = index(node.nodeMap, bit);
+      var child = node.nodes[i];
+      var updated = remove(child, key, level + 1);
+      if (updated == child) {
+        return node;
+      }
+      if (updated.nodeMap == 0 && updated.keys.length == 1) {
+        return node.nodeToData(bit, i, updated.keys[0], updated.values[0]);
+      }
+      return node.withNode(i, updated);
+    }
+    return node;
+  }
+
+  private static Node pair(int key1, Object value1, int key2, Object value2, int level) {
+    int digit1 = digit(key1, level);
+    int digit2 = digit(key2, level);
+    if (digit1 == digit2) {
+      return new Node(0, 1 << digit1, NO_KEYS, NO_VALUES, new Node[]{pair(key1, value1, key2, value2, level + 1)});
+    }
+    return digit1 < digit2
+      ? new Node((1 << digit1) | (1 << digit2), 0, new int[]{key1, key2}, new Object[]{value1, value2}, NO_NODES)
+      : new Node((1 << digit1) | (1 << digit2), 0, new int[]{key2, key1}, new Object[]{value2, value1}, NO_NODES);
+  }
+
+  /**
+   * Digits of the key with its sign bit flipped, so that negative keys sort first: 5 bits per level from the top,
+   * the last level takes the 2 bits left.
+   */
+  private static int digit(int key, int level) {
+    int unsigned = key ^ Integer.MIN_VALUE;
+    return level < LEVELS - 1 ? (unsigned >>> (27 - 5 * level)) & 31 : unsigned & 3;
+  }
+
+  private static int index(int map, int bit) {
+    return Integer.bitCount(map & (bit - 1));
+  }
+
+  private static final class Node {
+    final int dataMap;
+    final int nodeMap;
+    final int[] keys;
+    final Object[] values;
+    final Node[] nodes;
+    final int size;
+
+    Node(int dataMap, int nodeMap, int[] keys, Object[] values, Node[] nodes) {
+      this.dataMap = dataMap;
+      this.nodeMap = nodeMap;
+      this.keys = keys;
+      this.values = values;
+      this.nodes = nodes;
+      int size = keys.length;
+      for (var node : nodes) {
+        size += node.size;
+      }
+      this.size = size;
+    }
+
+    Node withValue(int i, Object value) {
+      var copy = values.clone();
+      copy[i] = value;
+      return new Node(dataMap, nodeMap, keys, copy, nodes);
+    }
+
+    Node withNode(int i, Node node) {
+      var copy = nodes.clone();
+      copy[i] = node;
+      return new Node(dataMap, nodeMap, keys, values, copy);
+    }
+
+    Node withData(int bit, int key, Object value) {
+      int i = index(dataMap, bit);
+      return new Node(dataMap | bit, nodeMap, insert(keys, i, key), insert(values, i, value), nodes);
+    }
+
+    Node withoutData(int bit, int i) {
+      return new Node(dataMap ^ bit, nodeMap, delete(keys, i), delete(values, i), nodes);
+    }
+
+    Node dataToNode(int bit, int dataIndex, Node node) {
+      int nodeIndex = index(nodeMap, bit);
+      return new Node(dataMap ^ bit, nodeMap | bit, delete(keys, dataIndex), delete(values, dataIndex),
+        insert(nodes, nodeIndex, node));
+    }
+
+    Node nodeToData(int bit, int nodeIndex, int key, Object value) {
+      int dataIndex = index(dataMap, bit);
+      return new Node(dataMap | bit, nodeMap ^ bit, insert(keys, dataIndex, key), insert(values, dataIndex, value),
+        delete(nodes, nodeIndex));
+    }
+
+    private static int[] insert(int[] array, int i, int value) {
+      var copy = new int[array.length + 1];
+      System.arraycopy(array, 0, copy, 0, i);
+      copy[i] = value;
+      System.arraycopy(array, i, copy, i + 1, array.length - i);
+      return copy;
+    }
+
+    private static <T> T[] insert(T[] array, int i, T value) {
+      var copy = Arrays.copyOf(array, array.length + 1);
+      System.arraycopy(array, i, copy, i + 1, array.length - i);
+      copy[i] = value;
+      return copy;
+    }
+
+    private static int[] delete(int[] array, int i) {
+      var copy = new int[array.length - 1];
+      System.arraycopy(array, 0, copy, 0, i);
+      System.arraycopy(array, i + 1, copy, i, array.length - i - 1);
+      return copy;
+    }
+
+    private static <T> T[] delete(T[] array, int i) {
+      var copy = Arrays.copyOf(array, array.length - 1);
+      System.arraycopy(array, i + 1, copy, i, array.length - i - 1);
+      return copy;
+    }
+  }
+
+  /**
+   * In-order walk: at each node the digits in ascending order, each one either an inline entry or a subtree.
+   */
+  private static final class ValueIterator<V> implements Iterator<V> {
+    private final Node[] nodes = new Node[LEVELS + 1];
+    private final int[] digits = new int[LEVELS + 1];
+    private final int from;
+    private int depth;
+    private Object next;
+
+    /**
+     * Starts at the digits of {@code from} on its path; only the inline entries met on that path can still be
+     * smaller than {@code from}, they are skipped when reached.
+     */
+    ValueIterator(Node root, int from) {
+      this.from = from;
+      var node = root;
+      nodes[0] = node;
+      for (int level = 0; ; level++) {
+        int digit = digit(from, level);
+        int bit = 1 << digit;
+        if ((node.nodeMap & bit) == 0) {
+          digits[depth] = digit;
+          break;
+        }
+        digits[depth] = digit + 1;
+        node = node.nodes[index(node.nodeMap, bit)];
+        nodes[++depth] = node;
+      }
+      advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      var value = (V) next;
+      advance();
+      return value;
+    }
+
+    private void advance() {
+      next = null;
+      while (depth >= 0) {
+        var node = nodes[depth];
+        int remaining = (node.dataMap | node.nodeMap) & (-1 << digits[depth]);
+        if (digits[depth] == 32 || remaining == 0) {
+          depth--;
+          continue;
+        }
+        int bit = Integer.lowestOneBit(remaining);
+        digits[depth] = Integer.numberOfTrailingZeros(bit) + 1;
+        if ((node.dataMap & bit) != 0) {
+          int i = index(node.dataMap, bit);
+          if (node.keys[i] >= from) {
+            next = node.values[i];
+            return;
+          }
+          continue;
+        }
+        depth++;
+        nodes[depth] = node.nodes[index(node.nodeMap, bit)];
+        digits[depth] = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,602 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.vk.competition.minbenchmark.entity.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * In-memory registries of stored queries and reports, shared by the JDBC and R2DBC repositories.
+ * Checks that need the database (whether a table exists) are supplied by the caller, and run before any lock stripe is
+ * taken: they may wait for JDBC, and the stripes are also taken on the event loop. A drop counter, checked under the
+ * stripe, tells whether a table may have been dropped since.
+ * <p>
+ * Single queries and reports are updated with atomic map operations. A table query lives both in {@code queries}
+ * and in the queries of its table, so its changes hold the lock stripe of the table name (both tables when moving):
+ * operations on different tables run in parallel, and a query is never left behind in a dropped table.
+ * <p>
+ * Ids are kept unboxed. Table and single queries, and the queries of each table, are {@link AtomicIntMap}s, so a
+ * get-all is an O(1) consistent snapshot in ascending id order, serializing it never holds up writers, and a page
+ * starting at a cursor is read lazily from one snapshot. Stored queries are never mutated in
+ * place, a snapshot could be observing them.
+ * <p>
+ * Every change is passed to the {@link Journal}s, if any, under the same lock stripe that orders the changes of its
+ * id: single queries take a stripe of their own for that, table queries the stripe of their table.
+ */
+@Slf4j
+@Component
+public class QueryRegistry {
+  private final AtomicIntMap<TableQuery> queries = new AtomicIntMap<>();
+  private final AtomicIntMap<SingleQuery> singleQueries = new AtomicIntMap<>();
+  private final ConcurrentHashMap<String, AtomicIntMap<TableQuery>> tableQueries = new ConcurrentHashMap<>();
+  private final IntMap<Report<ColumnInfoWithSize>> reports = new IntMap<>();
+  private final StripedLocks tableLocks = new StripedLocks(64);
+  private final StripedLocks singleLocks = new StripedLocks(64);
+  private final AtomicLong drops = new AtomicLong();
+  private final List<Journal> journals = new ArrayList<>();
+  private volatile Journal journal = Journal.NONE;
+
+  /**
+   * Receives the changes of the registry as their resulting state, so that applying them again is harmless. Called
+   * while the change is ordered against the other changes of its id, so it should only buffer.
+   */
+  interface Journal {
+    Journal NONE = new Journal() {
+    };
+
+    default void tableQueryPut(TableQuery query) {
+    }
+
+    default void tableQueryRemoved(int id) {
+    }
+
+    default void tableDropped(String name) {
+    }
+
+    default void singleQueryPut(SingleQuery query) {
+    }
+
+    default void singleQueryRemoved(int id) {
+    }
+
+    default void reportAdded(Report<ColumnInfoWithSize> report) {
+    }
+
+    default void cleared() {
+    }
+  }
+
+  synchronized void addJournal(Journal journal) {
+    journals.add(journal);
+    this.journal = journals.size() == 1 ? journal : new Journals(journals.toArray(Journal[]::new));
+  }
+
+  synchronized void removeJournal(Journal journal) {
+    journals.remove(journal);
+    this.journal = switch (journals.size()) {
+      case 0 -> Journal.NONE;
+      case 1 -> journals.get(0);
+      default -> new Journals(journals.toArray(Journal[]::new));
+    };
+  }
+
+  /**
+   * Passes every change to each of several journals in turn.
+   */
+  @AllArgsConstructor
+  private static class Journals implements Journal {
+    private final Journal[] journals;
+
+    @Override
+    public void tableQueryPut(TableQuery query) {
+      for (var journal : journals) {
+        journal.tableQueryPut(query);
+      }
+    }
+
+    @Override
+    public void tableQueryRemoved(int id) {
+      for (var journal : journals) {
+        journal.tableQueryRemoved(id);
+      }
+    }
+
+    @Override
+    public void tableDropped(String name) {
+      for (var journal : journals) {
+        journal.tableDropped(name);
+      }
+    }
+
+    @Override
+    public void singleQueryPut(SingleQuery query) {
+      for (var journal : journals) {
+        journal.singleQueryPut(query);
+      }
+    }
+
+    @Override
+    public void singleQueryRemoved(int id) {
+      for (var journal : journals) {
+        journal.singleQueryRemoved(id);
+      }
+    }
+
+    @Override
+    public void reportAdded(Report<ColumnInfoWithSize> report) {
+      for (var journal : journals) {
+        journal.reportAdded(report);
+      }
+    }
+
+    @Override
+    public void cleared() {
+      for (var journal : journals) {
+        journal.cleared();
+      }
+    }
+  }
+
+  /**
+   * @param tableExists whether {@code query.getTableName()} exists; asked again if a table is dropped meanwhile
+   */
+  public boolean newTableQuery(TableQuery query, BooleanSupplier tableExists) {
+    String tableName = query.getTableName();
+    while (true) {
+      long dropped = drops.get();
+      if (!tableExists.getAsBoolean()) {
+        log.error("Cannot add new table query: missed table '" + tableName + "'");
+        return false;
+      }
+
+      Boolean added = tableLocks.locked(tableName, () -> {
+        if (drops.get() != dropped) {
+          return null;
+        }
+
+        int id = query.getId();
+        if (queries.containsKey(id)) {
+          log.error("Cannot add new table query: id already exists " + id);
+          return false;
+        }
+
+        if (query.getQuery().length() > 120) {
+          log.error("Cannot add new table query: too big query");
+          return false;
+        }
+
+        if (queries.putIfAbsent(id, query) != null) {
+          log.error("Cannot add new table query: id already exists " + id);
+          return false;
+        }
+        indexed(query);
+        journal.tableQueryPut(query);
+        return true;
+      });
+      // null: a table was dropped while we were checking, look again
+      if (added != null) {
+        return added;
+      }
+    }
+  }
+
+  /**
+   * @param tableExists whether {@code query.getTableName()} exists; asked only if the query moves to another table,
+   *                    and again if a table is dropped meanwhile
+   */
+  public boolean updateTableQuery(TableQuery query, BooleanSupplier tableExists) {
+    int id = query.getId();
+    String tableName = query.getTableName();
+    while (true) {
+      var current = queries.get(id);
+      if (current == null) {
+        log.error("Cannot update table query: id not exists " + id);
+        return false;
+      }
+
+      String oldTableName = current.getTableName();
+      long dropped = drops.get();
+      boolean moves = !oldTableName.equals(tableName);
+      boolean targetExists = moves && tableExists.getAsBoolean();
+      Boolean updated = tableLocks.locked(oldTableName, tableName, () -> {
+        if (queries.get(id) != current || moves && drops.get() != dropped) {
+          return null;
+        }
+
+        if (query.getQuery().length() > 120) {
+          log.error("Cannot update table query: query too big " + query.getQuery().length());
+          cleared(id, oldTableName);
+          return false;
+        }
+
+        if (moves) {
+          if (!targetExists) {
+            log.error("Cannot update table query: table not exists " + tableName);
+            cleared(id, oldTableName);
+            return false;
+          }
+          removeFromTable(oldTableName, id);
+        }
+        queries.put(id, query);
+        indexed(query);
+        journal.tableQueryPut(query);
+        return true;
+      });
+      // null: replaced, moved or a table dropped while we were waiting for the table locks, look again
+      if (updated != null) {
+        return updated;
+      }
+    }
+  }
+
+  public boolean deleteTableQuery(int id) {
+    while (true) {
+      var current = queries.get(id);
+      if (current == null) {
+        log.error("Cannot delete table query: id not exists " + id);
+        return false;
+      }
+
+      var tableName = current.getTableName();
+      boolean deleted = tableLocks.locked(tableName, () -> {
+        if (!queries.remove(id, current)) {
+          return false;
+        }
+        removeFromTable(tableName, id);
+        journal.tableQueryRemoved(id);
+        return true;
+      });
+      if (deleted) {
+        return true;
+      }
+    }
+  }
+
+  public Optional<List<TableQuery>> getTableQueries(String name, boolean tableExists) {
+    if (!tableExists) {
+      return Optional.empty();
+    }
+    var table = tableQueries.get(name);
+    return Optional.of(table == null ? Collections.emptyList() : table.values());
+  }
+
+  /**
+   * A page of the table queries of {@code name}: at most {@code limit} queries with ids {@code >= from}, ascending.
+   */
+  public Optional<List<TableQuery>> getTableQueries(String name, boolean tableExists, long from, int limit) {
+    return getTableQueries(name, tableExists, from).map(table -> {
+      var page = new ArrayList<TableQuery>();
+      var iterator = table.iterator();
+      while (page.size() < limit && iterator.hasNext()) {
+        page.add(iterator.next());
+      }
+      return page;
+    });
+  }
+
+  /**
+   * The table queries of {@code name} with ids {@code >= from}, ascending, read lazily from one snapshot.
+   */
+  public Optional<Iterable<TableQuery>> getTableQueries(String name, boolean tableExists, long from) {
+    if (!tableExists) {
+      return Optional.empty();
+    }
+    var table = tableQueries.get(name);
+    return Optional.of(table == null ? Collections.emptyList() : table.valuesFrom(from));
+  }
+
+  public Optional<TableQuery> getTableQueryById(int id) {
+    return Optional.ofNullable(queries.get(id));
+  }
+
+  public List<TableQuery> getAllTableQueries() {
+    return queries.values();
+  }
+
+  /**
+   * The table queries with ids {@code >= from}, ascending, read lazily from one snapshot.
+   */
+  public Iterable<TableQuery> getAllTableQueries(long from) {
+    return queries.valuesFrom(from);
+  }
+
+  /**
+   * Forgets the table queries of a dropped table.
+   */
+  public void tableDropped(String name) {
+    tableLocks.locked(name, () -> {
+      drops.incrementAndGet();
+      var table = tableQueries.remove(name);
+      if (table != null) {
+        for (var query : table.values()) {
+          queries.remove(query.getId());
+        }
+        journal.tableDropped(name);
+      }
+      return null;
+    });
+  }
+
+  /**
+   * A failed update leaves the query empty.
+   */
+  private void cleared(int id, String tableName) {
+    var query = new TableQuery(id, tableName, "");
+    queries.put(id, query);
+    indexed(query);
+    journal.tableQueryPut(query);
+  }
+
+  private void indexed(TableQuery query) {
+    tableQueries.computeIfAbsent(query.getTableName(), it -> new AtomicIntMap<>()).put(query.getId(), query);
+  }
+
+  private void removeFromTable(String tableName, int id) {
+    var table = tableQueries.get(tableName);
+    if (table != null) {
+      table.remove(id);
+    }
+  }
+
+  public boolean newSingleQuery(SingleQuery query) {
+    int id = query.getId();
+    if (singleQueries.containsKey(id)) {
+      log.error("Cannot add new single query: id already exists " + id);
+      return false;
+    }
+
+    if (query.getQuery().length() > 120) {
+      log.error("Cannot add new single query: too big query");
+      return false;
+    }
+
+    return singleLocks.locked(id, () -> {
+      if (singleQueries.putIfAbsent(id, query) != null) {
+        log.error("Cannot add new single query: id already exists " + id);
+        return false;
+      }
+      journal.singleQueryPut(query);
+      return true;
+    });
+  }
+
+  public boolean updateSingleQuery(SingleQuery query) {
+    int id = query.getId();
+    boolean tooBig = query.getQuery().length() > 120;
+    var updated = singleLocks.locked(id, () -> {
+      var result = singleQueries.computeIfPresent(id, (key, current) -> {
+        if (tooBig) {
+          return new SingleQuery(id, "");
+        }
+        return query;
+      });
+      if (result != null) {
+        journal.singleQueryPut(result);
+      }
+      return result;
+    });
+    if (updated == null) {
+      log.error("Cannot update single query: id not exists " + id);
+      return false;
+    }
+
+    if (tooBig) {
+      log.error("Cannot update single query: query too big " + query.getQuery().length());
+      return false;
+    }
+    return true;
+  }
+
+  public boolean deleteSingleQuery(int id) {
+    boolean deleted = singleLocks.locked(id, () -> {
+      if (singleQueries.remove(id) == null) {
+        return false;
+      }
+      journal.singleQueryRemoved(id);
+      return true;
+    });
+    if (!deleted) {
+      log.error("Cannot delete single query: id not exists " + id);
+    }
+    return deleted;
+  }
+
+  public Optional<SingleQuery> getSingleQueryById(int id) {
+    return Optional.ofNullable(singleQueries.get(id));
+  }
+
+  public List<SingleQuery> getAllSingleQueries() {
+    return singleQueries.values();
+  }
+
+  /**
+   * The single queries with ids {@code >= from}, ascending, read lazily from one snapshot.
+   */
+  public Iterable<SingleQuery> getAllSingleQueries(long from) {
+    return singleQueries.valuesFrom(from);
+  }
+
+  /**
+   * The SQL of the given table queries followed by the given single queries, in order; empty if any id is unknown.
+   */
+  public Optional<List<String>> getBatch(List<Integer> tableQueryIds, List<Integer> singleQueryIds) {
+    var statements = new ArrayList<String>(tableQueryIds.size() + singleQueryIds.size());
+    for (int id : tableQueryIds) {
+      var query = queries.get(id);
+      if (query == null) {
+        log.error("Cannot execute batch: table query id not exists " + id);
+        return Optional.empty();
+      }
+      statements.add(query.getQuery());
+    }
+    for (int id : singleQueryIds) {
+      var query = singleQueries.get(id);
+      if (query == null) {
+        log.error("Cannot execute batch: single query id not exists " + id);
+        return Optional.empty();
+      }
+      statements.add(query.getQuery());
+    }
+    return Optional.of(statements);
+  }
+
+  public boolean hasReport(int id) {
+    return reports.containsKey(id);
+  }
+
+  public Optional<Report<ColumnInfoWithSize>> getReport(int id) {
+    return Optional.ofNullable(reports.get(id));
+  }
+
+  /**
+   * @return false if a report with this id was added meanwhile
+   */
+  public boolean addReport(Report<ColumnInfoWithSize> report) {
+    if (reports.putIfAbsent(report.getId(), report) != null) {
+      return false;
+    }
+    journal.reportAdded(report);
+    return true;
+  }
+
+  /**
+   * The reports in ascending id order. Each {@link IntMap} segment is copied atomically, the whole map is not.
+   */
+  public List<Report<ColumnInfoWithSize>> getAllReports() {
+    return reports.values();
+  }
+
+  /**
+   * Replaces everything with the given contents, e.g. a {@link RegistrySnapshot} read at startup. Nothing is validated
+   * nor journaled: the entries were accepted once already. The query maps are built in one go when the ids come in
+   * ascending order, as a snapshot has them.
+   */
+  public void restore(List<TableQuery> tableQueries, List<SingleQuery> singleQueries,
+                      List<Report<ColumnInfoWithSize>> reports) {
+    clearMaps();
+    restore(queries, tableQueries, TableQuery::getId);
+    for (var query : tableQueries) {
+      indexed(query);
+    }
+    restore(this.singleQueries, singleQueries, SingleQuery::getId);
+    for (var report : reports) {
+      this.reports.put(report.getId(), report);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <V> void restore(AtomicIntMap<V> map, List<V> values, ToIntFunction<V> id) {
+    var keys = new int[values.size()];
+    var array = (V[]) values.toArray();
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = id.applyAsInt(array[i]);
+      if (i > 0 && keys[i] <= keys[i - 1]) {
+        for (var value : array) {
+          map.put(id.applyAsInt(value), value);
+        }
+        return;
+      }
+    }
+    map.reset(keys, array);
+  }
+
+  /**
+   * Empties all the registries at once for writers: every table and single query stripe is held meanwhile, so no change
+   * lands half way through, e.g. a table query without its table index entry.
+   */
+  public void clear() {
+    tableLocks.lockedAll(() -> singleLocks.lockedAll(() -> {
+      drops.incrementAndGet();
+      clearMaps();
+      journal.cleared();
+      return null;
+    }));
+  }
+
+  private void clearMaps() {
+    reports.clear();
+    queries.clear();
+    singleQueries.clear();
+    tableQueries.clear();
+  }
+
+  /**
+   * Puts a table query from a {@link RegistryLog} record or a {@link RegistryReplication} peer as it is: not validated,
+   * but ordered against local changes and journaled like them.
+   */
+  void replay(TableQuery query) {
+    int id = query.getId();
+    String tableName = query.getTableName();
+    while (true) {
+      var current = queries.get(id);
+      String oldTableName = current == null ? tableName : current.getTableName();
+      boolean replayed = tableLocks.locked(oldTableName, tableName, () -> {
+        if (queries.get(id) != current) {
+          return false;
+        }
+        if (current != null) {
+          removeFromTable(oldTableName, id);
+        }
+        queries.put(id, query);
+        indexed(query);
+        journal.tableQueryPut(query);
+        return true;
+      });
+      if (replayed) {
+        return;
+      }
+    }
+  }
+
+  void replayTableQueryRemoved(int id) {
+    while (true) {
+      var current = queries.get(id);
+      if (current == null) {
+        return;
+      }
+      var tableName = current.getTableName();
+      boolean removed = tableLocks.locked(tableName, () -> {
+        if (!queries.remove(id, current)) {
+          return false;
+        }
+        removeFromTable(tableName, id);
+        journal.tableQueryRemoved(id);
+        return true;
+      });
+      if (removed) {
+        return;
+      }
+    }
+  }
+
+  void replay(SingleQuery query) {
+    singleLocks.locked(query.getId(), () -> {
+      singleQueries.put(query.getId(), query);
+      journal.singleQueryPut(query);
+      return null;
+    });
+  }
+
+  void replaySingleQueryRemoved(int id) {
+    singleLocks.locked(id, () -> {
+      if (singleQueries.remove(id) != null) {
+        journal.singleQueryRemoved(id);
+      }
+      return null;
+    });
+  }
+
+  void replay(Report<ColumnInfoWithSize> report) {
+    reports.put(report.getId(), report);
+    journal.reportAdded(report);
+  }
+}
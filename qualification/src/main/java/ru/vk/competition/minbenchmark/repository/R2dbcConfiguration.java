@@ -0,0 +1,48 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * R2DBC client for {@link R2dbcRepository}.
+ * <p>
+ * The connection factory is deliberately not a bean: Spring Boot drops the JDBC {@code DataSource} once an R2DBC
+ * {@code ConnectionFactory} bean exists, and the JDBC components still share the database in this mode.
+ * For the same reason the R2DBC auto-configurations are excluded in {@code MinbenchmarkApplication}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "minbenchmark.persistence.mode", havingValue = "r2dbc")
+public class R2dbcConfiguration {
+  private ConnectionPool pool;
+
+  @Bean
+  public DatabaseClient r2dbcClient(@Value("${spring.r2dbc.url}") String url,
+                                    @Value("${spring.r2dbc.username:}") String username,
+                                    @Value("${spring.r2dbc.password:}") String password,
+                                    @Value("${spring.r2dbc.pool.max-size:10}") int maxSize) {
+    var options = ConnectionFactoryOptions.parse(url).mutate()
+      .option(ConnectionFactoryOptions.USER, username)
+      .option(ConnectionFactoryOptions.PASSWORD, password)
+      .build();
+    pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+      .maxSize(maxSize)
+      .build());
+    return DatabaseClient.create(pool);
+  }
+
+  @PreDestroy
+  public void close() {
+    if (pool != null) {
+      pool.dispose();
+    }
+  }
+}
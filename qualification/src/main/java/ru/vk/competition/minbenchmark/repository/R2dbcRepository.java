@@ -0,0 +1,519 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import io.r2dbc.spi.Result;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.vk.competition.minbenchmark.entity.*;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * {@link ReactiveRepository} on R2DBC H2. Registry work is answered in place, on the subscribing thread (the Netty
+ * event loop for HTTP requests). Database work goes through the R2DBC driver on the {@code r2dbc-h2} scheduler:
+ * r2dbc-h2 runs the embedded engine synchronously on the thread that subscribes, so it must not be the event loop.
+ * <p>
+ * Schema metadata comes from the {@link SchemaCatalog} the JDBC path keeps, invalidated by the statements run here;
+ * its misses load over JDBC, on the same scheduler. Report sizes always come from one count query per report; the
+ * trigger-maintained counters are JDBC only. Changes of the registries answer once the {@link RegistryLog} has them
+ * on disk.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "minbenchmark.persistence.mode", havingValue = "r2dbc")
+public class R2dbcRepository implements ReactiveRepository {
+  private static final String TABLE_INFO = CatalogLoader.query(" AND T.TABLE_NAME = :name");
+
+  private final DatabaseClient db;
+  private final SchemaCatalog catalog;
+  private final QueryRegistry registry;
+  private final ReportCache reportCache;
+  private final TypeResolver typeResolver;
+  private final RegistryLog registryLog;
+  private final Scheduler blocking = Schedulers.newBoundedElastic(8, 10_000, "r2dbc-h2");
+
+  @PreDestroy
+  public void close() {
+    blocking.dispose();
+  }
+
+  @Override
+  public Mono<Boolean> createTable(DBTable table) {
+    return tableExists(table.getName()).flatMap(exists -> {
+      if (exists) {
+        log.info("Cannot create table: already exists");
+        return Mono.just(false);
+      }
+      return execute(RawRepository.buildCreateTableQuery(table))
+        .doOnSuccess(it -> {
+          catalog.tableCreated(table.getName());
+          reportCache.written(table.getName());
+        })
+        .thenReturn(true)
+        .onErrorResume(e -> {
+          log.info("Cannot create table '" + table.getName() + "': " + e.getMessage());
+          return Mono.just(false);
+        });
+    });
+  }
+
+  @Override
+  public Mono<Boolean> dropTable(String name) {
+    return registryLog.durable(tableExists(name).flatMap(exists -> {
+      if (!exists) {
+        log.info("Cannot drop table: missed");
+        return Mono.just(false);
+      }
+      return execute("DROP TABLE " + name)
+        .doOnSuccess(it -> {
+          catalog.tableDropped(name);
+          reportCache.written(name);
+          registry.tableDropped(name);
+        })
+        .thenReturn(true)
+        .onErrorResume(e -> {
+          log.info("Cannot drop table '" + name + "': " + e.getMessage());
+          return Mono.just(false);
+        });
+    }));
+  }
+
+  @Override
+  public Mono<Optional<DBTable>> getTableInfo(String name) {
+    return Mono.fromCallable(() -> catalog.getTableInfo(name)).subscribeOn(blocking).onErrorResume(e -> {
+      log.error(e.getMessage());
+      return Mono.just(Optional.empty());
+    });
+  }
+
+  @Override
+  public Mono<Optional<List<ColumnInfo>>> mapColumnTypes(List<ColumnInfo> infos) {
+    var unresolved = typeResolver.unresolvedTypes(infos);
+    if (unresolved.isEmpty()) {
+      return Mono.just(typeResolver.mapResolved(infos));
+    }
+    var tableName = typeResolver.nextProbeTable();
+    var probe = db.sql(TABLE_INFO).bind("name", tableName)
+      .map(row -> row.get("TYPE", String.class).replaceAll("\\(\\d+\\)", ""))
+      .all()
+      .collectList();
+    return execute(TypeResolver.buildProbeQuery(tableName, unresolved))
+      .then(probe.subscribeOn(blocking))
+      .flatMap(types -> execute("DROP TABLE " + tableName).thenReturn(types))
+      .map(types -> {
+        typeResolver.probed(unresolved, types);
+        return typeResolver.mapResolved(infos);
+      })
+      .onErrorResume(e -> {
+        log.info("Cannot resolve column types " + unresolved + ": " + e.getMessage());
+        return Mono.just(Optional.empty());
+      });
+  }
+
+  @Override
+  public Mono<CacheStats> getTableCacheStats() {
+    return Mono.fromSupplier(catalog::stats);
+  }
+
+  @Override
+  public Mono<Boolean> newTableQuery(TableQuery query) {
+    return registryLog.durable(
+      tableExists(query.getTableName()).map(exists -> registry.newTableQuery(query, () -> exists)));
+  }
+
+  @Override
+  public Mono<Boolean> updateTableQuery(TableQuery query) {
+    return registryLog.durable(
+      tableExists(query.getTableName()).map(exists -> registry.updateTableQuery(query, () -> exists)));
+  }
+
+  @Override
+  public Mono<Boolean> deleteTableQuery(int id) {
+    return registryLog.durable(Mono.fromSupplier(() -> registry.deleteTableQuery(id)));
+  }
+
+  @Override
+  public Mono<List<Boolean>> newTableQueries(List<TableQuery> queries) {
+    return registryLog.durable(tablesExist(queries).map(exist -> {
+      var added = new ArrayList<Boolean>(queries.size());
+      for (var query : queries) {
+        added.add(registry.newTableQuery(query, () -> exist.contains(query.getTableName().toUpperCase())));
+      }
+      return added;
+    }));
+  }
+
+  @Override
+  public Mono<List<Boolean>> updateTableQueries(List<TableQuery> queries) {
+    return registryLog.durable(tablesExist(queries).map(exist -> {
+      var updated = new ArrayList<Boolean>(queries.size());
+      for (var query : queries) {
+        updated.add(registry.updateTableQuery(query, () -> exist.contains(query.getTableName().toUpperCase())));
+      }
+      return updated;
+    }));
+  }
+
+  @Override
+  public Mono<List<Boolean>> deleteTableQueries(List<Integer> ids) {
+    return registryLog.durable(
+      Mono.fromSupplier(() -> ids.stream().map(registry::deleteTableQuery).collect(Collectors.toList())));
+  }
+
+  @Override
+  public Mono<Boolean> executeTableQuery(int id) {
+    return Mono.defer(() -> {
+      var query = registry.getTableQueryById(id);
+      if (query.isEmpty()) {
+        log.error("Cannot execute table query: id not exists " + id);
+        return Mono.just(false);
+      }
+      return executeStatement(query.get().getQuery(), "Cannot execute table query " + id);
+    });
+  }
+
+  @Override
+  public Mono<Boolean> executeTableQuery(int id, List<Object> args) {
+    return Mono.defer(() -> {
+      var query = registry.getTableQueryById(id);
+      if (query.isEmpty()) {
+        log.error("Cannot execute table query: id not exists " + id);
+        return Mono.just(false);
+      }
+      return executeStatement(query.get().getQuery(), args, "Cannot execute table query " + id);
+    });
+  }
+
+  @Override
+  public Mono<Optional<List<TableQuery>>> getTableQueries(String name) {
+    return tableExists(name).map(exists -> registry.getTableQueries(name, exists));
+  }
+
+  @Override
+  public Mono<Optional<List<TableQuery>>> getTableQueries(String name, long from, int limit) {
+    return tableExists(name).map(exists -> registry.getTableQueries(name, exists, from, limit));
+  }
+
+  @Override
+  public Flux<TableQuery> streamTableQueries(String name, long from) {
+    return tableExists(name)
+      .flatMap(exists -> Mono.justOrEmpty(registry.getTableQueries(name, exists, from)))
+      .flatMapIterable(it -> it);
+  }
+
+  @Override
+  public Mono<Optional<TableQuery>> getTableQueryById(int id) {
+    return Mono.fromSupplier(() -> registry.getTableQueryById(id));
+  }
+
+  @Override
+  public Mono<List<TableQuery>> getAllTableQueries() {
+    return Mono.fromSupplier(registry::getAllTableQueries);
+  }
+
+  @Override
+  public Flux<TableQuery> streamAllTableQueries(long from) {
+    return Flux.defer(() -> Flux.fromIterable(registry.getAllTableQueries(from)));
+  }
+
+  @Override
+  public Mono<Boolean> newSingleQuery(SingleQuery query) {
+    return registryLog.durable(Mono.fromSupplier(() -> registry.newSingleQuery(query)));
+  }
+
+  @Override
+  public Mono<Boolean> updateSingleQuery(SingleQuery query) {
+    return registryLog.durable(Mono.fromSupplier(() -> registry.updateSingleQuery(query)));
+  }
+
+  @Override
+  public Mono<Boolean> deleteSingleQuery(int id) {
+    return registryLog.durable(Mono.fromSupplier(() -> registry.deleteSingleQuery(id)));
+  }
+
+  @Override
+  public Mono<List<Boolean>> newSingleQueries(List<SingleQuery> queries) {
+    return registryLog.durable(
+      Mono.fromSupplier(() -> queries.stream().map(registry::newSingleQuery).collect(Collectors.toList())));
+  }
+
+  @Override
+  public Mono<List<Boolean>> updateSingleQueries(List<SingleQuery> queries) {
+    return registryLog.durable(
+      Mono.fromSupplier(() -> queries.stream().map(registry::updateSingleQuery).collect(Collectors.toList())));
+  }
+
+  @Override
+  public Mono<List<Boolean>> deleteSingleQueries(List<Integer> ids) {
+    return registryLog.durable(
+      Mono.fromSupplier(() -> ids.stream().map(registry::deleteSingleQuery).collect(Collectors.toList())));
+  }
+
+  @Override
+  public Mono<Boolean> executeSingleQuery(int id) {
+    return Mono.defer(() -> {
+      var query = registry.getSingleQueryById(id);
+      if (query.isEmpty()) {
+        log.error("Cannot execute single query: id not exists " + id);
+        return Mono.just(false);
+      }
+      return executeStatement(query.get().getQuery(), "Cannot execute single query " + id);
+    });
+  }
+
+  @Override
+  public Mono<Boolean> executeSingleQuery(int id, List<Object> args) {
+    return Mono.defer(() -> {
+      var query = registry.getSingleQueryById(id);
+      if (query.isEmpty()) {
+        log.error("Cannot execute single query: id not exists " + id);
+        return Mono.just(false);
+      }
+      return executeStatement(query.get().getQuery(), args, "Cannot execute single query " + id);
+    });
+  }
+
+  @Override
+  public Mono<Optional<List<Integer>>> executeBatch(List<Integer> tableQueryIds, List<Integer> singleQueryIds) {
+    return Mono.defer(() -> {
+      var sqls = registry.getBatch(tableQueryIds, singleQueryIds);
+      var statements = sqls.flatMap(RawRepository::parseBatch);
+      if (statements.isEmpty()) {
+        return Mono.just(Optional.<List<Integer>>empty());
+      }
+      if (sqls.get().isEmpty()) {
+        return Mono.just(Optional.<List<Integer>>of(List.of()));
+      }
+      return db.inConnection(connection -> {
+          var batch = connection.createBatch();
+          sqls.get().forEach(batch::add);
+          return Mono.from(connection.beginTransaction())
+            .thenMany(Flux.from(batch.execute()).concatMap(Result::getRowsUpdated))
+            .collectList()
+            .flatMap(counts -> Mono.from(connection.commitTransaction()).thenReturn(counts))
+            .onErrorResume(e -> Mono.from(connection.rollbackTransaction()).then(Mono.<List<Integer>>error(e)));
+        })
+        .subscribeOn(blocking)
+        .map(Optional::of)
+        .onErrorResume(e -> {
+          log.error("Cannot execute batch: " + e.getMessage());
+          return Mono.just(Optional.<List<Integer>>empty());
+        })
+        .doOnNext(counts -> statements.get().forEach(statement -> {
+          catalog.invalidate(statement);
+          reportCache.written(statement);
+        }));
+    });
+  }
+
+  @Override
+  public Mono<Optional<SingleQuery>> getSingleQueryById(int id) {
+    return Mono.fromSupplier(() -> registry.getSingleQueryById(id));
+  }
+
+  @Override
+  public Mono<List<SingleQuery>> getAllSingleQueries() {
+    return Mono.fromSupplier(registry::getAllSingleQueries);
+  }
+
+  @Override
+  public Flux<SingleQuery> streamAllSingleQueries(long from) {
+    return Flux.defer(() -> Flux.fromIterable(registry.getAllSingleQueries(from)));
+  }
+
+  @Override
+  public Mono<Boolean> createReport(Report<ColumnInfo> report) {
+    return registryLog.durable(Mono.defer(() -> {
+      int id = report.getId();
+      if (registry.hasReport(id)) {
+        log.error("Cannot create report: id already exists " + id);
+        return Mono.just(false);
+      }
+      return withSizes(report.getTables())
+        .onErrorResume(e -> {
+          log.error("Failed to fetch report sizes: " + e.getMessage());
+          return Flux.fromIterable(report.getTables()).concatMap(this::withSize).collectList();
+        })
+        .map(mapped -> {
+          if (!registry.addReport(new Report<>(id, report.getTableAmount(), mapped))) {
+            log.error("Cannot create report: id already exists " + id);
+            return false;
+          }
+          return true;
+        });
+    }));
+  }
+
+  @Override
+  public Mono<Optional<Report<ColumnInfoWithSize>>> getReportById(int id) {
+    return Mono.defer(() -> {
+      var stored = registry.getReport(id);
+      if (stored.isEmpty()) {
+        log.error("Cannot get report: id not exists " + id);
+        return Mono.just(Optional.empty());
+      }
+      var report = stored.get();
+      var versions = reportCache.versions(report.getTables().stream().map(ReportTable::getName).collect(Collectors.toList()));
+      var cached = reportCache.get(id, versions);
+      if (cached.isPresent()) {
+        return Mono.just(cached);
+      }
+      var tables = report.getTables().stream().map(ReportTables::withoutSize).collect(Collectors.toList());
+      return withSizes(tables)
+        .map(sized -> {
+          var mapped = new Report<>(id, report.getTableAmount(), sized);
+          reportCache.put(id, versions, mapped);
+          return Optional.of(mapped);
+        })
+        .onErrorResume(e -> {
+          log.error("Failed to update report");
+          return Mono.just(Optional.of(report));
+        });
+    });
+  }
+
+  @Override
+  public Mono<CacheStats> getReportCacheStats() {
+    return Mono.fromSupplier(reportCache::stats);
+  }
+
+  @Override
+  public Mono<Duration> clear() {
+    return Mono.defer(() -> {
+      long start = System.nanoTime();
+      return execute("DROP ALL OBJECTS")
+        .then(Mono.fromSupplier(() -> {
+          catalog.invalidateAll();
+          reportCache.clear();
+          registry.clear();
+          var took = Duration.ofNanos(System.nanoTime() - start);
+          log.info("Reset in " + took.toMillis() + " ms");
+          return took;
+        }))
+        .flatMap(took -> registryLog.sync().thenReturn(took));
+    });
+  }
+
+
+  private Mono<Boolean> tableExists(String name) {
+    return Mono.fromCallable(() -> catalog.tableExists(name)).subscribeOn(blocking);
+  }
+
+  /**
+   * The upper-cased names of the tables the queries refer to that exist.
+   */
+  private Mono<Set<String>> tablesExist(List<TableQuery> queries) {
+    return Mono.fromCallable(() -> queries.stream()
+        .map(query -> query.getTableName().toUpperCase())
+        .filter(catalog::tableExists)
+        .collect(Collectors.toSet()))
+      .subscribeOn(blocking);
+  }
+
+  private Mono<Boolean> executeStatement(String sql, String error) {
+    return executeStatement(sql, List.of(), error);
+  }
+
+  private Mono<Boolean> executeStatement(String sql, List<Object> args, String error) {
+    var statement = SqlStatement.parse(sql);
+    return execute(sql, args)
+      .thenReturn(true)
+      .onErrorResume(e -> {
+        log.error(error + ": " + e.getMessage());
+        return Mono.just(false);
+      })
+      .doOnNext(executed -> {
+        catalog.invalidate(statement);
+        reportCache.written(statement);
+      });
+  }
+
+  /**
+   * Runs user SQL as is, bypassing {@link DatabaseClient}'s named parameter expansion, and drains its results.
+   */
+  private Mono<Void> execute(String sql) {
+    return execute(sql, List.of());
+  }
+
+  /**
+   * Like {@link #execute(String)}, with {@code args} bound to the placeholders of the statement in order. The
+   * driver prepares the statement anew for every execution.
+   */
+  private Mono<Void> execute(String sql, List<Object> args) {
+    return db.inConnectionMany(connection -> {
+        var statement = connection.createStatement(sql);
+        for (int i = 0; i < args.size(); i++) {
+          var arg = args.get(i);
+          if (arg == null) {
+            statement.bindNull(i, String.class);
+          } else {
+            statement.bind(i, arg);
+          }
+        }
+        return Flux.from(statement.execute()).concatMap(Result::getRowsUpdated);
+      })
+      .subscribeOn(blocking)
+      .then();
+  }
+
+  private Mono<List<ReportTable<ColumnInfoWithSize>>> withSizes(List<ReportTable<ColumnInfo>> tables) {
+    var names = tables.stream().map(ReportTables::columnNames).collect(Collectors.toList());
+    var nonEmpty = ReportSizer.nonEmpty(names);
+    Mono<List<List<String>>> sizes = nonEmpty.isEmpty()
+      ? Mono.just(ReportSizer.emptyCounts(names))
+      : db.sql(ReportSizer.buildCountQuery(nonEmpty))
+      .map((row, metadata) -> {
+        var values = new ArrayList<String>();
+        for (int i = 0; i < metadata.getColumnMetadatas().size(); i++) {
+          values.add(String.valueOf(row.get(i)));
+        }
+        return (List<String>) values;
+      })
+      .one()
+      .subscribeOn(blocking)
+      .map(row -> ReportSizer.split(names, row));
+    return sizes.map(counts -> {
+      var mapped = new ArrayList<ReportTable<ColumnInfoWithSize>>();
+      for (int i = 0; i < tables.size(); i++) {
+        mapped.add(ReportTables.withSize(tables.get(i), counts.get(i)));
+      }
+      return mapped;
+    });
+  }
+
+  /**
+   * Sizes the columns of one table in one scan, or else one scan per column: a column that cannot be counted gets
+   * {@code "0"} without taking the others with it.
+   */
+  private Mono<ReportTable<ColumnInfoWithSize>> withSize(ReportTable<ColumnInfo> table) {
+    return withSizes(Collections.singletonList(table))
+      .map(it -> it.get(0))
+      .onErrorResume(e -> {
+        log.error("Failed to fetch column sizes from " + table.getName() + ": " + e);
+        return Flux.fromIterable(table.getColumns())
+          .concatMap(column -> withSizes(List.of(new ReportTable<>(table.getName(), List.of(column))))
+            .map(it -> it.get(0).getColumns().get(0))
+            .onErrorResume(columnError -> {
+              log.error("Failed to fetch column size: " + column.getName() + " from " + table.getName() + ": "
+                + columnError);
+              return Mono.just(new ColumnInfoWithSize(column.getName(), column.getType(), "0"));
+            }))
+          .collectList()
+          .map(columns -> new ReportTable<>(table.getName(), columns));
+      });
+  }
+}
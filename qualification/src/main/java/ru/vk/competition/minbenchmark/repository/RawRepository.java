@@ -1,51 +1,46 @@
 package ru.vk.competition.minbenchmark.repository;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.DataAccessException;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.ResultSetExtractor;
-import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.stereotype.Repository;
 import ru.vk.competition.minbenchmark.entity.*;
 
-import java.sql.ResultSet;
+import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.Collection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Repository
 @Slf4j
 @RequiredArgsConstructor
 public class RawRepository {
-  private final JdbcTemplate jdbcTemplate;
+  private static final String NOT_ROUTED = "tables on different shards or unknown";
 
-  private boolean tablesInvalid = false;
-  private final ConcurrentSkipListSet<String> cachedTableNames = new ConcurrentSkipListSet<>();
-
-  private final ConcurrentHashMap<String, Optional<DBTable>> cachedTableInfos = new ConcurrentHashMap<>();
-
-  private final ConcurrentHashMap<Integer, TableQuery> queries = new ConcurrentHashMap<>();
-  private final ConcurrentHashMap<Integer, SingleQuery> singleQueries = new ConcurrentHashMap<>();
-  private final ConcurrentHashMap<String, ConcurrentSkipListSet<Integer>> tableQueries = new ConcurrentHashMap<>();
-  private final ConcurrentHashMap<Integer, Report<ColumnInfoWithSize>> reports = new ConcurrentHashMap<>();
+  private final TypeResolver typeResolver;
+  private final StatementCache statements;
+  private final Tenants tenants;
 
   public boolean createTable(DBTable table) {
     if (tableExists(table.getName())) {
       log.info("Cannot create table: already in cache");
       return false;
     }
+    var tenant = tenant();
+    var shard = tenant.shard(table.getName());
     try {
-      jdbcTemplate.execute(buildCreateTableQuery(table));
-      cachedTableNames.add(table.getName().toUpperCase());
+      shard.jdbcTemplate.execute(buildCreateTableQuery(table));
+      shard.catalog.tableCreated(table.getName());
+      shard.counters.uninstall(table.getName());
+      tenant.reportCache.written(table.getName());
       return true;
     } catch (Exception e) {
       log.info("Cannot create table '" + table.getName() + "': " + e.getMessage());
@@ -58,16 +53,14 @@ public class RawRepository {
       log.info("Cannot drop table: missed in cache");
       return false;
     }
+    var tenant = tenant();
+    var shard = tenant.shard(name);
     try {
-      jdbcTemplate.execute("DROP TABLE " + name);
-      cachedTableNames.remove(name.toUpperCase());
-      cachedTableInfos.remove(name.toUpperCase());
-      if (tableQueries.containsKey(name)) {
-        for (var query : tableQueries.get(name)) {
-          queries.remove(query);
-        }
-        tableQueries.remove(name);
-      }
+      shard.jdbcTemplate.execute("DROP TABLE " + name);
+      shard.catalog.tableDropped(name);
+      shard.counters.uninstall(name);
+      tenant.reportCache.written(name);
+      tenant.registry.tableDropped(name);
       return true;
     } catch (Exception e) {
       log.info("Cannot drop table '" + name + "': " + e.getMessage());
@@ -76,343 +69,555 @@ public class RawRepository {
   }
 
   public Optional<DBTable> getTableInfo(String name) {
-    if (!cachedTableInfos.containsKey(name.toUpperCase())) {
-      Optional<DBTable> value;
-      try {
-        if (tableExists(name)) {
-          var columnsWithKeys = jdbcTemplate.query("show columns from " + name, new ColumnMapper());
-          var columns = columnsWithKeys.stream().map(it -> it.info).collect(Collectors.toList());
-          var keyColumn = columnsWithKeys.stream().filter(it -> it.isPrimary).findFirst().map(c -> c.info.getName()).orElse("");
-          value = Optional.of(new DBTable(name, columns.size(), keyColumn.toLowerCase(), columns));
-        } else {
-          value = Optional.empty();
-        }
-      } catch (Exception e) {
-        log.error(e.getMessage());
-        value = Optional.empty();
-      }
-      cachedTableInfos.put(name.toUpperCase(), value);
-    }
-    return cachedTableInfos.get(name.toUpperCase());
+    return tenant().shard(name).catalog.getTableInfo(name);
   }
 
-  AtomicInteger kek = new AtomicInteger();
-
   public Optional<List<ColumnInfo>> mapColumnTypes(List<ColumnInfo> infos) {
-    if (infos.isEmpty()) {
-      return Optional.of(infos);
-    }
-    var tableName = "ZZZ_FAKE_TABLE_ZZZ_" + kek.getAndIncrement();
-    if (!createTable(new DBTable(tableName, infos.size(), infos.get(0).getName(), infos))) {
-      return Optional.empty();
-    }
-    var mapped = getTableInfo(tableName).get().getColumnInfos();
-    dropTable(tableName);
-    return Optional.of(mapped);
+    return typeResolver.mapColumnTypes(infos);
   }
 
   public boolean newTableQuery(TableQuery query) {
-    String tableName = query.getTableName();
-    if (!tableExists(tableName)) {
-      log.error("Cannot add new table query: missed table '" + tableName + "'");
-      return false;
-    }
-
-    int id = query.getId();
-    if (queries.containsKey(id)) {
-      log.error("Cannot add new table query: id already exists " + id);
-      return false;
-    }
-
-    if (query.getQuery().length() > 120) {
-      log.error("Cannot add new table query: too big query");
-      return false;
-    }
-
-    queries.put(id, query);
-    tableQueries.putIfAbsent(tableName, new ConcurrentSkipListSet<>());
-    tableQueries.get(tableName).add(id);
-    return true;
+    return tenant().registry.newTableQuery(query, () -> tableExists(query.getTableName()));
   }
 
   public boolean updateTableQuery(TableQuery query) {
-    int id = query.getId();
-    if (!queries.containsKey(id)) {
-      log.error("Cannot update table query: id not exists " + id);
-      return false;
-    }
+    return tenant().registry.updateTableQuery(query, () -> tableExists(query.getTableName()));
+  }
 
-    if (query.getQuery().length() > 120) {
-      log.error("Cannot update table query: query too big " + query.getQuery().length());
-      queries.get(id).setQuery("");
-      return false;
-    }
+  public boolean deleteTableQuery(int id) {
+    return tenant().registry.deleteTableQuery(id);
+  }
 
-    String tableName = query.getTableName();
-    String oldTableName = queries.get(id).getTableName();
-    if (!oldTableName.equals(tableName)) {
-      if (!tableExists(tableName)) {
-        log.error("Cannot update table query: table not exists " + tableName);
-        queries.get(id).setQuery("");
-        return false;
-      }
-      tableQueries.get(oldTableName).remove(id);
-      tableQueries.putIfAbsent(tableName, new ConcurrentSkipListSet<>());
-      tableQueries.get(tableName).add(id);
-    }
-    queries.put(id, query);
-    return true;
+  public List<Boolean> newTableQueries(List<TableQuery> queries) {
+    return each(queries, this::newTableQuery);
   }
 
-  public boolean deleteTableQuery(int id) {
-    if (!queries.containsKey(id)) {
-      log.error("Cannot delete table query: id not exists " + id);
-      return false;
-    }
+  public List<Boolean> updateTableQueries(List<TableQuery> queries) {
+    return each(queries, this::updateTableQuery);
+  }
 
-    var tableName = queries.remove(id).getTableName();
-    tableQueries.get(tableName).remove(id);
-    return true;
+  public List<Boolean> deleteTableQueries(List<Integer> ids) {
+    return each(ids, this::deleteTableQuery);
   }
 
   public boolean executeTableQuery(int id) {
-    var query = queries.get(id);
-    if (query == null) {
+    var query = tenant().registry.getTableQueryById(id);
+    if (query.isEmpty()) {
       log.error("Cannot execute table query: id not exists " + id);
       return false;
     }
 
-    tablesInvalid = true;
-    cachedTableInfos.clear();
-    try {
-      jdbcTemplate.execute(query.getQuery());
-      return true;
-    } catch (Exception e) {
-      log.error("Cannot execute table query " + id + ": " + e.getMessage());
+    return executeStatement(query.get().getTableName(), query.get().getQuery(), "Cannot execute table query " + id);
+  }
+
+  /**
+   * Executes the table query with {@code args} bound to its {@code ?} placeholders, through a cached prepared
+   * statement.
+   */
+  public boolean executeTableQuery(int id, List<Object> args) {
+    var query = tenant().registry.getTableQueryById(id);
+    if (query.isEmpty()) {
+      log.error("Cannot execute table query: id not exists " + id);
       return false;
     }
+
+    return executePrepared(query.get().getTableName(), "table query " + id, query.get().getQuery(), args);
   }
 
   public Optional<List<TableQuery>> getTableQueries(String name) {
-    if (!tableExists(name)) {
-      return Optional.empty();
-    }
-    if (!tableQueries.containsKey(name)) {
-      return Optional.of(Collections.emptyList());
-    }
-    return Optional.of(tableQueries.get(name).stream().map(queries::get).collect(Collectors.toList()));
+    return tenant().registry.getTableQueries(name, tableExists(name));
   }
 
-  public Optional<TableQuery> getTableQueryById(int id) {
-    if (!queries.containsKey(id)) {
-      return Optional.empty();
-    }
+  public Optional<List<TableQuery>> getTableQueries(String name, long from, int limit) {
+    return tenant().registry.getTableQueries(name, tableExists(name), from, limit);
+  }
 
-    return Optional.of(queries.get(id));
+  public Optional<Iterable<TableQuery>> getTableQueries(String name, long from) {
+    return tenant().registry.getTableQueries(name, tableExists(name), from);
   }
 
-  public Collection<TableQuery> getAllTableQueries() {
-    return queries.values();
+  public Optional<TableQuery> getTableQueryById(int id) {
+    return tenant().registry.getTableQueryById(id);
   }
 
-  public boolean newSingleQuery(SingleQuery query) {
-    int id = query.getId();
-    if (singleQueries.containsKey(id)) {
-      log.error("Cannot add new single query: id already exists " + id);
-      return false;
-    }
+  public List<TableQuery> getAllTableQueries() {
+    return tenant().registry.getAllTableQueries();
+  }
 
-    if (query.getQuery().length() > 120) {
-      log.error("Cannot add new single query: too big query");
-      return false;
-    }
+  public Iterable<TableQuery> getAllTableQueries(long from) {
+    return tenant().registry.getAllTableQueries(from);
+  }
 
-    singleQueries.put(id, query);
-    return true;
+  public boolean newSingleQuery(SingleQuery query) {
+    return tenant().registry.newSingleQuery(query);
   }
 
   public boolean updateSingleQuery(SingleQuery query) {
-    int id = query.getId();
-    if (!singleQueries.containsKey(id)) {
-      log.error("Cannot update single query: id not exists " + id);
-      return false;
-    }
+    return tenant().registry.updateSingleQuery(query);
+  }
 
-    if (query.getQuery().length() > 120) {
-      log.error("Cannot update single query: query too big " + query.getQuery().length());
-      singleQueries.get(id).setQuery("");
-      return false;
-    }
+  public boolean deleteSingleQuery(int id) {
+    return tenant().registry.deleteSingleQuery(id);
+  }
 
-    singleQueries.put(id, query);
-    return true;
+  public List<Boolean> newSingleQueries(List<SingleQuery> queries) {
+    return each(queries, this::newSingleQuery);
   }
 
-  public boolean deleteSingleQuery(int id) {
-    if (!singleQueries.containsKey(id)) {
-      log.error("Cannot delete single query: id not exists " + id);
-      return false;
-    }
+  public List<Boolean> updateSingleQueries(List<SingleQuery> queries) {
+    return each(queries, this::updateSingleQuery);
+  }
 
-    singleQueries.remove(id);
-    return true;
+  public List<Boolean> deleteSingleQueries(List<Integer> ids) {
+    return each(ids, this::deleteSingleQuery);
   }
 
   public boolean executeSingleQuery(int id) {
-    var query = singleQueries.get(id);
-    if (query == null) {
+    var query = tenant().registry.getSingleQueryById(id);
+    if (query.isEmpty()) {
       log.error("Cannot execute single query: id not exists " + id);
       return false;
     }
 
-    tablesInvalid = true;
-    cachedTableInfos.clear();
+    return executeStatement(null, query.get().getQuery(), "Cannot execute single query " + id);
+  }
+
+  /**
+   * Runs the stored queries, table queries first, as one JDBC batch on one connection and in one transaction:
+   * either all of them are committed or none is.
+   *
+   * @return the update count of each statement in order, or empty if an id is unknown, a query changes the schema,
+   * the queries use tables on different shards or tables that cannot be told, or the batch failed and was rolled back
+   */
+  public Optional<List<Integer>> executeBatch(List<Integer> tableQueryIds, List<Integer> singleQueryIds) {
+    var tenant = tenant();
+    var sqls = tenant.registry.getBatch(tableQueryIds, singleQueryIds);
+    var statements = sqls.flatMap(RawRepository::parseBatch);
+    if (statements.isEmpty()) {
+      return Optional.empty();
+    }
+    if (sqls.get().isEmpty()) {
+      return Optional.of(List.of());
+    }
+    var shard = route(tenant, null, statements.get());
+    if (shard.isEmpty()) {
+      log.error("Cannot execute batch: " + NOT_ROUTED);
+      return Optional.empty();
+    }
+    Optional<List<Integer>> counts;
     try {
-      jdbcTemplate.execute(query.getQuery());
-      return true;
+      var updated = shard.get().jdbcTemplate.execute((ConnectionCallback<int[]>) connection -> executeBatch(connection, sqls.get()));
+      counts = Optional.of(Arrays.stream(updated).boxed().collect(Collectors.toList()));
     } catch (Exception e) {
-      log.error("Cannot execute single query " + id + ": " + e.getMessage());
+      log.error("Cannot execute batch: " + e.getMessage());
+      counts = Optional.empty();
+    }
+    for (var statement : statements.get()) {
+      executed(tenant, shard.get(), statement, counts.isPresent());
+    }
+    return counts;
+  }
+
+  /**
+   * Runs table queries of different callers in one transaction with a single commit per shard, each routed like a
+   * table query run on its own. A failing statement is rolled back on its own, as H2 does for every statement, and
+   * does not affect the others.
+   *
+   * @return whether each query was executed and committed, in order
+   */
+  public List<Boolean> executeGrouped(List<TableQuery> queries) {
+    var tenant = tenant();
+    var sqls = queries.stream().map(TableQuery::getQuery).collect(Collectors.toList());
+    var executed = new ArrayList<>(Collections.nCopies(sqls.size(), false));
+    var statements = sqls.stream().map(SqlStatement::parse).collect(Collectors.toList());
+    var byShard = new LinkedHashMap<Shard, List<Integer>>();
+    for (int i = 0; i < sqls.size(); i++) {
+      var shard = route(tenant, queries.get(i).getTableName(), List.of(statements.get(i)));
+      if (shard.isPresent()) {
+        byShard.computeIfAbsent(shard.get(), it -> new ArrayList<>()).add(i);
+      } else {
+        log.error("Cannot execute grouped query: " + NOT_ROUTED);
+      }
+    }
+    byShard.forEach((shard, indices) -> {
+      var group = indices.stream().map(sqls::get).collect(Collectors.toList());
+      try {
+        var groupExecuted = shard.jdbcTemplate.execute(
+          (ConnectionCallback<List<Boolean>>) connection -> executeGrouped(connection, group));
+        for (int i = 0; i < indices.size(); i++) {
+          executed.set(indices.get(i), groupExecuted.get(i));
+        }
+      } catch (Exception e) {
+        log.error("Cannot commit grouped queries: " + e.getMessage());
+      }
+      for (var index : indices) {
+        executed(tenant, shard, statements.get(index), executed.get(index));
+      }
+    });
+    return executed;
+  }
+
+  /**
+   * Executes the single query with {@code args} bound to its {@code ?} placeholders, through a cached prepared
+   * statement.
+   */
+  public boolean executeSingleQuery(int id, List<Object> args) {
+    var query = tenant().registry.getSingleQueryById(id);
+    if (query.isEmpty()) {
+      log.error("Cannot execute single query: id not exists " + id);
       return false;
     }
+
+    return executePrepared(null, "single query " + id, query.get().getQuery(), args);
   }
 
   public Optional<SingleQuery> getSingleQueryById(int id) {
-    if (!singleQueries.containsKey(id)) {
-      return Optional.empty();
-    }
+    return tenant().registry.getSingleQueryById(id);
+  }
 
-    return Optional.of(singleQueries.get(id));
+  public List<SingleQuery> getAllSingleQueries() {
+    return tenant().registry.getAllSingleQueries();
   }
 
-  public Collection<SingleQuery> getAllSingleQueries() {
-    return singleQueries.values();
+  public Iterable<SingleQuery> getAllSingleQueries(long from) {
+    return tenant().registry.getAllSingleQueries(from);
   }
 
   public boolean createReport(Report<ColumnInfo> report) {
     int id = report.getId();
-    if (reports.containsKey(id)) {
+    if (tenant().registry.hasReport(id)) {
+      log.error("Cannot create report: id already exists " + id);
+      return false;
+    }
+    List<ReportTable<ColumnInfoWithSize>> mapped;
+    try {
+      mapped = withSizes(report.getTables());
+    } catch (Exception e) {
+      log.error("Failed to fetch report sizes: " + e.getMessage());
+      mapped = report.getTables().stream().map(this::withSize).collect(Collectors.toList());
+    }
+    if (!tenant().registry.addReport(new Report<>(id, report.getTableAmount(), mapped))) {
       log.error("Cannot create report: id already exists " + id);
       return false;
     }
-    var mapped = report.getTables().stream().map(this::withSize).collect(Collectors.toList());
-    reports.put(id, new Report<>(id, report.getTableAmount(), mapped));
     return true;
   }
 
   public Optional<Report<ColumnInfoWithSize>> getReportById(int id) {
-    if (!reports.containsKey(id)) {
+    var stored = tenant().registry.getReport(id);
+    if (stored.isEmpty()) {
       log.error("Cannot get report: id not exists " + id);
       return Optional.empty();
     }
-    var report = reports.get(id);
+    var report = stored.get();
+    var versions = tenant().reportCache.versions(report.getTables().stream().map(ReportTable::getName).collect(Collectors.toList()));
+    var cached = tenant().reportCache.get(id, versions);
+    if (cached.isPresent()) {
+      return cached;
+    }
     try {
-      var mapped = report.getTables().stream().map(this::updateSize).collect(Collectors.toList());
-      return Optional.of(new Report<>(id, report.getTableAmount(), mapped));
+      var tables = report.getTables().stream().map(ReportTables::withoutSize).collect(Collectors.toList());
+      var mapped = new Report<>(id, report.getTableAmount(), withSizes(tables));
+      tenant().reportCache.put(id, versions, mapped);
+      return Optional.of(mapped);
     } catch (Exception e) {
       log.error("Failed to update report");
       return Optional.of(report);
     }
   }
 
+  public CacheStats getReportCacheStats() {
+    return tenant().reportCache.stats();
+  }
+
+  public CacheStats getTableCacheStats() {
+    var shards = tenant().shards;
+    if (shards.size() == 1) {
+      return shards.get(0).catalog.stats();
+    }
+    var all = shards.stream().map(it -> it.catalog.stats()).collect(Collectors.toList());
+    long hits = all.stream().mapToLong(CacheStats::getHitCount).sum();
+    long misses = all.stream().mapToLong(CacheStats::getMissCount).sum();
+    long loads = all.stream().mapToLong(CacheStats::getLoadCount).sum();
+    long requests = hits + misses;
+    return CacheStats.builder()
+      .size(all.stream().mapToLong(CacheStats::getSize).sum())
+      .hitCount(hits)
+      .missCount(misses)
+      .hitRate(requests == 0 ? 1.0 : (double) hits / requests)
+      .missRate(requests == 0 ? 0.0 : (double) misses / requests)
+      .loadCount(loads)
+      .evictionCount(all.stream().mapToLong(CacheStats::getEvictionCount).sum())
+      .averageLoadTimeMillis(loads == 0 ? 0.0 :
+        all.stream().mapToDouble(it -> it.getAverageLoadTimeMillis() * it.getLoadCount()).sum() / loads)
+      .build();
+  }
+
   private boolean tableExists(String tableName) {
-    if (tablesInvalid) {
-      fetchTableNames();
-      tablesInvalid = false;
+    return tenant().shard(tableName).catalog.tableExists(tableName);
+  }
+
+  /**
+   * Drops every table at once, instead of one {@code DROP TABLE} and its bookkeeping per table, then empties the
+   * registries and caches. An in-memory database is swapped for a fresh one, see {@link SwappableDataSource}, anything
+   * else is emptied with {@code DROP ALL OBJECTS}, on every shard. Either way the schemas of all {@link Tenants} go
+   * with it.
+   * <p>
+   * A tenant is reset on its own instead, by moving it to a fresh schema from the pool.
+   *
+   * @return how long the reset took
+   */
+  public Duration clear() {
+    long start = System.nanoTime();
+    var tenant = tenant();
+    if (!tenant.isDefault()) {
+      tenants.reset(tenant);
+      return reset(tenant.name, start);
+    }
+    for (var shard : tenant.shards) {
+      shard.counters.clear();
+      if (shard.database != null) {
+        shard.database.swap();
+      } else {
+        shard.jdbcTemplate.execute("DROP ALL OBJECTS");
+      }
     }
-    return cachedTableNames.contains(tableName.toUpperCase());
+    tenants.cleared();
+    tenant.shards.forEach(it -> it.catalog.invalidateAll());
+    tenant.reportCache.clear();
+    tenant.registry.clear();
+    return reset("database", start);
+  }
+
+  private static Duration reset(String name, long start) {
+    var took = Duration.ofNanos(System.nanoTime() - start);
+    log.info("Reset " + name + " in " + took.toMillis() + " ms");
+    return took;
+  }
+
+  private Tenant tenant() {
+    return tenants.current();
   }
 
-  private void fetchTableNames() {
-    cachedTableNames.clear();
+  private static <T> List<Boolean> each(List<T> items, Predicate<T> action) {
+    var results = new ArrayList<Boolean>(items.size());
+    for (var item : items) {
+      results.add(action.test(item));
+    }
+    return results;
+  }
+
+  /**
+   * @param table the table of a table query, or null
+   */
+  private boolean executeStatement(String table, String sql, String error) {
+    var tenant = tenant();
+    var statement = SqlStatement.parse(sql);
+    var shard = route(tenant, table, List.of(statement));
+    if (shard.isEmpty()) {
+      log.error(error + ": " + NOT_ROUTED);
+      return false;
+    }
+    boolean executed;
     try {
-      cachedTableNames.addAll(jdbcTemplate.query("SHOW TABLES", new TableMapper()));
-    } catch (Exception ignore) {
+      shard.get().jdbcTemplate.execute(sql);
+      executed = true;
+    } catch (Exception e) {
+      log.error(error + ": " + e.getMessage());
+      executed = false;
     }
+    executed(tenant, shard.get(), statement, executed);
+    return executed;
   }
 
-  public void clear() {
-    fetchTableNames();
-    reports.clear();
-    queries.clear();
-    singleQueries.clear();
-    tableQueries.clear();
-    for (var table : cachedTableNames) {
-      dropTable(table);
+  private boolean executePrepared(String table, String key, String sql, List<Object> args) {
+    var tenant = tenant();
+    var statement = SqlStatement.parse(sql);
+    var shard = route(tenant, table, List.of(statement));
+    if (shard.isEmpty()) {
+      log.error("Cannot execute " + key + ": " + NOT_ROUTED);
+      return false;
+    }
+    boolean executed;
+    try {
+      executed = Boolean.TRUE.equals(shard.get().jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+        statements.execute(connection, tenant.statementKey(key), sql, args)));
+    } catch (Exception e) {
+      log.error("Cannot execute " + key + ": " + e.getMessage());
+      executed = false;
     }
-    cachedTableNames.clear();
-    cachedTableInfos.clear();
+    executed(tenant, shard.get(), statement, executed);
+    return executed;
   }
 
-  private ReportTable<ColumnInfoWithSize> withSize(ReportTable<ColumnInfo> table) {
-    var mapped = table.getColumns().stream().map(c -> {
-      try {
-        return withSize(c, table.getName());
-      } catch (Exception e) {
-        log.error("Failed to fetch column size: " + c.getName() + " from " + c.getType() + ": " + e);
-        return new ColumnInfoWithSize(c.getName(), c.getType(), "0");
+  /**
+   * The shard statements run on: the one of the table query's {@code table}, if given, and of every table the
+   * statements read or write. Statements that name no table at all, like {@code select 1}, run on the first shard.
+   *
+   * @return empty if there are several shards and the tables are on different ones, or the parser cannot tell
+   * which tables a statement uses: no statement can span shards
+   */
+  private static Optional<Shard> route(Tenant tenant, String table, List<SqlStatement> statements) {
+    if (tenant.shards.size() == 1) {
+      return Optional.of(tenant.shards.get(0));
+    }
+    var tables = new HashSet<String>();
+    if (table != null) {
+      tables.add(table);
+    }
+    for (var statement : statements) {
+      if (!statement.isTablesKnown()) {
+        return Optional.empty();
+      }
+      tables.addAll(statement.getReferences());
+    }
+    if (tables.isEmpty()) {
+      return Optional.of(tenant.shards.get(0));
+    }
+    Shard shard = null;
+    for (var name : tables) {
+      var owner = tenant.shard(name);
+      if (shard != null && owner != shard) {
+        return Optional.empty();
       }
-    }).collect(Collectors.toList());
-    return new ReportTable<>(table.getName(), mapped);
+      shard = owner;
+    }
+    return Optional.of(shard);
   }
 
-  private ReportTable<ColumnInfoWithSize> updateSize(ReportTable<ColumnInfoWithSize> table) {
-    var mapped = table.getColumns().stream()
-      .map(c -> new ColumnInfo(c.getName(), c.getType()))
-      .map(c -> withSize(c, table.getName()))
-      .collect(Collectors.toList());
-    return new ReportTable<>(table.getName(), mapped);
+  /**
+   * Drops what the statement may have made stale: cached table infos, report counters and reports.
+   */
+  private static void executed(Tenant tenant, Shard shard, SqlStatement statement, boolean executed) {
+    shard.catalog.invalidate(statement);
+    shard.counters.invalidate(statement, executed);
+    tenant.reportCache.written(statement);
   }
 
-  private ColumnInfoWithSize withSize(ColumnInfo column, String tableName) {
-    var size = jdbcTemplate.query("select count(" + column.getName() + ") from " + tableName, new CountExtractor());
-    return new ColumnInfoWithSize(column.getName(), column.getType(), size);
+  private static int[] executeBatch(Connection connection, List<String> sqls) throws SQLException {
+    boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    try (var statement = connection.createStatement()) {
+      for (var sql : sqls) {
+        statement.addBatch(sql);
+      }
+      var updated = statement.executeBatch();
+      connection.commit();
+      return updated;
+    } catch (SQLException | RuntimeException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(autoCommit);
+    }
   }
 
-  private String buildCreateTableQuery(DBTable table) {
-    var builder = new StringBuilder("CREATE TABLE ");
-    builder.append(table.getName()).append(" (");
-    for (var column : table.getColumnInfos()) {
-      builder.append(column.getName()).append(" ").append(column.getType());
-      if (column.getName().equals(table.getPrimaryKey())) {
-        builder.append(" PRIMARY KEY");
+  private static List<Boolean> executeGrouped(Connection connection, List<String> sqls) throws SQLException {
+    boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    try (var statement = connection.createStatement()) {
+      var executed = new ArrayList<Boolean>(sqls.size());
+      for (var sql : sqls) {
+        try {
+          statement.execute(sql);
+          executed.add(true);
+        } catch (SQLException e) {
+          log.error("Cannot execute grouped query: " + e.getMessage());
+          executed.add(false);
+        }
       }
-      builder.append(", ");
+      connection.commit();
+      return executed;
+    } catch (SQLException | RuntimeException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(autoCommit);
     }
-    builder.deleteCharAt(builder.length() - 2).append(");");
-    return builder.toString();
   }
 
-  private static class ColumnMapper implements RowMapper<ColumnWithKey> {
-
-    @Override
-    public ColumnWithKey mapRow(ResultSet rs, int rowNum) throws SQLException {
-      ColumnInfo column = new ColumnInfo();
-      column.setName(rs.getString("COLUMN_NAME"));
-      column.setType(rs.getString("TYPE").replaceAll("\\(\\d+\\)", ""));
-      return new ColumnWithKey(column, rs.getString("KEY").equals("PRI"));
+  /**
+   * Classifies the statements of a batch. Schema changes are refused: H2 commits DDL implicitly, which would break
+   * the transaction of the batch.
+   */
+  static Optional<List<SqlStatement>> parseBatch(List<String> sqls) {
+    var statements = new ArrayList<SqlStatement>(sqls.size());
+    for (var sql : sqls) {
+      var statement = SqlStatement.parse(sql);
+      if (statement.isSchemaChange()) {
+        log.error("Cannot execute batch: schema change in '" + sql + "'");
+        return Optional.empty();
+      }
+      statements.add(statement);
     }
+    return Optional.of(statements);
   }
 
-  private static class TableMapper implements RowMapper<String> {
+  /**
+   * Sizes from the report counters where they can be used, the rest from one scan per shard.
+   */
+  private List<ReportTable<ColumnInfoWithSize>> withSizes(List<ReportTable<ColumnInfo>> tables) {
+    var tenant = tenant();
+    var sizes = new ArrayList<List<String>>();
+    var scanned = new LinkedHashMap<Shard, List<Integer>>();
+    for (var table : tables) {
+      var names = ReportTables.columnNames(table);
+      var shard = tenant.shard(table.getName());
+      var counted = shard.catalog.tableExists(table.getName()) ? shard.counters.counts(names) : Optional.<List<String>>empty();
+      if (counted.isEmpty()) {
+        scanned.computeIfAbsent(shard, it -> new ArrayList<>()).add(sizes.size());
+      }
+      sizes.add(counted.orElse(null));
+    }
+    scanned.forEach((shard, indices) -> {
+      var names = indices.stream().map(it -> ReportTables.columnNames(tables.get(it))).collect(Collectors.toList());
+      var scannedSizes = shard.sizer.countAll(names).iterator();
+      for (var index : indices) {
+        sizes.set(index, scannedSizes.next());
+      }
+    });
 
-    @Override
-    public String mapRow(ResultSet rs, int rowNum) throws SQLException {
-      return rs.getString("TABLE_NAME");
+    var mapped = new ArrayList<ReportTable<ColumnInfoWithSize>>();
+    for (int i = 0; i < tables.size(); i++) {
+      mapped.add(ReportTables.withSize(tables.get(i), sizes.get(i)));
     }
+    return mapped;
   }
 
-  private static class CountExtractor implements ResultSetExtractor<String> {
-    @Override
-    public String extractData(ResultSet rs) throws SQLException, DataAccessException {
-      rs.next();
-      return rs.getString(1);
+  /**
+   * Sizes the columns of one table in one scan, or else one scan per column: a column that cannot be counted gets
+   * {@code "0"} without taking the others with it.
+   */
+  private ReportTable<ColumnInfoWithSize> withSize(ReportTable<ColumnInfo> table) {
+    var sizer = tenant().shard(table.getName()).sizer;
+    try {
+      return ReportTables.withSize(table, sizer.count(ReportTables.columnNames(table)));
+    } catch (Exception e) {
+      log.error("Failed to fetch column sizes from " + table.getName() + ": " + e);
     }
+    var sizes = new ArrayList<String>();
+    for (var column : table.getColumns()) {
+      try {
+        sizes.add(sizer.count(new ReportTable<>(table.getName(), List.of(column.getName()))).get(0));
+      } catch (Exception e) {
+        log.error("Failed to fetch column size: " + column.getName() + " from " + table.getName() + ": " + e);
+        sizes.add("0");
+      }
+    }
+    return ReportTables.withSize(table, sizes);
   }
 
-  @Data
-  @AllArgsConstructor
-  private static class ColumnWithKey {
-    ColumnInfo info;
-    boolean isPrimary;
+  static String buildCreateTableQuery(DBTable table) {
+    var builder = new StringBuilder("CREATE TABLE ");
+    builder.append(table.getName()).append(" (");
+    for (var column : table.getColumnInfos()) {
+      builder.append(column.getName()).append(" ").append(column.getType());
+      if (column.getName().equals(table.getPrimaryKey())) {
+        builder.append(" PRIMARY KEY");
+      }
+      builder.append(", ");
+    }
+    builder.deleteCharAt(builder.length() - 2).append(");");
+    return builder.toString();
   }
 }
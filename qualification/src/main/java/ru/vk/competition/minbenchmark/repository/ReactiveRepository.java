@@ -0,0 +1,120 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.entity.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Persistence contract used by the services. The implementation is chosen with
+ * {@code minbenchmark.persistence.mode}: {@code jdbc} (default, {@link JdbcReactiveRepository}) or
+ * {@code r2dbc} ({@link R2dbcRepository}).
+ */
+public interface ReactiveRepository {
+
+  Mono<Boolean> createTable(DBTable table);
+
+  Mono<Boolean> dropTable(String name);
+
+  Mono<Optional<DBTable>> getTableInfo(String name);
+
+  Mono<Optional<List<ColumnInfo>>> mapColumnTypes(List<ColumnInfo> infos);
+
+  Mono<CacheStats> getTableCacheStats();
+
+  Mono<Boolean> newTableQuery(TableQuery query);
+
+  Mono<Boolean> updateTableQuery(TableQuery query);
+
+  Mono<Boolean> deleteTableQuery(int id);
+
+  /**
+   * Adds the queries in order, as {@link #newTableQuery} would one by one; the result of each is at its index.
+   */
+  Mono<List<Boolean>> newTableQueries(List<TableQuery> queries);
+
+  Mono<List<Boolean>> updateTableQueries(List<TableQuery> queries);
+
+  Mono<List<Boolean>> deleteTableQueries(List<Integer> ids);
+
+  Mono<Boolean> executeTableQuery(int id);
+
+  /**
+   * Executes the table query with {@code args} bound to its {@code ?} placeholders in order.
+   */
+  Mono<Boolean> executeTableQuery(int id, List<Object> args);
+
+  Mono<Optional<List<TableQuery>>> getTableQueries(String name);
+
+  /**
+   * At most {@code limit} table queries of {@code name} with ids {@code >= from}, ascending; empty if there is no
+   * such table.
+   */
+  Mono<Optional<List<TableQuery>>> getTableQueries(String name, long from, int limit);
+
+  /**
+   * Table queries of {@code name} with ids {@code >= from}, ascending, emitted on demand from one snapshot of the
+   * table's queries; none if there is no such table.
+   */
+  Flux<TableQuery> streamTableQueries(String name, long from);
+
+  Mono<Optional<TableQuery>> getTableQueryById(int id);
+
+  Mono<List<TableQuery>> getAllTableQueries();
+
+  /**
+   * Table queries with ids {@code >= from}, ascending, emitted on demand from one snapshot of the registry.
+   */
+  Flux<TableQuery> streamAllTableQueries(long from);
+
+  Mono<Boolean> newSingleQuery(SingleQuery query);
+
+  Mono<Boolean> updateSingleQuery(SingleQuery query);
+
+  Mono<Boolean> deleteSingleQuery(int id);
+
+  Mono<List<Boolean>> newSingleQueries(List<SingleQuery> queries);
+
+  Mono<List<Boolean>> updateSingleQueries(List<SingleQuery> queries);
+
+  Mono<List<Boolean>> deleteSingleQueries(List<Integer> ids);
+
+  Mono<Boolean> executeSingleQuery(int id);
+
+  /**
+   * Executes the single query with {@code args} bound to its {@code ?} placeholders in order.
+   */
+  Mono<Boolean> executeSingleQuery(int id, List<Object> args);
+
+  /**
+   * Executes the stored table queries, then the single queries, in one transaction.
+   *
+   * @return the update count of each statement, or empty if nothing was committed
+   */
+  Mono<Optional<List<Integer>>> executeBatch(List<Integer> tableQueryIds, List<Integer> singleQueryIds);
+
+  Mono<Optional<SingleQuery>> getSingleQueryById(int id);
+
+  Mono<List<SingleQuery>> getAllSingleQueries();
+
+  /**
+   * Single queries with ids {@code >= from}, ascending, emitted on demand from one snapshot of the registry.
+   */
+  Flux<SingleQuery> streamAllSingleQueries(long from);
+
+  Mono<Boolean> createReport(Report<ColumnInfo> report);
+
+  Mono<Optional<Report<ColumnInfoWithSize>>> getReportById(int id);
+
+  Mono<CacheStats> getReportCacheStats();
+
+  /**
+   * Drops all tables and empties the registries.
+   *
+   * @return how long it took
+   */
+  Mono<Duration> clear();
+}
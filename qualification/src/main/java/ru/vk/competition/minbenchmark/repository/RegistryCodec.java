@@ -0,0 +1,194 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import ru.vk.competition.minbenchmark.entity.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Binary encoding of registry entries shared by {@link RegistrySnapshot} and {@link RegistryLog}, big-endian.
+ * A table query is its id, table name and query; a single query is its id and query; a report is its id, table amount
+ * and table count, each table its name and column count, each column its name, type and size. A string is its UTF-8
+ * length and bytes, -1 for null.
+ * <p>
+ * Sizes are computed without encoding, so that a buffer can be sized exactly before anything is written to it.
+ */
+final class RegistryCodec {
+
+  private RegistryCodec() {
+  }
+
+  static long sizeOf(TableQuery query) {
+    return Integer.BYTES + sizeOf(query.getTableName()) + sizeOf(query.getQuery());
+  }
+
+  static void put(ByteBuffer buffer, TableQuery query) {
+    buffer.putInt(query.getId());
+    putString(buffer, query.getTableName());
+    putString(buffer, query.getQuery());
+  }
+
+  static long sizeOf(SingleQuery query) {
+    return Integer.BYTES + sizeOf(query.getQuery());
+  }
+
+  static void put(ByteBuffer buffer, SingleQuery query) {
+    buffer.putInt(query.getId());
+    putString(buffer, query.getQuery());
+  }
+
+  static long sizeOf(Report<ColumnInfoWithSize> report) {
+    long size = 3L * Integer.BYTES;
+    for (var table : report.getTables()) {
+      size += sizeOf(table.getName()) + Integer.BYTES;
+      for (var column : table.getColumns()) {
+        size += sizeOf(column.getName()) + sizeOf(column.getType()) + sizeOf(column.getSize());
+      }
+    }
+    return size;
+  }
+
+  static void put(ByteBuffer buffer, Report<ColumnInfoWithSize> report) {
+    buffer.putInt(report.getId()).putInt(report.getTableAmount()).putInt(report.getTables().size());
+    for (var table : report.getTables()) {
+      putString(buffer, table.getName());
+      buffer.putInt(table.getColumns().size());
+      for (var column : table.getColumns()) {
+        putString(buffer, column.getName());
+        putString(buffer, column.getType());
+        putString(buffer, column.getSize());
+      }
+    }
+  }
+
+  static long sizeOf(String value) {
+    long size = Integer.BYTES;
+    if (value == null) {
+      return size;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        size += 1;
+      } else if (c < 0x800) {
+        size += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+        size += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        size += 1;
+      } else {
+        size += 3;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Encodes UTF-8 right into the buffer, as {@link String#getBytes} would: an unpaired surrogate becomes '?'.
+   */
+  static void putString(ByteBuffer buffer, String value) {
+    if (value == null) {
+      buffer.putInt(-1);
+      return;
+    }
+    int lengthAt = buffer.position();
+    buffer.putInt(0);
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        buffer.put((byte) c);
+      } else if (c < 0x800) {
+        buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int code = Character.toCodePoint(c, value.charAt(++i));
+        buffer.put((byte) (0xF0 | code >> 18)).put((byte) (0x80 | code >> 12 & 0x3F))
+          .put((byte) (0x80 | code >> 6 & 0x3F)).put((byte) (0x80 | code & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        buffer.put((byte) '?');
+      } else {
+        buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+      }
+    }
+    buffer.putInt(lengthAt, buffer.position() - lengthAt - Integer.BYTES);
+  }
+
+  /**
+   * Decodes entries in place from a buffer, typically a mapped file. Strings go through one reused scratch array, the
+   * only copy before the {@link String} itself. Names that repeat across entries (tables, columns, types) are looked
+   * up by their bytes first, so that each distinct one is allocated once instead of once per entry.
+   */
+  static final class Reader {
+    private static final int SHARED_LENGTH = 64;
+
+    private final ByteBuffer buffer;
+    private final String[] shared = new String[1024];
+    private final byte[][] sharedBytes = new byte[shared.length][];
+    private byte[] scratch = new byte[256];
+
+    Reader(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    TableQuery tableQuery() {
+      return new TableQuery(buffer.getInt(), sharedString(), string());
+    }
+
+    SingleQuery singleQuery() {
+      return new SingleQuery(buffer.getInt(), string());
+    }
+
+    Report<ColumnInfoWithSize> report() {
+      int id = buffer.getInt();
+      int tableAmount = buffer.getInt();
+      int tableCount = buffer.getInt();
+      var tables = new ArrayList<ReportTable<ColumnInfoWithSize>>(tableCount);
+      for (int i = 0; i < tableCount; i++) {
+        var name = sharedString();
+        int columnCount = buffer.getInt();
+        var columns = new ArrayList<ColumnInfoWithSize>(columnCount);
+        for (int j = 0; j < columnCount; j++) {
+          columns.add(new ColumnInfoWithSize(sharedString(), sharedString(), string()));
+        }
+        tables.add(new ReportTable<>(name, columns));
+      }
+      return new Report<>(id, tableAmount, tables);
+    }
+
+    String string() {
+      int length = buffer.getInt();
+      if (length < 0) {
+        return null;
+      }
+      if (length > scratch.length) {
+        scratch = new byte[Math.max(length, scratch.length * 2)];
+      }
+      buffer.get(scratch, 0, length);
+      return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    String sharedString() {
+      int length = buffer.getInt(buffer.position());
+      if (length < 0 || length > SHARED_LENGTH) {
+        return string();
+      }
+      int start = buffer.position() + Integer.BYTES;
+      int hash = length;
+      for (int i = 0; i < length; i++) {
+        hash = 31 * hash + buffer.get(start + i);
+      }
+      int slot = (hash ^ hash >>> 16) & (shared.length - 1);
+      var bytes = sharedBytes[slot];
+      if (bytes != null && bytes.length == length && buffer.slice(start, length).equals(ByteBuffer.wrap(bytes))) {
+        buffer.position(start + length);
+        return shared[slot];
+      }
+      var value = string();
+      sharedBytes[slot] = Arrays.copyOf(scratch, length);
+      shared[slot] = value;
+      return value;
+    }
+  }
+}
@@ -0,0 +1,324 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of the {@link QueryRegistry}: every change is appended as its resulting state, and replayed on top
+ * of the {@link RegistrySnapshot} at startup. Disabled unless {@code minbenchmark.registry.log.path} is set.
+ * <p>
+ * Appending only encodes the record into a memory buffer, under the registry lock that orders it. Callers that need
+ * the change to be durable wait on {@link #sync()}: one flusher thread writes everything buffered so far and forces it
+ * with one fsync, then releases every caller it covered. Changes arriving during an fsync go to the next one, so
+ * concurrent requests share fsyncs instead of queueing for one each.
+ * <p>
+ * A record is its sequence number, body length, CRC32 of the body, and the body, see {@link RegistryRecords}.
+ * Replay stops at the first incomplete or damaged record, a write torn by a crash, and cuts it off. After each
+ * snapshot, the records it already contains are dropped from the log.
+ * <p>
+ * A failed write or fsync fails the log for good: whatever part of the batch reached the file is unknown, so no later
+ * record could be made durable behind it. Every {@link #sync()} for a change made since fails, and changes are no
+ * longer buffered.
+ */
+@Slf4j
+@Component
+public class RegistryLog extends RegistryRecords {
+  private static final int MAGIC = 0x4D42524C;
+  private static final int VERSION = 1;
+  private static final int HEADER = 2 * Integer.BYTES;
+  private static final int RECORD_HEADER = Long.BYTES + 2 * Integer.BYTES;
+
+  private final QueryRegistry registry;
+  private final Path path;
+
+  private final ReentrantLock appendLock = new ReentrantLock();
+  private final CRC32 crc = new CRC32();
+  private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+  private volatile long appended;
+
+  private final ReentrantLock fileLock = new ReentrantLock();
+  private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+  private FileChannel channel;
+  private volatile long durable;
+  private volatile IOException failure;
+
+  private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean flushing = new AtomicBoolean();
+  private Scheduler scheduler;
+
+  public RegistryLog(QueryRegistry registry, @Value("${minbenchmark.registry.log.path:}") String path) {
+    this.registry = registry;
+    this.path = path.isEmpty() ? null : Path.of(path);
+  }
+
+  public boolean isEnabled() {
+    return path != null;
+  }
+
+  /**
+   * Replays the log into the registry, then starts logging its changes. Called by {@link RegistrySnapshot} once the
+   * snapshot is restored.
+   */
+  void recover() throws IOException {
+    if (!isEnabled()) {
+      return;
+    }
+    long last = Files.exists(path) ? replay() : 0;
+    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    if (channel.size() < HEADER) {
+      channel.truncate(0);
+      channel.write(ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).flip());
+      channel.force(true);
+    }
+    channel.position(channel.size());
+    appended = last;
+    durable = last;
+    scheduler = Schedulers.newSingle("registry-log");
+    registry.addJournal(this);
+  }
+
+  /**
+   * @return the sequence number of the last record applied
+   */
+  private long replay() throws IOException {
+    long last = 0;
+    int records = 0;
+    try (var file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      if (file.size() < HEADER) {
+        return 0;
+      }
+      var buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new IOException("Not a registry log of version " + VERSION + ": " + path);
+      }
+      var reader = new RegistryCodec.Reader(buffer);
+      var crc = new CRC32();
+      while (buffer.remaining() >= RECORD_HEADER) {
+        int start = buffer.position();
+        long sequence = buffer.getLong();
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+          buffer.position(start);
+          break;
+        }
+        crc.reset();
+        crc.update(buffer.slice(buffer.position(), length));
+        if ((int) crc.getValue() != checksum) {
+          buffer.position(start);
+          break;
+        }
+        byte type = buffer.get();
+        if (!apply(registry, type, reader, buffer)) {
+          throw new IOException("Unknown registry log record " + type + " in " + path);
+        }
+        last = sequence;
+        records++;
+      }
+      if (buffer.hasRemaining()) {
+        log.warn("Registry log " + path + " ends with " + buffer.remaining() + " bytes of an incomplete record, cut off");
+        file.truncate(buffer.position());
+      }
+    }
+    log.info("Registry log " + path + ": " + records + " records replayed");
+    return last;
+  }
+
+  @Override
+  void append(byte type, long size, Consumer<ByteBuffer> body) {
+    if (failure != null) {
+      return;
+    }
+    int length = (int) (1 + size);
+    appendLock.lock();
+    try {
+      if (pending.remaining() < RECORD_HEADER + length) {
+        var grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + RECORD_HEADER + length));
+        pending = grown.put(pending.flip());
+      }
+      long sequence = appended + 1;
+      pending.putLong(sequence).putInt(length);
+      int checksumAt = pending.position();
+      pending.putInt(0);
+      int start = pending.position();
+      pending.put(type);
+      body.accept(pending);
+      crc.reset();
+      crc.update(pending.array(), start, length);
+      pending.putInt(checksumAt, (int) crc.getValue());
+      appended = sequence;
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  /**
+   * Completes once every change made before the call is on disk; at once if the log is disabled. Fails if the log
+   * has failed before those changes were on disk.
+   */
+  public Mono<Void> sync() {
+    if (!isEnabled()) {
+      return Mono.empty();
+    }
+    return Mono.create(sink -> {
+      long target = appended;
+      if (durable >= target) {
+        sink.success();
+        return;
+      }
+      if (failure != null) {
+        sink.error(failure);
+        return;
+      }
+      waiters.add(new Waiter(target, sink));
+      if (flushing.compareAndSet(false, true)) {
+        scheduler.schedule(this::flush);
+      }
+    });
+  }
+
+  /**
+   * {@code result}, delayed until the change that produced it is durable.
+   */
+  public <T> Mono<T> durable(Mono<T> result) {
+    return isEnabled() ? result.flatMap(it -> sync().thenReturn(it)) : result;
+  }
+
+  /**
+   * Runs while holding {@code flushing}; loops as long as callers keep arriving during the fsync.
+   */
+  private void flush() {
+    while (true) {
+      long upTo;
+      ByteBuffer batch;
+      appendLock.lock();
+      try {
+        upTo = appended;
+        batch = pending;
+        pending = spare;
+      } finally {
+        appendLock.unlock();
+      }
+
+      fileLock.lock();
+      try {
+        if (failure == null) {
+          write(batch.flip());
+          durable = upTo;
+        }
+      } catch (IOException e) {
+        log.error("Cannot write registry log " + path + ", registry changes are not durable any more", e);
+        failure = e;
+      } finally {
+        fileLock.unlock();
+      }
+      spare = batch.clear();
+      if (failure != null) {
+        for (var waiter = waiters.poll(); waiter != null; waiter = waiters.poll()) {
+          waiter.sink.error(failure);
+        }
+      }
+
+      for (var iterator = waiters.iterator(); iterator.hasNext(); ) {
+        var waiter = iterator.next();
+        if (waiter.target <= durable) {
+          iterator.remove();
+          waiter.sink.success();
+        }
+      }
+
+      flushing.set(false);
+      if (waiters.isEmpty() || !flushing.compareAndSet(false, true)) {
+        return;
+      }
+    }
+  }
+
+  void write(ByteBuffer batch) throws IOException {
+    while (batch.hasRemaining()) {
+      channel.write(batch);
+    }
+    channel.force(false);
+  }
+
+  /**
+   * The sequence number of the last change made; every change up to it is in the registry already.
+   */
+  long mark() {
+    return appended;
+  }
+
+  /**
+   * Drops the records up to {@code mark}, once a snapshot containing them is on disk. The records after it are copied
+   * to a new log that atomically replaces the old one.
+   */
+  void truncate(long mark) {
+    if (!isEnabled()) {
+      return;
+    }
+    var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    fileLock.lock();
+    try {
+      long from = HEADER;
+      var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      while (from + RECORD_HEADER <= buffer.limit() && buffer.getLong((int) from) <= mark) {
+        from += RECORD_HEADER + buffer.getInt((int) from + Long.BYTES);
+      }
+      try (var copy = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+        copy.write(ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).flip());
+        channel.transferTo(from, channel.size() - from, copy);
+        copy.force(true);
+      }
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      channel.close();
+      channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      channel.position(channel.size());
+    } catch (IOException e) {
+      log.error("Cannot truncate registry log " + path, e);
+    } finally {
+      fileLock.unlock();
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    if (!isEnabled() || channel == null) {
+      return;
+    }
+    registry.removeJournal(this);
+    while (!flushing.compareAndSet(false, true)) {
+      Thread.onSpinWait();
+    }
+    flush();
+    scheduler.dispose();
+    channel.close();
+  }
+
+  @AllArgsConstructor
+  private static class Waiter {
+    final long target;
+    final MonoSink<Void> sink;
+  }
+}
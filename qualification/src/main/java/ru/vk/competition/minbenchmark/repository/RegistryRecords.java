@@ -0,0 +1,89 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import ru.vk.competition.minbenchmark.entity.ColumnInfoWithSize;
+import ru.vk.competition.minbenchmark.entity.Report;
+import ru.vk.competition.minbenchmark.entity.SingleQuery;
+import ru.vk.competition.minbenchmark.entity.TableQuery;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * A {@link QueryRegistry.Journal} that turns every change into a record: a type byte and the entry in
+ * {@link RegistryCodec} format. Shared by the {@link RegistryLog}, which appends the records to a file, and the
+ * {@link RegistryReplication}, which sends them to peers; both apply them back with {@link #apply}.
+ */
+abstract class RegistryRecords implements QueryRegistry.Journal {
+  static final byte TABLE_QUERY_PUT = 1;
+  static final byte TABLE_QUERY_REMOVED = 2;
+  static final byte TABLE_DROPPED = 3;
+  static final byte SINGLE_QUERY_PUT = 4;
+  static final byte SINGLE_QUERY_REMOVED = 5;
+  static final byte REPORT_ADDED = 6;
+  static final byte CLEARED = 7;
+
+  /**
+   * Called under the lock stripe that orders the change, like the journal methods.
+   *
+   * @param size the size of the record body, the type byte excluded
+   * @param body writes the record body
+   */
+  abstract void append(byte type, long size, Consumer<ByteBuffer> body);
+
+  /**
+   * Applies a record read from {@code buffer}, which is left past it.
+   *
+   * @return false if the type is unknown; nothing is read then
+   */
+  static boolean apply(QueryRegistry registry, byte type, RegistryCodec.Reader reader, ByteBuffer buffer) {
+    switch (type) {
+      case TABLE_QUERY_PUT -> registry.replay(reader.tableQuery());
+      case TABLE_QUERY_REMOVED -> registry.replayTableQueryRemoved(buffer.getInt());
+      case TABLE_DROPPED -> registry.tableDropped(reader.string());
+      case SINGLE_QUERY_PUT -> registry.replay(reader.singleQuery());
+      case SINGLE_QUERY_REMOVED -> registry.replaySingleQueryRemoved(buffer.getInt());
+      case REPORT_ADDED -> registry.replay(reader.report());
+      case CLEARED -> registry.clear();
+      default -> {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void tableQueryPut(TableQuery query) {
+    append(TABLE_QUERY_PUT, RegistryCodec.sizeOf(query), buffer -> RegistryCodec.put(buffer, query));
+  }
+
+  @Override
+  public void tableQueryRemoved(int id) {
+    append(TABLE_QUERY_REMOVED, Integer.BYTES, buffer -> buffer.putInt(id));
+  }
+
+  @Override
+  public void tableDropped(String name) {
+    append(TABLE_DROPPED, RegistryCodec.sizeOf(name), buffer -> RegistryCodec.putString(buffer, name));
+  }
+
+  @Override
+  public void singleQueryPut(SingleQuery query) {
+    append(SINGLE_QUERY_PUT, RegistryCodec.sizeOf(query), buffer -> RegistryCodec.put(buffer, query));
+  }
+
+  @Override
+  public void singleQueryRemoved(int id) {
+    append(SINGLE_QUERY_REMOVED, Integer.BYTES, buffer -> buffer.putInt(id));
+  }
+
+  @Override
+  public void reportAdded(Report<ColumnInfoWithSize> report) {
+    append(REPORT_ADDED, RegistryCodec.sizeOf(report), buffer -> RegistryCodec.put(buffer, report));
+  }
+
+  @Override
+  public void cleared() {
+    append(CLEARED, 0, buffer -> {
+    });
+  }
+}
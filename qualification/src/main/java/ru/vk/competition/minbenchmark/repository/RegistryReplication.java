@@ -0,0 +1,453 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.vk.competition.minbenchmark.entity.ColumnInfoWithSize;
+import ru.vk.competition.minbenchmark.entity.Report;
+import ru.vk.competition.minbenchmark.entity.SingleQuery;
+import ru.vk.competition.minbenchmark.entity.TableQuery;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Replicates the {@link QueryRegistry} between nodes over TCP, so that several instances behind one balancer serve the
+ * same stored queries and reports. Disabled unless {@code minbenchmark.registry.replication.port} is set; 0 listens on
+ * any free port.
+ * <p>
+ * The protocol has no authentication: anyone who can connect may read the registries. So the port listens on
+ * {@code bind-address}, loopback unless set, which should only ever be an interface the peers share on a trusted
+ * network.
+ * <p>
+ * Every node publishes its own changes and follows each of its {@code peers} over a connection of its own, so the
+ * nodes form a full mesh. A change from a peer is applied and written to the {@link RegistryLog}, but not passed on.
+ * The changes travel as {@link RegistryRecords}, resulting states numbered in the order the registry made them; the
+ * last {@code backlog} records are kept in memory for followers to catch up from.
+ * <p>
+ * A follower connects with the epoch of the publisher, drawn at random when it starts, and the sequence number of the
+ * last record it applied. Unless the publisher is the same run and still has the records after it, the follower gets
+ * a {@link RegistrySnapshot} of the publisher's registry first, taken after the sequence number sent along, then the
+ * records from there on. The snapshot holds only the entries last changed on the publisher itself, so that it cannot
+ * bring back an older copy of what the follower changed since, and it is merged: its entries are put, nothing is
+ * removed. A publisher drops a follower that falls behind the backlog, which then reconnects for a snapshot; a lost
+ * connection is retried every {@code retry}.
+ * <p>
+ * Changes to one id on two nodes are not ordered against each other: each node keeps whichever reached it last, so
+ * the changes of an id should go to one node. Neither are deletions made on a peer during a gap longer than the
+ * backlog, which the merged snapshot cannot carry. Only the registries of the default tenant are replicated, not the
+ * tables themselves.
+ */
+@Slf4j
+@Component
+@DependsOn("registrySnapshot")
+public class RegistryReplication extends RegistryRecords {
+  private static final int MAGIC = 0x4D425250;
+  private static final int BATCH = 1024;
+  private static final int CONNECTIONS = 256;
+  private static final ThreadLocal<Boolean> APPLYING = ThreadLocal.withInitial(() -> false);
+
+  private final QueryRegistry registry;
+  private final int port;
+  private final String bindAddress;
+  private final List<String> peers;
+  private final Duration retry;
+  private final long epoch = ThreadLocalRandom.current().nextLong();
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition appended = lock.newCondition();
+  private final byte[][] backlog;
+  private long last;
+
+  // ids last changed by a peer, left out of snapshots
+  private final IntMap<Boolean> replicatedTableQueries = new IntMap<>();
+  private final IntMap<Boolean> replicatedSingleQueries = new IntMap<>();
+  private final IntMap<Boolean> replicatedReports = new IntMap<>();
+
+  private final Set<AutoCloseable> connections = ConcurrentHashMap.newKeySet();
+  private volatile boolean stopped;
+  private ServerSocket server;
+  private Scheduler scheduler;
+
+  public RegistryReplication(QueryRegistry registry,
+                             @Value("${minbenchmark.registry.replication.port:-1}") int port,
+                             @Value("${minbenchmark.registry.replication.bind-address:127.0.0.1}") String bindAddress,
+                             @Value("${minbenchmark.registry.replication.peers:}") String peers,
+                             @Value("${minbenchmark.registry.replication.backlog:100000}") int backlog,
+                             @Value("${minbenchmark.registry.replication.retry:1s}") Duration retry) {
+    this.registry = registry;
+    this.port = port;
+    this.bindAddress = bindAddress;
+    this.peers = Arrays.stream(peers.split(",")).map(String::trim).filter(it -> !it.isEmpty())
+      .collect(Collectors.toList());
+    this.backlog = new byte[backlog][];
+    this.retry = retry;
+  }
+
+  public boolean isEnabled() {
+    return port >= 0;
+  }
+
+  /**
+   * The port this node publishes on, -1 unless started.
+   */
+  public int port() {
+    var server = this.server;
+    return server != null ? server.getLocalPort() : -1;
+  }
+
+  /**
+   * Starts publishing the changes of the registry, then following the peers. Waits for the {@link RegistrySnapshot}
+   * and the {@link RegistryLog} to restore the registry, so that a restarted node publishes its recovered state.
+   */
+  @PostConstruct
+  public void start() throws IOException {
+    if (!isEnabled()) {
+      return;
+    }
+    server = new ServerSocket(port, 0, InetAddress.getByName(bindAddress));
+    // a thread per connection, each blocked on its socket or waiting for records
+    scheduler = Schedulers.newBoundedElastic(CONNECTIONS, Integer.MAX_VALUE, "registry-replication");
+    registry.addJournal(this);
+    scheduler.schedule(this::accept);
+    for (var peer : peers) {
+      follow(peer);
+    }
+    log.info("Registry replication on " + bindAddress + ":" + port() + ", following " + peers);
+  }
+
+  @PreDestroy
+  public void stop() throws IOException {
+    if (!isEnabled() || server == null) {
+      return;
+    }
+    stopped = true;
+    registry.removeJournal(this);
+    server.close();
+    for (var connection : connections) {
+      try {
+        connection.close();
+      } catch (Exception e) {
+        log.warn("Cannot close registry replication connection", e);
+      }
+    }
+    lock.lock();
+    try {
+      appended.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    scheduler.dispose();
+  }
+
+  @Override
+  public void tableQueryPut(TableQuery query) {
+    changed(replicatedTableQueries, query.getId());
+    super.tableQueryPut(query);
+  }
+
+  @Override
+  public void tableQueryRemoved(int id) {
+    replicatedTableQueries.remove(id);
+    super.tableQueryRemoved(id);
+  }
+
+  @Override
+  public void singleQueryPut(SingleQuery query) {
+    changed(replicatedSingleQueries, query.getId());
+    super.singleQueryPut(query);
+  }
+
+  @Override
+  public void singleQueryRemoved(int id) {
+    replicatedSingleQueries.remove(id);
+    super.singleQueryRemoved(id);
+  }
+
+  @Override
+  public void reportAdded(Report<ColumnInfoWithSize> report) {
+    changed(replicatedReports, report.getId());
+    super.reportAdded(report);
+  }
+
+  @Override
+  public void cleared() {
+    replicatedTableQueries.clear();
+    replicatedSingleQueries.clear();
+    replicatedReports.clear();
+    super.cleared();
+  }
+
+  private static void changed(IntMap<Boolean> replicated, int id) {
+    if (APPLYING.get()) {
+      replicated.put(id, true);
+    } else {
+      replicated.remove(id);
+    }
+  }
+
+  @Override
+  void append(byte type, long size, Consumer<ByteBuffer> body) {
+    if (APPLYING.get()) {
+      return;
+    }
+    var record = ByteBuffer.allocate((int) (1 + size)).put(type);
+    body.accept(record);
+    lock.lock();
+    try {
+      last++;
+      backlog[(int) (last % backlog.length)] = record.array();
+      appended.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void accept() {
+    while (!stopped) {
+      try {
+        var socket = server.accept();
+        connections.add(socket);
+        scheduler.schedule(() -> publish(socket));
+      } catch (IOException e) {
+        if (!stopped) {
+          log.error("Cannot accept registry replication connection", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sends a follower the records after the one it asks for, or a snapshot first, then every new record.
+   */
+  private void publish(Socket socket) {
+    var follower = socket.getRemoteSocketAddress();
+    try (socket) {
+      socket.setTcpNoDelay(true);
+      var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+      if (in.readInt() != MAGIC) {
+        log.error("Not a registry replication follower: " + follower);
+        return;
+      }
+      long knownEpoch = in.readLong();
+      long after = in.readLong();
+
+      long mark;
+      boolean caughtUp;
+      lock.lock();
+      try {
+        mark = last;
+        caughtUp = knownEpoch == epoch && after <= last && after >= last - backlog.length;
+      } finally {
+        lock.unlock();
+      }
+      out.writeInt(MAGIC);
+      out.writeLong(epoch);
+      out.writeBoolean(!caughtUp);
+      if (caughtUp) {
+        mark = after;
+      } else {
+        var contents = ownContents();
+        long size = contents.size();
+        if (size > Integer.MAX_VALUE) {
+          log.error("Cannot send registry snapshot: " + size + " bytes do not fit one buffer");
+          return;
+        }
+        var snapshot = ByteBuffer.allocate((int) size);
+        contents.put(snapshot);
+        out.writeLong(mark);
+        out.writeInt(snapshot.capacity());
+        out.write(snapshot.array());
+      }
+      out.flush();
+      log.info("Registry replication to " + follower + " from " + (caughtUp ? "record " : "snapshot at ") + mark);
+
+      var batch = new byte[BATCH][];
+      for (long next = mark + 1; !stopped; ) {
+        int count;
+        lock.lock();
+        try {
+          while (last < next && !stopped) {
+            appended.await();
+          }
+          if (next <= last - backlog.length) {
+            log.warn("Registry replication follower " + follower + " fell behind the backlog, dropped");
+            return;
+          }
+          count = (int) Math.min(last - next + 1, BATCH);
+          for (int i = 0; i < count; i++) {
+            batch[i] = backlog[(int) ((next + i) % backlog.length)];
+          }
+        } finally {
+          lock.unlock();
+        }
+        for (int i = 0; i < count; i++) {
+          out.writeLong(next + i);
+          out.writeInt(batch[i].length);
+          out.write(batch[i]);
+        }
+        out.flush();
+        Arrays.fill(batch, 0, count, null);
+        next += count;
+      }
+    } catch (IOException e) {
+      if (!stopped) {
+        log.warn("Registry replication to " + follower + " stopped: " + e);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      connections.remove(socket);
+    }
+  }
+
+  /**
+   * Applies the changes of the peer at {@code address}, {@code host:port}, reconnecting until stopped.
+   */
+  void follow(String address) {
+    int colon = address.lastIndexOf(':');
+    var peer = new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    scheduler.schedule(() -> {
+      var state = new long[2];
+      while (!stopped) {
+        var socket = new Socket();
+        connections.add(socket);
+        try (socket) {
+          socket.connect(peer, (int) retry.toMillis());
+          socket.setTcpNoDelay(true);
+          follow(socket, state);
+        } catch (ConnectException | SocketTimeoutException e) {
+          log.debug("Registry replication peer " + address + " is not up: " + e.getMessage());
+        } catch (IOException e) {
+          if (!stopped) {
+            log.warn("Registry replication from " + address + " stopped: " + e);
+          }
+        } finally {
+          connections.remove(socket);
+        }
+        try {
+          Thread.sleep(retry.toMillis());
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    });
+  }
+
+  /**
+   * @param state the epoch of the peer and the sequence number of its last record applied, kept across connections
+   */
+  private void follow(Socket socket, long[] state) throws IOException {
+    var out = new DataOutputStream(socket.getOutputStream());
+    out.writeInt(MAGIC);
+    out.writeLong(state[0]);
+    out.writeLong(state[1]);
+    out.flush();
+
+    var in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+    if (in.readInt() != MAGIC) {
+      throw new IOException("not a registry replication peer");
+    }
+    long epoch = in.readLong();
+    if (in.readBoolean()) {
+      long mark = in.readLong();
+      var snapshot = new byte[in.readInt()];
+      in.readFully(snapshot);
+      var contents = RegistrySnapshot.Contents.decode(ByteBuffer.wrap(snapshot))
+        .orElseThrow(() -> new IOException("not a registry snapshot"));
+      merge(contents);
+      state[1] = mark;
+      log.info("Registry replication from " + socket.getRemoteSocketAddress() + " merged a snapshot at " + mark
+        + ": " + contents.tableQueries.size() + " table queries, " + contents.singleQueries.size()
+        + " single queries, " + contents.reports.size() + " reports");
+    } else if (epoch != state[0]) {
+      throw new IOException("peer restarted without sending a snapshot");
+    }
+    state[0] = epoch;
+
+    var buffer = ByteBuffer.allocate(64 * 1024);
+    var reader = new RegistryCodec.Reader(buffer);
+    while (!stopped) {
+      long sequence = in.readLong();
+      int length = in.readInt();
+      if (sequence != state[1] + 1 || length <= 0) {
+        throw new IOException("record " + sequence + " of " + length + " bytes after " + state[1]);
+      }
+      if (buffer.capacity() < length) {
+        buffer = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, length));
+        reader = new RegistryCodec.Reader(buffer);
+      }
+      in.readFully(buffer.array(), 0, length);
+      buffer.clear().limit(length);
+      byte type = buffer.get();
+      APPLYING.set(true);
+      try {
+        if (!apply(registry, type, reader, buffer)) {
+          throw new IOException("unknown registry record " + type);
+        }
+      } finally {
+        APPLYING.set(false);
+      }
+      state[1] = sequence;
+    }
+  }
+
+  /**
+   * The entries of the registry last changed on this node.
+   */
+  private RegistrySnapshot.Contents ownContents() {
+    var all = RegistrySnapshot.Contents.of(registry);
+    return new RegistrySnapshot.Contents(
+      own(all.tableQueries, replicatedTableQueries, TableQuery::getId),
+      own(all.singleQueries, replicatedSingleQueries, SingleQuery::getId),
+      own(all.reports, replicatedReports, Report::getId));
+  }
+
+  private static <T> List<T> own(List<T> entries, IntMap<Boolean> replicated, ToIntFunction<T> id) {
+    return entries.stream().filter(it -> !replicated.containsKey(id.applyAsInt(it))).collect(Collectors.toList());
+  }
+
+  private void merge(RegistrySnapshot.Contents contents) {
+    APPLYING.set(true);
+    try {
+      for (var query : contents.tableQueries) {
+        registry.replay(query);
+      }
+      for (var query : contents.singleQueries) {
+        registry.replay(query);
+      }
+      for (var report : contents.reports) {
+        registry.replay(report);
+      }
+    } finally {
+      APPLYING.set(false);
+    }
+  }
+}
@@ -0,0 +1,242 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.vk.competition.minbenchmark.entity.*;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary snapshot of the {@link QueryRegistry}, so that a restart does not lose the stored queries and reports.
+ * Loaded before the server starts listening, together with the {@link RegistryLog} replayed on top of it, then
+ * written every {@code interval} and once more on shutdown; the log keeps only the changes made since.
+ * Disabled unless {@code minbenchmark.registry.snapshot.path} is set.
+ * <p>
+ * The file is memory-mapped both ways. Writing sizes the file first and encodes straight into the mapping, without an
+ * intermediate heap buffer; reading decodes the mapped pages in place, strings aside. A snapshot is written to a
+ * sibling file and moved over the previous one, so a crash leaves either the old or the new snapshot.
+ * <p>
+ * Layout: magic, version, then three sections each led by its entry count: the table queries, the single queries and
+ * the reports, each entry in {@link RegistryCodec} format.
+ * <p>
+ * The sections are read one after another, not atomically: an entry added meanwhile may be missing from one of them,
+ * as after a crash between two requests.
+ */
+@Slf4j
+@Component
+public class RegistrySnapshot {
+  private static final int MAGIC = 0x4D425253;
+  private static final int VERSION = 1;
+
+  private final QueryRegistry registry;
+  private final RegistryLog registryLog;
+  private final Path path;
+  private final Duration interval;
+  private Scheduler scheduler;
+  private Disposable writes;
+
+  public RegistrySnapshot(QueryRegistry registry, RegistryLog registryLog,
+                          @Value("${minbenchmark.registry.snapshot.path:}") String path,
+                          @Value("${minbenchmark.registry.snapshot.interval:30s}") Duration interval) {
+    this.registry = registry;
+    this.registryLog = registryLog;
+    this.path = path.isEmpty() ? null : Path.of(path);
+    this.interval = interval;
+  }
+
+  public boolean isEnabled() {
+    return path != null;
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    if (isEnabled() && Files.exists(path)) {
+      long start = System.nanoTime();
+      if (!read(path, registry)) {
+        throw new IllegalStateException("Cannot restore registries from " + path);
+      }
+      log.info("Registries restored from " + path + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        + " ms: " + registry.getAllTableQueries().size() + " table queries, "
+        + registry.getAllSingleQueries().size() + " single queries, " + registry.getAllReports().size() + " reports");
+    }
+    registryLog.recover();
+    if (!isEnabled()) {
+      return;
+    }
+    scheduler = Schedulers.newSingle("registry-snapshot");
+    writes = scheduler.schedulePeriodically(this::checkpoint, interval.toNanos(), interval.toNanos(),
+      TimeUnit.NANOSECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (!isEnabled()) {
+      return;
+    }
+    if (scheduler != null) {
+      writes.dispose();
+      scheduler.dispose();
+    }
+    checkpoint();
+  }
+
+  /**
+   * Writes a snapshot, then drops from the log what the snapshot contains.
+   */
+  private void checkpoint() {
+    long mark = registryLog.mark();
+    if (write(path, registry)) {
+      registryLog.truncate(mark);
+    }
+  }
+
+  /**
+   * Writes the current contents of {@code registry} to {@code path}, replacing the previous snapshot.
+   *
+   * @return false if the snapshot could not be written; the previous one is then left intact
+   */
+  static boolean write(Path path, QueryRegistry registry) {
+    var contents = Contents.of(registry);
+    long size = contents.size();
+    if (size > Integer.MAX_VALUE) {
+      log.error("Cannot write registry snapshot: " + size + " bytes do not fit one mapping");
+      return false;
+    }
+
+    var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+      StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      contents.put(buffer);
+      buffer.force();
+    } catch (IOException e) {
+      log.error("Cannot write registry snapshot " + temporary, e);
+      return false;
+    }
+
+    try {
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      return true;
+    } catch (IOException e) {
+      log.error("Cannot replace registry snapshot " + path, e);
+      return false;
+    }
+  }
+
+  /**
+   * Replaces the contents of {@code registry} with the snapshot at {@code path}.
+   *
+   * @return false if the file is not a complete snapshot of this version; {@code registry} is then left unchanged
+   */
+  static boolean read(Path path, QueryRegistry registry) {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var contents = Contents.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      if (contents.isEmpty()) {
+        log.error("Cannot read registry snapshot " + path + ": not a snapshot of version " + VERSION);
+        return false;
+      }
+      registry.restore(contents.get().tableQueries, contents.get().singleQueries, contents.get().reports);
+      return true;
+    } catch (IOException | RuntimeException e) {
+      log.error("Cannot read registry snapshot " + path, e);
+      return false;
+    }
+  }
+
+  /**
+   * The entries of a snapshot, as read from a registry or decoded from a buffer.
+   */
+  @AllArgsConstructor
+  static class Contents {
+    final List<TableQuery> tableQueries;
+    final List<SingleQuery> singleQueries;
+    final List<Report<ColumnInfoWithSize>> reports;
+
+    static Contents of(QueryRegistry registry) {
+      return new Contents(registry.getAllTableQueries(), registry.getAllSingleQueries(), registry.getAllReports());
+    }
+
+    /**
+     * The size of the encoded snapshot, header included.
+     */
+    long size() {
+      long size = 5L * Integer.BYTES;
+      for (var query : tableQueries) {
+        size += RegistryCodec.sizeOf(query);
+      }
+      for (var query : singleQueries) {
+        size += RegistryCodec.sizeOf(query);
+      }
+      for (var report : reports) {
+        size += RegistryCodec.sizeOf(report);
+      }
+      return size;
+    }
+
+    void put(ByteBuffer buffer) {
+      buffer.putInt(MAGIC).putInt(VERSION);
+      buffer.putInt(tableQueries.size());
+      for (var query : tableQueries) {
+        RegistryCodec.put(buffer, query);
+      }
+      buffer.putInt(singleQueries.size());
+      for (var query : singleQueries) {
+        RegistryCodec.put(buffer, query);
+      }
+      buffer.putInt(reports.size());
+      for (var report : reports) {
+        RegistryCodec.put(buffer, report);
+      }
+    }
+
+    /**
+     * @return empty if the buffer does not hold exactly one snapshot of this version
+     */
+    static Optional<Contents> decode(ByteBuffer buffer) {
+      if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        return Optional.empty();
+      }
+      var reader = new RegistryCodec.Reader(buffer);
+
+      int count = buffer.getInt();
+      var tableQueries = new ArrayList<TableQuery>(count);
+      for (int i = 0; i < count; i++) {
+        tableQueries.add(reader.tableQuery());
+      }
+
+      count = buffer.getInt();
+      var singleQueries = new ArrayList<SingleQuery>(count);
+      for (int i = 0; i < count; i++) {
+        singleQueries.add(reader.singleQuery());
+      }
+
+      count = buffer.getInt();
+      var reports = new ArrayList<Report<ColumnInfoWithSize>>(count);
+      for (int i = 0; i < count; i++) {
+        reports.add(reader.report());
+      }
+      if (buffer.hasRemaining()) {
+        return Optional.empty();
+      }
+      return Optional.of(new Contents(tableQueries, singleQueries, reports));
+    }
+  }
+}
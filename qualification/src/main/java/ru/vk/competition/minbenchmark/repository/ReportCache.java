@@ -0,0 +1,95 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.vk.competition.minbenchmark.entity.CacheStats;
+import ru.vk.competition.minbenchmark.entity.ColumnInfoWithSize;
+import ru.vk.competition.minbenchmark.entity.Report;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Computed reports keyed by report id, valid while none of the report tables has been written to.
+ * <p>
+ * Writers bump the version of the tables they touch after the write; readers take the versions before
+ * computing a report, so a write racing with the computation only causes an extra miss.
+ */
+@Component
+public class ReportCache {
+  private final AtomicLong globalVersion = new AtomicLong();
+  private final ConcurrentHashMap<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public long[] versions(List<String> tables) {
+    var versions = new long[tables.size() + 1];
+    versions[0] = globalVersion.get();
+    for (int i = 0; i < tables.size(); i++) {
+      var version = tableVersions.get(tables.get(i).toUpperCase());
+      versions[i + 1] = version == null ? 0 : version.get();
+    }
+    return versions;
+  }
+
+  public Optional<Report<ColumnInfoWithSize>> get(int id, long[] versions) {
+    var entry = entries.get(id);
+    if (entry != null && Arrays.equals(entry.versions, versions)) {
+      hits.increment();
+      return Optional.of(entry.report);
+    }
+    misses.increment();
+    return Optional.empty();
+  }
+
+  public void put(int id, long[] versions, Report<ColumnInfoWithSize> report) {
+    entries.put(id, new Entry(versions, report));
+  }
+
+  public void written(SqlStatement statement) {
+    if (!statement.isTablesKnown()) {
+      writtenAll();
+    } else {
+      statement.getTables().forEach(this::written);
+    }
+  }
+
+  public void written(String table) {
+    tableVersions.computeIfAbsent(table.toUpperCase(), it -> new AtomicLong()).incrementAndGet();
+  }
+
+  public void writtenAll() {
+    globalVersion.incrementAndGet();
+  }
+
+  public void clear() {
+    writtenAll();
+    entries.clear();
+    tableVersions.clear();
+  }
+
+  public CacheStats stats() {
+    long hitCount = hits.sum();
+    long missCount = misses.sum();
+    long total = hitCount + missCount;
+    return CacheStats.builder()
+      .size(entries.size())
+      .hitCount(hitCount)
+      .missCount(missCount)
+      .hitRate(total == 0 ? 1.0 : (double) hitCount / total)
+      .missRate(total == 0 ? 0.0 : (double) missCount / total)
+      .build();
+  }
+
+  @AllArgsConstructor
+  private static class Entry {
+    final long[] versions;
+    final Report<ColumnInfoWithSize> report;
+  }
+}
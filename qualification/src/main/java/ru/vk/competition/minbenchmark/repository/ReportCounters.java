@@ -0,0 +1,120 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.vk.competition.minbenchmark.entity.ReportTable;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-table non-null counters for report columns, kept up to date by H2 triggers.
+ * <p>
+ * Counters are installed lazily for tables used by reports. Anything the triggers cannot observe
+ * (DDL, TRUNCATE, failed or unrecognised statements) uninstalls the counters of the affected tables;
+ * they are rebuilt with a fresh baseline on the next read.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReportCounters {
+  private static final AtomicLong TRIGGER_IDS = new AtomicLong();
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final ConcurrentHashMap<String, Installed> tables = new ConcurrentHashMap<>();
+
+  /**
+   * @return counts in the order of {@code table.getColumns()}, or empty if counters cannot be used for the table
+   */
+  public Optional<List<String>> counts(ReportTable<String> table) {
+    var key = table.getName().toUpperCase();
+    var installed = tables.get(key);
+    if (installed == null || !installed.counts.isValid()) {
+      installed = install(key);
+      if (installed == null) {
+        return Optional.empty();
+      }
+    }
+    return installed.counts.get(table.getColumns());
+  }
+
+  public void invalidate(SqlStatement statement, boolean executed) {
+    if (!statement.isTablesKnown()) {
+      uninstallAll();
+    } else if (statement.isSchemaChange() || !executed) {
+      statement.getTables().forEach(this::uninstall);
+    }
+  }
+
+  public void uninstall(String table) {
+    var installed = tables.remove(table.toUpperCase());
+    if (installed != null) {
+      drop(installed);
+    }
+  }
+
+  public void uninstallAll() {
+    for (var table : tables.keySet()) {
+      uninstall(table);
+    }
+  }
+
+  /**
+   * Forgets all counters without touching the database, for when the tables are dropped anyway.
+   */
+  public void clear() {
+    tables.values().forEach(it -> {
+      it.counts.invalidate();
+      ColumnCountTrigger.unregister(it.triggerName);
+    });
+    tables.clear();
+  }
+
+  private Installed install(String table) {
+    return tables.compute(table, (key, previous) -> {
+      if (previous != null) {
+        if (previous.counts.isValid()) {
+          return previous;
+        }
+        drop(previous);
+      }
+      var installed = new Installed("REPORT_COUNTS_" + TRIGGER_IDS.incrementAndGet(), new ColumnCounts());
+      ColumnCountTrigger.register(installed.triggerName, installed.counts);
+      try {
+        jdbcTemplate.execute("CREATE TRIGGER " + installed.triggerName + " AFTER INSERT, UPDATE, DELETE ON " + key +
+          " FOR EACH ROW CALL \"" + ColumnCountTrigger.class.getName() + "\"");
+      } catch (Exception e) {
+        log.info("Cannot install report counters on '" + key + "': " + e.getMessage());
+        ColumnCountTrigger.unregister(installed.triggerName);
+        return null;
+      }
+      if (!installed.counts.isValid()) {
+        drop(installed);
+        return null;
+      }
+      return installed;
+    });
+  }
+
+  private void drop(Installed installed) {
+    installed.counts.invalidate();
+    ColumnCountTrigger.unregister(installed.triggerName);
+    try {
+      jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + installed.triggerName);
+    } catch (Exception e) {
+      log.info("Cannot drop trigger '" + installed.triggerName + "': " + e.getMessage());
+    }
+  }
+
+  @AllArgsConstructor
+  private static class Installed {
+    final String triggerName;
+    final ColumnCounts counts;
+  }
+}
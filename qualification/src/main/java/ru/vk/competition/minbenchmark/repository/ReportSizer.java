@@ -0,0 +1,93 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.vk.competition.minbenchmark.entity.ReportTable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Counts non-null values of report columns. All columns of a table are counted in one scan,
+ * and all tables of a report are combined into a single statement.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReportSizer {
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * @param table table name with the names of the columns to count
+   * @return counts in the order of {@code table.getColumns()}
+   */
+  public List<String> count(ReportTable<String> table) {
+    return countAll(Collections.singletonList(table)).get(0);
+  }
+
+  /**
+   * @param tables table names with the names of the columns to count
+   * @return counts per table, in the order of {@code tables} and their columns
+   */
+  public List<List<String>> countAll(List<ReportTable<String>> tables) {
+    var nonEmpty = nonEmpty(tables);
+    if (nonEmpty.isEmpty()) {
+      return emptyCounts(tables);
+    }
+
+    var row = jdbcTemplate.query(buildCountQuery(nonEmpty), rs -> {
+      rs.next();
+      var values = new ArrayList<String>();
+      for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+        values.add(rs.getString(i));
+      }
+      return values;
+    });
+
+    return split(tables, row);
+  }
+
+  /**
+   * @return tables that have at least one column to count
+   */
+  static List<ReportTable<String>> nonEmpty(List<ReportTable<String>> tables) {
+    return tables.stream().filter(it -> !it.getColumns().isEmpty()).collect(Collectors.toList());
+  }
+
+  /**
+   * Splits the single row returned by {@link #buildCountQuery} into per-table counts.
+   */
+  static List<List<String>> split(List<ReportTable<String>> tables, List<String> row) {
+    var result = new ArrayList<List<String>>();
+    int offset = 0;
+    for (var table : tables) {
+      int size = table.getColumns().size();
+      result.add(row.subList(offset, offset + size));
+      offset += size;
+    }
+    return result;
+  }
+
+  static List<List<String>> emptyCounts(List<ReportTable<String>> tables) {
+    return tables.stream().map(it -> Collections.<String>emptyList()).collect(Collectors.toList());
+  }
+
+  static String buildCountQuery(List<ReportTable<String>> tables) {
+    var builder = new StringBuilder("select * from ");
+    for (int i = 0; i < tables.size(); i++) {
+      var table = tables.get(i);
+      if (i > 0) {
+        builder.append(" cross join ");
+      }
+      builder.append("(select ");
+      for (var column : table.getColumns()) {
+        builder.append("count(").append(column).append("), ");
+      }
+      builder.setLength(builder.length() - 2);
+      builder.append(" from ").append(table.getName()).append(") t").append(i);
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,37 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import ru.vk.competition.minbenchmark.entity.ColumnInfo;
+import ru.vk.competition.minbenchmark.entity.ColumnInfoWithSize;
+import ru.vk.competition.minbenchmark.entity.ReportTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Conversions between the report table shapes used while sizing reports.
+ */
+final class ReportTables {
+  private ReportTables() {
+  }
+
+  static ReportTable<ColumnInfoWithSize> withSize(ReportTable<ColumnInfo> table, List<String> sizes) {
+    var columns = table.getColumns();
+    var mapped = new ArrayList<ColumnInfoWithSize>();
+    for (int i = 0; i < columns.size(); i++) {
+      mapped.add(new ColumnInfoWithSize(columns.get(i).getName(), columns.get(i).getType(), sizes.get(i)));
+    }
+    return new ReportTable<>(table.getName(), mapped);
+  }
+
+  static ReportTable<ColumnInfo> withoutSize(ReportTable<ColumnInfoWithSize> table) {
+    var columns = table.getColumns().stream()
+      .map(c -> new ColumnInfo(c.getName(), c.getType()))
+      .collect(Collectors.toList());
+    return new ReportTable<>(table.getName(), columns);
+  }
+
+  static ReportTable<String> columnNames(ReportTable<ColumnInfo> table) {
+    return new ReportTable<>(table.getName(), table.getColumns().stream().map(ColumnInfo::getName).collect(Collectors.toList()));
+  }
+}
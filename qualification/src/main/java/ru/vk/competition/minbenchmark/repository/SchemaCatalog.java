@@ -0,0 +1,248 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import ru.vk.competition.minbenchmark.entity.CacheStats;
+import ru.vk.competition.minbenchmark.entity.ColumnInfo;
+import ru.vk.competition.minbenchmark.entity.DBTable;
+
+import javax.annotation.PostConstruct;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Cached view of the database schema: table names and per-table column infos.
+ * <p>
+ * Every invalidation takes a stamp from a logical clock; cached values remember the stamp they were loaded at
+ * and are dropped once something newer invalidated them. DDL invalidates only the tables it touches,
+ * plain DML leaves the catalog alone.
+ * <p>
+ * Column infos live in a bounded cache weighted by column count. Concurrent misses for one table share a single
+ * load, and negative entries expire after {@code minbenchmark.table-info-cache.negative-ttl}.
+ * <p>
+ * At startup and whenever the table names are invalidated, the whole schema is reloaded with one
+ * {@link CatalogLoader} query that refreshes the names and the column infos of every table at once.
+ */
+@Slf4j
+@Component
+public class SchemaCatalog {
+  private final JdbcTemplate jdbcTemplate;
+  private final CatalogLoader loader;
+
+  private final AtomicLong clock = new AtomicLong();
+
+  private volatile Set<String> tableNames = new ConcurrentSkipListSet<>();
+  private volatile long namesLoadedAt = -1;
+  private volatile long namesInvalidatedAt = 0;
+
+  private final Cache<String, Entry> tableInfos;
+  private final ConcurrentHashMap<String, Long> tableInvalidatedAt = new ConcurrentHashMap<>();
+  private volatile long allInvalidatedAt = 0;
+
+  public SchemaCatalog(JdbcTemplate jdbcTemplate,
+                       CatalogLoader loader,
+                       @Value("${minbenchmark.table-info-cache.maximum-weight:100000}") long maximumWeight,
+                       @Value("${minbenchmark.table-info-cache.negative-ttl:10s}") Duration negativeTtl) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.loader = loader;
+    this.tableInfos = Caffeine.newBuilder()
+      .maximumWeight(maximumWeight)
+      .weigher((String key, Entry entry) -> entry.weight())
+      .expireAfter(new NegativeExpiry(negativeTtl.toNanos()))
+      .recordStats()
+      .build();
+  }
+
+  @PostConstruct
+  public void preload() {
+    names();
+  }
+
+  public boolean tableExists(String name) {
+    return names().contains(name.toUpperCase());
+  }
+
+  public Set<String> tableNames() {
+    return Collections.unmodifiableSet(names());
+  }
+
+  public Optional<DBTable> getTableInfo(String name) {
+    var key = name.toUpperCase();
+    while (true) {
+      names();
+      var entry = tableInfos.get(key, it -> new Entry(clock.get(), loadTableInfo(name)));
+      if (isValid(key, entry)) {
+        return entry.value.map(it -> it.getName().equals(name) ? it :
+          new DBTable(name, it.getColumnsAmount(), it.getPrimaryKey(), it.getColumnInfos()));
+      }
+      tableInfos.asMap().remove(key, entry);
+    }
+  }
+
+  public CacheStats stats() {
+    var stats = tableInfos.stats();
+    return CacheStats.builder()
+      .size(tableInfos.estimatedSize())
+      .hitCount(stats.hitCount())
+      .missCount(stats.missCount())
+      .hitRate(stats.hitRate())
+      .missRate(stats.missRate())
+      .loadCount(stats.loadCount())
+      .evictionCount(stats.evictionCount())
+      .averageLoadTimeMillis(stats.averageLoadPenalty() / 1_000_000)
+      .build();
+  }
+
+  public synchronized void tableCreated(String name) {
+    var key = name.toUpperCase();
+    names().add(key);
+    invalidateTable(key);
+  }
+
+  public synchronized void tableDropped(String name) {
+    var key = name.toUpperCase();
+    names().remove(key);
+    invalidateTable(key);
+  }
+
+  public void invalidate(SqlStatement statement) {
+    if (!statement.isSchemaChange()) {
+      return;
+    }
+    if (!statement.isTablesKnown()) {
+      invalidateAll();
+      return;
+    }
+    namesInvalidatedAt = clock.incrementAndGet();
+    statement.getTables().forEach(this::invalidateTable);
+  }
+
+  public void invalidateAll() {
+    long stamp = clock.incrementAndGet();
+    namesInvalidatedAt = stamp;
+    allInvalidatedAt = stamp;
+    tableInvalidatedAt.clear();
+    tableInfos.invalidateAll();
+  }
+
+  private void invalidateTable(String key) {
+    tableInvalidatedAt.put(key, clock.incrementAndGet());
+    tableInfos.invalidate(key);
+  }
+
+  private boolean isValid(String key, Entry entry) {
+    return entry.stamp >= allInvalidatedAt && entry.stamp >= tableInvalidatedAt.getOrDefault(key, 0L);
+  }
+
+  private Set<String> names() {
+    if (namesLoadedAt < namesInvalidatedAt) {
+      fetchTableNames();
+    }
+    return tableNames;
+  }
+
+  private synchronized void fetchTableNames() {
+    if (namesLoadedAt >= namesInvalidatedAt) {
+      return;
+    }
+    long stamp = clock.get();
+    CatalogLoader.Snapshot snapshot;
+    try {
+      snapshot = loader.load();
+    } catch (Exception e) {
+      // keep the names loaded last and stay out of date, so the next lookup retries
+      log.error("Cannot load catalog: " + e.getMessage());
+      return;
+    }
+    tableNames = new ConcurrentSkipListSet<>(snapshot.getTableNames());
+    namesLoadedAt = stamp;
+    // putIfAbsent/replace rather than merge: compute-style map operations would be recorded as cache loads
+    var cached = tableInfos.asMap();
+    snapshot.getTables().forEach((key, table) -> {
+      var loaded = new Entry(stamp, Optional.of(table));
+      var previous = cached.putIfAbsent(key, loaded);
+      if (previous != null && previous.stamp < stamp) {
+        cached.replace(key, previous, loaded);
+      }
+    });
+  }
+
+  private Optional<DBTable> loadTableInfo(String name) {
+    try {
+      if (!tableNames.contains(name.toUpperCase())) {
+        return Optional.empty();
+      }
+      var columnsWithKeys = jdbcTemplate.query("show columns from " + name, new ColumnMapper());
+      var columns = columnsWithKeys.stream().map(it -> it.info).collect(Collectors.toList());
+      var keyColumn = columnsWithKeys.stream().filter(it -> it.isPrimary).findFirst().map(c -> c.info.getName()).orElse("");
+      return Optional.of(new DBTable(name, columns.size(), keyColumn.toLowerCase(), columns));
+    } catch (Exception e) {
+      log.error(e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  @AllArgsConstructor
+  private static class Entry {
+    final long stamp;
+    final Optional<DBTable> value;
+
+    int weight() {
+      return 1 + value.map(DBTable::getColumnsAmount).orElse(0);
+    }
+  }
+
+  @AllArgsConstructor
+  private static class NegativeExpiry implements Expiry<String, Entry> {
+    final long negativeTtlNanos;
+
+    @Override
+    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+      return entry.value.isPresent() ? Long.MAX_VALUE : negativeTtlNanos;
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, entry, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+
+  private static class ColumnMapper implements RowMapper<ColumnWithKey> {
+
+    @Override
+    public ColumnWithKey mapRow(ResultSet rs, int rowNum) throws SQLException {
+      ColumnInfo column = new ColumnInfo();
+      column.setName(rs.getString("COLUMN_NAME"));
+      column.setType(rs.getString("TYPE").replaceAll("\\(\\d+\\)", ""));
+      return new ColumnWithKey(column, rs.getString("KEY").equals("PRI"));
+    }
+  }
+
+  @Data
+  @AllArgsConstructor
+  private static class ColumnWithKey {
+    ColumnInfo info;
+    boolean isPrimary;
+  }
+}
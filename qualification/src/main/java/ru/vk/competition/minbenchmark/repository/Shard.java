@@ -0,0 +1,21 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.AllArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * One of the databases a tenant's tables are spread over, see {@link Shards}, with the catalog and report sizing of
+ * the tables it holds.
+ */
+@AllArgsConstructor
+class Shard {
+  final JdbcTemplate jdbcTemplate;
+  final SchemaCatalog catalog;
+  final ReportSizer sizer;
+  final ReportCounters counters;
+  /**
+   * The database to swap for an empty one on a reset; null for tenants, which are reset by schema, and for databases
+   * that cannot be swapped.
+   */
+  final SwappableDataSource database;
+}
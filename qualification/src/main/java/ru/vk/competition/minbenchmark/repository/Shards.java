@@ -0,0 +1,47 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * The independent H2 databases tables are spread over in jdbc mode, {@code minbenchmark.persistence.shards} of them.
+ * One embedded database serializes all DDL and commits behind its locks; with several, tables on different shards
+ * do not wait for each other. A table lives on the shard its upper-cased name hashes to, see {@link #of}.
+ * <p>
+ * The first shard is the application {@code DataSource}; the others are created the same way, on the URL with
+ * {@code _shard<n>} appended to the database name.
+ */
+public class Shards implements Closeable {
+  private final List<SwappableDataSource> databases;
+
+  public Shards(List<SwappableDataSource> databases) {
+    this.databases = databases;
+  }
+
+  static String url(String url, int shard) {
+    return shard == 0 ? url : SwappableDataSource.suffixed(url, "_shard" + shard);
+  }
+
+  /**
+   * Index of the shard holding {@code table}, out of {@code count}.
+   */
+  static int of(String table, int count) {
+    return count == 1 ? 0 : Math.floorMod(table.toUpperCase().hashCode(), count);
+  }
+
+  public int count() {
+    return databases.size();
+  }
+
+  public SwappableDataSource get(int shard) {
+    return databases.get(shard);
+  }
+
+  /**
+   * Closes the shards beyond the first one, which is closed as the application {@code DataSource}.
+   */
+  @Override
+  public void close() {
+    databases.subList(1, databases.size()).forEach(SwappableDataSource::close);
+  }
+}
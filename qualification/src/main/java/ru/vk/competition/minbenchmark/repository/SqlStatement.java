@@ -0,0 +1,491 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Lightweight classification of user SQL: whether it changes the schema, which tables it modifies and which it
+ * references at all. Anything the parser does not recognise is reported as {@link Kind#OTHER} with unknown tables,
+ * so callers can fall back to the conservative behaviour.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class SqlStatement {
+
+  public enum Kind {DML, DDL, OTHER}
+
+  private static final SqlStatement READ = new SqlStatement(Kind.DML, Collections.emptySet(), true);
+  private static final SqlStatement UNKNOWN = new SqlStatement(Kind.OTHER, Collections.emptySet(), false);
+
+  private final Kind kind;
+  /**
+   * Upper-cased names of the tables the statement modifies. Meaningful only if {@link #tablesKnown}.
+   */
+  private final Set<String> tables;
+  private final boolean tablesKnown;
+  /**
+   * Upper-cased names of the tables the statement reads or modifies, common table expressions excluded.
+   * Meaningful only if {@link #tablesKnown}.
+   */
+  private final Set<String> references;
+
+  private SqlStatement(Kind kind, Set<String> tables, boolean tablesKnown) {
+    this(kind, tables, tablesKnown, tables);
+  }
+
+  public boolean isSchemaChange() {
+    return kind != Kind.DML;
+  }
+
+  public static SqlStatement parse(String sql) {
+    var result = READ;
+    for (var tokens : tokenize(sql)) {
+      var statement = classify(tokens);
+      if (statement.tablesKnown) {
+        var references = new TreeSet<>(statement.tables);
+        references(tokens, references);
+        references.removeAll(commonTableNames(tokens));
+        statement = new SqlStatement(statement.kind, statement.tables, true, references);
+      }
+      result = merge(result, statement);
+    }
+    return result;
+  }
+
+  private static SqlStatement merge(SqlStatement a, SqlStatement b) {
+    var kind = a.kind.compareTo(b.kind) >= 0 ? a.kind : b.kind;
+    if (!a.tablesKnown || !b.tablesKnown) {
+      return new SqlStatement(kind, Collections.emptySet(), false);
+    }
+    var tables = new TreeSet<>(a.tables);
+    tables.addAll(b.tables);
+    var references = new TreeSet<>(a.references);
+    references.addAll(b.references);
+    return new SqlStatement(kind, tables, true, references);
+  }
+
+  private static SqlStatement classify(List<Token> tokens) {
+    if (tokens.isEmpty()) {
+      return READ;
+    }
+    if (hasDeltaTable(tokens)) {
+      return UNKNOWN;
+    }
+    var cursor = new Cursor(tokens);
+    switch (cursor.keyword()) {
+      case "SELECT", "VALUES", "TABLE", "SHOW" -> {
+        return READ;
+      }
+      case "WITH" -> {
+        return classifyWith(cursor);
+      }
+      case "EXPLAIN" -> {
+        return classifyExplain(cursor);
+      }
+      case "INSERT", "MERGE" -> {
+        return cursor.skip("INTO") ? dml(cursor.name()) : UNKNOWN;
+      }
+      case "UPDATE" -> {
+        return dml(cursor.name());
+      }
+      case "DELETE" -> {
+        cursor.skip("FROM");
+        return dml(cursor.name());
+      }
+      case "TRUNCATE" -> {
+        // H2 commits TRUNCATE and does not fire row triggers for it, so it is handled like DDL
+        cursor.skip("TABLE");
+        return ddl(cursor.name());
+      }
+      case "CREATE" -> {
+        return classifyCreate(cursor);
+      }
+      case "DROP" -> {
+        return classifyDrop(cursor);
+      }
+      case "ALTER" -> {
+        return classifyAlter(cursor);
+      }
+      default -> {
+        return UNKNOWN;
+      }
+    }
+  }
+
+  /**
+   * H2 runs the statement after the common table expressions as it is, writes included, so only a query there reads.
+   */
+  private static SqlStatement classifyWith(Cursor cursor) {
+    cursor.skip("RECURSIVE");
+    do {
+      if (cursor.name() == null) {
+        return UNKNOWN;
+      }
+      if (cursor.skip("(") && !cursor.skipParenthesized()) {
+        return UNKNOWN;
+      }
+      if (!cursor.skip("AS") || !cursor.skip("(") || !cursor.skipParenthesized()) {
+        return UNKNOWN;
+      }
+    } while (cursor.skip(","));
+    return classifyQuery(cursor);
+  }
+
+  /**
+   * {@code EXPLAIN ANALYZE} executes the statement, so only an explained query reads.
+   */
+  private static SqlStatement classifyExplain(Cursor cursor) {
+    if (!cursor.skip("ANALYZE") && cursor.skip("PLAN")) {
+      cursor.skip("FOR");
+    }
+    return cursor.skip("WITH") ? classifyWith(cursor) : classifyQuery(cursor);
+  }
+
+  private static SqlStatement classifyQuery(Cursor cursor) {
+    if (!cursor.hasNext()) {
+      return UNKNOWN;
+    }
+    switch (cursor.keyword()) {
+      case "SELECT", "VALUES", "TABLE" -> {
+        return READ;
+      }
+      default -> {
+        return UNKNOWN;
+      }
+    }
+  }
+
+  /**
+   * H2 data change delta tables, {@code FINAL|NEW|OLD TABLE (<insert, update, delete or merge>)}, write wherever
+   * they appear, queries included.
+   */
+  private static boolean hasDeltaTable(List<Token> tokens) {
+    for (int i = 0; i + 2 < tokens.size(); i++) {
+      var token = tokens.get(i);
+      if ((token.isKeyword("FINAL") || token.isKeyword("NEW") || token.isKeyword("OLD"))
+        && tokens.get(i + 1).isKeyword("TABLE") && tokens.get(i + 2).is("(")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Collects the tables named after {@code FROM}, in {@code FROM} lists, and after {@code JOIN}, {@code INTO},
+   * {@code UPDATE}, {@code USING} and {@code TABLE}, in subqueries too. Table functions are not tables, and
+   * parentheses other than subqueries, such as {@code EXTRACT(YEAR FROM d)}, are skipped.
+   */
+  private static void references(List<Token> tokens, Set<String> tables) {
+    var cursor = new Cursor(tokens);
+    while (cursor.hasNext()) {
+      switch (cursor.keyword()) {
+        case "(" -> parenthesized(cursor, tables);
+        case "FROM" -> {
+          do {
+            reference(cursor, tables, true);
+            cursor.skip("AS");
+          } while (cursor.skip(",") || cursor.skipAlias());
+        }
+        case "JOIN" -> reference(cursor, tables, true);
+        case "INTO", "USING", "TABLE" -> reference(cursor, tables, false);
+        case "UPDATE" -> {
+          // not the UPDATE SET of a MERGE
+          if (!cursor.nextKeyword("SET")) {
+            reference(cursor, tables, false);
+          }
+        }
+        default -> {
+        }
+      }
+    }
+  }
+
+  /**
+   * Collects the tables of the subquery after the parenthesis just skipped, or skips what is not a subquery.
+   */
+  private static void parenthesized(Cursor cursor, Set<String> tables) {
+    boolean subquery = cursor.next("(") || cursor.nextKeyword("SELECT") || cursor.nextKeyword("VALUES")
+      || cursor.nextKeyword("TABLE") || cursor.nextKeyword("WITH");
+    int start = cursor.position;
+    if (cursor.skipParenthesized() && subquery) {
+      references(cursor.tokens.subList(start, cursor.position - 1), tables);
+    }
+  }
+
+  private static void reference(Cursor cursor, Set<String> tables, boolean tableFunctions) {
+    if (cursor.skip("(")) {
+      int start = cursor.position;
+      if (cursor.skipParenthesized()) {
+        references(cursor.tokens.subList(start, cursor.position - 1), tables);
+      }
+      return;
+    }
+    skipIfExists(cursor);
+    int start = cursor.position;
+    var name = cursor.name();
+    if (name == null) {
+      cursor.position = start;
+    } else if (!tableFunctions || !cursor.next("(")) {
+      tables.add(name);
+    }
+  }
+
+  private static Set<String> commonTableNames(List<Token> tokens) {
+    var names = new TreeSet<String>();
+    for (int i = 0; i < tokens.size(); i++) {
+      if (!tokens.get(i).isKeyword("WITH")) {
+        continue;
+      }
+      var cursor = new Cursor(tokens);
+      cursor.position = i + 1;
+      cursor.skip("RECURSIVE");
+      do {
+        var name = cursor.name();
+        if (name == null || cursor.skip("(") && !cursor.skipParenthesized()
+          || !cursor.skip("AS") || !cursor.skip("(") || !cursor.skipParenthesized()) {
+          break;
+        }
+        names.add(name);
+      } while (cursor.skip(","));
+    }
+    return names;
+  }
+
+  private static SqlStatement classifyCreate(Cursor cursor) {
+    while (cursor.hasNext()) {
+      switch (cursor.keyword()) {
+        case "OR", "REPLACE", "FORCE", "LOCAL", "GLOBAL", "TEMPORARY", "MEMORY", "CACHED", "UNIQUE", "SPATIAL",
+          "HASH", "PRIMARY", "KEY", "NULLS", "DISTINCT" -> {
+        }
+        case "TABLE" -> {
+          skipIfExists(cursor);
+          return ddl(cursor.name());
+        }
+        case "INDEX" -> {
+          skipIfExists(cursor);
+          cursor.name();
+          return cursor.skip("ON") ? ddl(cursor.name()) : ddlUnknown();
+        }
+        default -> {
+          return ddlUnknown();
+        }
+      }
+    }
+    return ddlUnknown();
+  }
+
+  private static SqlStatement classifyDrop(Cursor cursor) {
+    if (!cursor.skip("TABLE")) {
+      return ddlUnknown();
+    }
+    skipIfExists(cursor);
+    var tables = new TreeSet<String>();
+    do {
+      var name = cursor.name();
+      if (name == null) {
+        return ddlUnknown();
+      }
+      tables.add(name);
+    } while (cursor.skip(","));
+    return new SqlStatement(Kind.DDL, tables, true);
+  }
+
+  private static SqlStatement classifyAlter(Cursor cursor) {
+    if (!cursor.skip("TABLE")) {
+      return ddlUnknown();
+    }
+    skipIfExists(cursor);
+    var name = cursor.name();
+    if (name == null) {
+      return ddlUnknown();
+    }
+    var tables = new TreeSet<String>();
+    tables.add(name);
+    while (cursor.hasNext()) {
+      if (cursor.keyword().equals("RENAME") && cursor.skip("TO")) {
+        var newName = cursor.name();
+        if (newName == null) {
+          return ddlUnknown();
+        }
+        tables.add(newName);
+      }
+    }
+    return new SqlStatement(Kind.DDL, tables, true);
+  }
+
+  private static void skipIfExists(Cursor cursor) {
+    if (cursor.skip("IF")) {
+      cursor.skip("NOT");
+      cursor.skip("EXISTS");
+    }
+  }
+
+  private static SqlStatement dml(String table) {
+    return table == null ? UNKNOWN : new SqlStatement(Kind.DML, Collections.singleton(table), true);
+  }
+
+  private static SqlStatement ddl(String table) {
+    return table == null ? ddlUnknown() : new SqlStatement(Kind.DDL, Collections.singleton(table), true);
+  }
+
+  private static SqlStatement ddlUnknown() {
+    return new SqlStatement(Kind.DDL, Collections.emptySet(), false);
+  }
+
+  private static List<List<Token>> tokenize(String sql) {
+    var statements = new ArrayList<List<Token>>();
+    var current = new ArrayList<Token>();
+    int i = 0;
+    int n = sql.length();
+    while (i < n) {
+      char c = sql.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+        while (i < n && sql.charAt(i) != '\n') {
+          i++;
+        }
+      } else if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+        int end = sql.indexOf("*/", i + 2);
+        i = end < 0 ? n : end + 2;
+      } else if (c == '\'' || c == '"') {
+        int start = ++i;
+        var value = new StringBuilder();
+        while (i < n) {
+          if (sql.charAt(i) == c) {
+            if (i + 1 < n && sql.charAt(i + 1) == c) {
+              value.append(sql, start, i + 1);
+              start = i += 2;
+              continue;
+            }
+            break;
+          }
+          i++;
+        }
+        value.append(sql, start, Math.min(i, n));
+        i++;
+        current.add(new Token(value.toString(), c == '"', c == '\''));
+      } else if (c == ';') {
+        if (!current.isEmpty()) {
+          statements.add(current);
+          current = new ArrayList<>();
+        }
+        i++;
+      } else if (Character.isLetterOrDigit(c) || c == '_' || c == '$') {
+        int start = i;
+        while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_' || sql.charAt(i) == '$')) {
+          i++;
+        }
+        current.add(new Token(sql.substring(start, i), false, false));
+      } else {
+        current.add(new Token(String.valueOf(c), false, false));
+        i++;
+      }
+    }
+    if (!current.isEmpty()) {
+      statements.add(current);
+    }
+    return statements;
+  }
+
+  @RequiredArgsConstructor
+  private static class Token {
+    final String text;
+    final boolean quoted;
+    final boolean literal;
+
+    boolean is(String symbol) {
+      return !quoted && !literal && text.equals(symbol);
+    }
+
+    boolean isKeyword(String keyword) {
+      return !quoted && !literal && text.equalsIgnoreCase(keyword);
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static class Cursor {
+    private final List<Token> tokens;
+    private int position;
+
+    boolean hasNext() {
+      return position < tokens.size();
+    }
+
+    boolean next(String symbol) {
+      return hasNext() && tokens.get(position).is(symbol);
+    }
+
+    boolean nextKeyword(String keyword) {
+      return hasNext() && tokens.get(position).isKeyword(keyword);
+    }
+
+    /**
+     * Skips an alias and the comma after it, if there are both.
+     */
+    boolean skipAlias() {
+      if (position + 1 < tokens.size() && !tokens.get(position).literal && tokens.get(position + 1).is(",")) {
+        position += 2;
+        return true;
+      }
+      return false;
+    }
+
+    String keyword() {
+      var token = tokens.get(position++);
+      return token.quoted || token.literal ? "" : token.text.toUpperCase();
+    }
+
+    boolean skip(String keyword) {
+      if (hasNext() && !tokens.get(position).quoted && tokens.get(position).text.equalsIgnoreCase(keyword)) {
+        position++;
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Skips past the parenthesis closing the one just skipped.
+     *
+     * @return false if it is never closed
+     */
+    boolean skipParenthesized() {
+      int depth = 1;
+      while (hasNext()) {
+        var token = tokens.get(position++);
+        if (token.is("(")) {
+          depth++;
+        } else if (token.is(")") && --depth == 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Reads a possibly schema-qualified name and returns its last part.
+     */
+    String name() {
+      String name = null;
+      do {
+        if (!hasNext()) {
+          return null;
+        }
+        var token = tokens.get(position++);
+        if (!token.quoted && !Character.isLetter(token.text.charAt(0)) && token.text.charAt(0) != '_') {
+          return null;
+        }
+        name = token.text.toUpperCase();
+      } while (skip("."));
+      return name;
+    }
+  }
+}
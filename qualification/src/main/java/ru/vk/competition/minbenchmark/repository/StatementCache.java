@@ -0,0 +1,129 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prepared statements of parameterized stored queries, kept open per physical connection and per query, so that
+ * executing a query again with new arguments skips parsing and planning. The statements are prepared on the
+ * connection underneath JdbcTemplate's per-call proxy and the pool's proxy: the former is new on every call, and the
+ * latter would close them when the connection is returned.
+ * A pooled connection is used by one thread at a time, so the statements of a connection are never shared.
+ * <p>
+ * An entry is reused only while the query still has the same SQL; H2 re-plans a prepared statement by itself after
+ * DDL. At most {@code minbenchmark.persistence.statement-cache.size} statements are kept per connection, the least
+ * recently used one is closed first. Statements of connections the pool has closed are forgotten whenever a new
+ * connection shows up.
+ */
+@Slf4j
+@Component
+public class StatementCache {
+  private final int size;
+  private final Map<Connection, Statements> connections = new ConcurrentHashMap<>();
+
+  public StatementCache(@Value("${minbenchmark.persistence.statement-cache.size:256}") int size) {
+    this.size = size;
+  }
+
+  /**
+   * Executes the query {@code key} with {@code args} bound to its {@code ?} placeholders in order.
+   *
+   * @return false if the number of arguments does not match the placeholders
+   */
+  public boolean execute(Connection pooled, String key, String sql, List<Object> args) throws SQLException {
+    // Past JdbcTemplate's per-call proxy and the pool's proxy to the physical connection the statements belong to
+    var target = DataSourceUtils.getTargetConnection(pooled);
+    var connection = target.isWrapperFor(Connection.class) ? target.unwrap(Connection.class) : target;
+    var statement = statements(connection).prepare(connection, key, sql);
+    int parameters = statement.getParameterMetaData().getParameterCount();
+    if (parameters != args.size()) {
+      log.error("Cannot execute '" + key + "': expected " + parameters + " arguments, got " + args.size());
+      return false;
+    }
+    for (int i = 0; i < parameters; i++) {
+      statement.setObject(i + 1, args.get(i));
+    }
+    try {
+      if (statement.execute()) {
+        statement.getResultSet().close();
+      }
+    } finally {
+      statement.clearParameters();
+    }
+    return true;
+  }
+
+  private Statements statements(Connection connection) {
+    var statements = connections.get(connection);
+    if (statements == null) {
+      connections.keySet().removeIf(StatementCache::isClosed);
+      statements = connections.computeIfAbsent(connection, it -> new Statements(size));
+    }
+    return statements;
+  }
+
+  private static boolean isClosed(Connection connection) {
+    try {
+      return connection.isClosed();
+    } catch (SQLException e) {
+      return true;
+    }
+  }
+
+  private static class Statements extends LinkedHashMap<String, Prepared> {
+    private final int size;
+
+    Statements(int size) {
+      super(16, 0.75f, true);
+      this.size = size;
+    }
+
+    PreparedStatement prepare(Connection connection, String key, String sql) throws SQLException {
+      var prepared = get(key);
+      if (prepared != null && prepared.sql.equals(sql)) {
+        return prepared.statement;
+      }
+      if (prepared != null) {
+        remove(key);
+        close(prepared);
+      }
+      var statement = connection.prepareStatement(sql);
+      put(key, new Prepared(sql, statement));
+      return statement;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Prepared> eldest) {
+      if (size() <= size) {
+        return false;
+      }
+      close(eldest.getValue());
+      return true;
+    }
+
+    private static void close(Prepared prepared) {
+      try {
+        prepared.statement.close();
+      } catch (SQLException e) {
+        log.info("Cannot close prepared statement: " + e.getMessage());
+      }
+    }
+  }
+
+  @AllArgsConstructor
+  private static class Prepared {
+    final String sql;
+    final PreparedStatement statement;
+  }
+}
@@ -0,0 +1,77 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A fixed number of locks shared by key hash: operations on keys in different stripes run in parallel, operations
+ * on the same key are serialized. {@link ReentrantLock} rather than monitors, so that virtual threads waiting for a
+ * stripe do not pin their carriers.
+ */
+final class StripedLocks {
+  private final ReentrantLock[] locks;
+
+  StripedLocks(int stripes) {
+    int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+    locks = new ReentrantLock[size];
+    for (int i = 0; i < size; i++) {
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  <T> T locked(Object key, Supplier<T> action) {
+    var lock = locks[index(key)];
+    lock.lock();
+    try {
+      return action.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Holds the stripes of both keys, always taken in index order so that two callers cannot deadlock.
+   */
+  <T> T locked(Object first, Object second, Supplier<T> action) {
+    int a = index(first);
+    int b = index(second);
+    if (a == b) {
+      return locked(first, action);
+    }
+    var outer = locks[Math.min(a, b)];
+    var inner = locks[Math.max(a, b)];
+    outer.lock();
+    try {
+      inner.lock();
+      try {
+        return action.get();
+      } finally {
+        inner.unlock();
+      }
+    } finally {
+      outer.unlock();
+    }
+  }
+
+  /**
+   * Holds every stripe, taken in index order like {@link #locked(Object, Object, Supplier)}.
+   */
+  <T> T lockedAll(Supplier<T> action) {
+    int locked = 0;
+    try {
+      for (; locked < locks.length; locked++) {
+        locks[locked].lock();
+      }
+      return action.get();
+    } finally {
+      while (locked > 0) {
+        locks[--locked].unlock();
+      }
+    }
+  }
+
+  private int index(Object key) {
+    int h = key.hashCode();
+    return (h ^ (h >>> 16)) & (locks.length - 1);
+  }
+}
@@ -0,0 +1,158 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * The JDBC {@code DataSource} in jdbc mode: a Hikari pool over the database that {@link #swap()} replaces with a
+ * fresh, empty in-memory one.
+ * <p>
+ * H2 drops tables in time quadratic in their number, whether one by one, with {@code DROP ALL OBJECTS} or on shutdown,
+ * so emptying a database of thousands of tables takes seconds. A swap instead only flips the pool: the next database is
+ * created ahead of time, and the old pool is closed in the background once no connection is borrowed from it any
+ * more; H2 closes the old database with its last connection. That only holds for named {@code jdbc:h2:mem:} databases without
+ * {@code DB_CLOSE_DELAY=-1}; for any other URL {@link #canSwap()} is false and the database has to be emptied in place.
+ */
+@Slf4j
+public class SwappableDataSource extends AbstractDataSource implements Closeable {
+  private static final String MEM = "jdbc:h2:mem:";
+  // Unique across application contexts in one JVM, which share named in-memory databases
+  private static final AtomicInteger GENERATIONS = new AtomicInteger();
+  private static final Duration DRAIN_POLL = Duration.ofMillis(10);
+  private static final Duration DRAIN_TIMEOUT = Duration.ofMinutes(1);
+
+  private final String url;
+  private final Function<String, HikariDataSource> pools;
+  private final boolean swappable;
+  private final Scheduler background;
+  // Hikari's close may wait for seconds, so it does not hold up preparing the next database
+  private final Scheduler closing;
+  private final Set<HikariDataSource> retired = ConcurrentHashMap.newKeySet();
+
+  private volatile HikariDataSource current;
+  private CompletableFuture<HikariDataSource> next;
+
+  public SwappableDataSource(String url, Function<String, HikariDataSource> pools) {
+    this.url = url;
+    this.pools = pools;
+    this.swappable = canSwap(url);
+    this.current = pools.apply(url);
+    this.background = Schedulers.newSingle("database-swap");
+    this.closing = Schedulers.newSingle("database-close");
+    this.next = swappable ? prepare() : null;
+  }
+
+  static boolean canSwap(String url) {
+    if (!url.startsWith(MEM)) {
+      return false;
+    }
+    int end = url.indexOf(';');
+    var name = end < 0 ? url.substring(MEM.length()) : url.substring(MEM.length(), end);
+    return !name.isEmpty() && !url.toUpperCase().replace(" ", "").contains("DB_CLOSE_DELAY=-1");
+  }
+
+  static String generation(String url, int generation) {
+    return suffixed(url, "_" + generation);
+  }
+
+  /**
+   * The URL with {@code suffix} appended to the database name, before any settings.
+   */
+  static String suffixed(String url, String suffix) {
+    int end = url.indexOf(';');
+    return end < 0 ? url + suffix : url.substring(0, end) + suffix + url.substring(end);
+  }
+
+  public boolean canSwap() {
+    return swappable;
+  }
+
+  /**
+   * Switches new connections to a fresh, empty database. Connections already borrowed keep working on the old one,
+   * whose pool is closed once they are all returned: closing a Hikari pool aborts the connections still in use. A
+   * connection not returned within {@link #DRAIN_TIMEOUT} is aborted anyway.
+   */
+  public synchronized void swap() {
+    if (!swappable) {
+      throw new IllegalStateException("Cannot swap database " + url);
+    }
+    var old = current;
+    current = next.join();
+    next = prepare();
+    retired.add(old);
+    closeDrained(old, System.nanoTime() + DRAIN_TIMEOUT.toNanos());
+  }
+
+  private void closeDrained(HikariDataSource pool, long deadline) {
+    closing.schedule(() -> {
+      var pooled = pool.getHikariPoolMXBean();
+      if (pooled != null && pooled.getActiveConnections() > 0) {
+        if (System.nanoTime() - deadline < 0) {
+          closeDrained(pool, deadline);
+          return;
+        }
+        log.warn("Aborting " + pooled.getActiveConnections() + " connections to the swapped out database");
+      }
+      pool.close();
+      retired.remove(pool);
+    }, DRAIN_POLL.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private CompletableFuture<HikariDataSource> prepare() {
+    return CompletableFuture.supplyAsync(() -> {
+      var pool = pools.apply(generation(url, GENERATIONS.incrementAndGet()));
+      // Hikari starts the pool, and with it the database, on the first connection
+      try (var ignored = pool.getConnection()) {
+        return pool;
+      } catch (SQLException e) {
+        log.warn("Cannot prepare next database: " + e.getMessage());
+        return pool;
+      }
+    }, background::schedule);
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    while (true) {
+      var pool = current;
+      try {
+        return pool.getConnection();
+      } catch (SQLException e) {
+        // The pool was swapped and closed under us
+        if (pool == current) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return current.getConnection(username, password);
+  }
+
+  @Override
+  public synchronized void close() {
+    current.close();
+    if (next != null) {
+      next.thenAccept(HikariDataSource::close);
+    }
+    background.dispose();
+    closing.dispose();
+    retired.forEach(HikariDataSource::close);
+  }
+}
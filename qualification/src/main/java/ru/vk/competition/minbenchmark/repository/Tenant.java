@@ -0,0 +1,37 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * What one tenant sees: a schema of its own on every shard, with its own catalogs, registries and caches over them.
+ * The default tenant is the application beans over the connection's default schema.
+ */
+@AllArgsConstructor
+class Tenant {
+  final String name;
+  /**
+   * Null for the default tenant.
+   */
+  final String schema;
+  final List<Shard> shards;
+  final ReportCache reportCache;
+  final QueryRegistry registry;
+
+  boolean isDefault() {
+    return schema == null;
+  }
+
+  Shard shard(String table) {
+    return shards.get(Shards.of(table, shards.size()));
+  }
+
+  /**
+   * Prefix of statement cache keys: pooled connections are shared by all tenants, and H2 resolves the tables of a
+   * prepared statement in the schema it was prepared in.
+   */
+  String statementKey(String key) {
+    return schema == null ? key : schema + ":" + key;
+  }
+}
@@ -0,0 +1,386 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Tenants isolated in schemas of their own, so that independent clients of one server may use the same table names
+ * and query ids. A tenant is named by a request header, see {@code minbenchmark.tenants}; requests without it use the
+ * default tenant, i.e. the application beans over the default schema.
+ * <p>
+ * The tenant of a request travels in the Reactor context and is bound to the thread that runs the blocking
+ * {@link RawRepository} call, see {@link #bound}. Its connections are switched to its schema while borrowed.
+ * <p>
+ * A background pool of {@code minbenchmark.tenants.pool-size} empty schemas is kept ready, so provisioning a tenant on
+ * its first request takes no DDL, and neither does tearing one down or resetting it: the old schema is dropped in the
+ * background. The registries of tenants live in memory only, neither snapshotted nor logged. Tenants are only
+ * supported in jdbc mode.
+ * <p>
+ * Every tenant holds a schema on each shard and registries of its own until it is dropped, so at most
+ * {@code minbenchmark.tenants.max} of them are provisioned at once: a request for one more is rejected with a
+ * {@link RejectedExecutionException}. Tenant names are at most {@value #MAX_NAME_LENGTH} letters, digits, {@code _}
+ * or {@code -}, see {@link #isValidName}.
+ */
+@Slf4j
+@Component
+public class Tenants {
+  private static final String CONTEXT_KEY = Tenants.class.getName();
+  private static final ThreadLocal<Tenant> BOUND = new ThreadLocal<>();
+  // Unique across application contexts in one JVM, which share named in-memory databases
+  private static final AtomicInteger SCHEMA_IDS = new AtomicInteger();
+  static final int MAX_NAME_LENGTH = 64;
+
+  /**
+   * One per shard, over the default schema.
+   */
+  private final List<JdbcTemplate> databases;
+  private final boolean enabled;
+  private final int poolSize;
+  private final int max;
+  private final long maximumWeight;
+  private final Duration negativeTtl;
+  private final Tenant defaultTenant;
+
+  private final ConcurrentHashMap<String, Tenant> tenants = new ConcurrentHashMap<>();
+  // Tenants provisioned or being provisioned, counted ahead so that concurrent first requests cannot exceed max
+  private final AtomicInteger admitted = new AtomicInteger();
+  private final Queue<String> schemas = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pooled = new AtomicInteger();
+  private final AtomicBoolean refilling = new AtomicBoolean();
+  // Bumped when the database is emptied, which takes the schemas being created with it
+  private final AtomicInteger epoch = new AtomicInteger();
+  private Scheduler background;
+
+  public Tenants(JdbcTemplate jdbcTemplate,
+                 SchemaCatalog catalog,
+                 ReportSizer sizer,
+                 ReportCounters counters,
+                 ReportCache reportCache,
+                 QueryRegistry registry,
+                 Optional<Shards> shards,
+                 @Value("${minbenchmark.persistence.mode:jdbc}") String mode,
+                 @Value("${minbenchmark.tenants.enabled:false}") boolean enabled,
+                 @Value("${minbenchmark.tenants.pool-size:4}") int poolSize,
+                 @Value("${minbenchmark.tenants.max:100}") int max,
+                 @Value("${minbenchmark.table-info-cache.maximum-weight:100000}") long maximumWeight,
+                 @Value("${minbenchmark.table-info-cache.negative-ttl:10s}") Duration negativeTtl) {
+    this.enabled = enabled && "jdbc".equals(mode);
+    this.poolSize = poolSize;
+    this.max = max;
+    this.maximumWeight = maximumWeight;
+    this.negativeTtl = negativeTtl;
+    if (enabled && !this.enabled) {
+      log.warn("Tenants are not supported in " + mode + " mode, ignoring the tenant header");
+    }
+
+    this.databases = new ArrayList<>();
+    var defaultShards = new ArrayList<Shard>();
+    databases.add(jdbcTemplate);
+    defaultShards.add(new Shard(jdbcTemplate, catalog, sizer, counters, swappable(shards, 0)));
+    for (int shard = 1; shard < shards.map(Shards::count).orElse(1); shard++) {
+      var shardJdbc = new JdbcTemplate(shards.get().get(shard));
+      databases.add(shardJdbc);
+      defaultShards.add(shard(shardJdbc, swappable(shards, shard)));
+    }
+    this.defaultTenant = new Tenant("", null, defaultShards, reportCache, registry);
+  }
+
+  private static SwappableDataSource swappable(Optional<Shards> shards, int shard) {
+    return shards.map(it -> it.get(shard)).filter(SwappableDataSource::canSwap).orElse(null);
+  }
+
+  @PostConstruct
+  public void start() {
+    if (enabled) {
+      background = Schedulers.newSingle("tenant-schemas");
+      refill();
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (background != null) {
+      background.dispose();
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Whether {@code name} may name a tenant: {@value #MAX_NAME_LENGTH} letters, digits, {@code _} or {@code -} at most.
+   */
+  public static boolean isValidName(String name) {
+    if (name.isEmpty() || name.length() > MAX_NAME_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Makes the calls subscribed with the returned context run as the tenant {@code name}, provisioned on first use.
+   */
+  public Function<Context, Context> context(String name) {
+    return context -> context.put(CONTEXT_KEY, new Lookup(this, name));
+  }
+
+  /**
+   * Binds the tenant of {@code context}, if any, to the thread that runs {@code callable}.
+   */
+  public static <T> Callable<T> bound(ContextView context, Callable<T> callable) {
+    Optional<Lookup> lookup = context.getOrEmpty(CONTEXT_KEY);
+    if (lookup.isEmpty()) {
+      return callable;
+    }
+    return () -> {
+      var previous = BOUND.get();
+      BOUND.set(lookup.get().get());
+      try {
+        return callable.call();
+      } finally {
+        BOUND.set(previous);
+      }
+    };
+  }
+
+  /**
+   * Whether the tenant of {@code context}, if any, can be bound without provisioning it, i.e. without JDBC.
+   */
+  public static boolean isProvisioned(ContextView context) {
+    return context.<Lookup>getOrEmpty(CONTEXT_KEY).map(Lookup::isProvisioned).orElse(true);
+  }
+
+  /**
+   * Name of the tenant of {@code context}, empty for the default one.
+   */
+  public static String name(ContextView context) {
+    return context.<Lookup>getOrEmpty(CONTEXT_KEY).map(it -> it.name).orElse("");
+  }
+
+  /**
+   * The tenant bound to this thread, or the default one.
+   */
+  Tenant current() {
+    var bound = BOUND.get();
+    return bound != null ? bound : defaultTenant;
+  }
+
+  /**
+   * Forgets the tenant; its schema is dropped in the background.
+   *
+   * @return false if there was no such tenant
+   */
+  public boolean drop(String name) {
+    var tenant = tenants.remove(name);
+    if (tenant == null) {
+      log.info("Cannot drop tenant: not exists '" + name + "'");
+      return false;
+    }
+    admitted.decrementAndGet();
+    dropLater(tenant);
+    return true;
+  }
+
+  /**
+   * Replaces the tenant's schema with an empty one from the pool and its registries with empty ones; the old schema
+   * is dropped in the background.
+   */
+  void reset(Tenant tenant) {
+    var previous = new ArrayList<Tenant>(1);
+    tenants.compute(tenant.name, (name, current) -> {
+      if (current != null) {
+        previous.add(current);
+      }
+      return provision(name);
+    });
+    previous.forEach(this::dropLater);
+  }
+
+  /**
+   * Forgets every tenant and pooled schema after the whole database was emptied.
+   */
+  void cleared() {
+    tenants.values().forEach(tenant -> tenant.shards.forEach(it -> it.counters.clear()));
+    tenants.clear();
+    admitted.set(0);
+    epoch.incrementAndGet();
+    while (schemas.poll() != null) {
+      pooled.decrementAndGet();
+    }
+    refill();
+  }
+
+  private Tenant get(String name) {
+    return name.isEmpty() ? defaultTenant : tenants.computeIfAbsent(name, this::admit);
+  }
+
+  private Tenant admit(String name) {
+    if (admitted.incrementAndGet() > max) {
+      admitted.decrementAndGet();
+      throw new RejectedExecutionException("Too many tenants, cannot provision '" + name + "'");
+    }
+    try {
+      return provision(name);
+    } catch (RuntimeException e) {
+      admitted.decrementAndGet();
+      throw e;
+    }
+  }
+
+  private Tenant provision(String name) {
+    var schema = schemas.poll();
+    if (schema != null) {
+      pooled.decrementAndGet();
+    } else {
+      log.warn("Schema pool is empty, creating a schema for tenant '" + name + "' in place");
+      schema = createSchema();
+    }
+    refill();
+    var shards = new ArrayList<Shard>(databases.size());
+    for (var database : databases) {
+      var schemaJdbc = new JdbcTemplate(new SchemaDataSource(database.getDataSource(), schema));
+      shards.add(shard(schemaJdbc, null));
+    }
+    log.info("Tenant '" + name + "' provisioned in schema " + schema);
+    return new Tenant(name, schema, shards, new ReportCache(), new QueryRegistry());
+  }
+
+  private Shard shard(JdbcTemplate jdbcTemplate, SwappableDataSource database) {
+    return new Shard(jdbcTemplate, new SchemaCatalog(jdbcTemplate, new CatalogLoader(jdbcTemplate), maximumWeight, negativeTtl),
+      new ReportSizer(jdbcTemplate), new ReportCounters(jdbcTemplate), database);
+  }
+
+  private void refill() {
+    if (background == null || pooled.get() >= poolSize || !refilling.compareAndSet(false, true)) {
+      return;
+    }
+    background.schedule(() -> {
+      try {
+        while (pooled.get() < poolSize) {
+          int created = epoch.get();
+          var schema = createSchema();
+          if (epoch.get() == created) {
+            schemas.add(schema);
+            pooled.incrementAndGet();
+          }
+        }
+      } catch (Exception e) {
+        log.error("Cannot fill schema pool: " + e.getMessage());
+      } finally {
+        refilling.set(false);
+      }
+    });
+  }
+
+  private String createSchema() {
+    var schema = "TENANT_" + SCHEMA_IDS.incrementAndGet();
+    for (var database : databases) {
+      database.execute("CREATE SCHEMA " + schema);
+    }
+    return schema;
+  }
+
+  private void dropLater(Tenant tenant) {
+    tenant.shards.forEach(it -> it.counters.clear());
+    background.schedule(() -> {
+      for (var database : databases) {
+        try {
+          database.execute("DROP SCHEMA " + tenant.schema + " CASCADE");
+        } catch (Exception e) {
+          log.error("Cannot drop schema " + tenant.schema + ": " + e.getMessage());
+        }
+      }
+    });
+  }
+
+  @AllArgsConstructor
+  private static class Lookup {
+    final Tenants tenants;
+    final String name;
+
+    Tenant get() {
+      return tenants.get(name);
+    }
+
+    boolean isProvisioned() {
+      return name.isEmpty() || tenants.tenants.containsKey(name);
+    }
+  }
+
+  /**
+   * Hands out connections switched to the tenant's schema, and switched back when they are closed: Hikari only resets
+   * the schema of a returned connection when the pool has one configured.
+   */
+  private static class SchemaDataSource extends DelegatingDataSource {
+    final String schema;
+
+    SchemaDataSource(DataSource dataSource, String schema) {
+      super(dataSource);
+      this.schema = schema;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      var connection = super.getConnection();
+      String previous;
+      try {
+        previous = connection.getSchema();
+        connection.setSchema(schema);
+      } catch (SQLException | RuntimeException e) {
+        connection.close();
+        throw e;
+      }
+      return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("close")) {
+            try {
+              connection.setSchema(previous);
+            } finally {
+              connection.close();
+            }
+            return null;
+          }
+          try {
+            return method.invoke(connection, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+    }
+  }
+}
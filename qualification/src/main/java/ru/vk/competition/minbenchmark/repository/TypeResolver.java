@@ -0,0 +1,208 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.vk.competition.minbenchmark.entity.ColumnInfo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Maps user-supplied column types to the names H2 reports in {@code SHOW COLUMNS} (without the length).
+ * <p>
+ * Known H2 2.1 aliases are resolved in memory. Anything else is checked once by creating a probe table,
+ * and the answer is memoized.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TypeResolver {
+  private static final int MAX_PROBED = 10_000;
+  private static final Pattern PLAIN = Pattern.compile("[A-Z0-9_ ]+");
+  private static final Pattern WITH_PARAMETER = Pattern.compile("([A-Z0-9_ ]+?) ?\\( ?(\\d{1,19}) ?\\) ?([A-Z ]*)");
+
+  private static final Map<String, Alias> ALIASES = new HashMap<>();
+
+  static {
+    long maxLength = 1_000_000_000L;
+    long maxLob = Long.MAX_VALUE;
+    aliases("CHARACTER", 1, maxLength, "CHAR", "CHARACTER", "NCHAR", "NATIONAL CHAR", "NATIONAL CHARACTER");
+    aliases("CHARACTER VARYING", 1, maxLength, "VARCHAR", "CHARACTER VARYING", "CHAR VARYING",
+      "NATIONAL CHARACTER VARYING", "NATIONAL CHAR VARYING", "NCHAR VARYING", "LONGVARCHAR", "VARCHAR2", "NVARCHAR",
+      "NVARCHAR2", "VARCHAR_CASESENSITIVE", "TINYTEXT", "TEXT", "MEDIUMTEXT", "LONGTEXT", "NTEXT", "TID");
+    aliases("VARCHAR_IGNORECASE", 1, maxLength, "VARCHAR_IGNORECASE");
+    aliases("CHARACTER LARGE OBJECT", 1, maxLob, "CLOB", "NCLOB", "CHARACTER LARGE OBJECT", "CHAR LARGE OBJECT",
+      "NATIONAL CHARACTER LARGE OBJECT", "NCHAR LARGE OBJECT");
+    aliases("BINARY", 1, maxLength, "BINARY");
+    aliases("BINARY VARYING", 1, maxLength, "VARBINARY", "BINARY VARYING", "LONGVARBINARY", "RAW", "BYTEA");
+    aliases("BINARY LARGE OBJECT", 1, maxLob, "BLOB", "BINARY LARGE OBJECT", "TINYBLOB", "MEDIUMBLOB", "LONGBLOB", "IMAGE");
+    aliases("BOOLEAN", 0, 0, "BOOLEAN", "BOOL", "BIT");
+    aliases("TINYINT", 0, 0, "TINYINT");
+    aliases("SMALLINT", 0, 0, "SMALLINT", "INT2");
+    aliases("INTEGER", 0, 0, "INTEGER", "INT", "MEDIUMINT", "INT4", "SIGNED", "SERIAL");
+    aliases("BIGINT", 0, 0, "BIGINT", "INT8", "LONG", "BIGSERIAL", "IDENTITY");
+    aliases("NUMERIC", 1, 100_000, "NUMERIC");
+    aliases("DECIMAL", 1, 100_000, "DECIMAL", "DEC");
+    aliases("DECFLOAT", 1, 100_000, "DECFLOAT");
+    ALIASES.put("NUMBER", new Alias("DECFLOAT", "NUMERIC", 1, 100_000));
+    aliases("REAL", 0, 0, "REAL", "FLOAT4");
+    aliases("DOUBLE PRECISION", 0, 0, "DOUBLE", "DOUBLE PRECISION", "FLOAT8");
+    aliases("FLOAT", 1, 53, "FLOAT");
+    aliases("DATE", 0, 0, "DATE");
+    aliases("TIME", 0, 9, "TIME", "TIME WITHOUT TIME ZONE");
+    aliases("TIME WITH TIME ZONE", 0, 9, "TIME WITH TIME ZONE");
+    aliases("TIMESTAMP", 0, 9, "TIMESTAMP", "TIMESTAMP WITHOUT TIME ZONE", "DATETIME", "DATETIME2");
+    aliases("TIMESTAMP", 0, 0, "SMALLDATETIME");
+    aliases("TIMESTAMP WITH TIME ZONE", 0, 9, "TIMESTAMP WITH TIME ZONE");
+    for (var interval : new String[]{"YEAR", "MONTH", "DAY", "HOUR", "MINUTE", "SECOND", "YEAR TO MONTH", "DAY TO HOUR",
+      "DAY TO MINUTE", "DAY TO SECOND", "HOUR TO MINUTE", "HOUR TO SECOND", "MINUTE TO SECOND"}) {
+      aliases("INTERVAL " + interval, 1, 18, "INTERVAL " + interval);
+    }
+    aliases("JAVA_OBJECT", 1, maxLength, "JAVA_OBJECT", "OTHER", "OBJECT");
+    aliases("JSON", 1, maxLength, "JSON");
+    aliases("UUID", 0, 0, "UUID");
+    aliases("GEOMETRY", 0, 0, "GEOMETRY");
+  }
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final ConcurrentHashMap<String, String> probed = new ConcurrentHashMap<>();
+  private final AtomicInteger probeIds = new AtomicInteger();
+
+  /**
+   * @return columns with upper-cased names and canonical types, or empty if a name is duplicated or a type is invalid
+   */
+  public Optional<List<ColumnInfo>> mapColumnTypes(List<ColumnInfo> infos) {
+    var unresolved = unresolvedTypes(infos);
+    if (!unresolved.isEmpty() && !probe(unresolved)) {
+      return Optional.empty();
+    }
+    return mapResolved(infos);
+  }
+
+  /**
+   * @return distinct normalized types that are neither known aliases nor probed before
+   */
+  public List<String> unresolvedTypes(List<ColumnInfo> infos) {
+    var unknown = new ArrayList<String>();
+    for (var info : infos) {
+      var key = normalize(info.getType());
+      if (resolve(key) == null && !unknown.contains(key)) {
+        unknown.add(key);
+      }
+    }
+    return unknown;
+  }
+
+  /**
+   * @return columns with upper-cased names and canonical types, or empty if a name is duplicated or a type is unresolved
+   */
+  public Optional<List<ColumnInfo>> mapResolved(List<ColumnInfo> infos) {
+    var names = new HashSet<String>();
+    var mapped = new ArrayList<ColumnInfo>();
+    for (var info : infos) {
+      var name = info.getName().toUpperCase();
+      var type = resolve(normalize(info.getType()));
+      if (!names.add(name) || type == null) {
+        return Optional.empty();
+      }
+      mapped.add(new ColumnInfo(name, type));
+    }
+    return Optional.of(mapped);
+  }
+
+  /**
+   * Remembers what H2 reported for types from {@link #unresolvedTypes}, in the same order.
+   */
+  public void probed(List<String> types, List<String> resolved) {
+    for (int i = 0; i < types.size() && i < resolved.size(); i++) {
+      if (probed.size() < MAX_PROBED) {
+        probed.put(types.get(i), resolved.get(i));
+      }
+    }
+  }
+
+  public String nextProbeTable() {
+    return "ZZZ_TYPE_PROBE_ZZZ_" + probeIds.getAndIncrement();
+  }
+
+  public static String buildProbeQuery(String tableName, List<String> types) {
+    var query = new StringBuilder("CREATE TABLE ").append(tableName).append(" (");
+    for (int i = 0; i < types.size(); i++) {
+      query.append(i == 0 ? "" : ", ").append("C").append(i).append(' ').append(types.get(i));
+    }
+    return query.append(")").toString();
+  }
+
+  private String resolve(String normalized) {
+    return resolveAlias(normalized).orElseGet(() -> probed.get(normalized));
+  }
+
+  static Optional<String> resolveAlias(String normalized) {
+    if (PLAIN.matcher(normalized).matches()) {
+      var alias = ALIASES.get(normalized);
+      return alias == null ? Optional.empty() : Optional.of(alias.canonical);
+    }
+    var matcher = WITH_PARAMETER.matcher(normalized);
+    if (!matcher.matches()) {
+      return Optional.empty();
+    }
+    var suffix = matcher.group(3).trim();
+    var alias = ALIASES.get(suffix.isEmpty() ? matcher.group(1) : matcher.group(1) + " " + suffix);
+    if (alias == null || alias.maxParameter == 0 || matcher.group(2).length() > 18) {
+      return Optional.empty();
+    }
+    long parameter = Long.parseLong(matcher.group(2));
+    if (parameter < alias.minParameter || parameter > alias.maxParameter) {
+      return Optional.empty();
+    }
+    return Optional.of(alias.canonicalWithParameter);
+  }
+
+  static String normalize(String type) {
+    return type.trim().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+  }
+
+  private boolean probe(List<String> types) {
+    var tableName = nextProbeTable();
+    try {
+      jdbcTemplate.execute(buildProbeQuery(tableName, types));
+    } catch (Exception e) {
+      log.info("Cannot resolve column types " + types + ": " + e.getMessage());
+      return false;
+    }
+    try {
+      var resolved = jdbcTemplate.query("SHOW COLUMNS FROM " + tableName,
+        (rs, rowNum) -> rs.getString("TYPE").replaceAll("\\(\\d+\\)", ""));
+      probed(types, resolved);
+      return resolved.size() == types.size();
+    } finally {
+      jdbcTemplate.execute("DROP TABLE " + tableName);
+    }
+  }
+
+  private static void aliases(String canonical, long minParameter, long maxParameter, String... aliases) {
+    for (var alias : aliases) {
+      ALIASES.put(alias, new Alias(canonical, canonical, minParameter, maxParameter));
+    }
+  }
+
+  @AllArgsConstructor
+  private static class Alias {
+    final String canonical;
+    final String canonicalWithParameter;
+    final long minParameter;
+    final long maxParameter;
+  }
+}
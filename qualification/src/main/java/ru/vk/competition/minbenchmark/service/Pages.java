@@ -0,0 +1,25 @@
+package ru.vk.competition.minbenchmark.service;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Cursor pagination of the registries: a page holds the queries with ids greater than {@code after}, at most
+ * {@code limit} of them; the last id of a page is the cursor of the next one. Both are optional.
+ */
+final class Pages {
+
+  private Pages() {
+  }
+
+  static long from(Integer after) {
+    return after == null ? Long.MIN_VALUE : after + 1L;
+  }
+
+  static int limit(Integer limit) {
+    return limit == null ? Integer.MAX_VALUE : limit;
+  }
+
+  static <T> Flux<T> page(Flux<T> all, Integer limit) {
+    return limit == null ? all : all.take(limit, true);
+  }
+}
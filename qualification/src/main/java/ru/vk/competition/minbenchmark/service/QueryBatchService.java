@@ -0,0 +1,25 @@
+package ru.vk.competition.minbenchmark.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.entity.QueryBatch;
+import ru.vk.competition.minbenchmark.repository.ReactiveRepository;
+
+import java.util.List;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class QueryBatchService {
+
+  private final ReactiveRepository repo;
+
+  /**
+   * @return the update count of each statement, or empty if the batch was not committed
+   */
+  public Mono<List<Integer>> executeBatch(QueryBatch batch) {
+    return repo.executeBatch(batch.getTableQueryIds(), batch.getSingleQueryIds()).flatMap(Mono::justOrEmpty);
+  }
+}
@@ -3,21 +3,32 @@ package ru.vk.competition.minbenchmark.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.entity.CacheStats;
 import ru.vk.competition.minbenchmark.entity.ColumnInfo;
 import ru.vk.competition.minbenchmark.entity.ColumnInfoWithSize;
+import ru.vk.competition.minbenchmark.entity.DBTable;
 import ru.vk.competition.minbenchmark.entity.Report;
-import ru.vk.competition.minbenchmark.repository.RawRepository;
+import ru.vk.competition.minbenchmark.entity.ReportTable;
+import ru.vk.competition.minbenchmark.repository.ReactiveRepository;
+
+import java.time.Duration;
+import java.util.List;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class ReportService {
 
-  private final RawRepository repo;
+  private final ReactiveRepository repo;
 
   public Mono<Report<ColumnInfoWithSize>> getReportById(int id) {
-    return Mono.fromCallable(() -> repo.getReportById(id)).flatMap(Mono::justOrEmpty);
+    return repo.getReportById(id).flatMap(Mono::justOrEmpty);
+  }
+
+  public Mono<CacheStats> getCacheStats() {
+    return repo.getReportCacheStats();
   }
 
   public Mono<Boolean> createReport(Report<ColumnInfo> report) {
@@ -26,51 +37,59 @@ public class ReportService {
       return Mono.just(false);
     }
 
-    return Mono.fromCallable(() -> {
-      for (var table : report.getTables()) {
-        String tableName = table.getName();
-        var info = repo.getTableInfo(tableName);
-        if (info.isEmpty()) {
-          log.info("Fail to create report: bad table name '" + tableName + "'");
-          return false;
-        }
+    return Flux.fromIterable(report.getTables())
+      .concatMap(this::checkTable)
+      .all(ok -> ok)
+      .flatMap(ok -> ok ? repo.createReport(report) : Mono.just(false));
+  }
 
-        var thisColumnsOptional = repo.mapColumnTypes(table.getColumns());
+  private Mono<Boolean> checkTable(ReportTable<ColumnInfo> table) {
+    String tableName = table.getName();
+    return repo.getTableInfo(tableName).flatMap(info -> {
+      if (info.isEmpty()) {
+        log.info("Fail to create report: bad table name '" + tableName + "'");
+        return Mono.just(false);
+      }
+      return repo.mapColumnTypes(table.getColumns()).map(thisColumnsOptional -> {
         if (thisColumnsOptional.isEmpty()) {
           log.info("Fail to map columns '" + tableName + "'");
           return false;
         }
+        return checkColumns(thisColumnsOptional.get(), info.get());
+      });
+    });
+  }
 
-        var thisColumns = thisColumnsOptional.get();
-        var realColumns = info.get().getColumnInfos();
-        for (var column : thisColumns) {
-          String columnName = column.getName();
-          String columnType = column.getType();
-
-          boolean founded = false;
-          for (var realColumn : realColumns) {
-            if (realColumn.getName().equals(columnName)) {
-              if (!realColumn.getType().equals(columnType)) {
-                log.info("Fail to create report: bad column type '" + columnType + "' (expected '" + realColumn.getType() + "')");
-                return false;
-              }
-              founded = true;
-              break;
-            }
-          }
+  private static boolean checkColumns(List<ColumnInfo> thisColumns, DBTable info) {
+    var realColumns = info.getColumnInfos();
+    for (var column : thisColumns) {
+      String columnName = column.getName();
+      String columnType = column.getType();
 
-          if (!founded) {
-            log.info("Fail to create report: bad column name '" + columnName + "'");
+      boolean founded = false;
+      for (var realColumn : realColumns) {
+        if (realColumn.getName().equals(columnName)) {
+          if (!realColumn.getType().equals(columnType)) {
+            log.info("Fail to create report: bad column type '" + columnType + "' (expected '" + realColumn.getType() + "')");
             return false;
           }
+          founded = true;
+          break;
         }
       }
 
-      return repo.createReport(report);
-    });
+      if (!founded) {
+        log.info("Fail to create report: bad column name '" + columnName + "'");
+        return false;
+      }
+    }
+    return true;
   }
 
-  public void clear() {
-    repo.clear();
+  /**
+   * @return how long the reset took
+   */
+  public Duration clear() {
+    return repo.clear().block();
   }
 }
\ No newline at end of file
@@ -3,10 +3,12 @@ package ru.vk.competition.minbenchmark.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.vk.competition.minbenchmark.entity.SingleQuery;
-import ru.vk.competition.minbenchmark.repository.RawRepository;
+import ru.vk.competition.minbenchmark.repository.ReactiveRepository;
 
+import java.time.Duration;
 import java.util.List;
 
 @Service
@@ -14,33 +16,60 @@ import java.util.List;
 @RequiredArgsConstructor
 public class SingleQueryService {
 
-  private final RawRepository repo;
+  private final ReactiveRepository repo;
 
   public Mono<Boolean> addNewQuery(SingleQuery query) {
-    return Mono.fromCallable(() -> repo.newSingleQuery(query));
+    return repo.newSingleQuery(query);
   }
 
   public Mono<Boolean> updateQuery(SingleQuery query) {
-    return Mono.fromCallable(() -> repo.updateSingleQuery(query));
+    return repo.updateSingleQuery(query);
   }
 
   public Mono<Boolean> deleteQuery(int id) {
-    return Mono.fromCallable(() -> repo.deleteSingleQuery(id));
+    return repo.deleteSingleQuery(id);
+  }
+
+  public Mono<List<Boolean>> addNewQueries(List<SingleQuery> queries) {
+    return repo.newSingleQueries(queries);
+  }
+
+  public Mono<List<Boolean>> updateQueries(List<SingleQuery> queries) {
+    return repo.updateSingleQueries(queries);
+  }
+
+  public Mono<List<Boolean>> deleteQueries(List<Integer> ids) {
+    return repo.deleteSingleQueries(ids);
   }
 
   public Mono<Boolean> executeQuery(int id) {
-    return Mono.fromCallable(() -> repo.executeSingleQuery(id));
+    return repo.executeSingleQuery(id);
+  }
+
+  public Mono<Boolean> executeQuery(int id, List<Object> args) {
+    return repo.executeSingleQuery(id, args);
   }
 
   public Mono<SingleQuery> getQueryById(int id) {
-    return Mono.fromCallable(() -> repo.getSingleQueryById(id)).flatMap(Mono::justOrEmpty);
+    return repo.getSingleQueryById(id).flatMap(Mono::justOrEmpty);
   }
 
   public Mono<List<SingleQuery>> getAllQueries() {
-    return Mono.fromCallable(() -> repo.getAllSingleQueries().stream().toList());
+    return repo.getAllSingleQueries();
+  }
+
+  public Mono<List<SingleQuery>> getAllQueries(Integer after, Integer limit) {
+    return streamAllQueries(after, limit).collectList();
+  }
+
+  public Flux<SingleQuery> streamAllQueries(Integer after, Integer limit) {
+    return Pages.page(repo.streamAllSingleQueries(Pages.from(after)), limit);
   }
 
-  public void clear() {
-    repo.clear();
+  /**
+   * @return how long the reset took
+   */
+  public Duration clear() {
+    return repo.clear().block();
   }
 }
\ No newline at end of file
@@ -3,10 +3,12 @@ package ru.vk.competition.minbenchmark.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.vk.competition.minbenchmark.entity.TableQuery;
-import ru.vk.competition.minbenchmark.repository.RawRepository;
+import ru.vk.competition.minbenchmark.repository.ReactiveRepository;
 
+import java.time.Duration;
 import java.util.List;
 
 @Service
@@ -14,37 +16,72 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TableQueryService {
 
-  private final RawRepository repo;
+  private final ReactiveRepository repo;
 
   public Mono<Boolean> addNewTableQuery(TableQuery query) {
-    return Mono.fromCallable(() -> repo.newTableQuery(query));
+    return repo.newTableQuery(query);
   }
 
   public Mono<Boolean> updateTableQuery(TableQuery query) {
-    return Mono.fromCallable(() -> repo.updateTableQuery(query));
+    return repo.updateTableQuery(query);
   }
 
   public Mono<Boolean> deleteTableQuery(int id) {
-    return Mono.fromCallable(() -> repo.deleteTableQuery(id));
+    return repo.deleteTableQuery(id);
+  }
+
+  public Mono<List<Boolean>> addNewTableQueries(List<TableQuery> queries) {
+    return repo.newTableQueries(queries);
+  }
+
+  public Mono<List<Boolean>> updateTableQueries(List<TableQuery> queries) {
+    return repo.updateTableQueries(queries);
+  }
+
+  public Mono<List<Boolean>> deleteTableQueries(List<Integer> ids) {
+    return repo.deleteTableQueries(ids);
   }
 
   public Mono<Boolean> executeTableQuery(int id) {
-    return Mono.fromCallable(() -> repo.executeTableQuery(id));
+    return repo.executeTableQuery(id);
+  }
+
+  public Mono<Boolean> executeTableQuery(int id, List<Object> args) {
+    return repo.executeTableQuery(id, args);
   }
 
   public Mono<List<TableQuery>> getTableQueries(String name) {
-    return Mono.fromCallable(() -> repo.getTableQueries(name)).flatMap(Mono::justOrEmpty);
+    return repo.getTableQueries(name).flatMap(Mono::justOrEmpty);
+  }
+
+  public Mono<List<TableQuery>> getTableQueries(String name, Integer after, Integer limit) {
+    return repo.getTableQueries(name, Pages.from(after), Pages.limit(limit)).flatMap(Mono::justOrEmpty);
+  }
+
+  public Flux<TableQuery> streamTableQueries(String name, Integer after, Integer limit) {
+    return Pages.page(repo.streamTableQueries(name, Pages.from(after)), limit);
   }
 
   public Mono<TableQuery> getQueryById(int id) {
-    return Mono.fromCallable(() -> repo.getTableQueryById(id)).flatMap(Mono::justOrEmpty);
+    return repo.getTableQueryById(id).flatMap(Mono::justOrEmpty);
   }
 
   public Mono<List<TableQuery>> getAllTableQueries() {
-    return Mono.fromCallable(() -> repo.getAllTableQueries().stream().toList());
+    return repo.getAllTableQueries();
+  }
+
+  public Mono<List<TableQuery>> getAllTableQueries(Integer after, Integer limit) {
+    return streamAllTableQueries(after, limit).collectList();
+  }
+
+  public Flux<TableQuery> streamAllTableQueries(Integer after, Integer limit) {
+    return Pages.page(repo.streamAllTableQueries(Pages.from(after)), limit);
   }
 
-  public void clear() {
-    repo.clear();
+  /**
+   * @return how long the reset took
+   */
+  public Duration clear() {
+    return repo.clear().block();
   }
 }
\ No newline at end of file
@@ -4,18 +4,21 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.entity.CacheStats;
 import ru.vk.competition.minbenchmark.entity.DBTable;
-import ru.vk.competition.minbenchmark.repository.RawRepository;
+import ru.vk.competition.minbenchmark.repository.ReactiveRepository;
+
+import java.time.Duration;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class TableService {
 
-  private final RawRepository repo;
+  private final ReactiveRepository repo;
 
   public Mono<DBTable> getTableByName(String name) {
-    return Mono.fromCallable(() -> repo.getTableInfo(name)).flatMap(Mono::justOrEmpty);
+    return repo.getTableInfo(name).flatMap(Mono::justOrEmpty);
   }
 
   public Mono<Boolean> createTable(DBTable table) {
@@ -29,14 +32,21 @@ public class TableService {
       return Mono.just(false);
     }
 
-    return Mono.fromCallable(() -> repo.createTable(table));
+    return repo.createTable(table);
   }
 
   public Mono<Boolean> dropTable(String name) {
-    return Mono.fromCallable(() -> repo.dropTable(name));
+    return repo.dropTable(name);
+  }
+
+  public Mono<CacheStats> getCacheStats() {
+    return repo.getTableCacheStats();
   }
 
-  public void clear() {
-    repo.clear();
+  /**
+   * @return how long the reset took
+   */
+  public Duration clear() {
+    return repo.clear().block();
   }
 }
\ No newline at end of file
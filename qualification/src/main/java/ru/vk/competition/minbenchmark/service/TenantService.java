@@ -0,0 +1,17 @@
+package ru.vk.competition.minbenchmark.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.repository.Tenants;
+
+@Service
+@RequiredArgsConstructor
+public class TenantService {
+
+  private final Tenants tenants;
+
+  public Mono<Boolean> dropTenant(String name) {
+    return Mono.fromCallable(() -> tenants.drop(name));
+  }
+}
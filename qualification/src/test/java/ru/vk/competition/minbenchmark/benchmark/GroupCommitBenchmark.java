@@ -0,0 +1,74 @@
+package ru.vk.competition.minbenchmark.benchmark;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.MinbenchmarkApplication;
+import ru.vk.competition.minbenchmark.entity.ColumnInfo;
+import ru.vk.competition.minbenchmark.entity.DBTable;
+import ru.vk.competition.minbenchmark.entity.TableQuery;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Insert throughput of stored table queries executed through the REST API with and without group commit.
+ * Each run boots the application on a random port with its own in-memory database; the table query inserts a row
+ * with a generated key, so every execution writes.
+ * Run manually: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...}
+ * or from the IDE; args are {@code [requests] [concurrency] [linger]}.
+ */
+public class GroupCommitBenchmark {
+
+  public static void main(String[] args) {
+    int requests = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+    int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+    var linger = args.length > 2 ? args[2] : "1ms";
+
+    for (var enabled : List.of(false, true)) {
+      var context = new SpringApplication(MinbenchmarkApplication.class).run(
+        "--server.port=0",
+        "--logging.level.root=WARN",
+        "--minbenchmark.persistence.mode=jdbc",
+        "--minbenchmark.persistence.group-commit.enabled=" + enabled,
+        "--minbenchmark.persistence.group-commit.linger=" + linger,
+        "--spring.datasource.url=jdbc:h2:mem:group_commit_" + enabled);
+      try {
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        var client = WebClient.create("http://localhost:" + port + "/api");
+        client.post().uri("/table/create-table")
+          .bodyValue(new DBTable("Bench", 2, "ID", List.of(new ColumnInfo("ID", "int auto_increment"), new ColumnInfo("DATA", "varchar(40)"))))
+          .retrieve().toBodilessEntity().block();
+        client.post().uri("/table-query/add-new-query-to-table")
+          .bodyValue(new TableQuery(1, "Bench", "insert into Bench (data) values ('payload')"))
+          .retrieve().toBodilessEntity().block();
+
+        execute(client, requests / 10, concurrency);
+        long start = System.nanoTime();
+        int failed = execute(client, requests, concurrency);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("group commit %-5s %10.0f req/s (%d requests, %d concurrent, %d failed)%n",
+          enabled, requests / seconds, requests, concurrency, failed);
+      } finally {
+        context.close();
+      }
+    }
+    System.exit(0);
+  }
+
+  private static int execute(WebClient client, int requests, int concurrency) {
+    var failed = new AtomicInteger();
+    Flux.range(0, requests)
+      .flatMap(i -> client.get().uri("/table-query/execute-table-query-by-id/1")
+        .retrieve()
+        .toBodilessEntity()
+        .onErrorResume(e -> {
+          failed.incrementAndGet();
+          return Mono.empty();
+        }), concurrency)
+      .blockLast();
+    return failed.get();
+  }
+}
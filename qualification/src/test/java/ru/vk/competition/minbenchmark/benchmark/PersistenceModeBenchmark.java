@@ -0,0 +1,73 @@
+package ru.vk.competition.minbenchmark.benchmark;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.MinbenchmarkApplication;
+import ru.vk.competition.minbenchmark.entity.SingleQuery;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares HTTP throughput of the {@code jdbc} and {@code r2dbc} persistence modes.
+ * Each mode boots the application on a random port with its own in-memory database and executes stored
+ * single queries (an insert and a point select) through the REST API.
+ * Run manually: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...}
+ * or from the IDE; args are {@code [requests] [concurrency]}.
+ */
+public class PersistenceModeBenchmark {
+
+  public static void main(String[] args) {
+    int requests = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+    int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+    for (var mode : Arrays.asList("jdbc", "r2dbc")) {
+      var context = new SpringApplication(MinbenchmarkApplication.class).run(
+        "--server.port=0",
+        "--logging.level.root=WARN",
+        "--minbenchmark.persistence.mode=" + mode,
+        "--spring.datasource.url=jdbc:h2:mem:bench_" + mode,
+        "--spring.r2dbc.url=r2dbc:h2:mem:///bench_" + mode);
+      try {
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        var client = WebClient.create("http://localhost:" + port + "/api/single-query");
+        add(client, new SingleQuery(1, "create table Bench (id int auto_increment primary key, data varchar)"));
+        add(client, new SingleQuery(2, "insert into Bench (data) values ('payload')"));
+        add(client, new SingleQuery(3, "select data from Bench where id = 1"));
+        execute(client, List.of(1), 1, 1);
+
+        execute(client, List.of(2, 3), requests / 10, concurrency);
+        long start = System.nanoTime();
+        int failed = execute(client, List.of(2, 3), requests, concurrency);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-6s %10.0f req/s (%d requests, %d concurrent, %d failed)%n",
+          mode, requests / seconds, requests, concurrency, failed);
+      } finally {
+        context.close();
+      }
+    }
+    System.exit(0);
+  }
+
+  private static void add(WebClient client, SingleQuery query) {
+    client.post().uri("/add-new-query").bodyValue(query).retrieve().toBodilessEntity().block();
+  }
+
+  private static int execute(WebClient client, List<Integer> ids, int requests, int concurrency) {
+    var failed = new AtomicInteger();
+    Flux.range(0, requests)
+      .flatMap(i -> client.get().uri("/execute-single-query-by-id/" + ids.get(i % ids.size()))
+        .retrieve()
+        .toBodilessEntity()
+        .onErrorResume(e -> {
+          failed.incrementAndGet();
+          return Mono.empty();
+        }), concurrency)
+      .blockLast();
+    return failed.get();
+  }
+}
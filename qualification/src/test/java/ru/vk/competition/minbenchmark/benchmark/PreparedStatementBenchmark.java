@@ -0,0 +1,52 @@
+package ru.vk.competition.minbenchmark.benchmark;
+
+import ru.vk.competition.minbenchmark.repository.StatementCache;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Executions per second of a stored insert with a new value each time: the value inlined into the SQL text and
+ * run as a plain statement, which H2 parses and plans on every call, against a {@code ?} placeholder bound on the
+ * prepared statement {@link StatementCache} keeps for the query.
+ * Run manually: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...}
+ * or from the IDE; args are {@code [executions]}.
+ */
+public class PreparedStatementBenchmark {
+
+  public static void main(String[] args) throws SQLException {
+    int executions = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+
+    try (var connection = DriverManager.getConnection("jdbc:h2:mem:prepared_bench")) {
+      var cache = new StatementCache(256);
+      for (int round = 0; round < 2; round++) {
+        measure(connection, "inlined", executions, id -> {
+          try (var statement = connection.createStatement()) {
+            statement.execute("insert into Bench values (" + id + ", 'payload " + id + "')");
+          }
+        });
+        measure(connection, "prepared", executions, id ->
+          cache.execute(connection, "table query 1", "insert into Bench values (?, ?)", List.of(id, "payload " + id)));
+      }
+    }
+  }
+
+  private interface Execution {
+    void run(int id) throws SQLException;
+  }
+
+  private static void measure(Connection connection, String name, int executions, Execution execution) throws SQLException {
+    try (var statement = connection.createStatement()) {
+      statement.execute("drop table if exists Bench");
+      statement.execute("create table Bench (id int primary key, data varchar)");
+    }
+    long start = System.nanoTime();
+    for (int id = 0; id < executions; id++) {
+      execution.run(id);
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%-9s %10.0f executions/s%n", name, executions / seconds);
+  }
+}
@@ -0,0 +1,93 @@
+package ru.vk.competition.minbenchmark.benchmark;
+
+import ru.vk.competition.minbenchmark.entity.TableQuery;
+import ru.vk.competition.minbenchmark.repository.QueryRegistry;
+
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Heap footprint and lookup throughput of the table query registry: {@link QueryRegistry} on unboxed int maps and
+ * sets against the boxed {@code ConcurrentHashMap<Integer, ...>} plus {@code ConcurrentSkipListSet<Integer>} per
+ * table it used to be. The queries themselves are allocated up front, so only the structures are measured.
+ * Run manually with a fixed heap, e.g. {@code MAVEN_OPTS="-Xms2g -Xmx2g" mvn test-compile exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=...}, or from the IDE; args are {@code [queries] [tables] [lookups]}.
+ */
+public class RegistryFootprintBenchmark {
+
+  public static void main(String[] args) {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+    int tables = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+    int lookups = args.length > 2 ? Integer.parseInt(args[2]) : 20_000_000;
+
+    var queries = new ArrayList<TableQuery>(count);
+    for (int id = 0; id < count; id++) {
+      queries.add(new TableQuery(id, "T" + id % tables, "select " + id % 100));
+    }
+
+    var boxed = measure("boxed", () -> {
+      var registry = new Boxed();
+      queries.forEach(registry::add);
+      return registry;
+    });
+    var unboxed = measure("unboxed", () -> {
+      var registry = new QueryRegistry();
+      queries.forEach(query -> registry.newTableQuery(query, () -> true));
+      return registry;
+    });
+
+    lookups("boxed", count, lookups, id -> Optional.ofNullable(boxed.queries.get(id)).isPresent());
+    lookups("unboxed", count, lookups, id -> unboxed.getTableQueryById(id).isPresent());
+    lookups("boxed", count, lookups, id -> Optional.ofNullable(boxed.queries.get(id)).isPresent());
+    lookups("unboxed", count, lookups, id -> unboxed.getTableQueryById(id).isPresent());
+    System.out.println(queries.size() + " " + boxed.queries.size() + " " + unboxed.getAllTableQueries().size());
+    System.exit(0);
+  }
+
+  private static <T> T measure(String name, Supplier<T> build) {
+    long before = usedHeap();
+    long start = System.nanoTime();
+    var built = build.get();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long bytes = usedHeap() - before;
+    System.out.printf("%-8s %8.1f MB retained, built in %.2f s%n", name, bytes / 1e6, seconds);
+    return built;
+  }
+
+  private static void lookups(String name, int count, int lookups, IntPredicate lookup) {
+    int found = 0;
+    long start = System.nanoTime();
+    var random = ThreadLocalRandom.current();
+    for (int i = 0; i < lookups; i++) {
+      found += lookup.test(random.nextInt(count)) ? 1 : 0;
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%-8s %12.0f lookups/s (%d found)%n", name, lookups / seconds, found);
+  }
+
+  private static long usedHeap() {
+    var runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * The structures {@link QueryRegistry} kept table queries in before.
+   */
+  private static class Boxed {
+    final ConcurrentHashMap<Integer, TableQuery> queries = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<String, ConcurrentSkipListSet<Integer>> tableQueries = new ConcurrentHashMap<>();
+
+    void add(TableQuery query) {
+      queries.put(query.getId(), query);
+      tableQueries.computeIfAbsent(query.getTableName(), it -> new ConcurrentSkipListSet<>()).add(query.getId());
+    }
+  }
+}
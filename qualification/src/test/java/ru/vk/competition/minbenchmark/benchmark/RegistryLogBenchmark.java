@@ -0,0 +1,55 @@
+package ru.vk.competition.minbenchmark.benchmark;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.vk.competition.minbenchmark.entity.SingleQuery;
+import ru.vk.competition.minbenchmark.repository.QueryRegistry;
+import ru.vk.competition.minbenchmark.repository.RegistryLog;
+import ru.vk.competition.minbenchmark.repository.RegistrySnapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Durable registry changes per second through the {@link RegistryLog}: one change in flight at a time, so every change
+ * waits for an fsync of its own, against many in flight sharing fsyncs. Run manually, e.g. {@code mvn test-compile
+ * exec:java -Dexec.classpathScope=test -Dexec.mainClass=...}, or from the IDE; args are {@code [changes] [in flight]
+ * [directory]}, the directory defaulting to a temporary one: point it at the disk the log would live on.
+ */
+public class RegistryLogBenchmark {
+
+  public static void main(String[] args) throws IOException {
+    int changes = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+    int inFlight = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+    var directory = args.length > 2 ? Files.createTempDirectory(Path.of(args[2]), "registry-log")
+      : Files.createTempDirectory("registry-log");
+
+    for (int round = 0; round < 3; round++) {
+      run(directory, "1 in flight", changes / 10, 1);
+      run(directory, inFlight + " in flight", changes, inFlight);
+    }
+    Files.delete(directory);
+    System.exit(0);
+  }
+
+  private static void run(Path directory, String name, int changes, int inFlight) throws IOException {
+    var path = directory.resolve("registry.log");
+    var registry = new QueryRegistry();
+    var log = new RegistryLog(registry, path.toString());
+    new RegistrySnapshot(registry, log, "", Duration.ofHours(1)).start();
+
+    long start = System.nanoTime();
+    Flux.range(0, changes)
+      .flatMap(id -> log.durable(Mono.fromSupplier(() -> registry.newSingleQuery(new SingleQuery(id, "select " + id))))
+        .subscribeOn(Schedulers.parallel()), inFlight)
+      .blockLast();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%-16s %10.0f changes/s%n", name, changes / seconds);
+
+    log.close();
+    Files.delete(path);
+  }
+}
@@ -0,0 +1,62 @@
+package ru.vk.competition.minbenchmark.benchmark;
+
+import ru.vk.competition.minbenchmark.entity.*;
+import ru.vk.competition.minbenchmark.repository.QueryRegistry;
+import ru.vk.competition.minbenchmark.repository.RegistryLog;
+import ru.vk.competition.minbenchmark.repository.RegistrySnapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Time to write and to restore a {@link RegistrySnapshot} of millions of entries, i.e. what a restart costs on top of
+ * the JVM and Spring startup. Run manually, e.g. {@code MAVEN_OPTS="-Xmx4g" mvn test-compile exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=...}, or from the IDE; args are {@code [table queries] [single queries]
+ * [reports] [tables] [rounds]}.
+ */
+public class RegistrySnapshotBenchmark {
+
+  public static void main(String[] args) throws IOException {
+    int tableQueries = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+    int singleQueries = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+    int reports = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+    int tables = args.length > 3 ? Integer.parseInt(args[3]) : 1_000;
+    int rounds = args.length > 4 ? Integer.parseInt(args[4]) : 3;
+
+    var registry = new QueryRegistry();
+    for (int id = 0; id < tableQueries; id++) {
+      registry.newTableQuery(new TableQuery(id, "T" + id % tables, "select * from T" + id % tables + " where id = " + id),
+        () -> true);
+    }
+    for (int id = 0; id < singleQueries; id++) {
+      registry.newSingleQuery(new SingleQuery(id, "select " + id));
+    }
+    for (int id = 0; id < reports; id++) {
+      registry.addReport(new Report<>(id, 1, List.of(new ReportTable<>("T" + id % tables, List.of(
+        new ColumnInfoWithSize("id", "INTEGER", String.valueOf(id)),
+        new ColumnInfoWithSize("name", "CHARACTER VARYING", String.valueOf(id)))))));
+    }
+
+    var directory = Files.createTempDirectory("registry-snapshot");
+    var path = directory.resolve("registry.snapshot");
+    for (int round = 0; round < rounds; round++) {
+      long start = System.nanoTime();
+      new RegistrySnapshot(registry, new RegistryLog(registry, ""), path.toString(), Duration.ofHours(1)).stop();
+      double written = (System.nanoTime() - start) / 1e9;
+
+      var restored = new QueryRegistry();
+      start = System.nanoTime();
+      var snapshot = new RegistrySnapshot(restored, new RegistryLog(restored, ""), path.toString(), Duration.ofHours(1));
+      snapshot.start();
+      double read = (System.nanoTime() - start) / 1e9;
+      System.out.printf("%.1f MB written in %.2f s, restored in %.2f s (%d + %d + %d entries)%n",
+        Files.size(path) / 1e6, written, read, restored.getAllTableQueries().size(),
+        restored.getAllSingleQueries().size(), restored.getAllReports().size());
+    }
+    Files.delete(path);
+    Files.delete(directory);
+    System.exit(0);
+  }
+}
@@ -0,0 +1,98 @@
+package ru.vk.competition.minbenchmark.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.slf4j.LoggerFactory;
+import ru.vk.competition.minbenchmark.entity.SingleQuery;
+import ru.vk.competition.minbenchmark.entity.TableQuery;
+import ru.vk.competition.minbenchmark.repository.QueryRegistry;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Multi-threaded stress of {@link QueryRegistry}: every thread adds, moves, reads and deletes table queries of its
+ * own tables and single queries of its own ids, so with striped locks the threads should never wait for each other.
+ * The same load behind one global lock is the baseline. Prints throughput per thread count and the speedup over one
+ * thread; the speedup can only approach the thread count up to the number of available cores.
+ * Run manually: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...}
+ * or from the IDE; args are {@code [operations per thread] [max threads]}.
+ */
+public class RegistryStressBenchmark {
+  private static final int TABLES_PER_THREAD = 4;
+  private static final int IDS_PER_THREAD = 1_000;
+
+  public static void main(String[] args) throws Exception {
+    int operations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int cores = Runtime.getRuntime().availableProcessors();
+    int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : cores * 2;
+    // Rejected operations are logged; measure the maps, not the console
+    ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.OFF);
+    System.out.println(cores + " available cores");
+
+    for (var locking : new String[]{"striped", "global"}) {
+      double single = 0;
+      for (int threads = 1; threads <= maxThreads; threads *= 2) {
+        run(locking, threads, operations / 10);
+        double throughput = run(locking, threads, operations);
+        if (threads == 1) {
+          single = throughput;
+        }
+        System.out.printf("%-8s %3d threads %12.0f ops/s  x%.2f%n", locking, threads, throughput, throughput / single);
+      }
+    }
+    System.exit(0);
+  }
+
+  private static double run(String locking, int threads, int operations) throws Exception {
+    var registry = new QueryRegistry();
+    var globalLock = new Object();
+    var pool = Executors.newFixedThreadPool(threads);
+    try {
+      var tasks = new ArrayList<Callable<Long>>();
+      for (int t = 0; t < threads; t++) {
+        int thread = t;
+        tasks.add(() -> {
+          long checksum = 0;
+          var random = ThreadLocalRandom.current();
+          for (int i = 0; i < operations; i++) {
+            int id = thread * IDS_PER_THREAD + random.nextInt(IDS_PER_THREAD);
+            var table = "T" + thread + "_" + random.nextInt(TABLES_PER_THREAD);
+            int kind = random.nextInt(8);
+            Supplier<Boolean> operation = () -> switch (kind) {
+              case 0 -> registry.newTableQuery(new TableQuery(id, table, "select 1"), () -> true);
+              case 1 -> registry.updateTableQuery(new TableQuery(id, table, "select 2"), () -> true);
+              case 2 -> registry.deleteTableQuery(id);
+              case 3 -> registry.getTableQueries(table, true).map(it -> !it.isEmpty()).orElse(false);
+              case 4 -> registry.newSingleQuery(new SingleQuery(id, "select 1"));
+              case 5 -> registry.updateSingleQuery(new SingleQuery(id, "select 2"));
+              case 6 -> registry.deleteSingleQuery(id);
+              default -> registry.getSingleQueryById(id).isPresent();
+            };
+            boolean result;
+            if (locking.equals("global")) {
+              synchronized (globalLock) {
+                result = operation.get();
+              }
+            } else {
+              result = operation.get();
+            }
+            checksum += result ? 1 : 0;
+          }
+          return checksum;
+        });
+      }
+      long start = System.nanoTime();
+      for (var future : pool.invokeAll(tasks)) {
+        future.get();
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      return (double) threads * operations / seconds;
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
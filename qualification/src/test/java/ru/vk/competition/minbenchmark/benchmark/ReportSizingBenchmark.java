@@ -0,0 +1,62 @@
+package ru.vk.competition.minbenchmark.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.vk.competition.minbenchmark.entity.ReportTable;
+import ru.vk.competition.minbenchmark.repository.ReportSizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares the old one-query-per-column report sizing with {@link ReportSizer}.
+ * Run manually: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...}
+ * or from the IDE; args are {@code [rows] [iterations]}.
+ */
+public class ReportSizingBenchmark {
+
+  private static final List<String> COLUMNS = Arrays.asList("A", "B", "C", "D", "E");
+
+  public static void main(String[] args) {
+    int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+    var jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:sizing;DB_CLOSE_DELAY=-1", "sa", ""));
+    var tables = Arrays.asList(new ReportTable<>("T1", COLUMNS), new ReportTable<>("T2", COLUMNS));
+    for (var table : tables) {
+      jdbcTemplate.execute("create table " + table.getName() + " (a int primary key, b int, c varchar, d varchar, e int)");
+      jdbcTemplate.execute("insert into " + table.getName() + " select x, case when mod(x, 2) = 0 then x end, 'v' || x, " +
+        "case when mod(x, 3) = 0 then 'w' end, x from system_range(1, " + rows + ")");
+    }
+    var sizer = new ReportSizer(jdbcTemplate);
+
+    run("per column", iterations, () -> perColumn(jdbcTemplate, tables));
+    run("per table", iterations, () -> tables.stream().map(sizer::count).toList());
+    run("per report", iterations, () -> sizer.countAll(tables));
+  }
+
+  private static List<List<String>> perColumn(JdbcTemplate jdbcTemplate, List<ReportTable<String>> tables) {
+    var result = new ArrayList<List<String>>();
+    for (var table : tables) {
+      var sizes = new ArrayList<String>();
+      for (var column : table.getColumns()) {
+        sizes.add(jdbcTemplate.queryForObject("select count(" + column + ") from " + table.getName(), String.class));
+      }
+      result.add(sizes);
+    }
+    return result;
+  }
+
+  private static void run(String name, int iterations, Runnable action) {
+    for (int i = 0; i < iterations / 10 + 1; i++) {
+      action.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      action.run();
+    }
+    double perCall = (System.nanoTime() - start) / 1e6 / iterations;
+    System.out.printf("%-12s %10.3f ms/report%n", name, perCall);
+  }
+}
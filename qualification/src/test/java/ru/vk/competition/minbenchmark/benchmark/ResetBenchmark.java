@@ -0,0 +1,56 @@
+package ru.vk.competition.minbenchmark.benchmark;
+
+import org.springframework.boot.SpringApplication;
+import reactor.core.publisher.Flux;
+import ru.vk.competition.minbenchmark.MinbenchmarkApplication;
+import ru.vk.competition.minbenchmark.entity.ColumnInfo;
+import ru.vk.competition.minbenchmark.entity.DBTable;
+import ru.vk.competition.minbenchmark.entity.TableQuery;
+import ru.vk.competition.minbenchmark.repository.ReactiveRepository;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Time to reset a database of many tables, each with a stored query: dropping the tables one by one, as the reset
+ * used to, against the reset, which swaps in a fresh in-memory database. Boots the application without a web server.
+ * Run manually: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...}
+ * or from the IDE; args are {@code [tables] [rounds]}.
+ */
+public class ResetBenchmark {
+
+  public static void main(String[] args) {
+    int tables = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+    var context = new SpringApplication(MinbenchmarkApplication.class).run(
+      "--spring.main.web-application-type=none",
+      "--logging.level.root=WARN",
+      "--spring.datasource.url=jdbc:h2:mem:reset");
+    try {
+      var repo = context.getBean(ReactiveRepository.class);
+      for (int round = 0; round < rounds; round++) {
+        create(repo, tables);
+        long start = System.nanoTime();
+        var names = repo.getAllTableQueries().block().stream().map(TableQuery::getTableName).collect(Collectors.toList());
+        Flux.fromIterable(names).concatMap(repo::dropTable).blockLast();
+        double oneByOne = (System.nanoTime() - start) / 1e9;
+
+        create(repo, tables);
+        var took = repo.clear().block();
+        System.out.printf("%d tables: one by one %.2f s, reset %.2f s%n", tables, oneByOne, took.toNanos() / 1e9);
+      }
+    } finally {
+      context.close();
+    }
+    System.exit(0);
+  }
+
+  private static void create(ReactiveRepository repo, int tables) {
+    Flux.range(0, tables)
+      .concatMap(i -> repo.createTable(new DBTable("T" + i, 2, "ID",
+          List.of(new ColumnInfo("ID", "int"), new ColumnInfo("DATA", "varchar(40)"))))
+        .then(repo.newTableQuery(new TableQuery(i, "T" + i, "select * from T" + i))))
+      .blockLast();
+  }
+}
@@ -0,0 +1,63 @@
+package ru.vk.competition.minbenchmark.benchmark;
+
+import org.springframework.boot.SpringApplication;
+import reactor.core.publisher.Flux;
+import ru.vk.competition.minbenchmark.MinbenchmarkApplication;
+import ru.vk.competition.minbenchmark.entity.ColumnInfo;
+import ru.vk.competition.minbenchmark.entity.DBTable;
+import ru.vk.competition.minbenchmark.entity.TableQuery;
+import ru.vk.competition.minbenchmark.repository.ReactiveRepository;
+
+import java.util.List;
+
+/**
+ * Throughput against the number of {@code Shards}: tables created and rows inserted per second with many of them in
+ * flight, one application per shard count. The workload schedulers get a thread per core, so that the database is
+ * what the calls wait for. Only meaningful on a machine with several cores. Boots the application without a web
+ * server. Run manually: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...} or from the
+ * IDE; args are {@code [shard counts, e.g. 1,2,4,8] [tables] [inserts] [in flight]}.
+ */
+public class ShardingBenchmark {
+
+  public static void main(String[] args) {
+    var counts = args.length > 0 ? args[0].split(",") : new String[]{"1", "2", "4", "8"};
+    int tables = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+    int inserts = args.length > 2 ? Integer.parseInt(args[2]) : 200_000;
+    int inFlight = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+    int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    for (var count : counts) {
+      var context = new SpringApplication(MinbenchmarkApplication.class).run(
+        "--spring.main.web-application-type=none",
+        "--logging.level.root=WARN",
+        "--spring.datasource.url=jdbc:h2:mem:sharding" + count,
+        "--spring.datasource.hikari.maximum-pool-size=" + 2 * threads,
+        "--minbenchmark.persistence.shards=" + count,
+        "--minbenchmark.persistence.workloads.schema.threads=" + threads,
+        "--minbenchmark.persistence.workloads.execution.threads=" + threads);
+      try {
+        var repo = context.getBean(ReactiveRepository.class);
+        for (int round = 0; round < 3; round++) {
+          long start = System.nanoTime();
+          Flux.range(0, tables)
+            .flatMap(i -> repo.createTable(new DBTable("T" + i, 2, "ID",
+                List.of(new ColumnInfo("ID", "int"), new ColumnInfo("DATA", "varchar(40)"))))
+              .then(repo.newTableQuery(new TableQuery(i, "T" + i, "insert into T" + i + " values (?, 'data')"))), inFlight)
+            .blockLast();
+          double created = tables / ((System.nanoTime() - start) / 1e9);
+
+          start = System.nanoTime();
+          Flux.range(0, inserts)
+            .flatMap(i -> repo.executeTableQuery(i % tables, List.of(i)), inFlight)
+            .blockLast();
+          double inserted = inserts / ((System.nanoTime() - start) / 1e9);
+          System.out.printf("%s shards: %8.0f tables/s %10.0f inserts/s%n", count, created, inserted);
+          repo.clear().block();
+        }
+      } finally {
+        context.close();
+      }
+    }
+    System.exit(0);
+  }
+}
@@ -0,0 +1,68 @@
+package ru.vk.competition.minbenchmark.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.controller.query.QueryBatchController;
+import ru.vk.competition.minbenchmark.entity.QueryBatch;
+import ru.vk.competition.minbenchmark.service.QueryBatchService;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(SpringExtension.class)
+@WebFluxTest(controllers = QueryBatchController.class)
+class QueryBatchControllerTest {
+  @Autowired
+  private WebTestClient webClient;
+
+  @MockBean
+  private QueryBatchService batchService;
+
+  @Test
+  void executeOk() {
+    given(batchService.executeBatch(new QueryBatch(List.of(1, 2), List.of(3)))).willReturn(Mono.just(List.of(1, 1, 5)));
+    execute("/api/query-batch/execute", "{ \"tableQueryIds\": [1, 2], \"singleQueryIds\": [3] }")
+      .expectStatus().isCreated()
+      .expectBody().isEmpty();
+  }
+
+  @Test
+  void executeWithResults() {
+    given(batchService.executeBatch(new QueryBatch(List.of(), List.of(3)))).willReturn(Mono.just(List.of(5)));
+    execute("/api/query-batch/execute?results=true", "{ \"singleQueryIds\": [3] }")
+      .expectStatus().isCreated()
+      .expectBody().json("[5]");
+  }
+
+  @Test
+  void executeFail() {
+    given(batchService.executeBatch(any())).willReturn(Mono.empty());
+    execute("/api/query-batch/execute", "{ \"tableQueryIds\": [1] }")
+      .expectStatus().isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+  }
+
+  @Test
+  void executeBadIds() {
+    execute("/api/query-batch/execute", "{ \"tableQueryIds\": [1, null] }")
+      .expectStatus().isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+    execute("/api/query-batch/execute", "{ \"tableQueryIds\": \"azaza\" }")
+      .expectStatus().isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+  }
+
+  private WebTestClient.ResponseSpec execute(String uri, String body) {
+    return webClient.post().uri(uri)
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(body)
+      .exchange();
+  }
+}
@@ -12,6 +12,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.entity.CacheStats;
 import ru.vk.competition.minbenchmark.entity.ColumnInfo;
 import ru.vk.competition.minbenchmark.entity.ColumnInfoWithSize;
 import ru.vk.competition.minbenchmark.entity.Report;
@@ -95,6 +96,19 @@ class ReportControllerTest {
       );
   }
 
+  @Test
+  void getCacheStats() throws JsonProcessingException {
+    var stats = new CacheStats(1, 3, 1, 0.75, 0.25, 0, 0, 0);
+    var json = objectMapper.writeValueAsString(stats);
+    given(reportService.getCacheStats()).willReturn(Mono.just(stats));
+    webClient.get()
+      .uri("/api/report/cache-stats")
+      .exchange().expectAll(
+        spec -> spec.expectStatus().isOk(),
+        spec -> spec.expectBody().json(json)
+      );
+  }
+
   private final static ReportTable<ColumnInfo> TABLE1 = new ReportTable<>(
     "Test",
     Arrays.asList(
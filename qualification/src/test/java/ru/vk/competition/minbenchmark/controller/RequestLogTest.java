@@ -0,0 +1,96 @@
+package ru.vk.competition.minbenchmark.controller;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.springframework.mock.env.MockEnvironment;
+import ru.vk.competition.minbenchmark.entity.SingleQuery;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class RequestLogTest {
+
+  private static String format(String template, int maxLength, Object... arguments) {
+    var message = new StringBuilder();
+    RequestLog.format(message, template, maxLength, arguments.length, arguments.length > 0 ? arguments[0] : null,
+      arguments.length > 1 ? arguments[1] : null, arguments.length > 2 ? arguments[2] : null);
+    return message.toString();
+  }
+
+  @Test
+  void truncatesArguments() {
+    assertEquals("Get table: T, after null, limit 5", format("Get table: {}, after {}, limit {}", 20, "T", null, 5));
+    assertEquals("Add: xxxxx... (12 chars)!", format("Add: {}!", 5, "x".repeat(12)));
+    assertEquals("Got [1, 2, 3]", format("Got {}", 20, List.of(1, 2, 3)));
+    assertEquals("Got [0, 1, 2, ... 97 more]", format("Got {}", 7, IntStream.range(0, 100).boxed().toList()));
+    assertEquals("Got [SingleQuery(id=1, qu... (33 chars), ... 1 more]", format("Got {}", 20,
+      List.of(new SingleQuery(1, "select 1"), new SingleQuery(2, "select 2"))));
+    assertEquals("No {} left", format("No {} left", 20));
+  }
+
+  @Test
+  void logsOnItsOwnThread() throws InterruptedException {
+    var requestLog = new RequestLog(4);
+    var logger = mock(Logger.class);
+    when(logger.isInfoEnabled()).thenReturn(true);
+    var threads = new String[1];
+    doAnswer(invocation -> threads[0] = Thread.currentThread().getName()).when(logger).info(anyString());
+
+    requestLog.info(logger, 7, 200, "Get report: {}", 1, 42, null, null);
+    verify(logger, timeout(5_000)).info("7) Get report: 42");
+    assertEquals("request-log", threads[0]);
+    requestLog.close();
+  }
+
+  @Test
+  void dropsWhenFull() throws InterruptedException {
+    var requestLog = new RequestLog(2);
+    var logger = mock(Logger.class);
+    when(logger.isInfoEnabled()).thenReturn(true);
+    var entered = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      entered.countDown();
+      return release.await(5, TimeUnit.SECONDS);
+    }).when(logger).info(anyString());
+
+    requestLog.info(logger, 0, 200, "first", 0, null, null, null);
+    assertTrue(entered.await(5, TimeUnit.SECONDS));
+    for (int id = 1; id <= 4; id++) {
+      requestLog.info(logger, id, 200, "next", 0, null, null, null);
+    }
+    release.countDown();
+    verify(logger, timeout(5_000)).warn("2 request log messages dropped, the buffer was full");
+    verify(logger, timeout(5_000)).info("2) next");
+    verify(logger, never()).info("3) next");
+    requestLog.close();
+  }
+
+  @Test
+  void samplesPerEndpoint() {
+    var controller = new ControllerWithCounter();
+    controller.setEnvironment(new MockEnvironment()
+      .withProperty("minbenchmark.request-log.sample-every.default", "2")
+      .withProperty("minbenchmark.request-log.sample-every.get-all-table-queries", "10")
+      .withProperty("minbenchmark.request-log.sample-every.create-table", "0")
+      .withProperty("minbenchmark.request-log.sample-every.get-report-by-id", "1"));
+
+    int sampled = 0;
+    for (int i = 0; i < 10_000; i++) {
+      int id = controller.nextId("get-all-table-queries");
+      sampled += id >= 0 ? 1 : 0;
+      assertTrue(controller.nextId("create-table") < 0);
+      assertTrue(controller.nextId("get-report-by-id") >= 0);
+    }
+    assertTrue(sampled > 800 && sampled < 1_200, sampled + " of 10000 sampled");
+
+    long halves = IntStream.range(0, 10_000).filter(i -> controller.nextId("drop-table") >= 0).count();
+    assertTrue(halves > 4_500 && halves < 5_500, halves + " of 10000 sampled");
+  }
+}
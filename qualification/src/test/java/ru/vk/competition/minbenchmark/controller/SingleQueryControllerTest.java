@@ -11,15 +11,18 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.vk.competition.minbenchmark.controller.query.SingleQueryController;
 import ru.vk.competition.minbenchmark.controller.query.SingleQueryController400;
 import ru.vk.competition.minbenchmark.controller.query.SingleQueryController500;
+import ru.vk.competition.minbenchmark.entity.QueryStatus;
 import ru.vk.competition.minbenchmark.entity.SingleQuery;
 import ru.vk.competition.minbenchmark.service.SingleQueryService;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
@@ -116,6 +119,14 @@ class SingleQueryControllerTest {
       .expectStatus().isEqualTo(HttpStatus.NOT_ACCEPTABLE);
   }
 
+  @Test
+  void executeRejected() {
+    given(queryService.executeQuery(anyInt())).willReturn(Mono.error(new RejectedExecutionException("queue is full")));
+    webClient.get()
+      .uri("/api/single-query/execute-single-query-by-id/1").exchange()
+      .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
   @Test
   void executeBadQueryId() {
     webClient.get()
@@ -179,6 +190,102 @@ class SingleQueryControllerTest {
       );
   }
 
+  @Test
+  void getAllQueriesPage() throws JsonProcessingException {
+    var query = new SingleQuery(3, "select * from Test");
+    var queriesJson = objectMapper.writeValueAsString(Collections.singletonList(query));
+
+    given(queryService.getAllQueries(2, 1)).willReturn(Mono.just(Collections.singletonList(query)));
+    webClient.get()
+      .uri("/api/single-query/get-all-single-queries?after=2&limit=1").exchange()
+      .expectAll(
+        spec -> spec.expectStatus().isOk(),
+        spec -> spec.expectBody().json(queriesJson)
+      );
+  }
+
+  @Test
+  void streamAllQueries() {
+    var query1 = new SingleQuery(1, "select * from Test");
+    var query2 = new SingleQuery(2, "select id, name from Test");
+
+    given(queryService.streamAllQueries(null, null)).willReturn(Flux.just(query1, query2));
+    webClient.get()
+      .uri("/api/single-query/stream-all-single-queries")
+      .accept(MediaType.APPLICATION_NDJSON).exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+      .expectBodyList(SingleQuery.class).isEqualTo(Arrays.asList(query1, query2));
+  }
+
+  @Test
+  void streamAllQueriesBadLimit() {
+    webClient.get()
+      .uri("/api/single-query/stream-all-single-queries?limit=-5")
+      .accept(MediaType.APPLICATION_NDJSON).exchange()
+      .expectStatus().isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+  }
+
+  @Test
+  void addNewBatch() throws JsonProcessingException {
+    var queries = Arrays.asList(new SingleQuery(1, "select 1"), new SingleQuery(1, "select 2"));
+    var statusesJson = objectMapper.writeValueAsString(Arrays.asList(new QueryStatus(1, 201), new QueryStatus(1, 400)));
+
+    given(queryService.addNewQueries(any())).willReturn(Mono.just(Arrays.asList(true, false)));
+    webClient.post()
+      .uri("/api/single-query/add-new-queries")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(queries).exchange()
+      .expectAll(
+        spec -> spec.expectStatus().isOk(),
+        spec -> spec.expectBody().json(statusesJson)
+      );
+  }
+
+  @Test
+  void updateBatch() throws JsonProcessingException {
+    var queries = Collections.singletonList(new SingleQuery(5, "select 1"));
+    var statusesJson = objectMapper.writeValueAsString(Collections.singletonList(new QueryStatus(5, 406)));
+
+    given(queryService.updateQueries(any())).willReturn(Mono.just(Collections.singletonList(false)));
+    webClient.put()
+      .uri("/api/single-query/modify-single-queries")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(queries).exchange()
+      .expectAll(
+        spec -> spec.expectStatus().isOk(),
+        spec -> spec.expectBody().json(statusesJson)
+      );
+  }
+
+  @Test
+  void deleteBatchBadId() {
+    webClient.post()
+      .uri("/api/single-query/delete-single-queries-by-id")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("[1, \"azaza\"]").exchange()
+      .expectStatus().isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+  }
+
+  @Test
+  void executeWithArgsOk() {
+    given(queryService.executeQuery(2, Arrays.asList(5, "x"))).willReturn(Mono.just(true));
+    webClient.post()
+      .uri("/api/single-query/execute-single-query-by-id/2")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("[5, \"x\"]").exchange()
+      .expectStatus().isCreated();
+  }
+
+  @Test
+  void executeWithArgsBadBody() {
+    webClient.post()
+      .uri("/api/single-query/execute-single-query-by-id/2")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("{ \"azaza\": 1 }").exchange()
+      .expectStatus().isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+  }
+
   private WebTestClient.ResponseSpec addOrUpdateBadQuery(WebTestClient.RequestBodyUriSpec spec, String uri) {
     return spec.uri(uri)
       .contentType(MediaType.APPLICATION_JSON)
@@ -12,6 +12,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.entity.CacheStats;
 import ru.vk.competition.minbenchmark.entity.ColumnInfo;
 import ru.vk.competition.minbenchmark.entity.DBTable;
 import ru.vk.competition.minbenchmark.service.TableService;
@@ -72,6 +73,19 @@ class TableControllerTest {
       );
   }
 
+  @Test
+  void getCacheStats() throws JsonProcessingException {
+    var stats = new CacheStats(2, 5, 3, 0.625, 0.375, 3, 1, 0.5);
+    var json = objectMapper.writeValueAsString(stats);
+    given(tableService.getCacheStats()).willReturn(Mono.just(stats));
+    webClient.get()
+      .uri("/api/table/cache-stats")
+      .exchange().expectAll(
+        spec -> spec.expectStatus().isOk(),
+        spec -> spec.expectBody().json(json)
+      );
+  }
+
   @Test
   void ifNotExistsReturnEmpty() {
     given(tableService.getTableByName(TABLE.getName())).willReturn(Mono.empty());
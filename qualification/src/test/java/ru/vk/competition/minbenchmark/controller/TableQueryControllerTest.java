@@ -11,9 +11,11 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.vk.competition.minbenchmark.controller.query.TableQueryController;
 import ru.vk.competition.minbenchmark.controller.query.TableQueryController500;
+import ru.vk.competition.minbenchmark.entity.QueryStatus;
 import ru.vk.competition.minbenchmark.entity.TableQuery;
 import ru.vk.competition.minbenchmark.service.TableQueryService;
 
@@ -204,6 +206,113 @@ class TableQueryControllerTest {
       );
   }
 
+  @Test
+  void getAllTableQueriesPage() throws JsonProcessingException {
+    var query = new TableQuery(3, "Test", "select * from Test");
+    var queriesJson = objectMapper.writeValueAsString(Collections.singletonList(query));
+
+    given(queryService.getAllTableQueries(2, 1)).willReturn(Mono.just(Collections.singletonList(query)));
+    webClient.get()
+      .uri("/api/table-query/get-all-table-queries?after=2&limit=1").exchange()
+      .expectAll(
+        spec -> spec.expectStatus().isOk(),
+        spec -> spec.expectBody().json(queriesJson)
+      );
+  }
+
+  @Test
+  void getAllTableQueriesBadLimit() {
+    webClient.get()
+      .uri("/api/table-query/get-all-table-queries?limit=-1").exchange()
+      .expectStatus().isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+  }
+
+  @Test
+  void streamTableQueries() {
+    var query1 = new TableQuery(1, "Test", "select * from Test");
+    var query2 = new TableQuery(2, "Test", "select id, name from Test");
+
+    given(queryService.streamTableQueries("Test", null, null)).willReturn(Flux.just(query1, query2));
+    webClient.get()
+      .uri("/api/table-query/stream-all-queries-by-table-name/Test")
+      .accept(MediaType.APPLICATION_NDJSON).exchange()
+      .expectStatus().isOk()
+      .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+      .expectBodyList(TableQuery.class).isEqualTo(Arrays.asList(query1, query2));
+  }
+
+  @Test
+  void streamAllTableQueries() {
+    var query = new TableQuery(2, "Test", "select id, name from Test");
+
+    given(queryService.streamAllTableQueries(1, 10)).willReturn(Flux.just(query));
+    webClient.get()
+      .uri("/api/table-query/stream-all-table-queries?after=1&limit=10")
+      .accept(MediaType.APPLICATION_NDJSON).exchange()
+      .expectStatus().isOk()
+      .expectBodyList(TableQuery.class).isEqualTo(Collections.singletonList(query));
+  }
+
+  @Test
+  void addNewBatch() throws JsonProcessingException {
+    var queries = Arrays.asList(new TableQuery(1, "Test", "select * from Test"), new TableQuery(2, "Lol", "select 1"));
+    var statusesJson = objectMapper.writeValueAsString(Arrays.asList(new QueryStatus(1, 201), new QueryStatus(2, 406)));
+
+    given(queryService.addNewTableQueries(any())).willReturn(Mono.just(Arrays.asList(true, false)));
+    webClient.post()
+      .uri("/api/table-query/add-new-queries-to-table")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue(queries).exchange()
+      .expectAll(
+        spec -> spec.expectStatus().isOk(),
+        spec -> spec.expectBody().json(statusesJson)
+      );
+  }
+
+  @Test
+  void deleteBatch() throws JsonProcessingException {
+    var statusesJson = objectMapper.writeValueAsString(Arrays.asList(new QueryStatus(3, 202), new QueryStatus(4, 406)));
+
+    given(queryService.deleteTableQueries(Arrays.asList(3, 4))).willReturn(Mono.just(Arrays.asList(true, false)));
+    webClient.post()
+      .uri("/api/table-query/delete-table-queries-by-id")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("[3, 4]").exchange()
+      .expectAll(
+        spec -> spec.expectStatus().isOk(),
+        spec -> spec.expectBody().json(statusesJson)
+      );
+  }
+
+  @Test
+  void updateBatchBadItem() {
+    webClient.put()
+      .uri("/api/table-query/modify-queries-in-table")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("[{ \"queryId\": 1, \"tableName\": \"Test\", \"query\": \"select 1\" }, null]").exchange()
+      .expectStatus().isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+  }
+
+  @Test
+  void executeWithArgsOk() {
+    given(queryService.executeTableQuery(1, Arrays.asList(1, "a", null))).willReturn(Mono.just(true));
+    webClient.post()
+      .uri("/api/table-query/execute-table-query-by-id/1")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("[1, \"a\", null]").exchange()
+      .expectStatus().isCreated();
+  }
+
+  @Test
+  void executeWithArgsFail() {
+    given(queryService.executeTableQuery(anyInt(), any())).willReturn(Mono.just(false));
+    webClient.post()
+      .uri("/api/table-query/execute-table-query-by-id/1")
+      .contentType(MediaType.APPLICATION_JSON)
+      .bodyValue("[]").exchange()
+      .expectStatus().isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+  }
+
   private WebTestClient.ResponseSpec addOrUpdateBadQuery(WebTestClient.RequestBodyUriSpec spec, String uri) {
     return spec.uri(uri)
       .contentType(MediaType.APPLICATION_JSON)
@@ -0,0 +1,96 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.vk.competition.minbenchmark.entity.ColumnInfo;
+import ru.vk.competition.minbenchmark.entity.DBTable;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogLoaderTest {
+  private final JdbcTemplate jdbcTemplate =
+    new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:catalog;DB_CLOSE_DELAY=-1", "sa", ""));
+  private final CatalogLoader loader = new CatalogLoader(jdbcTemplate);
+
+  @AfterEach
+  void cleanDB() {
+    jdbcTemplate.execute("DROP ALL OBJECTS");
+  }
+
+  @Test
+  void matchesShowColumns() {
+    jdbcTemplate.execute("create table T1 (id int4 primary key, name varchar(40), n numeric(10, 2), " +
+      "d timestamp(3) with time zone, tags varchar(5) array, u int unique)");
+    jdbcTemplate.execute("create table T2 (a int, b clob(10), c int, primary key (c, a))");
+    jdbcTemplate.execute("create table T3 ()");
+    jdbcTemplate.execute("create table \"quoted\" (a int)");
+
+    var snapshot = loader.load();
+    assertEquals(Set.of("T1", "T2", "T3", "quoted"), snapshot.getTableNames());
+    assertEquals(Set.of("T1", "T2", "T3"), snapshot.getTables().keySet());
+    for (var table : snapshot.getTables().values()) {
+      assertEquals(showColumns(table.getName()), table);
+    }
+    assertEquals("a", snapshot.getTables().get("T2").getPrimaryKey());
+  }
+
+  @Test
+  void preloadAnswersWithoutPerTableQueries() {
+    for (int i = 0; i < 200; i++) {
+      jdbcTemplate.execute("create table T" + i + " (id int primary key, data varchar)");
+    }
+    var catalog = new SchemaCatalog(jdbcTemplate, loader, 100_000, Duration.ofSeconds(10));
+    catalog.preload();
+
+    for (int i = 0; i < 200; i++) {
+      assertEquals(2, catalog.getTableInfo("t" + i).orElseThrow().getColumnsAmount());
+    }
+    assertEquals(0, catalog.stats().getLoadCount());
+
+    jdbcTemplate.execute("alter table T7 add column extra int");
+    catalog.invalidate(SqlStatement.parse("alter table T7 add column extra int"));
+    assertEquals(3, catalog.getTableInfo("T7").orElseThrow().getColumnsAmount());
+    assertEquals(0, catalog.stats().getLoadCount());
+  }
+
+  @Test
+  void failedLoadIsRetried() {
+    jdbcTemplate.execute("create table T1 (id int)");
+    var failures = new AtomicInteger();
+    var failing = new CatalogLoader(jdbcTemplate) {
+      @Override
+      public Snapshot load() {
+        if (failures.getAndDecrement() > 0) {
+          throw new CannotGetJdbcConnectionException("Connection is not available");
+        }
+        return super.load();
+      }
+    };
+    var catalog = new SchemaCatalog(jdbcTemplate, failing, 100_000, Duration.ofSeconds(10));
+    catalog.preload();
+    assertTrue(catalog.tableExists("T1"));
+
+    jdbcTemplate.execute("create table T2 (id int)");
+    catalog.invalidate(SqlStatement.parse("create table T2 (id int)"));
+    failures.set(1);
+    assertTrue(catalog.tableExists("T1"));
+    assertTrue(catalog.tableExists("T2"));
+    assertEquals(Set.of("T1", "T2"), catalog.tableNames());
+  }
+
+  private DBTable showColumns(String name) {
+    var columns = jdbcTemplate.query("show columns from " + name,
+      (rs, rowNum) -> new ColumnInfo(rs.getString("COLUMN_NAME"), rs.getString("TYPE").replaceAll("\\(\\d+\\)", "")));
+    var key = jdbcTemplate.query("show columns from " + name, (rs, rowNum) ->
+      rs.getString("KEY").equals("PRI") ? rs.getString("COLUMN_NAME") : null);
+    var primaryKey = key.stream().filter(it -> it != null).findFirst().orElse("").toLowerCase();
+    return new DBTable(name, columns.size(), primaryKey, columns);
+  }
+}
@@ -0,0 +1,82 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import ru.vk.competition.minbenchmark.entity.TableQuery;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+public class GroupCommitTest {
+  private final RawRepository repo = mock(RawRepository.class);
+  private final JdbcExecution execution = new JdbcExecution("bounded-elastic", new MockEnvironment());
+
+  @AfterEach
+  void close() {
+    execution.close();
+  }
+
+  private static TableQuery query(String sql) {
+    return new TableQuery(0, "T", sql);
+  }
+
+  @Test
+  void concurrentStatementsShareOneCommit() {
+    given(repo.executeGrouped(anyList())).willAnswer(invocation -> {
+      List<TableQuery> queries = invocation.getArgument(0);
+      return queries.stream().map(query -> !query.getQuery().contains("bad")).collect(Collectors.toList());
+    });
+    var groupCommit = new GroupCommit(repo, execution, true, Duration.ofMillis(200), 100);
+
+    StepVerifier.create(Flux.mergeSequential(
+        groupCommit.execute(query("insert into T values (1)")),
+        groupCommit.execute(query("insert into T values (bad)")),
+        groupCommit.execute(query("insert into T values (3)"))))
+      .expectNext(true, false, true)
+      .verifyComplete();
+    verify(repo, times(1)).executeGrouped(anyList());
+  }
+
+  @Test
+  void fullBatchDoesNotWaitForLinger() {
+    given(repo.executeGrouped(anyList())).willReturn(List.of(true, true));
+    var groupCommit = new GroupCommit(repo, execution, true, Duration.ofHours(1), 2);
+
+    StepVerifier.create(Flux.merge(groupCommit.execute(query("insert into T values (1)")), groupCommit.execute(query("insert into T values (2)"))))
+      .expectNext(true, true)
+      .expectComplete()
+      .verify(Duration.ofSeconds(10));
+    verify(repo).executeGrouped(List.of(query("insert into T values (1)"), query("insert into T values (2)")));
+  }
+
+  @Test
+  void failureReachesEveryCaller() {
+    given(repo.executeGrouped(anyList())).willThrow(new IllegalStateException("no connection"));
+    var groupCommit = new GroupCommit(repo, execution, true, Duration.ofMillis(1), 2);
+
+    StepVerifier.create(groupCommit.execute(query("insert into T values (1)"))).verifyError(IllegalStateException.class);
+    StepVerifier.create(groupCommit.execute(query("insert into T values (2)"))).verifyError(IllegalStateException.class);
+  }
+
+  @Test
+  void onlyWritesToKnownTablesAreGrouped() {
+    var groupCommit = new GroupCommit(repo, execution, true, Duration.ofMillis(1), 2);
+    assertTrue(groupCommit.accepts(SqlStatement.parse("insert into T values (1)")));
+    assertTrue(groupCommit.accepts(SqlStatement.parse("update T set a = 1")));
+    assertFalse(groupCommit.accepts(SqlStatement.parse("select * from T")));
+    assertFalse(groupCommit.accepts(SqlStatement.parse("create table T (id int)")));
+    assertFalse(groupCommit.accepts(SqlStatement.parse("truncate table T")));
+
+    var disabled = new GroupCommit(repo, execution, false, Duration.ofMillis(1), 2);
+    assertFalse(disabled.accepts(SqlStatement.parse("insert into T values (1)")));
+  }
+}
@@ -0,0 +1,76 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntMapTest {
+
+  @Test
+  void behavesLikeTreeMap() {
+    var random = new Random(42);
+    var map = new IntMap<String>();
+    var expected = new TreeMap<Integer, String>();
+    for (int step = 0; step < 200_000; step++) {
+      // Small ranges keep probe runs long and make removals shift them
+      int key = random.nextBoolean() ? random.nextInt(2_000) - 1_000 : random.nextInt();
+      var value = "v" + step;
+      switch (random.nextInt(6)) {
+        case 0 -> assertEquals(expected.put(key, value), map.put(key, value));
+        case 1 -> assertEquals(expected.putIfAbsent(key, value), map.putIfAbsent(key, value));
+        case 2 -> assertEquals(expected.remove(key), map.remove(key));
+        case 3 -> {
+          var current = expected.get(key);
+          assertEquals(current != null && expected.remove(key, current), map.remove(key, current));
+        }
+        case 4 -> assertEquals(expected.computeIfPresent(key, (k, v) -> v.length() > 4 ? null : v + "!"),
+          map.computeIfPresent(key, (k, v) -> v.length() > 4 ? null : v + "!"));
+        default -> assertEquals(expected.get(key), map.get(key));
+      }
+    }
+    assertEquals(expected.size(), map.size());
+    assertEquals(new ArrayList<>(expected.values()), map.values());
+
+    map.clear();
+    assertEquals(0, map.size());
+    assertNull(map.get(expected.firstKey()));
+  }
+
+  @Test
+  void concurrentWritersOfDisjointKeys() throws Exception {
+    var map = new IntMap<Integer>();
+    int threads = 8;
+    int perThread = 50_000;
+    var pool = Executors.newFixedThreadPool(threads);
+    try {
+      var tasks = new ArrayList<Callable<Void>>();
+      for (int t = 0; t < threads; t++) {
+        int base = t * perThread;
+        tasks.add(() -> {
+          for (int i = 0; i < perThread; i++) {
+            map.put(base + i, base + i);
+          }
+          for (int i = 0; i < perThread; i += 2) {
+            assertEquals(base + i, map.remove(base + i));
+          }
+          return null;
+        });
+      }
+      for (var future : pool.invokeAll(tasks)) {
+        future.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(threads * perThread / 2, map.size());
+    for (int key = 0; key < threads * perThread; key++) {
+      assertEquals(key % 2 == 0 ? null : key, map.get(key));
+    }
+  }
+}
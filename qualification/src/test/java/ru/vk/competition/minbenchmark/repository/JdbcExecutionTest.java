@@ -0,0 +1,90 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.test.StepVerifier;
+import ru.vk.competition.minbenchmark.repository.JdbcExecution.Workload;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcExecutionTest {
+
+  @Test
+  void workloadsRunOnTheirOwnSchedulers() {
+    var execution = new JdbcExecution("bounded-elastic", new MockEnvironment());
+    assertFalse(execution.isVirtual());
+    for (var workload : Workload.values()) {
+      StepVerifier.create(execution.call(workload, () -> Thread.currentThread().getName()))
+        .assertNext(name -> assertTrue(name.startsWith("jdbc-" + workload.name().toLowerCase()), name))
+        .verifyComplete();
+    }
+    StepVerifier.create(execution.inPlace(() -> Thread.currentThread().getName()))
+      .expectNext(Thread.currentThread().getName())
+      .verifyComplete();
+    execution.close();
+  }
+
+  @Test
+  void slowSchemaChangesDoNotHoldReads() throws InterruptedException {
+    var execution = new JdbcExecution("bounded-elastic", new MockEnvironment()
+      .withProperty("minbenchmark.persistence.workloads.schema.threads", "1"));
+    var ddl = new CountDownLatch(1);
+    var ddlStarted = new CountDownLatch(1);
+    execution.call(Workload.SCHEMA, () -> {
+      ddlStarted.countDown();
+      return ddl.await(10, TimeUnit.SECONDS);
+    }).subscribe();
+    assertTrue(ddlStarted.await(10, TimeUnit.SECONDS));
+
+    assertEquals(1, execution.call(Workload.READ, () -> 1).block(Duration.ofSeconds(1)));
+    assertEquals(2, execution.call(Workload.EXECUTION, () -> 2).block(Duration.ofSeconds(1)));
+    ddl.countDown();
+    execution.close();
+  }
+
+  @Test
+  void fullQueueRejects() throws InterruptedException {
+    var execution = new JdbcExecution("bounded-elastic", new MockEnvironment()
+      .withProperty("minbenchmark.persistence.workloads.schema.threads", "1")
+      .withProperty("minbenchmark.persistence.workloads.schema.queue", "1"));
+    var ddl = new CountDownLatch(1);
+    var ddlStarted = new CountDownLatch(1);
+    execution.call(Workload.SCHEMA, () -> {
+      ddlStarted.countDown();
+      return ddl.await(10, TimeUnit.SECONDS);
+    }).subscribe();
+    assertTrue(ddlStarted.await(10, TimeUnit.SECONDS));
+    var queued = execution.call(Workload.SCHEMA, () -> true).toFuture();
+
+    StepVerifier.create(execution.call(Workload.SCHEMA, () -> true))
+      .expectError(RejectedExecutionException.class)
+      .verify(Duration.ofSeconds(1));
+    ddl.countDown();
+    assertTrue(queued.join());
+    execution.close();
+  }
+
+  @Test
+  void virtualThreadsWhenAvailable() throws Exception {
+    var execution = new JdbcExecution(JdbcExecution.VIRTUAL_THREADS, new MockEnvironment());
+    boolean available = Runtime.version().feature() >= 21;
+    assertEquals(available, execution.isVirtual());
+
+    var onVirtual = execution.call(Workload.SCHEMA, () -> isVirtual(Thread.currentThread())).block();
+    assertEquals(available, onVirtual);
+    execution.close();
+  }
+
+  private static boolean isVirtual(Thread thread) throws Exception {
+    try {
+      return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistentIntMapTest {
+
+  @Test
+  void behavesLikeTreeMap() {
+    var random = new Random(13);
+    var map = PersistentIntMap.<String>empty();
+    var expected = new TreeMap<Integer, String>();
+    for (int step = 0; step < 100_000; step++) {
+      // Dense keys share long prefixes and fold subtrees back on removal, sparse ones stay inline near the root
+      int key = random.nextBoolean() ? random.nextInt(3_000) - 1_500 : random.nextInt();
+      if (random.nextInt(3) == 0) {
+        var removed = map.remove(key);
+        assertEquals(expected.remove(key) == null, removed == map);
+        map = removed;
+      } else {
+        var value = "v" + step;
+        expected.put(key, value);
+        map = map.put(key, value);
+      }
+      assertEquals(expected.get(key), map.get(key));
+    }
+    assertEquals(expected.size(), map.size());
+    assertEquals(new ArrayList<>(expected.values()), map.values());
+    for (var entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), map.get(entry.getKey()));
+    }
+  }
+
+  @Test
+  void versionsAreIndependent() {
+    var empty = PersistentIntMap.<String>empty();
+    var one = empty.put(1, "a");
+    var two = one.put(Integer.MIN_VALUE, "b").put(Integer.MAX_VALUE, "c");
+    var replaced = two.put(1, "d");
+    var removed = replaced.remove(Integer.MIN_VALUE);
+
+    assertEquals(List.of(), empty.values());
+    assertEquals(List.of("a"), one.values());
+    assertEquals(List.of("b", "a", "c"), two.values());
+    assertEquals(List.of("b", "d", "c"), replaced.values());
+    assertEquals(List.of("d", "c"), removed.values());
+    assertSame(removed, removed.remove(42));
+    assertSame(one, one.put(1, one.get(1)));
+  }
+
+  @Test
+  void valuesByPosition() {
+    var map = PersistentIntMap.<Integer>empty();
+    for (int key = -5_000; key < 5_000; key += 3) {
+      map = map.put(key, key);
+    }
+    var values = map.values();
+    int position = 0;
+    for (int key = -5_000; key < 5_000; key += 3) {
+      assertEquals(key, values.get(position++));
+    }
+    assertEquals(position, values.size());
+    assertThrows(IndexOutOfBoundsException.class, () -> values.get(values.size()));
+    assertThrows(UnsupportedOperationException.class, () -> values.add(0));
+  }
+
+  @Test
+  void valuesFromCursor() {
+    var random = new Random(14);
+    var map = PersistentIntMap.<Integer>empty();
+    var expected = new TreeMap<Integer, Integer>();
+    for (int i = 0; i < 5_000; i++) {
+      int key = random.nextBoolean() ? random.nextInt(2_000) - 1_000 : random.nextInt();
+      map = map.put(key, key);
+      expected.put(key, key);
+    }
+    for (int i = 0; i < 1_000; i++) {
+      long from = random.nextBoolean() ? random.nextInt(2_100) - 1_050 : random.nextInt();
+      var actual = new ArrayList<Integer>();
+      map.valuesFrom(from).forEach(actual::add);
+      assertEquals(new ArrayList<>(expected.tailMap((int) from).values()), actual);
+    }
+    var all = new ArrayList<Integer>();
+    map.valuesFrom(Long.MIN_VALUE).forEach(all::add);
+    assertEquals(new ArrayList<>(expected.values()), all);
+    assertFalse(map.valuesFrom(Integer.MAX_VALUE + 1L).iterator().hasNext());
+  }
+
+  @Test
+  void ofSortedMatchesPuts() {
+    var random = new Random(15);
+    var expected = new TreeMap<Integer, Integer>();
+    for (int i = 0; i < 5_000; i++) {
+      int key = random.nextBoolean() ? random.nextInt(2_000) - 1_000 : random.nextInt();
+      expected.put(key, key);
+    }
+    var keys = expected.keySet().stream().mapToInt(Integer::intValue).toArray();
+    var map = PersistentIntMap.ofSorted(keys, expected.values().toArray(new Integer[0]));
+    assertEquals(expected.size(), map.size());
+    assertEquals(new ArrayList<>(expected.values()), map.values());
+    for (int key : keys) {
+      assertEquals(key, map.get(key));
+      map = map.remove(key);
+    }
+    assertEquals(0, map.size());
+    assertEquals(0, PersistentIntMap.ofSorted(new int[0], new Integer[0]).size());
+  }
+}
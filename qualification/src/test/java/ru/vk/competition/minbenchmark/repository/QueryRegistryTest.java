@@ -0,0 +1,178 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import org.junit.jupiter.api.Test;
+import ru.vk.competition.minbenchmark.entity.SingleQuery;
+import ru.vk.competition.minbenchmark.entity.TableQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryRegistryTest {
+  private static final int THREADS = 8;
+
+  private final QueryRegistry registry = new QueryRegistry();
+
+  @Test
+  void concurrentAddsOfOneIdSucceedOnce() throws Exception {
+    var added = run(i -> registry.newSingleQuery(new SingleQuery(1, "select " + i)));
+    assertEquals(1, added.stream().filter(it -> it).count());
+
+    var addedToTables = run(i -> registry.newTableQuery(new TableQuery(1, "T" + i, "select " + i), () -> true));
+    assertEquals(1, addedToTables.stream().filter(it -> it).count());
+    var query = registry.getTableQueryById(1).orElseThrow();
+    for (int i = 0; i < THREADS; i++) {
+      var table = "T" + i;
+      var expected = table.equals(query.getTableName()) ? List.of(query) : List.of();
+      assertEquals(expected, registry.getTableQueries(table, true).orElseThrow());
+    }
+  }
+
+  @Test
+  void movesKeepTablesConsistent() throws Exception {
+    int queries = 32;
+    for (int id = 0; id < queries; id++) {
+      registry.newTableQuery(new TableQuery(id, "T0", "select " + id), () -> true);
+    }
+    run(i -> {
+      var random = ThreadLocalRandom.current();
+      for (int step = 0; step < 5_000; step++) {
+        int id = random.nextInt(queries);
+        switch (random.nextInt(3)) {
+          case 0 -> registry.updateTableQuery(new TableQuery(id, "T" + random.nextInt(4), "select " + step), () -> true);
+          case 1 -> registry.deleteTableQuery(id);
+          default -> registry.newTableQuery(new TableQuery(id, "T" + random.nextInt(4), "select " + step), () -> true);
+        }
+      }
+      return true;
+    });
+
+    int indexed = 0;
+    for (int table = 0; table < 4; table++) {
+      var name = "T" + table;
+      for (var query : registry.getTableQueries(name, true).orElseThrow()) {
+        assertEquals(name, query.getTableName());
+        indexed++;
+      }
+    }
+    assertEquals(registry.getAllTableQueries().size(), indexed);
+  }
+
+  @Test
+  void noQueryOutlivesDroppedTable() throws Exception {
+    var exists = new AtomicBoolean(true);
+    var pool = Executors.newSingleThreadExecutor();
+    try {
+      var adding = pool.submit(() -> {
+        for (int id = 0; id < 100_000; id++) {
+          registry.newTableQuery(new TableQuery(id, "A", "select " + id), exists::get);
+        }
+      });
+      while (registry.getAllTableQueries().size() < 1_000) {
+        Thread.onSpinWait();
+      }
+      exists.set(false);
+      registry.tableDropped("A");
+      adding.get();
+    } finally {
+      pool.shutdown();
+    }
+    assertTrue(registry.getAllTableQueries().isEmpty());
+  }
+
+  @Test
+  void tableIsCheckedWithoutHoldingItsStripe() throws Exception {
+    registry.newTableQuery(new TableQuery(1, "A", "select 1"), () -> true);
+    var pool = Executors.newSingleThreadExecutor();
+    try {
+      // the check may wait for JDBC: deleting from the same table meanwhile must not wait for it
+      assertTrue(registry.newTableQuery(new TableQuery(2, "A", "select 2"),
+        () -> assertDoesNotThrow(() -> pool.submit(() -> registry.deleteTableQuery(1)).get(5, TimeUnit.SECONDS))));
+      assertEquals(List.of(new TableQuery(2, "A", "select 2")), registry.getTableQueries("A", true).orElseThrow());
+
+      var exists = new AtomicBoolean(true);
+      assertFalse(registry.updateTableQuery(new TableQuery(2, "B", "select 2"), () -> {
+        // dropped after it was found: the update must ask again
+        if (exists.getAndSet(false)) {
+          registry.tableDropped("B");
+          return true;
+        }
+        return false;
+      }));
+      assertTrue(registry.getTableQueries("B", true).orElseThrow().isEmpty());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void tablePagesStartAtTheCursor() {
+    for (int id = 0; id < 100; id++) {
+      registry.newTableQuery(new TableQuery(id, id % 2 == 0 ? "A" : "B", "select " + id), () -> true);
+    }
+    assertEquals(List.of(new TableQuery(50, "A", "select 50"), new TableQuery(52, "A", "select 52")),
+      registry.getTableQueries("A", true, 49, 2).orElseThrow());
+    assertEquals(List.of(), registry.getTableQueries("A", true, 99, 2).orElseThrow());
+    assertEquals(Optional.empty(), registry.getTableQueries("A", false, 0));
+
+    var stream = registry.getTableQueries("B", true, 90).orElseThrow();
+    registry.deleteTableQuery(91);
+    registry.updateTableQuery(new TableQuery(93, "A", "select -93"), () -> true);
+    registry.newTableQuery(new TableQuery(101, "B", "select 101"), () -> true);
+    var streamed = new ArrayList<Integer>();
+    stream.forEach(query -> streamed.add(query.getId()));
+    assertEquals(List.of(91, 93, 95, 97, 99), streamed);
+    assertEquals(List.of(93), registry.getTableQueries("A", true, 93, 1).orElseThrow().stream().map(TableQuery::getId).toList());
+  }
+
+  @Test
+  void getAllIsASnapshot() {
+    for (int id = 0; id < 100; id++) {
+      registry.newSingleQuery(new SingleQuery(id, "select " + id));
+    }
+    var snapshot = registry.getAllSingleQueries();
+    for (int id = 0; id < 100; id += 2) {
+      registry.deleteSingleQuery(id);
+    }
+    registry.updateSingleQuery(new SingleQuery(1, "select -1"));
+    registry.updateSingleQuery(new SingleQuery(3, "x".repeat(121)));
+
+    assertEquals(100, snapshot.size());
+    assertEquals("select 1", snapshot.get(1).getQuery());
+    assertEquals("select 3", snapshot.get(3).getQuery());
+    var current = registry.getAllSingleQueries();
+    assertEquals(50, current.size());
+    assertEquals("select -1", current.get(0).getQuery());
+    assertEquals("", current.get(1).getQuery());
+  }
+
+  private interface Action {
+    boolean apply(int thread) throws Exception;
+  }
+
+  private static List<Boolean> run(Action action) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    try {
+      var tasks = new ArrayList<Callable<Boolean>>();
+      for (int i = 0; i < THREADS; i++) {
+        int thread = i;
+        tasks.add(() -> action.apply(thread));
+      }
+      var results = new ArrayList<Boolean>();
+      for (var future : pool.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+      return results;
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import ru.vk.competition.minbenchmark.entity.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RegistryLogTest {
+  @TempDir
+  Path directory;
+
+  private static void change(QueryRegistry registry) {
+    registry.newTableQuery(new TableQuery(1, "A", "select 1 from A"), () -> true);
+    registry.newTableQuery(new TableQuery(2, "A", "select 2 from A"), () -> true);
+    registry.newTableQuery(new TableQuery(3, "B", "select 3 from B"), () -> true);
+    registry.updateTableQuery(new TableQuery(2, "B", "select 2 from B"), () -> true);
+    registry.updateTableQuery(new TableQuery(3, "B", "x".repeat(121)), () -> true);
+    registry.deleteTableQuery(1);
+    registry.newTableQuery(new TableQuery(4, "C", "select 4 from C"), () -> true);
+    registry.tableDropped("C");
+    registry.newSingleQuery(new SingleQuery(1, "select 1"));
+    registry.newSingleQuery(new SingleQuery(2, "select 2"));
+    registry.updateSingleQuery(new SingleQuery(1, "select 11"));
+    registry.deleteSingleQuery(2);
+    registry.addReport(new Report<>(5, 1, List.of(new ReportTable<>("B", List.of(
+      new ColumnInfoWithSize("id", "INTEGER", "2"))))));
+  }
+
+  private static void assertSame(QueryRegistry expected, QueryRegistry actual) {
+    assertEquals(expected.getAllTableQueries(), actual.getAllTableQueries());
+    assertEquals(expected.getAllSingleQueries(), actual.getAllSingleQueries());
+    assertEquals(expected.getAllReports(), actual.getAllReports());
+    for (var table : List.of("A", "B", "C")) {
+      assertEquals(expected.getTableQueries(table, true), actual.getTableQueries(table, true));
+    }
+  }
+
+  private RegistryLog recovered(QueryRegistry registry, Path path) throws IOException {
+    var log = new RegistryLog(registry, path.toString());
+    log.recover();
+    return log;
+  }
+
+  @Test
+  void replaysChanges() throws IOException {
+    var path = directory.resolve("registry.log");
+    var registry = new QueryRegistry();
+    var log = recovered(registry, path);
+    change(registry);
+    log.sync().block(Duration.ofSeconds(5));
+    var ids = registry.getAllTableQueries().stream().map(TableQuery::getId).collect(Collectors.toList());
+    assertEquals(List.of(2, 3), ids);
+
+    var restored = new QueryRegistry();
+    recovered(restored, path).close();
+    assertSame(registry, restored);
+
+    registry.clear();
+    log.sync().block(Duration.ofSeconds(5));
+    log.close();
+    var cleared = new QueryRegistry();
+    recovered(cleared, path).close();
+    assertSame(registry, cleared);
+  }
+
+  @Test
+  void concurrentChangesShareSyncs() throws IOException {
+    var path = directory.resolve("registry.log");
+    var registry = new QueryRegistry();
+    var log = recovered(registry, path);
+    var synced = Flux.range(0, 2_000)
+      .flatMap(id -> log.durable(Mono.fromSupplier(() -> registry.newSingleQuery(new SingleQuery(id, "select " + id))))
+        .subscribeOn(Schedulers.parallel()))
+      .filter(it -> it)
+      .count()
+      .block(Duration.ofSeconds(30));
+    assertEquals(2_000, synced);
+    log.close();
+
+    var restored = new QueryRegistry();
+    recovered(restored, path).close();
+    assertEquals(2_000, restored.getAllSingleQueries().size());
+  }
+
+  @Test
+  void cutsOffTornRecord() throws IOException {
+    var path = directory.resolve("registry.log");
+    var registry = new QueryRegistry();
+    var log = recovered(registry, path);
+    registry.newSingleQuery(new SingleQuery(1, "select 1"));
+    log.close();
+    long complete = Files.size(path);
+    Files.write(path, new byte[]{0, 0, 0, 0, 0, 0, 0, 2, 0, 0, 0, 50, 1}, StandardOpenOption.APPEND);
+
+    var restored = new QueryRegistry();
+    log = recovered(restored, path);
+    assertEquals(complete, Files.size(path));
+    restored.newSingleQuery(new SingleQuery(2, "select 2"));
+    log.close();
+
+    var again = new QueryRegistry();
+    recovered(again, path).close();
+    assertEquals(2, again.getAllSingleQueries().size());
+  }
+
+  @Test
+  void failedWriteFailsLaterSyncs() throws IOException {
+    var path = directory.resolve("registry.log");
+    var registry = new QueryRegistry();
+    var log = new RegistryLog(registry, path.toString()) {
+      boolean failed;
+
+      @Override
+      void write(ByteBuffer batch) throws IOException {
+        if (!failed) {
+          failed = true;
+          throw new IOException("No space left on device");
+        }
+        super.write(batch);
+      }
+    };
+    log.recover();
+    registry.newSingleQuery(new SingleQuery(1, "select 1"));
+    StepVerifier.create(log.sync()).expectError(IOException.class).verify(Duration.ofSeconds(5));
+    // the lost record is not made durable by a later write
+    registry.newSingleQuery(new SingleQuery(2, "select 2"));
+    StepVerifier.create(log.sync()).expectError(IOException.class).verify(Duration.ofSeconds(5));
+    log.close();
+  }
+
+  @Test
+  void snapshotTruncatesLog() throws IOException {
+    var snapshotPath = directory.resolve("registry.snapshot");
+    var logPath = directory.resolve("registry.log");
+    var registry = new QueryRegistry();
+    var log = new RegistryLog(registry, logPath.toString());
+    var snapshot = new RegistrySnapshot(registry, log, snapshotPath.toString(), Duration.ofHours(1));
+    snapshot.start();
+    change(registry);
+    log.sync().block(Duration.ofSeconds(5));
+    long full = Files.size(logPath);
+    snapshot.stop();
+    assertTrue(Files.size(logPath) < full);
+    registry.newSingleQuery(new SingleQuery(3, "select 3"));
+    log.close();
+
+    var restored = new QueryRegistry();
+    var restoredLog = new RegistryLog(restored, logPath.toString());
+    new RegistrySnapshot(restored, restoredLog, snapshotPath.toString(), Duration.ofHours(1)).start();
+    restoredLog.close();
+    assertSame(registry, restored);
+  }
+}
@@ -0,0 +1,116 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.vk.competition.minbenchmark.entity.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RegistryReplicationTest {
+  private final List<RegistryReplication> nodes = new ArrayList<>();
+
+  @AfterEach
+  void stop() throws IOException {
+    for (var node : nodes) {
+      node.stop();
+    }
+  }
+
+  private RegistryReplication node(QueryRegistry registry, int backlog, RegistryReplication... peers)
+    throws IOException {
+    var node = new RegistryReplication(registry, 0, "127.0.0.1", "", backlog, Duration.ofMillis(50));
+    node.start();
+    nodes.add(node);
+    for (var peer : peers) {
+      node.follow("127.0.0.1:" + peer.port());
+      peer.follow("127.0.0.1:" + node.port());
+    }
+    return node;
+  }
+
+  private static void await(BooleanSupplier condition) {
+    long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.nanoTime() < deadline, "not replicated in time");
+      LockSupport.parkNanos(Duration.ofMillis(10).toNanos());
+    }
+  }
+
+  private static boolean same(QueryRegistry expected, QueryRegistry actual) {
+    return expected.getAllTableQueries().equals(actual.getAllTableQueries())
+      && expected.getAllSingleQueries().equals(actual.getAllSingleQueries())
+      && expected.getAllReports().equals(actual.getAllReports())
+      && expected.getTableQueries("A", true).equals(actual.getTableQueries("A", true))
+      && expected.getTableQueries("B", true).equals(actual.getTableQueries("B", true));
+  }
+
+  @Test
+  void replicatesBetweenAllNodes() throws IOException {
+    var first = new QueryRegistry();
+    var second = new QueryRegistry();
+    var third = new QueryRegistry();
+    var a = node(first, 1_000);
+    var b = node(second, 1_000, a);
+    node(third, 1_000, a, b);
+
+    first.newTableQuery(new TableQuery(1, "A", "select 1 from A"), () -> true);
+    second.newTableQuery(new TableQuery(2, "A", "select 2 from A"), () -> true);
+    third.newSingleQuery(new SingleQuery(1, "select 1"));
+    first.addReport(new Report<>(1, 1, List.of(new ReportTable<>("A", List.of(
+      new ColumnInfoWithSize("id", "INTEGER", "2"))))));
+    await(() -> first.getAllTableQueries().size() == 2 && same(first, second) && same(first, third));
+
+    third.updateTableQuery(new TableQuery(1, "B", "select 1 from B"), () -> true);
+    await(() -> second.getTableQueries("B", true).orElseThrow().size() == 1);
+    second.deleteTableQuery(2);
+    second.deleteSingleQuery(1);
+    await(() -> first.getAllTableQueries().size() == 1 && first.getAllSingleQueries().isEmpty()
+      && same(first, second) && same(first, third));
+    assertEquals(List.of(new TableQuery(1, "B", "select 1 from B")), first.getTableQueries("B", true).orElseThrow());
+    assertTrue(first.getTableQueries("A", true).orElseThrow().isEmpty());
+
+    first.clear();
+    await(() -> third.getAllReports().isEmpty() && same(first, second) && same(first, third));
+  }
+
+  @Test
+  void portIsKnownOnceStarted() throws IOException {
+    var disabled = new RegistryReplication(new QueryRegistry(), -1, "127.0.0.1", "", 1_000, Duration.ofMillis(50));
+    disabled.start();
+    assertFalse(disabled.isEnabled());
+    assertEquals(-1, disabled.port());
+
+    var node = new RegistryReplication(new QueryRegistry(), 0, "127.0.0.1", "", 1_000, Duration.ofMillis(50));
+    assertEquals(-1, node.port());
+    node.start();
+    nodes.add(node);
+    assertTrue(node.port() > 0);
+  }
+
+  @Test
+  void catchesUpFromSnapshot() throws IOException {
+    var first = new QueryRegistry();
+    var a = node(first, 1_000);
+    for (int id = 0; id < 10; id++) {
+      first.newSingleQuery(new SingleQuery(id, "select " + id));
+    }
+    first.newTableQuery(new TableQuery(1, "A", "select 1 from A"), () -> true);
+
+    var second = new QueryRegistry();
+    node(second, 1_000, a);
+    await(() -> same(first, second));
+
+    for (int id = 10; id < 20; id++) {
+      first.newSingleQuery(new SingleQuery(id, "select " + id));
+    }
+    first.deleteSingleQuery(0);
+    await(() -> second.getAllSingleQueries().size() == 19 && same(first, second));
+  }
+}
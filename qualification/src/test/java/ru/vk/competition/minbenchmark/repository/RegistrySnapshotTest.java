@@ -0,0 +1,93 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.vk.competition.minbenchmark.entity.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RegistrySnapshotTest {
+  @TempDir
+  Path directory;
+
+  private static QueryRegistry registry() {
+    var registry = new QueryRegistry();
+    registry.newTableQuery(new TableQuery(1, "Users", "select * from Users"), () -> true);
+    registry.newTableQuery(new TableQuery(2, "Заказы", "select 'ü€😀' from Заказы"), () -> true);
+    registry.newSingleQuery(new SingleQuery(7, "select 1"));
+    registry.addReport(new Report<>(3, 1, List.of(new ReportTable<>("Users", Arrays.asList(
+      new ColumnInfoWithSize("id", "INTEGER", "32"), new ColumnInfoWithSize("name", "CHARACTER VARYING", "10"))))));
+    return registry;
+  }
+
+  @Test
+  void roundTrip() {
+    var path = directory.resolve("registry.snapshot");
+    var original = registry();
+    assertTrue(RegistrySnapshot.write(path, original));
+
+    var restored = new QueryRegistry();
+    restored.newSingleQuery(new SingleQuery(8, "select 2"));
+    assertTrue(RegistrySnapshot.read(path, restored));
+    assertEquals(original.getAllTableQueries(), restored.getAllTableQueries());
+    assertEquals(original.getAllSingleQueries(), restored.getAllSingleQueries());
+    assertEquals(original.getAllReports(), restored.getAllReports());
+    var users = restored.getTableQueries("Users", true).orElseThrow();
+    assertEquals(List.of(1), users.stream().map(TableQuery::getId).collect(Collectors.toList()));
+    assertFalse(Files.exists(directory.resolve("registry.snapshot.tmp")));
+  }
+
+  @Test
+  void overwritesPreviousSnapshot() {
+    var path = directory.resolve("registry.snapshot");
+    var registry = registry();
+    assertTrue(RegistrySnapshot.write(path, registry));
+    registry.deleteTableQuery(1);
+    assertTrue(RegistrySnapshot.write(path, registry));
+
+    var restored = new QueryRegistry();
+    assertTrue(RegistrySnapshot.read(path, restored));
+    assertEquals(List.of(2), restored.getAllTableQueries().stream().map(TableQuery::getId).collect(Collectors.toList()));
+  }
+
+  @Test
+  void rejectsDamagedSnapshot() throws IOException {
+    var path = directory.resolve("registry.snapshot");
+    assertTrue(RegistrySnapshot.write(path, registry()));
+    var bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 3));
+
+    var restored = new QueryRegistry();
+    restored.newSingleQuery(new SingleQuery(8, "select 2"));
+    assertFalse(RegistrySnapshot.read(path, restored));
+    assertEquals(List.of(new SingleQuery(8, "select 2")), restored.getAllSingleQueries());
+
+    Files.write(path, "not a snapshot".getBytes());
+    assertFalse(RegistrySnapshot.read(path, restored));
+  }
+
+  @Test
+  void restoresOnStartAndWritesOnStop() throws IOException {
+    var path = directory.resolve("registry.snapshot");
+    assertTrue(RegistrySnapshot.write(path, registry()));
+
+    var restored = new QueryRegistry();
+    var snapshot = new RegistrySnapshot(restored, new RegistryLog(restored, ""), path.toString(), Duration.ofHours(1));
+    snapshot.start();
+    assertEquals(2, restored.getAllTableQueries().size());
+    restored.newSingleQuery(new SingleQuery(8, "select 2"));
+    snapshot.stop();
+
+    var reread = new QueryRegistry();
+    assertTrue(RegistrySnapshot.read(path, reread));
+    assertEquals(2, reread.getAllSingleQueries().size());
+  }
+}
@@ -0,0 +1,109 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.vk.competition.minbenchmark.entity.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+  "minbenchmark.persistence.mode=jdbc",
+  "minbenchmark.persistence.shards=3",
+  "spring.datasource.url=jdbc:h2:mem:shards"
+})
+public class ShardsTest {
+  private static final List<String> TABLES = List.of("A", "B", "C", "D", "E", "F");
+
+  @Autowired
+  private ReactiveRepository repo;
+
+  @Autowired
+  private Shards shards;
+
+  @Autowired
+  private RawRepository rawRepository;
+
+  @AfterEach
+  void clear() {
+    repo.clear().block();
+  }
+
+  private static DBTable table(String name) {
+    return new DBTable(name, 2, "id", List.of(new ColumnInfo("id", "int4"), new ColumnInfo("data", "varchar(40)")));
+  }
+
+  private long tablesOn(int shard) {
+    return new JdbcTemplate(shards.get(shard))
+      .queryForList("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = SCHEMA()").size();
+  }
+
+  @Test
+  void hashesTablesOntoShards() {
+    assertEquals("jdbc:h2:mem:db_shard2;MODE=PostgreSQL", Shards.url("jdbc:h2:mem:db;MODE=PostgreSQL", 2));
+    var used = new HashSet<Integer>();
+    for (var table : TABLES) {
+      assertTrue(repo.createTable(table(table)).block());
+      used.add(Shards.of(table, 3));
+    }
+    assertTrue(used.size() > 1);
+    for (int shard = 0; shard < 3; shard++) {
+      int expected = shard;
+      assertEquals(TABLES.stream().filter(it -> Shards.of(it, 3) == expected).count(), tablesOn(shard));
+    }
+    for (var table : TABLES) {
+      assertEquals(2, repo.getTableInfo(table).block().orElseThrow().getColumnsAmount());
+    }
+
+    repo.clear().block();
+    for (int shard = 0; shard < 3; shard++) {
+      assertEquals(0, tablesOn(shard));
+    }
+    assertEquals(Optional.empty(), repo.getTableInfo("A").block());
+  }
+
+  @Test
+  void routesQueriesAndReportsToOwningShard() {
+    var other = TABLES.stream().filter(it -> Shards.of(it, 3) != Shards.of("A", 3)).findFirst().orElseThrow();
+    for (var table : List.of("A", other)) {
+      assertTrue(repo.createTable(table(table)).block());
+    }
+    assertTrue(repo.newTableQuery(new TableQuery(1, "A", "insert into A values (1, 'a')")).block());
+    assertTrue(repo.newTableQuery(new TableQuery(2, other, "insert into " + other + " values (1, null)")).block());
+    assertTrue(repo.newTableQuery(new TableQuery(3, other, "insert into " + other + " values (?, ?)")).block());
+    assertTrue(repo.newTableQuery(new TableQuery(4, "A", "insert into A values (2, 'x')")).block());
+    assertTrue(repo.newSingleQuery(new SingleQuery(1, "update A set data = 'b'")).block());
+    assertTrue(repo.executeTableQuery(1).block());
+    assertTrue(repo.executeTableQuery(2).block());
+    assertTrue(repo.executeTableQuery(3, List.of(2, "c")).block());
+    assertTrue(repo.executeSingleQuery(1).block());
+
+    assertEquals(Optional.empty(), repo.executeBatch(List.of(1, 2), List.of()).block());
+    assertEquals(Optional.of(List.of(1)), repo.executeBatch(List.of(4), List.of()).block());
+    assertEquals(List.of(false, true), rawRepository.executeGrouped(List.of(
+      new TableQuery(5, "A", "insert into " + other + " values (3, null)"),
+      new TableQuery(6, other, "insert into " + other + " values (4, null)"))));
+
+    var away = TABLES.stream().filter(it -> Shards.of(it, 3) == 1).findFirst().orElseThrow();
+    assertTrue(repo.createTable(table(away)).block());
+    assertTrue(repo.newSingleQuery(new SingleQuery(2, "select * from " + away)).block());
+    assertTrue(repo.executeSingleQuery(2).block());
+    assertTrue(repo.newSingleQuery(new SingleQuery(3, "insert into " + away + " select * from " + other)).block());
+    assertEquals(Shards.of(away, 3) == Shards.of(other, 3), repo.executeSingleQuery(3).block());
+    assertTrue(repo.newSingleQuery(new SingleQuery(4, "call 1")).block());
+    assertFalse(repo.executeSingleQuery(4).block());
+
+    assertTrue(repo.createReport(new Report<>(1, 2, List.of(
+      new ReportTable<>("A", List.of(new ColumnInfo("data", "varchar"))),
+      new ReportTable<>(other, List.of(new ColumnInfo("data", "varchar")))))).block());
+    var report = repo.getReportById(1).block().orElseThrow();
+    assertEquals("2", report.getTables().get(0).getColumns().get(0).getSize());
+    assertEquals("1", report.getTables().get(1).getColumns().get(0).getSize());
+  }
+}
@@ -0,0 +1,107 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlStatementTest {
+
+  @Test
+  void plainDml() {
+    var statement = SqlStatement.parse("insert into Test (ID, data) values (1, 'drop table Test;'), (2, null);");
+    assertEquals(SqlStatement.Kind.DML, statement.getKind());
+    assertFalse(statement.isSchemaChange());
+    assertEquals(Set.of("TEST"), statement.getTables());
+
+    assertEquals(Set.of("TEST"), SqlStatement.parse("update PUBLIC.test set a = 1").getTables());
+    assertEquals(Set.of("TEST"), SqlStatement.parse("delete from \"Test\" where a = 1").getTables());
+    assertEquals(Set.of(), SqlStatement.parse("select * from Test").getTables());
+  }
+
+  @Test
+  void ddl() {
+    var create = SqlStatement.parse("create table if not exists ReportTable (id int4, data varchar);");
+    assertEquals(SqlStatement.Kind.DDL, create.getKind());
+    assertEquals(Set.of("REPORTTABLE"), create.getTables());
+
+    assertEquals(Set.of("A", "B"), SqlStatement.parse("DROP TABLE IF EXISTS a, b CASCADE").getTables());
+    assertEquals(Set.of("A", "B"), SqlStatement.parse("alter table a rename to b").getTables());
+    assertEquals(Set.of("T"), SqlStatement.parse("create unique index idx on t(a)").getTables());
+    assertEquals(SqlStatement.Kind.DDL, SqlStatement.parse("truncate table t").getKind());
+  }
+
+  @Test
+  void unknownStatements() {
+    var view = SqlStatement.parse("create view v as select * from t");
+    assertTrue(view.isSchemaChange());
+    assertFalse(view.isTablesKnown());
+
+    var other = SqlStatement.parse("azaza");
+    assertEquals(SqlStatement.Kind.OTHER, other.getKind());
+    assertFalse(other.isTablesKnown());
+  }
+
+  @Test
+  void withAndExplainReadOnlyAroundQueries() {
+    for (var read : new String[]{
+      "with x(v) as (values 1) select v from x",
+      "WITH RECURSIVE t(n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM t WHERE n < 3), u AS (SELECT ')') SELECT * FROM t",
+      "explain select * from t",
+      "explain analyze with x as (select 1) select * from x"}) {
+      var statement = SqlStatement.parse(read);
+      assertEquals(SqlStatement.Kind.DML, statement.getKind(), read);
+      assertEquals(Set.of(), statement.getTables(), read);
+    }
+
+    // H2 executes these writes
+    for (var write : new String[]{
+      "WITH x(v) AS (VALUES 1) INSERT INTO t SELECT v FROM x",
+      "EXPLAIN ANALYZE INSERT INTO t VALUES 2",
+      "explain analyze with x as (select 1) delete from t",
+      "with x as (select 1"}) {
+      var statement = SqlStatement.parse(write);
+      assertEquals(SqlStatement.Kind.OTHER, statement.getKind(), write);
+      assertFalse(statement.isTablesKnown(), write);
+    }
+  }
+
+  @Test
+  void deltaTablesWrite() {
+    for (var write : new String[]{
+      "select id from final table (insert into t values (1))",
+      "SELECT * FROM OLD TABLE (DELETE FROM t WHERE id = 1)",
+      "with x as (select * from new table (update t set a = 1)) select * from x",
+      "insert into a select * from old table (merge into b key (id) values (1))"}) {
+      var statement = SqlStatement.parse(write);
+      assertEquals(SqlStatement.Kind.OTHER, statement.getKind(), write);
+      assertFalse(statement.isTablesKnown(), write);
+    }
+
+    var read = SqlStatement.parse("select 'final table (' from \"new\" join t on \"new\".table = t.id");
+    assertEquals(SqlStatement.Kind.DML, read.getKind());
+  }
+
+  @Test
+  void referencesReadTablesToo() {
+    assertEquals(Set.of("T"), SqlStatement.parse("select * from t").getReferences());
+    assertEquals(Set.of("A", "B", "C", "D"), SqlStatement.parse(
+      "select * from a x, PUBLIC.b as y join \"c\" on x.id = c.id where x.id in (select id from d)").getReferences());
+    assertEquals(Set.of("A", "B"), SqlStatement.parse("insert into a (id) select id from (select id from b) s").getReferences());
+    assertEquals(Set.of("A"), SqlStatement.parse("insert into a (id) select id from (select id from b) s").getTables());
+    assertEquals(Set.of("A", "B"), SqlStatement.parse(
+      "merge into a using b on a.id = b.id when matched then update set data = b.data").getReferences());
+    assertEquals(Set.of("T"), SqlStatement.parse(
+      "with x as (select * from t) select extract(year from d), 'from y' from x, system_range(1, 2)").getReferences());
+    assertEquals(Set.of("A", "B"), SqlStatement.parse("alter table a rename to b").getReferences());
+    assertEquals(Set.of(), SqlStatement.parse("select 1").getReferences());
+  }
+
+  @Test
+  void multipleStatements() {
+    var statement = SqlStatement.parse("insert into a values (1); -- drop table c\n drop table b");
+    assertEquals(SqlStatement.Kind.DDL, statement.getKind());
+    assertEquals(Set.of("A", "B"), statement.getTables());
+  }
+}
@@ -0,0 +1,113 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class StatementCacheTest {
+  private static final String INSERT = "insert into T values (?, ?)";
+
+  private Connection connection;
+
+  @BeforeEach
+  void connect() throws SQLException {
+    connection = spy(DriverManager.getConnection("jdbc:h2:mem:statement_cache"));
+    connection.createStatement().execute("create table T (id int primary key, name varchar)");
+  }
+
+  @AfterEach
+  void close() throws SQLException {
+    connection.createStatement().execute("drop table T");
+    connection.close();
+  }
+
+  @Test
+  void preparesOncePerQuery() throws SQLException {
+    var cache = new StatementCache(16);
+    assertTrue(cache.execute(connection, "insert", INSERT, List.of(1, "a")));
+    assertTrue(cache.execute(connection, "insert", INSERT, Arrays.asList(2, null)));
+    assertThrows(SQLException.class, () -> cache.execute(connection, "insert", INSERT, List.of(1, "b")));
+    assertTrue(cache.execute(connection, "insert", INSERT, List.of(3, "c")));
+    assertTrue(cache.execute(connection, "count", "select count(*) from T where name = ?", List.of("a")));
+    verify(connection, times(1)).prepareStatement(INSERT);
+    assertEquals(3, count());
+  }
+
+  @Test
+  void reusesStatementsBehindJdbcTemplateAndPool() throws SQLException {
+    var physical = new ArrayList<Connection>();
+    var config = new HikariConfig();
+    config.setMaximumPoolSize(1);
+    config.setDataSource(new DriverManagerDataSource("jdbc:h2:mem:statement_cache") {
+      @Override
+      protected Connection getConnectionFromDriverManager(String url, Properties properties) throws SQLException {
+        var connection = spy(super.getConnectionFromDriverManager(url, properties));
+        physical.add(connection);
+        return connection;
+      }
+    });
+    var cache = new StatementCache(16);
+    try (var pool = new HikariDataSource(config)) {
+      var jdbcTemplate = new JdbcTemplate(pool);
+      for (int id = 1; id <= 3; id++) {
+        var args = List.<Object>of(id, "a");
+        assertEquals(true, jdbcTemplate.execute(
+          (ConnectionCallback<Boolean>) connection -> cache.execute(connection, "insert", INSERT, args)));
+      }
+      assertEquals(1, physical.size());
+      verify(physical.get(0), times(1)).prepareStatement(INSERT);
+    }
+    assertEquals(3, count());
+  }
+
+  @Test
+  void changedQueryIsPreparedAgain() throws SQLException {
+    var cache = new StatementCache(16);
+    assertTrue(cache.execute(connection, "insert", INSERT, List.of(1, "a")));
+    assertTrue(cache.execute(connection, "insert", "insert into T (id) values (?)", List.of(2)));
+    assertTrue(cache.execute(connection, "insert", INSERT, List.of(3, "c")));
+    verify(connection, times(2)).prepareStatement(INSERT);
+    assertEquals(3, count());
+  }
+
+  @Test
+  void argumentsMustMatchPlaceholders() throws SQLException {
+    var cache = new StatementCache(16);
+    assertFalse(cache.execute(connection, "insert", INSERT, List.of(1)));
+    assertFalse(cache.execute(connection, "insert", INSERT, List.of(1, "a", "b")));
+    assertEquals(0, count());
+  }
+
+  @Test
+  void leastRecentlyUsedIsClosed() throws SQLException {
+    var cache = new StatementCache(1);
+    assertTrue(cache.execute(connection, "first", INSERT, List.of(1, "a")));
+    assertTrue(cache.execute(connection, "second", "delete from T where id = ?", List.of(1)));
+    assertTrue(cache.execute(connection, "first", INSERT, List.of(1, "a")));
+    verify(connection, times(2)).prepareStatement(INSERT);
+    assertEquals(1, count());
+  }
+
+  private int count() throws SQLException {
+    try (var rs = connection.createStatement().executeQuery("select count(*) from T")) {
+      rs.next();
+      return rs.getInt(1);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SwappableDataSourceTest {
+
+  @Test
+  void swapsOnlyNamedInMemoryDatabases() {
+    assertTrue(SwappableDataSource.canSwap("jdbc:h2:mem:mydb"));
+    assertTrue(SwappableDataSource.canSwap("jdbc:h2:mem:mydb;MODE=PostgreSQL"));
+    assertFalse(SwappableDataSource.canSwap("jdbc:h2:mem:"));
+    assertFalse(SwappableDataSource.canSwap("jdbc:h2:mem:mydb;DB_CLOSE_DELAY=-1"));
+    assertFalse(SwappableDataSource.canSwap("jdbc:h2:file:./mydb"));
+  }
+
+  @Test
+  void suffixesDatabaseName() {
+    assertEquals("jdbc:h2:mem:mydb_3", SwappableDataSource.generation("jdbc:h2:mem:mydb", 3));
+    assertEquals("jdbc:h2:mem:mydb_3;MODE=PostgreSQL",
+      SwappableDataSource.generation("jdbc:h2:mem:mydb;MODE=PostgreSQL", 3));
+  }
+
+  @Test
+  void borrowedConnectionsOutliveTheSwap() throws SQLException {
+    List<HikariDataSource> pools = new CopyOnWriteArrayList<>();
+    var database = new SwappableDataSource("jdbc:h2:mem:swapped", url -> {
+      var config = new HikariConfig();
+      config.setJdbcUrl(url);
+      var pool = new HikariDataSource(config);
+      pools.add(pool);
+      return pool;
+    });
+    try {
+      var borrowed = database.getConnection();
+      try (var statement = borrowed.createStatement()) {
+        statement.execute("create table T (id int)");
+      }
+      database.swap();
+      LockSupport.parkNanos(Duration.ofMillis(200).toNanos());
+      try (var statement = borrowed.createStatement()) {
+        assertEquals(1, statement.executeUpdate("insert into T values (1)"));
+      }
+      assertFalse(pools.get(0).isClosed());
+
+      borrowed.close();
+      long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+      while (!pools.get(0).isClosed()) {
+        assertTrue(System.nanoTime() < deadline, "old database not closed in time");
+        LockSupport.parkNanos(Duration.ofMillis(10).toNanos());
+      }
+      try (var connection = database.getConnection(); var statement = connection.createStatement()) {
+        statement.execute("create table T (id int)");
+      }
+    } finally {
+      database.close();
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Mono;
+import ru.vk.competition.minbenchmark.entity.ColumnInfo;
+import ru.vk.competition.minbenchmark.entity.DBTable;
+import ru.vk.competition.minbenchmark.entity.TableQuery;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+  "minbenchmark.persistence.mode=jdbc",
+  "minbenchmark.tenants.enabled=true",
+  "minbenchmark.tenants.max=2",
+  "spring.datasource.url=jdbc:h2:mem:tenants"
+})
+public class TenantsTest {
+
+  @Autowired
+  private ReactiveRepository repo;
+
+  @Autowired
+  private Tenants tenants;
+
+  @Autowired
+  private JdbcExecution execution;
+
+  @AfterEach
+  void clear() {
+    repo.clear().block();
+  }
+
+  private <T> T as(String tenant, Mono<T> call) {
+    return call.contextWrite(tenants.context(tenant)).block();
+  }
+
+  private static DBTable table(String... columns) {
+    return new DBTable("T", columns.length, "id",
+      Arrays.stream(columns).map(it -> new ColumnInfo(it, "int4")).collect(Collectors.toList()));
+  }
+
+  @Test
+  void tenantsShareNamesButNotTables() {
+    assertTrue(as("a", repo.createTable(table("id"))));
+    assertTrue(as("b", repo.createTable(table("id", "amount"))));
+    assertTrue(as("a", repo.newTableQuery(new TableQuery(1, "T", "insert into T values (1)"))));
+    assertTrue(as("b", repo.newTableQuery(new TableQuery(1, "T", "insert into T values (1, 2)"))));
+
+    assertTrue(as("a", repo.executeTableQuery(1)));
+    assertTrue(as("b", repo.executeTableQuery(1)));
+    assertFalse(as("a", repo.executeTableQuery(2)));
+    assertEquals(1, as("a", repo.getTableInfo("T")).orElseThrow().getColumnsAmount());
+    assertEquals(2, as("b", repo.getTableInfo("T")).orElseThrow().getColumnsAmount());
+    assertEquals(Optional.empty(), repo.getTableInfo("T").block());
+    assertEquals(Optional.empty(), repo.getTableQueryById(1).block());
+  }
+
+  @Test
+  void firstCallOfTenantIsProvisionedOffTheCallingThread() {
+    var caller = Thread.currentThread().getName();
+    assertTrue(as("fresh", execution.inPlace(() -> Thread.currentThread().getName())).startsWith("jdbc-schema"));
+    assertEquals(caller, as("fresh", execution.inPlace(() -> Thread.currentThread().getName())));
+    assertEquals(caller, execution.inPlace(() -> Thread.currentThread().getName()).block());
+  }
+
+  @Test
+  void droppedTenantStartsOver() {
+    assertTrue(as("a", repo.createTable(table("id"))));
+    assertTrue(as("a", repo.newTableQuery(new TableQuery(1, "T", "insert into T values (1)"))));
+    assertTrue(tenants.drop("a"));
+    assertFalse(tenants.drop("a"));
+
+    assertEquals(Optional.empty(), as("a", repo.getTableQueryById(1)));
+    assertTrue(as("a", repo.createTable(table("id"))));
+  }
+
+  @Test
+  void tenantsAreLimited() {
+    assertTrue(as("a", repo.createTable(table("id"))));
+    assertTrue(as("b", repo.createTable(table("id"))));
+    assertThrows(RejectedExecutionException.class, () -> as("c", repo.createTable(table("id"))));
+    assertTrue(as("a", repo.getTableInfo("T")).isPresent());
+
+    assertTrue(tenants.drop("a"));
+    assertTrue(as("c", repo.createTable(table("id"))));
+    assertThrows(RejectedExecutionException.class, () -> as("a", repo.getTableInfo("T")));
+  }
+
+  @Test
+  void tenantNamesAreShortIdentifiers() {
+    assertTrue(Tenants.isValidName("team-42_a"));
+    assertTrue(Tenants.isValidName("x".repeat(Tenants.MAX_NAME_LENGTH)));
+    assertFalse(Tenants.isValidName("x".repeat(Tenants.MAX_NAME_LENGTH + 1)));
+    assertFalse(Tenants.isValidName(""));
+    assertFalse(Tenants.isValidName("a b"));
+    assertFalse(Tenants.isValidName("a;drop"));
+    assertFalse(Tenants.isValidName("тенант"));
+  }
+
+  @Test
+  void tenantResetLeavesOthersAlone() {
+    assertTrue(as("a", repo.createTable(table("id"))));
+    assertTrue(as("b", repo.createTable(table("id"))));
+    assertTrue(as("b", repo.newTableQuery(new TableQuery(1, "T", "insert into T values (1)"))));
+    as("b", repo.clear());
+
+    assertTrue(as("a", repo.getTableInfo("T")).isPresent());
+    assertEquals(Optional.empty(), as("b", repo.getTableInfo("T")));
+    assertEquals(Optional.empty(), as("b", repo.getTableQueryById(1)));
+  }
+}
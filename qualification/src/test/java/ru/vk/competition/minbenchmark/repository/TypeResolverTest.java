@@ -0,0 +1,82 @@
+package ru.vk.competition.minbenchmark.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.vk.competition.minbenchmark.entity.ColumnInfo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TypeResolverTest {
+  private static final List<String> TYPES = Arrays.asList(
+    "int4", "Integer", "serial", "bigint", "identity", "bool", "bit", "double", "float8", "float", "FLOAT(24)",
+    "real", "numeric", "number", "number(10)", "dec(5)", "decfloat(3)", "date", "uuid", "smalldatetime",
+    "varchar", "varchar(40)", "VARCHAR (5)", "varchar( 5 )", "varchar(05)", "character  varying(7)", "tId",
+    "national character varying", "ntext", "varchar_ignorecase(3)", "char", "nchar(3)", "national char",
+    "clob", "clob(100)", "national CHARACTER LaRgE OBJECT", "binary(4)", "bytea", "raw(8)", "ImagE", "blob(1000)",
+    "time", "time(3) without time zone", "time with time zone", "DateTIME2", "datetime(3)",
+    "timestamp(9) with time zone", "interval day", "interval day(3) to second", "interval year to month",
+    "other", "json(10)", "geometry");
+
+  private static final List<String> INVALID = Arrays.asList(
+    "year", "varchar(0)", "float(54)", "timestamp(10)", "int(5)", "national char large object", "azaza");
+
+  private final JdbcTemplate jdbcTemplate =
+    new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:types;DB_CLOSE_DELAY=-1", "sa", ""));
+
+  @Test
+  void aliasesMatchH2() {
+    for (var type : TYPES) {
+      var resolved = TypeResolver.resolveAlias(TypeResolver.normalize(type));
+      assertEquals(Optional.of(probe(type)), resolved, type);
+    }
+  }
+
+  @Test
+  void invalidTypesAreNotResolved() {
+    var resolver = new TypeResolver(jdbcTemplate);
+    for (var type : INVALID) {
+      assertEquals(Optional.empty(), TypeResolver.resolveAlias(TypeResolver.normalize(type)), type);
+      assertEquals(Optional.empty(), resolver.mapColumnTypes(List.of(new ColumnInfo("a", type))), type);
+    }
+  }
+
+  @Test
+  void unknownTypesAreProbed() {
+    var resolver = new TypeResolver(jdbcTemplate);
+    var infos = Arrays.asList(
+      new ColumnInfo("id", "int4"),
+      new ColumnInfo("Amount", "numeric(10, 2)"),
+      new ColumnInfo("tags", "varchar(10) array"));
+    var expected = Arrays.asList(
+      new ColumnInfo("ID", "INTEGER"),
+      new ColumnInfo("AMOUNT", "NUMERIC(10, 2)"),
+      new ColumnInfo("TAGS", "CHARACTER VARYING ARRAY"));
+
+    assertEquals(Optional.of(expected), resolver.mapColumnTypes(infos));
+    assertEquals(Optional.of(expected), resolver.mapColumnTypes(infos));
+    assertEquals(0, jdbcTemplate.queryForObject(
+      "select count(*) from information_schema.tables where table_name like 'ZZZ%'", Integer.class));
+  }
+
+  @Test
+  void duplicateColumns() {
+    var resolver = new TypeResolver(jdbcTemplate);
+    var infos = Arrays.asList(new ColumnInfo("id", "int4"), new ColumnInfo("ID", "int4"));
+    assertEquals(Optional.empty(), resolver.mapColumnTypes(infos));
+  }
+
+  private String probe(String type) {
+    jdbcTemplate.execute("create table probe (c " + type + ")");
+    try {
+      return jdbcTemplate.queryForObject("show columns from probe", (rs, rowNum) -> rs.getString("TYPE"))
+        .replaceAll("\\(\\d+\\)", "");
+    } finally {
+      jdbcTemplate.execute("drop table probe");
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package ru.vk.competition.minbenchmark.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import ru.vk.competition.minbenchmark.entity.ColumnInfo;
+import ru.vk.competition.minbenchmark.entity.DBTable;
+import ru.vk.competition.minbenchmark.entity.TableQuery;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+
+// group commit is a jdbc mode feature: in r2dbc mode concurrent executions race, and these results are not ordered
+@SpringBootTest(properties = {
+  "minbenchmark.persistence.mode=jdbc",
+  "minbenchmark.persistence.group-commit.enabled=true",
+  "minbenchmark.persistence.group-commit.linger=20ms"
+})
+public class GroupCommitServiceTest {
+
+  @Autowired
+  private TableService tableService;
+
+  @Autowired
+  private TableQueryService queryService;
+
+  @BeforeEach
+  void createDB() {
+    tableService.createTable(new DBTable("Test", 1, "id", Collections.singletonList(
+      new ColumnInfo("id", "int4")
+    ))).block();
+    queryService.addNewTableQuery(new TableQuery(1, "Test", "insert into Test values (1)")).block();
+    queryService.addNewTableQuery(new TableQuery(2, "Test", "insert into Test values (2)")).block();
+    queryService.addNewTableQuery(new TableQuery(3, "Test", "select * from Test")).block();
+    queryService.addNewTableQuery(new TableQuery(4, "Test", "insert into Missing values (1)")).block();
+  }
+
+  @AfterEach
+  void clear() {
+    queryService.clear();
+  }
+
+  @Test
+  void eachCallerGetsItsOwnResult() {
+    StepVerifier.create(Flux.mergeSequential(
+        queryService.executeTableQuery(1),
+        queryService.executeTableQuery(2),
+        queryService.executeTableQuery(4),
+        queryService.executeTableQuery(3),
+        queryService.executeTableQuery(5)))
+      .expectNext(true, true, false, true, false)
+      .verifyComplete();
+  }
+
+  @Test
+  void failedStatementDoesNotUndoTheOthers() {
+    StepVerifier.create(Flux.mergeSequential(
+        queryService.executeTableQuery(1),
+        queryService.executeTableQuery(1),
+        queryService.executeTableQuery(2)))
+      .expectNext(true, false, true)
+      .verifyComplete();
+    StepVerifier.create(Flux.merge(queryService.executeTableQuery(1), queryService.executeTableQuery(2)))
+      .expectNext(false, false)
+      .verifyComplete();
+  }
+}
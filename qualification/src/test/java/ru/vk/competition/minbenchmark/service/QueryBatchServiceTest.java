@@ -0,0 +1,91 @@
+package ru.vk.competition.minbenchmark.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.test.StepVerifier;
+import ru.vk.competition.minbenchmark.entity.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static ru.vk.competition.minbenchmark.util.TableSchemaUtil.CHARACTER_TYPE;
+
+
+@SpringBootTest
+public class QueryBatchServiceTest {
+
+  @Autowired
+  private TableService tableService;
+
+  @Autowired
+  private TableQueryService tableQueryService;
+
+  @Autowired
+  private SingleQueryService singleQueryService;
+
+  @Autowired
+  private QueryBatchService batchService;
+
+  @Autowired
+  private ReportService reportService;
+
+  @BeforeEach
+  void createDB() {
+    tableService.createTable(new DBTable("Test", 2, "ID", Arrays.asList(
+      new ColumnInfo("ID", "int4"),
+      new ColumnInfo("NAME", CHARACTER_TYPE)
+    ))).block();
+    tableQueryService.addNewTableQuery(new TableQuery(1, "Test", "insert into Test values (1, 'a')")).block();
+    tableQueryService.addNewTableQuery(new TableQuery(2, "Test", "insert into Test values (2, null)")).block();
+    singleQueryService.addNewQuery(new SingleQuery(1, "update Test set name = 'b' where id > 0")).block();
+    singleQueryService.addNewQuery(new SingleQuery(2, "insert into Test values (1, 'duplicate')")).block();
+    singleQueryService.addNewQuery(new SingleQuery(3, "create table Other (id int)")).block();
+    reportService.createReport(new Report<>(1, 1, Collections.singletonList(new ReportTable<>("Test", Arrays.asList(
+      new ColumnInfo("ID", "int4"),
+      new ColumnInfo("NAME", CHARACTER_TYPE)
+    ))))).block();
+  }
+
+  @AfterEach
+  void clear() {
+    tableQueryService.clear();
+  }
+
+  @Test
+  void executeInOneTransaction() {
+    StepVerifier.create(batchService.executeBatch(new QueryBatch(List.of(1, 2), List.of(1))))
+      .expectNext(List.of(1, 1, 2))
+      .verifyComplete();
+    assertSizes("2", "2");
+  }
+
+  @Test
+  void failedBatchRollsBack() {
+    assertSizes("0", "0");
+    StepVerifier.create(batchService.executeBatch(new QueryBatch(List.of(1, 2), List.of(1, 2)))).verifyComplete();
+    assertSizes("0", "0");
+    StepVerifier.create(batchService.executeBatch(new QueryBatch(List.of(2), List.of()))).expectNext(List.of(1)).verifyComplete();
+    assertSizes("1", "0");
+  }
+
+  @Test
+  void badIdsOrSchemaChangesAreRejected() {
+    StepVerifier.create(batchService.executeBatch(new QueryBatch(List.of(1, 3), List.of()))).verifyComplete();
+    StepVerifier.create(batchService.executeBatch(new QueryBatch(List.of(1), List.of(3)))).verifyComplete();
+    StepVerifier.create(batchService.executeBatch(new QueryBatch())).expectNext(Collections.emptyList()).verifyComplete();
+    assertSizes("0", "0");
+  }
+
+  private void assertSizes(String ids, String names) {
+    StepVerifier.create(reportService.getReportById(1))
+      .expectNextMatches(it -> {
+        var columns = it.getTables().get(0).getColumns();
+        return columns.get(0).getSize().equals(ids) && columns.get(1).getSize().equals(names);
+      })
+      .verifyComplete();
+  }
+}
@@ -1,15 +1,18 @@
 package ru.vk.competition.minbenchmark.service;
 
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import reactor.test.StepVerifier;
+import ru.vk.competition.minbenchmark.repository.ReactiveRepository;
 import ru.vk.competition.minbenchmark.entity.*;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Optional;
 
 import static ru.vk.competition.minbenchmark.util.TableSchemaUtil.CHARACTER_TYPE;
 
@@ -28,6 +31,9 @@ public class ReportServiceTest {
   @Autowired
   private SingleQueryService singleQueryService;
 
+  @Autowired
+  private ReactiveRepository repository;
+
   @BeforeEach
   void createDB() {
     DBTable TABLE1 = new DBTable(
@@ -126,6 +132,24 @@ public class ReportServiceTest {
     StepVerifier.create(reportService.getReportById(1)).expectNext(REPORT1).verifyComplete();
   }
 
+  @Test
+  void getReportCached() {
+    StepVerifier.create(reportService.createReport(REPORT)).expectNext(true).verifyComplete();
+    var before = reportService.getCacheStats().block();
+
+    StepVerifier.create(reportService.getReportById(1)).expectNextCount(1).verifyComplete();
+    StepVerifier.create(reportService.getReportById(1)).expectNextCount(1).verifyComplete();
+
+    var query = new TableQuery(1, "Test1", "insert into Test1 (NAME, desc) values ('Vasya', 'Hello!')");
+    StepVerifier.create(tableQueryService.addNewTableQuery(query)).expectNext(true).verifyComplete();
+    StepVerifier.create(tableQueryService.executeTableQuery(1)).expectNext(true).verifyComplete();
+    StepVerifier.create(reportService.getReportById(1)).expectNextCount(1).verifyComplete();
+
+    var after = reportService.getCacheStats().block();
+    Assertions.assertEquals(before.getHitCount() + 1, after.getHitCount());
+    Assertions.assertEquals(before.getMissCount() + 2, after.getMissCount());
+  }
+
   @Test
   void getReportBadId() {
     StepVerifier.create(reportService.getReportById(1)).verifyComplete();
@@ -164,6 +188,63 @@ public class ReportServiceTest {
     StepVerifier.create(reportService.getReportById(1)).expectNext(reportRes).verifyComplete();
   }
 
+  @Test
+  void columnsAreSizedOneByOneIfTogetherFails() {
+    var query = new TableQuery(1, "Test", "insert into Test (ID, data) values (1, 'Hello!'), (2, null);");
+    StepVerifier.create(tableQueryService.addNewTableQuery(query)).expectNext(true).verifyComplete();
+    StepVerifier.create(tableQueryService.executeTableQuery(1)).expectNext(true).verifyComplete();
+
+    // not validated by the repository: the missing column fails the combined count, but not the others
+    var report = new Report<>(1, 1, Collections.singletonList(new ReportTable<>("Test", Arrays.asList(
+      new ColumnInfo("ID", "int4"),
+      new ColumnInfo("missing", "int4"),
+      new ColumnInfo("data", "varchar(40)")
+    ))));
+    StepVerifier.create(repository.createReport(report)).expectNext(true).verifyComplete();
+
+    var expected = new Report<>(1, 1, Collections.singletonList(new ReportTable<>("Test", Arrays.asList(
+      new ColumnInfoWithSize("ID", "int4", "2"),
+      new ColumnInfoWithSize("missing", "int4", "0"),
+      new ColumnInfoWithSize("data", "varchar(40)", "1")
+    ))));
+    StepVerifier.create(repository.getReportById(1)).expectNext(Optional.of(expected)).verifyComplete();
+  }
+
+  @Test
+  void getReportFollowsWrites() {
+    var report = new Report<>(1, 1, Collections.singletonList(TABLE1));
+    StepVerifier.create(reportService.createReport(report)).expectNext(true).verifyComplete();
+
+    var queries = Arrays.asList(
+      new SingleQuery(1, "insert into Test (ID, data) values (1, 'Hello!'), (2, null), (3, 'Bye')"),
+      new SingleQuery(2, "update Test set data = null where ID = 1"),
+      new SingleQuery(3, "insert into Test (ID, data) values (4, 'a'), (1, 'duplicate')"),
+      new SingleQuery(4, "delete from Test where ID = 3"),
+      new SingleQuery(5, "truncate table Test"),
+      new SingleQuery(6, "drop table Test; create table Test (ID int4 primary key, data varchar(40)); insert into Test values (7, 'x')")
+    );
+    var expectedSizes = Arrays.asList(
+      Arrays.asList("3", "2"),
+      Arrays.asList("3", "1"),
+      Arrays.asList("3", "1"),
+      Arrays.asList("2", "0"),
+      Arrays.asList("0", "0"),
+      Arrays.asList("1", "1")
+    );
+    for (int i = 0; i < queries.size(); i++) {
+      var query = queries.get(i);
+      StepVerifier.create(singleQueryService.addNewQuery(query)).expectNext(true).verifyComplete();
+      StepVerifier.create(singleQueryService.executeQuery(query.getId())).expectNextCount(1).verifyComplete();
+
+      var sizes = expectedSizes.get(i);
+      var expected = new Report<>(1, 1, Collections.singletonList(new ReportTable<>("Test", Arrays.asList(
+        new ColumnInfoWithSize("ID", "int4", sizes.get(0)),
+        new ColumnInfoWithSize("data", "varchar(40)", sizes.get(1))
+      ))));
+      StepVerifier.create(reportService.getReportById(1)).expectNext(expected).verifyComplete();
+    }
+  }
+
   private final static ReportTable<ColumnInfo> TABLE1 = new ReportTable<>(
     "Test",
     Arrays.asList(
@@ -9,6 +9,7 @@ import ru.vk.competition.minbenchmark.entity.SingleQuery;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 
 @SpringBootTest
@@ -109,5 +110,51 @@ public class SingleQueryServiceTest {
   void getAllQueriesEmpty() {
     StepVerifier.create(queryService.getAllQueries()).expectNext(Collections.emptyList()).verifyComplete();
   }
-}
 
+  @Test
+  void pageQueries() {
+    var query1 = new SingleQuery(1, "select * from Test");
+    var query2 = new SingleQuery(2, "select id from Test");
+    var query3 = new SingleQuery(3, "select name from Test");
+    StepVerifier.create(queryService.addNewQuery(query1)).expectNext(true).verifyComplete();
+    StepVerifier.create(queryService.addNewQuery(query2)).expectNext(true).verifyComplete();
+    StepVerifier.create(queryService.addNewQuery(query3)).expectNext(true).verifyComplete();
+
+    StepVerifier.create(queryService.getAllQueries(null, 2)).expectNext(Arrays.asList(query1, query2)).verifyComplete();
+    StepVerifier.create(queryService.getAllQueries(2, 2)).expectNext(Collections.singletonList(query3)).verifyComplete();
+    StepVerifier.create(queryService.getAllQueries(Integer.MAX_VALUE, null)).expectNext(Collections.emptyList()).verifyComplete();
+    StepVerifier.create(queryService.streamAllQueries(1, null)).expectNext(query2, query3).verifyComplete();
+    StepVerifier.create(queryService.streamAllQueries(null, 0)).verifyComplete();
+  }
+
+  @Test
+  void batchQueries() {
+    var query1 = new SingleQuery(1, "select * from Test");
+    var query2 = new SingleQuery(2, "select id from Test");
+    StepVerifier.create(queryService.addNewQueries(Arrays.asList(query1, query2, query1)))
+      .expectNext(Arrays.asList(true, true, false)).verifyComplete();
+
+    var updated = new SingleQuery(2, "select name from Test");
+    StepVerifier.create(queryService.updateQueries(Arrays.asList(updated, new SingleQuery(3, "select 1"))))
+      .expectNext(Arrays.asList(true, false)).verifyComplete();
+    StepVerifier.create(queryService.deleteQueries(Arrays.asList(1, 1)))
+      .expectNext(Arrays.asList(true, false)).verifyComplete();
+    StepVerifier.create(queryService.getAllQueries()).expectNext(Collections.singletonList(updated)).verifyComplete();
+  }
+
+  @Test
+  void executeQueryWithArgs() {
+    StepVerifier.create(queryService.addNewQuery(new SingleQuery(1, "create table Args (id int primary key, name varchar)"))).expectNext(true).verifyComplete();
+    StepVerifier.create(queryService.addNewQuery(new SingleQuery(2, "insert into Args values (?, ?)"))).expectNext(true).verifyComplete();
+    StepVerifier.create(queryService.addNewQuery(new SingleQuery(3, "select name from Args where id = ?"))).expectNext(true).verifyComplete();
+    StepVerifier.create(queryService.executeQuery(1)).expectNext(true).verifyComplete();
+
+    StepVerifier.create(queryService.executeQuery(2, List.of(1, "a"))).expectNext(true).verifyComplete();
+    StepVerifier.create(queryService.executeQuery(2, Arrays.asList(2, null))).expectNext(true).verifyComplete();
+    StepVerifier.create(queryService.executeQuery(2, List.of(1, "b"))).expectNext(false).verifyComplete();
+    StepVerifier.create(queryService.executeQuery(2, List.of(3))).expectNext(false).verifyComplete();
+    StepVerifier.create(queryService.executeQuery(3, List.of(1))).expectNext(true).verifyComplete();
+    StepVerifier.create(queryService.executeQuery(4, List.of(1))).expectNext(false).verifyComplete();
+    StepVerifier.create(queryService.executeQuery(2)).expectNext(false).verifyComplete();
+  }
+}
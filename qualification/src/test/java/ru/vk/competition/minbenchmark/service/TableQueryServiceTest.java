@@ -206,4 +206,56 @@ public class TableQueryServiceTest {
   void getAllTableQueriesEmpty() {
     StepVerifier.create(queryService.getAllTableQueries()).expectNext(Collections.emptyList()).verifyComplete();
   }
+
+  @Test
+  void pageTableQueries() {
+    var query1 = new TableQuery(1, "Test", "select * from Test");
+    var query2 = new TableQuery(2, "Test1", "select * from Test1");
+    var query3 = new TableQuery(3, "Test", "select id from Test");
+    StepVerifier.create(queryService.addNewTableQuery(query1)).expectNext(true).verifyComplete();
+    StepVerifier.create(queryService.addNewTableQuery(query2)).expectNext(true).verifyComplete();
+    StepVerifier.create(queryService.addNewTableQuery(query3)).expectNext(true).verifyComplete();
+
+    StepVerifier.create(queryService.getAllTableQueries(null, 2)).expectNext(Arrays.asList(query1, query2)).verifyComplete();
+    StepVerifier.create(queryService.getAllTableQueries(2, 2)).expectNext(Collections.singletonList(query3)).verifyComplete();
+    StepVerifier.create(queryService.getAllTableQueries(3, null)).expectNext(Collections.emptyList()).verifyComplete();
+    StepVerifier.create(queryService.getTableQueries("Test", 1, null)).expectNext(Collections.singletonList(query3)).verifyComplete();
+    StepVerifier.create(queryService.getTableQueries("Test", null, 1)).expectNext(Collections.singletonList(query1)).verifyComplete();
+    StepVerifier.create(queryService.getTableQueries("Test+++", null, 1)).verifyComplete();
+  }
+
+  @Test
+  void streamTableQueries() {
+    var query1 = new TableQuery(1, "Test", "select * from Test");
+    var query2 = new TableQuery(2, "Test1", "select * from Test1");
+    var query3 = new TableQuery(3, "Test", "select id from Test");
+    StepVerifier.create(queryService.addNewTableQuery(query1)).expectNext(true).verifyComplete();
+    StepVerifier.create(queryService.addNewTableQuery(query2)).expectNext(true).verifyComplete();
+    StepVerifier.create(queryService.addNewTableQuery(query3)).expectNext(true).verifyComplete();
+
+    StepVerifier.create(queryService.streamAllTableQueries(null, null)).expectNext(query1, query2, query3).verifyComplete();
+    StepVerifier.create(queryService.streamAllTableQueries(1, 1)).expectNext(query2).verifyComplete();
+    StepVerifier.create(queryService.streamTableQueries("Test", null, null)).expectNext(query1, query3).verifyComplete();
+    StepVerifier.create(queryService.streamTableQueries("Test+++", null, null)).verifyComplete();
+  }
+
+  @Test
+  void batchQueries() {
+    var query1 = new TableQuery(1, "Test", "select * from Test");
+    var query2 = new TableQuery(2, "Lol", "select * from Lol");
+    var query3 = new TableQuery(3, "Test1", "select * from Test1");
+    StepVerifier.create(queryService.addNewTableQueries(Arrays.asList(query1, query2, query3, query1)))
+      .expectNext(Arrays.asList(true, false, true, false)).verifyComplete();
+
+    var moved = new TableQuery(1, "Test1", "select id from Test1");
+    StepVerifier.create(queryService.updateTableQueries(Arrays.asList(moved, query2)))
+      .expectNext(Arrays.asList(true, false)).verifyComplete();
+    StepVerifier.create(queryService.getTableQueries("Test1")).expectNext(Arrays.asList(moved, query3)).verifyComplete();
+
+    StepVerifier.create(queryService.deleteTableQueries(Arrays.asList(3, 2, 3)))
+      .expectNext(Arrays.asList(true, false, false)).verifyComplete();
+    StepVerifier.create(queryService.getAllTableQueries()).expectNext(Collections.singletonList(moved)).verifyComplete();
+    StepVerifier.create(queryService.addNewTableQueries(Collections.emptyList()))
+      .expectNext(Collections.emptyList()).verifyComplete();
+  }
 }
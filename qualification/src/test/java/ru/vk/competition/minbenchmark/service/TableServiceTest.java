@@ -3,10 +3,13 @@ package ru.vk.competition.minbenchmark.service;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.util.Pair;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 import ru.vk.competition.minbenchmark.entity.ColumnInfo;
 import ru.vk.competition.minbenchmark.entity.DBTable;
@@ -115,6 +118,33 @@ public class TableServiceTest {
     StepVerifier.create(tableService.getTableByName(TEST_TABLE)).expectNext(verifyDb).verifyComplete();
   }
 
+  @Test
+  void concurrentMissesShareOneLoad() {
+    var db = createTestTable(TEST_TABLE, "id", ID_COLUMN);
+    StepVerifier.create(tableService.createTable(db.getFirst())).expectNext(true).verifyComplete();
+    var before = tableService.getCacheStats().block();
+
+    var tables = Flux.range(0, 32)
+      .flatMap(it -> tableService.getTableByName(TEST_TABLE).subscribeOn(Schedulers.parallel()))
+      .collectList().block();
+    tables.forEach(it -> Assertions.assertEquals(db.getSecond(), it));
+
+    var after = tableService.getCacheStats().block();
+    Assertions.assertEquals(before.getLoadCount() + 1, after.getLoadCount());
+    Assertions.assertEquals(before.getHitCount() + before.getMissCount() + 32, after.getHitCount() + after.getMissCount());
+  }
+
+  @Test
+  void missingTablesAreCachedNegatively() {
+    var before = tableService.getCacheStats().block();
+    StepVerifier.create(tableService.getTableByName("Wat")).verifyComplete();
+    StepVerifier.create(tableService.getTableByName("WAT")).verifyComplete();
+
+    var after = tableService.getCacheStats().block();
+    Assertions.assertEquals(before.getLoadCount() + 1, after.getLoadCount());
+    Assertions.assertEquals(before.getHitCount() + 1, after.getHitCount());
+  }
+
   private static Pair<DBTable, DBTable> createTestTable(String name, String primaryKey, TestColumnInfo... columns) {
     return createTestTable(name, columns.length, primaryKey, columns);
   }
@@ -1,6 +1,7 @@
 package ru.vk.competition.minbenchmark.service;
 
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +13,10 @@ import ru.vk.competition.minbenchmark.entity.SingleQuery;
 import ru.vk.competition.minbenchmark.entity.TableQuery;
 
 import java.util.Arrays;
+import java.util.Collections;
+
+import static ru.vk.competition.minbenchmark.util.TableSchemaUtil.CHARACTER_TYPE;
+import static ru.vk.competition.minbenchmark.util.TableSchemaUtil.INTEGER_TYPE;
 
 @SpringBootTest
 public class TableSingleLinkTest {
@@ -41,6 +46,27 @@ public class TableSingleLinkTest {
     singleQueryService.clear();
   }
 
+  @Test
+  void clearDropsEverything() {
+    StepVerifier.create(tableQueryService.addNewTableQuery(new TableQuery(1, "Test", "select * from Test")))
+      .expectNext(true).verifyComplete();
+    StepVerifier.create(singleQueryService.addNewQuery(new SingleQuery(1, "create sequence S")))
+      .expectNext(true).verifyComplete();
+    StepVerifier.create(singleQueryService.executeQuery(1)).expectNext(true).verifyComplete();
+
+    var took = tableService.clear();
+    Assertions.assertFalse(took.isNegative());
+    StepVerifier.create(tableService.getTableByName("Test")).verifyComplete();
+    StepVerifier.create(tableService.getTableByName("Test1")).verifyComplete();
+    StepVerifier.create(tableQueryService.getAllTableQueries()).expectNext(Collections.emptyList()).verifyComplete();
+    StepVerifier.create(singleQueryService.getAllQueries()).expectNext(Collections.emptyList()).verifyComplete();
+
+    // The sequence went with the tables, so it can be created again
+    StepVerifier.create(singleQueryService.addNewQuery(new SingleQuery(1, "create sequence S")))
+      .expectNext(true).verifyComplete();
+    StepVerifier.create(singleQueryService.executeQuery(1)).expectNext(true).verifyComplete();
+  }
+
   @Test
   void getAllDifferent() {
     var query1 = new TableQuery(1, "Test", "select * from Test");
@@ -59,4 +85,26 @@ public class TableSingleLinkTest {
     StepVerifier.create(tableQueryService.getAllTableQueries()).expectNext(queryList1).verifyComplete();
     StepVerifier.create(singleQueryService.getAllQueries()).expectNext(queryList2).verifyComplete();
   }
+
+  @Test
+  void schemaChangeVisibleInTableInfo() {
+    var table = new DBTable("Test", 1, "id", Collections.singletonList(new ColumnInfo("ID", INTEGER_TYPE)));
+    StepVerifier.create(tableService.getTableByName("Test")).expectNext(table).verifyComplete();
+
+    var insert = new SingleQuery(1, "insert into Test (id) values (1)");
+    var alter = new SingleQuery(2, "alter table Test add column data varchar");
+    StepVerifier.create(singleQueryService.addNewQuery(insert)).expectNext(true).verifyComplete();
+    StepVerifier.create(singleQueryService.addNewQuery(alter)).expectNext(true).verifyComplete();
+
+    StepVerifier.create(singleQueryService.executeQuery(1)).expectNext(true).verifyComplete();
+    StepVerifier.create(tableService.getTableByName("Test")).expectNext(table).verifyComplete();
+
+    StepVerifier.create(singleQueryService.executeQuery(2)).expectNext(true).verifyComplete();
+    var altered = new DBTable("Test", 2, "id", Arrays.asList(
+      new ColumnInfo("ID", INTEGER_TYPE),
+      new ColumnInfo("DATA", CHARACTER_TYPE)
+    ));
+    StepVerifier.create(tableService.getTableByName("Test")).expectNext(altered).verifyComplete();
+    StepVerifier.create(tableService.getTableByName("Test1")).expectNextCount(1).verifyComplete();
+  }
 }